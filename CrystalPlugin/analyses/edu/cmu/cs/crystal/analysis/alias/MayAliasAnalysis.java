@@ -31,15 +31,26 @@ import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.Statement;
 
 import edu.cmu.cs.crystal.AbstractCrystalMethodAnalysis;
+import edu.cmu.cs.crystal.IAnalysisInput;
+import edu.cmu.cs.crystal.flow.CompilationUnitFlowAnalyses;
 import edu.cmu.cs.crystal.simple.TupleLatticeElement;
 import edu.cmu.cs.crystal.tac.ITACFlowAnalysis;
 import edu.cmu.cs.crystal.tac.TACFlowAnalysis;
 import edu.cmu.cs.crystal.tac.model.TACInstruction;
 import edu.cmu.cs.crystal.tac.model.Variable;
+import edu.cmu.cs.crystal.util.Option;
 
 public class MayAliasAnalysis extends AbstractCrystalMethodAnalysis {
 	
 	private static final Logger log = Logger.getLogger(MayAliasAnalysis.class.getName());
+
+	/**
+	 * Key of the may-alias flow analysis this analysis publishes for each compilation unit.
+	 * @see #getFlowAnalysis(IAnalysisInput)
+	 */
+	public static final CompilationUnitFlowAnalyses.Key<ITACFlowAnalysis<TupleLatticeElement<Variable, AliasLE>>> RESULTS =
+		new CompilationUnitFlowAnalyses.Key<ITACFlowAnalysis<TupleLatticeElement<Variable, AliasLE>>>(
+				MayAliasAnalysis.class.getSimpleName(), MayAliasTransferFunction.class);
 	
 	private ITACFlowAnalysis<TupleLatticeElement<Variable, AliasLE>> fa;
 	
@@ -163,11 +174,36 @@ public class MayAliasAnalysis extends AbstractCrystalMethodAnalysis {
 		return labels;
 	}
 	
+	/**
+	 * Returns the may-alias flow analysis for the compilation unit of the given input.
+	 * The flow analysis is published under {@link #RESULTS}, so that all analyses 
+	 * running on the compilation unit share its results.  Analyses using this method
+	 * should name this analysis in their {@link edu.cmu.cs.crystal.IDependentAnalysis#getDependencies() dependencies}.
+	 * The tuples returned by the flow analysis are frozen and shared, so they cannot be
+	 * modified; use {@link TupleLatticeElement#mutableCopy()} to get a tuple that can.
+	 * @param input The input of the analysis asking for aliasing information.
+	 * @return the may-alias flow analysis for the compilation unit being analyzed.
+	 */
+	public static ITACFlowAnalysis<TupleLatticeElement<Variable, AliasLE>> getFlowAnalysis(
+			IAnalysisInput input) {
+		Option<CompilationUnitFlowAnalyses> published = input.getComUnitFlowAnalyses();
+		if (published.isSome()) {
+			Option<ITACFlowAnalysis<TupleLatticeElement<Variable, AliasLE>>> fa = 
+				published.unwrap().get(RESULTS);
+			if (fa.isSome())
+				return fa.unwrap();
+		}
+		ITACFlowAnalysis<TupleLatticeElement<Variable, AliasLE>> fa = 
+			new TACFlowAnalysis<TupleLatticeElement<Variable, AliasLE>>(
+					new MayAliasTransferFunction(null, input.getComUnitCFGs()), input);
+		if (published.isSome())
+			published.unwrap().put(RESULTS, fa);
+		return fa;
+	}
+	
 	@Override
 	public void analyzeMethod(MethodDeclaration d) {
-		MayAliasTransferFunction tf = new MayAliasTransferFunction(this);
-		fa = new TACFlowAnalysis<TupleLatticeElement<Variable, AliasLE>>(tf, 
-				this.analysisInput.getComUnitTACs().unwrap());
+		fa = getFlowAnalysis(this.analysisInput);
 		
 		// must call getResultsAfter at least once on this method,
 		// or the analysis won't be run on this method
@@ -198,6 +234,12 @@ public class MayAliasAnalysis extends AbstractCrystalMethodAnalysis {
 		return aliases;
 	}
 
+	/**
+	 * Returns the aliasing information after the given instruction.
+	 * @param instr
+	 * @return the aliasing information after the given instruction; this tuple is 
+	 * frozen and must be {@link TupleLatticeElement#mutableCopy() copied} to modify it.
+	 */
 	public TupleLatticeElement<Variable, AliasLE> getResultsAfter(TACInstruction instr) {
 		return fa.getResultsAfter(instr.getNode());
 	}
@@ -226,6 +268,12 @@ public class MayAliasAnalysis extends AbstractCrystalMethodAnalysis {
 		return fa.getThisVariable(methodDecl);
 	}
 
+	/**
+	 * Returns the aliasing information before the given instruction.
+	 * @param instr
+	 * @return the aliasing information before the given instruction; this tuple is 
+	 * frozen and must be {@link TupleLatticeElement#mutableCopy() copied} to modify it.
+	 */
 	public TupleLatticeElement<Variable, AliasLE> getResultsBefore(
 			TACInstruction instr) {
 		return fa.getResultsBefore(instr);
@@ -32,6 +32,8 @@ import edu.cmu.cs.crystal.flow.ILabel;
 import edu.cmu.cs.crystal.flow.ILatticeOperations;
 import edu.cmu.cs.crystal.flow.IResult;
 import edu.cmu.cs.crystal.flow.LabeledSingleResult;
+import edu.cmu.cs.crystal.flow.worklist.CompilationUnitCFGs;
+import edu.cmu.cs.crystal.simple.PersistentTupleLatticeOperations;
 import edu.cmu.cs.crystal.simple.TupleLatticeElement;
 import edu.cmu.cs.crystal.simple.TupleLatticeOperations;
 import edu.cmu.cs.crystal.tac.AbstractTACBranchSensitiveTransferFunction;
@@ -52,20 +54,30 @@ import edu.cmu.cs.crystal.tac.model.SourceVariableDeclaration;
 import edu.cmu.cs.crystal.tac.model.TACInstruction;
 import edu.cmu.cs.crystal.tac.model.UnaryOperation;
 import edu.cmu.cs.crystal.tac.model.Variable;
+import edu.cmu.cs.crystal.util.Option;
 
 public class MayAliasTransferFunction extends
 		AbstractTACBranchSensitiveTransferFunction<TupleLatticeElement<Variable, AliasLE>> {
 
 	private Map<Variable, ObjectLabel> labelContext;
+	// results are frozen persistent tuples; see MayAliasAnalysis#getFlowAnalysis
 	private final TupleLatticeOperations<Variable, AliasLE> ops =
-		new TupleLatticeOperations<Variable, AliasLE>(
+		new PersistentTupleLatticeOperations<Variable, AliasLE>(
 				SingleObjectAliasOps.getAliasOps(),new AliasLE());
 
 	private LoopCounter loopCounter;
 	
 	public MayAliasTransferFunction(ICrystalAnalysis analysis) {
+		this(analysis, Option.<CompilationUnitCFGs>none());
+	}
+	
+	/**
+	 * @param analysis
+	 * @param cfgs Cache to take the loops in analyzed methods from, if any.
+	 */
+	public MayAliasTransferFunction(ICrystalAnalysis analysis, Option<CompilationUnitCFGs> cfgs) {
 		labelContext = new HashMap<Variable, ObjectLabel>();
-		loopCounter = new LoopCounter();
+		loopCounter = new LoopCounter(cfgs);
 	}
 	
 	public ILatticeOperations<TupleLatticeElement<Variable, AliasLE>> getLatticeOperations() {
@@ -23,6 +23,7 @@ import java.util.HashSet;
 
 import org.eclipse.jdt.core.dom.ASTNode;
 
+import edu.cmu.cs.crystal.flow.IFreezableLatticeOperations;
 import edu.cmu.cs.crystal.flow.ILatticeOperations;
 
 /**
@@ -30,7 +31,8 @@ import edu.cmu.cs.crystal.flow.ILatticeOperations;
  * @author Kevin Bierhoff
  * @since Crystal 3.4.1
  */
-public class SingleObjectAliasOps implements ILatticeOperations<AliasLE> {
+public class SingleObjectAliasOps implements ILatticeOperations<AliasLE>,
+		IFreezableLatticeOperations<AliasLE, ASTNode> {
 	
 	/** Holds the singleton instance of this class. */
 	private static SingleObjectAliasOps ALIAS_OPS;
@@ -65,6 +67,13 @@ public class SingleObjectAliasOps implements ILatticeOperations<AliasLE> {
 		return original;
 	}
 
+	/**
+	 * {@link AliasLE} is immutable.
+	 */
+	public AliasLE freeze(AliasLE info) {
+		return info;
+	}
+
 	public AliasLE join(AliasLE someInfo, AliasLE otherInfo, ASTNode node) {
 		HashSet<ObjectLabel> copy;
 		copy = new HashSet<ObjectLabel>(someInfo.getLabels());
@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.analysis.assignment;
+
+import edu.cmu.cs.crystal.bitvector.BitVectorLatticeOperations;
+import edu.cmu.cs.crystal.bitvector.GenKillSets;
+import edu.cmu.cs.crystal.bitvector.GenKillTransferFunction;
+import edu.cmu.cs.crystal.flow.AnalysisDirection;
+import edu.cmu.cs.crystal.tac.model.AssignmentInstruction;
+import edu.cmu.cs.crystal.tac.model.SourceVariable;
+import edu.cmu.cs.crystal.tac.model.SourceVariableDeclaration;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.Variable;
+
+/**
+ * Definite assignment analysis for local variables and parameters, 
+ * a "must" analysis: a variable is definitely assigned at a node if it is
+ * assigned on every path leading to the node.  Parameters, caught exceptions,
+ * and enhanced for loop variables are assigned when they are declared;
+ * declaring a local variable makes it unassigned.
+ * The results are the sets of definitely assigned variables.
+ */
+public class DefiniteAssignmentTransferFunction extends GenKillTransferFunction<Variable> {
+
+	public DefiniteAssignmentTransferFunction() {
+		super(AnalysisDirection.FORWARD_ANALYSIS, BitVectorLatticeOperations.mustOperations());
+	}
+
+	@Override
+	protected void genKill(TACInstruction instr, GenKillSets<Variable> genKill) {
+		if(instr instanceof AssignmentInstruction) {
+			Variable target = ((AssignmentInstruction) instr).getTarget();
+			if(target instanceof SourceVariable)
+				genKill.gen(target);
+		}
+		else if(instr instanceof SourceVariableDeclaration) {
+			SourceVariableDeclaration decl = (SourceVariableDeclaration) instr;
+			if(decl.isFormalParameter() || decl.isCaughtVariable() || decl.isEnhancedForLoopVariable())
+				genKill.gen(decl.getDeclaredVariable());
+			else
+				genKill.kill(decl.getDeclaredVariable());
+		}
+	}
+
+}
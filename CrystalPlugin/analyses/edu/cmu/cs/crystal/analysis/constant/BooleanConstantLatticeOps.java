@@ -19,13 +19,17 @@
  */
 package edu.cmu.cs.crystal.analysis.constant;
 
+import org.eclipse.jdt.core.dom.ASTNode;
+
+import edu.cmu.cs.crystal.flow.IFreezableLatticeOperations;
 import edu.cmu.cs.crystal.simple.SimpleLatticeOperations;
 
 /**
  * @author ciera
  * @since Crystal 3.4.0
  */
-public class BooleanConstantLatticeOps extends SimpleLatticeOperations<BooleanConstantLE> {
+public class BooleanConstantLatticeOps extends SimpleLatticeOperations<BooleanConstantLE>
+		implements IFreezableLatticeOperations<BooleanConstantLE, ASTNode> {
 
 	@Override
 	public boolean atLeastAsPrecise(BooleanConstantLE left, BooleanConstantLE right) {
@@ -57,6 +61,13 @@ public class BooleanConstantLatticeOps extends SimpleLatticeOperations<BooleanCo
 		return original;
 	}
 
+	/**
+	 * Lattice elements are immutable.
+	 */
+	public BooleanConstantLE freeze(BooleanConstantLE info) {
+		return info;
+	}
+
 	@Override
 	public BooleanConstantLE join(BooleanConstantLE left, BooleanConstantLE right) {
 		if (left == right)
@@ -75,7 +75,7 @@ public class ConstantAnalysis extends AbstractCrystalMethodAnalysis {
 	public void analyzeMethod(MethodDeclaration d) {
 		ITACBranchSensitiveTransferFunction<TupleLatticeElement<Variable, BooleanConstantLE>> tf = new ConstantTransferFunction();
 		fa = new TACFlowAnalysis<TupleLatticeElement<Variable, BooleanConstantLE>>(tf,
-				this.analysisInput.getComUnitTACs().unwrap());
+				this.analysisInput);
 	
 		// must call getResultsAfter at least once on this method,
 		// or the analysis won't be run on this method
@@ -93,11 +93,23 @@ public class ConstantAnalysis extends AbstractCrystalMethodAnalysis {
 	}
 
 
+	/**
+	 * Returns the constants before the given instruction.
+	 * @param instr
+	 * @return the constants before the given instruction, as a frozen tuple
+	 * that must be {@link TupleLatticeElement#mutableCopy() copied} before modifying it.
+	 */
 	public TupleLatticeElement<Variable, BooleanConstantLE> getResultsBefore(
 			TACInstruction instr) {
 		return fa.getResultsBefore(instr.getNode());
 	}
 
+	/**
+	 * Returns the constants after the given instruction.
+	 * @param instr
+	 * @return the constants after the given instruction, as a frozen tuple
+	 * that must be {@link TupleLatticeElement#mutableCopy() copied} before modifying it.
+	 */
 	public TupleLatticeElement<Variable, BooleanConstantLE> getResultsAfter(
 			TACInstruction instr) {
 		return fa.getResultsAfter(instr);
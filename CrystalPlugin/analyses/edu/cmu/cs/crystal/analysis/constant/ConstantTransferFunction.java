@@ -32,6 +32,7 @@ import edu.cmu.cs.crystal.flow.ILatticeOperations;
 import edu.cmu.cs.crystal.flow.IResult;
 import edu.cmu.cs.crystal.flow.LabeledResult;
 import edu.cmu.cs.crystal.flow.LabeledSingleResult;
+import edu.cmu.cs.crystal.simple.PersistentTupleLatticeOperations;
 import edu.cmu.cs.crystal.simple.TupleLatticeElement;
 import edu.cmu.cs.crystal.simple.TupleLatticeOperations;
 import edu.cmu.cs.crystal.tac.ITACAnalysisContext;
@@ -61,8 +62,9 @@ import edu.cmu.cs.crystal.tac.model.Variable;
 
 
 public class ConstantTransferFunction implements ITACBranchSensitiveTransferFunction<TupleLatticeElement<Variable, BooleanConstantLE>> {
+	// persistent tuples are frozen once they are results, so clients cannot modify them
 	private final TupleLatticeOperations<Variable, BooleanConstantLE> ops = 
-	 new TupleLatticeOperations<Variable, BooleanConstantLE>(
+	 new PersistentTupleLatticeOperations<Variable, BooleanConstantLE>(
 	 new BooleanConstantLatticeOps(), BooleanConstantLE.BOTTOM);
 
 	public ILatticeOperations<TupleLatticeElement<Variable, BooleanConstantLE>> getLatticeOperations() {
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.analysis.constant;
+
+import org.eclipse.jdt.core.dom.BooleanLiteral;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+import edu.cmu.cs.crystal.flow.ILatticeOperations;
+import edu.cmu.cs.crystal.ssa.IOperandValues;
+import edu.cmu.cs.crystal.ssa.ISparseTransferFunction;
+import edu.cmu.cs.crystal.tac.model.CopyInstruction;
+import edu.cmu.cs.crystal.tac.model.LoadLiteralInstruction;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.UnaryOperation;
+import edu.cmu.cs.crystal.tac.model.UnaryOperator;
+import edu.cmu.cs.crystal.tac.model.Variable;
+
+/**
+ * Sparse boolean constant propagation, for use with 
+ * {@link edu.cmu.cs.crystal.ssa.SparseFlowAnalysis}.  Boolean literals, copies, and negations
+ * propagate constants; any other definition of a boolean variable makes it unknown.  
+ * Unlike {@link ConstantTransferFunction}, this analysis does not learn
+ * from branch conditions: a variable is only constant if it has the same value
+ * on all paths.
+ */
+public class SparseConstantTransferFunction implements ISparseTransferFunction<BooleanConstantLE> {
+	
+	private final BooleanConstantLatticeOps ops = new BooleanConstantLatticeOps();
+
+	public ILatticeOperations<BooleanConstantLE> getLatticeOperations() {
+		return ops;
+	}
+
+	public BooleanConstantLE getEntryValue(Variable variable, MethodDeclaration method) {
+		return BooleanConstantLE.BOTTOM;
+	}
+
+	public BooleanConstantLE transfer(TACInstruction instr, Variable target, 
+			IOperandValues<BooleanConstantLE> operands) {
+		if (instr instanceof LoadLiteralInstruction) {
+			if (instr.getNode() instanceof BooleanLiteral)
+				return ((BooleanLiteral) instr.getNode()).booleanValue() ? 
+						BooleanConstantLE.TRUE : BooleanConstantLE.FALSE;
+			return BooleanConstantLE.BOTTOM;
+		}
+		if (instr instanceof CopyInstruction)
+			return operands.get(((CopyInstruction) instr).getOperand());
+		if (instr instanceof UnaryOperation) {
+			UnaryOperation unop = (UnaryOperation) instr;
+			if (! unop.getOperator().equals(UnaryOperator.BOOL_NOT))
+				return BooleanConstantLE.BOTTOM;
+			BooleanConstantLE operand = operands.get(unop.getOperand());
+			if (operand == BooleanConstantLE.FALSE)
+				return BooleanConstantLE.TRUE;
+			else if (operand == BooleanConstantLE.TRUE)
+				return BooleanConstantLE.FALSE;
+			else if (operand == BooleanConstantLE.BOTTOM)
+				return BooleanConstantLE.BOTTOM;
+			else
+				return BooleanConstantLE.UNKNOWN;
+		}
+		// declarations, method calls, field reads, comparisons, etc.
+		return isBoolean(target) ? BooleanConstantLE.UNKNOWN : BooleanConstantLE.BOTTOM;
+	}
+	
+	private static boolean isBoolean(Variable var) {
+		ITypeBinding type = var.resolveType();
+		return type != null && type.getName().equals("boolean");
+	}
+
+}
@@ -30,8 +30,8 @@ import org.eclipse.jdt.core.dom.Name;
 
 import edu.cmu.cs.crystal.AbstractCrystalMethodAnalysis;
 import edu.cmu.cs.crystal.IAnalysisReporter.SEVERITY;
+import edu.cmu.cs.crystal.bitvector.BitVector;
 import edu.cmu.cs.crystal.simple.TupleLatticeElement;
-import edu.cmu.cs.crystal.tac.ITACTransferFunction;
 import edu.cmu.cs.crystal.tac.TACFlowAnalysis;
 import edu.cmu.cs.crystal.tac.model.Variable;
 import edu.cmu.cs.crystal.util.Utilities;
@@ -41,7 +41,9 @@ public class LiveVariableAnalysis extends AbstractCrystalMethodAnalysis
 
 	public static LiveVariableAnalysis Instance;
 	
-	private TACFlowAnalysis<TupleLatticeElement<Variable, LiveVariableLE>> fa;
+	private LiveVariableBitVectorTransferFunction tf;
+	
+	private TACFlowAnalysis<BitVector> fa;
 
 	
 	public LiveVariableAnalysis() {
@@ -53,23 +55,33 @@ public class LiveVariableAnalysis extends AbstractCrystalMethodAnalysis
 	{
 		// If the node is located in a field initializer (no surrounding method), no results exist for it.  In this case,
 		// we default to live.
-		if (Utilities.getMethodDeclaration(node) == null)
+		MethodDeclaration method = Utilities.getMethodDeclaration(node);
+		if (method == null)
 			return true;
 		else
-			return fa.getResultsBefore(node).get(var) == LiveVariableLE.LIVE;
+			return tf.holds(fa.getResultsBefore(node), var, method);
 	}
 
 	@Override
 	public void analyzeMethod(MethodDeclaration d) {
-		ITACTransferFunction<TupleLatticeElement<Variable, LiveVariableLE>> tf = new LiveVariableTransferFunction();
-		fa = new TACFlowAnalysis<TupleLatticeElement<Variable, LiveVariableLE>>(tf,
-				this.analysisInput.getComUnitTACs().unwrap());
+		tf = new LiveVariableBitVectorTransferFunction();
+		fa = new TACFlowAnalysis<BitVector>(tf,
+				this.analysisInput);
 	
 		// must call getResultsAfter at least once on this method, or the analysis won't be run on this method			
-		TupleLatticeElement<Variable, LiveVariableLE> finalLattice = fa.getResultsBefore(d);
+		BitVector finalLattice = fa.getResultsBefore(d);
 		d.accept(new LiveVariableVisitor());
 	}
 
+	/**
+	 * Dead assignment warnings only depend on the analyzed method, 
+	 * so unchanged methods can be skipped.
+	 */
+	@Override
+	protected boolean supportsIncremental() {
+		return true;
+	}
+
 	public void printLattice(TupleLatticeElement<Variable, LiveVariableLE> lattice) {
 		for (Variable var : lattice.getKeySet()) {
 			LiveVariableLE live = lattice.get(var);
@@ -91,7 +103,7 @@ public class LiveVariableAnalysis extends AbstractCrystalMethodAnalysis
 		public void endVisit(Assignment node) {
 			IVariableBinding binding = null;
 			Expression left = node.getLeftHandSide();
-			TupleLatticeElement<Variable, LiveVariableLE> lattice = fa.getResultsAfter(node);
+			BitVector lattice = fa.getResultsAfter(node);
 			
 			if (left instanceof Name && ((Name)left).resolveBinding() instanceof IVariableBinding)
 				binding = (IVariableBinding) ((Name)left).resolveBinding();
@@ -104,7 +116,8 @@ public class LiveVariableAnalysis extends AbstractCrystalMethodAnalysis
 			if (binding.isField() || binding.isParameter())
 				return;
 			
-			if (lattice.get(fa.getSourceVariable(binding)) == LiveVariableLE.DEAD)
+			// facts are numbered per method, and node may be inside a nested class
+			if (! tf.holds(lattice, fa.getSourceVariable(binding), Utilities.getMethodDeclaration(node)))
 				reporter.reportUserProblem("The variable " + node.getLeftHandSide() + " is dead and is no longer used.", node, getName(), SEVERITY.WARNING);
 		}
 	}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.analysis.live;
+
+import edu.cmu.cs.crystal.bitvector.BitVectorLatticeOperations;
+import edu.cmu.cs.crystal.bitvector.GenKillSets;
+import edu.cmu.cs.crystal.bitvector.GenKillTransferFunction;
+import edu.cmu.cs.crystal.flow.AnalysisDirection;
+import edu.cmu.cs.crystal.tac.model.ArrayInitInstruction;
+import edu.cmu.cs.crystal.tac.model.AssignmentInstruction;
+import edu.cmu.cs.crystal.tac.model.BinaryOperation;
+import edu.cmu.cs.crystal.tac.model.ConstructorCallInstruction;
+import edu.cmu.cs.crystal.tac.model.EnhancedForConditionInstruction;
+import edu.cmu.cs.crystal.tac.model.LoadArrayInstruction;
+import edu.cmu.cs.crystal.tac.model.LoadFieldInstruction;
+import edu.cmu.cs.crystal.tac.model.MethodCallInstruction;
+import edu.cmu.cs.crystal.tac.model.NewArrayInstruction;
+import edu.cmu.cs.crystal.tac.model.NewObjectInstruction;
+import edu.cmu.cs.crystal.tac.model.OneOperandInstruction;
+import edu.cmu.cs.crystal.tac.model.ReturnInstruction;
+import edu.cmu.cs.crystal.tac.model.SourceVariableDeclaration;
+import edu.cmu.cs.crystal.tac.model.SourceVariableReadInstruction;
+import edu.cmu.cs.crystal.tac.model.StoreArrayInstruction;
+import edu.cmu.cs.crystal.tac.model.StoreFieldInstruction;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.Variable;
+
+/**
+ * Live variable analysis as a bit vector analysis.  The results are the sets 
+ * of live variables; use {@link #holds(edu.cmu.cs.crystal.bitvector.BitVector, Object, org.eclipse.jdt.core.dom.MethodDeclaration) holds}
+ * to find out whether a given variable is live.  This analysis computes the same
+ * results as {@link LiveVariableTransferFunction}, with a lot less memory and time.
+ * 
+ * A backwards analysis, all variables begin as dead until a read changes them to live. 
+ * Writes set vars back to dead.
+ */
+public class LiveVariableBitVectorTransferFunction extends GenKillTransferFunction<Variable> {
+
+	public LiveVariableBitVectorTransferFunction() {
+		super(AnalysisDirection.BACKWARD_ANALYSIS, BitVectorLatticeOperations.mayOperations());
+	}
+
+	@Override
+	protected void genKill(TACInstruction instr, GenKillSets<Variable> genKill) {
+		// assigned variables are dead before the assignment, 
+		// unless they are also read by the assigning instruction
+		if(instr instanceof AssignmentInstruction)
+			genKill.kill(((AssignmentInstruction) instr).getTarget());
+		
+		if(instr instanceof ArrayInitInstruction) {
+			for(Variable var : ((ArrayInitInstruction) instr).getInitOperands())
+				genKill.gen(var);
+		}
+		else if(instr instanceof BinaryOperation) {
+			BinaryOperation binop = (BinaryOperation) instr;
+			genKill.gen(binop.getOperand1()).gen(binop.getOperand2());
+		}
+		else if(instr instanceof OneOperandInstruction) {
+			// casts, copies, instanceof, and unary operations
+			genKill.gen(((OneOperandInstruction) instr).getOperand());
+		}
+		else if(instr instanceof ConstructorCallInstruction) {
+			for(Variable var : ((ConstructorCallInstruction) instr).getArgOperands())
+				genKill.gen(var);
+		}
+		else if(instr instanceof EnhancedForConditionInstruction) {
+			genKill.gen(((EnhancedForConditionInstruction) instr).getIteratedOperand());
+		}
+		else if(instr instanceof LoadArrayInstruction) {
+			LoadArrayInstruction load = (LoadArrayInstruction) instr;
+			genKill.gen(load.getSourceArray()).gen(load.getArrayIndex());
+		}
+		else if(instr instanceof LoadFieldInstruction) {
+			LoadFieldInstruction load = (LoadFieldInstruction) instr;
+			// Static field accesses do not have source objects
+			if(! load.isStaticFieldAccess())
+				genKill.gen(load.getSourceObject());
+		}
+		else if(instr instanceof MethodCallInstruction) {
+			MethodCallInstruction call = (MethodCallInstruction) instr;
+			genKill.gen(call.getReceiverOperand());
+			for(Variable var : call.getArgOperands())
+				genKill.gen(var);
+		}
+		else if(instr instanceof NewArrayInstruction) {
+			for(Variable var : ((NewArrayInstruction) instr).getDimensionOperands())
+				genKill.gen(var);
+		}
+		else if(instr instanceof NewObjectInstruction) {
+			NewObjectInstruction newObj = (NewObjectInstruction) instr;
+			genKill.gen(newObj.getOuterObjectSpecifierOperand());
+			for(Variable var : newObj.getArgOperands())
+				genKill.gen(var);
+		}
+		else if(instr instanceof ReturnInstruction) {
+			genKill.gen(((ReturnInstruction) instr).getReturnedVariable());
+		}
+		else if(instr instanceof StoreArrayInstruction) {
+			StoreArrayInstruction store = (StoreArrayInstruction) instr;
+			// Since there potentially exist other values in the array that are still live, we do not change
+			// the state of the array to dead even though we write to it.
+			genKill.gen(store.getArrayIndex()).gen(store.getSourceOperand());
+			// array being stored into is read!
+			genKill.gen(store.getAccessedArrayOperand());
+		}
+		else if(instr instanceof StoreFieldInstruction) {
+			StoreFieldInstruction store = (StoreFieldInstruction) instr;
+			// Since there potentially exist other fields in the object that are still live, we do not change
+			// the state of the object to dead even though we write to it.
+			genKill.gen(store.getSourceOperand());
+			// object being stored into is read!
+			genKill.gen(store.getAccessedObjectOperand());
+		}
+		else if(instr instanceof SourceVariableDeclaration) {
+			genKill.kill(((SourceVariableDeclaration) instr).getDeclaredVariable());
+		}
+		else if(instr instanceof SourceVariableReadInstruction) {
+			genKill.gen(((SourceVariableReadInstruction) instr).getVariable());
+		}
+	}
+
+}
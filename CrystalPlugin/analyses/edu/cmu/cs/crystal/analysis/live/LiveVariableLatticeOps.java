@@ -19,9 +19,13 @@
  */
 package edu.cmu.cs.crystal.analysis.live;
 
+import org.eclipse.jdt.core.dom.ASTNode;
+
+import edu.cmu.cs.crystal.flow.IFreezableLatticeOperations;
 import edu.cmu.cs.crystal.simple.SimpleLatticeOperations;
 
 public class LiveVariableLatticeOps extends SimpleLatticeOperations<LiveVariableLE>
+		implements IFreezableLatticeOperations<LiveVariableLE, ASTNode>
 {
 	@Override
 	public boolean atLeastAsPrecise(LiveVariableLE left, LiveVariableLE right) {
@@ -38,6 +42,13 @@ public class LiveVariableLatticeOps extends SimpleLatticeOperations<LiveVariable
 		return original;
 	}
 
+	/**
+	 * Lattice elements are immutable.
+	 */
+	public LiveVariableLE freeze(LiveVariableLE info) {
+		return info;
+	}
+
 	@Override
 	public LiveVariableLE join(LiveVariableLE left, LiveVariableLE right) {
 		if (left == LiveVariableLE.LIVE || right == LiveVariableLE.LIVE)
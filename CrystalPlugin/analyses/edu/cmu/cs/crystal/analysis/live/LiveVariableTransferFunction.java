@@ -28,6 +28,7 @@ import org.eclipse.jdt.core.dom.MethodDeclaration;
 import edu.cmu.cs.crystal.flow.AnalysisDirection;
 import edu.cmu.cs.crystal.flow.ILatticeOperations;
 import edu.cmu.cs.crystal.simple.AbstractingTransferFunction;
+import edu.cmu.cs.crystal.simple.FreezableTupleLatticeOperations;
 import edu.cmu.cs.crystal.simple.TupleLatticeElement;
 import edu.cmu.cs.crystal.simple.TupleLatticeOperations;
 import edu.cmu.cs.crystal.tac.model.ArrayInitInstruction;
@@ -60,8 +61,9 @@ public class LiveVariableTransferFunction extends AbstractingTransferFunction<Tu
 {
 	private static final Logger log = Logger.getLogger(LiveVariableTransferFunction.class.getName());
 	
+	// results are frozen tuples: flow analysis clients must copy them before modifying them
 	private final TupleLatticeOperations<Variable, LiveVariableLE> ops = 
-			new TupleLatticeOperations<Variable, LiveVariableLE>(new LiveVariableLatticeOps(), LiveVariableLE.DEAD);
+			new FreezableTupleLatticeOperations<Variable, LiveVariableLE>(new LiveVariableLatticeOps(), LiveVariableLE.DEAD);
 	
 	public ILatticeOperations<TupleLatticeElement<Variable, LiveVariableLE>> getLatticeOperations() {
 		return ops;
@@ -19,34 +19,39 @@
  */
 package edu.cmu.cs.crystal.analysis.metrics;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-
 import org.eclipse.jdt.core.dom.ASTNode;
-import org.eclipse.jdt.core.dom.ASTVisitor;
-import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
-import org.eclipse.jdt.core.dom.DoStatement;
-import org.eclipse.jdt.core.dom.EnhancedForStatement;
-import org.eclipse.jdt.core.dom.ForStatement;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
-import org.eclipse.jdt.core.dom.TypeDeclaration;
-import org.eclipse.jdt.core.dom.TypeDeclarationStatement;
-import org.eclipse.jdt.core.dom.WhileStatement;
 
-import edu.cmu.cs.crystal.util.Utilities;
+import edu.cmu.cs.crystal.cfg.LoopNestingForest;
+import edu.cmu.cs.crystal.cfg.eclipse.EclipseNodeFirstCFG;
+import edu.cmu.cs.crystal.flow.worklist.CompilationUnitCFGs;
+import edu.cmu.cs.crystal.util.Option;
 
 /**
+ * Counts the loops AST nodes are nested in, based on the 
+ * {@link LoopNestingForest natural loops} in the control flow graph of 
+ * the surrounding method.  Unlike counting loop statements in the AST, this 
+ * leaves out code that runs only once, such as <code>for</code> loop initializers, 
+ * and loops that cannot repeat.  Loops are computed once per method; if a 
+ * {@link CompilationUnitCFGs CFG cache} is given, they are taken from there.
+ * 
  * @author ciera
  * @since Crystal 3.4.0
  */
-public class LoopCounter extends ASTVisitor {
-	private int currentLoopDepth;
-	private Map<ASTNode, Integer> loopDepth = Collections.emptyMap();
+public class LoopCounter {
+	private final Option<CompilationUnitCFGs> cfgs;
 	private MethodDeclaration decl;
+	private LoopNestingForest<ASTNode> loops;
 	
 	public LoopCounter() {
-		currentLoopDepth = -1;
+		this(Option.<CompilationUnitCFGs>none());
+	}
+	
+	/**
+	 * @param cfgs Cache to take loops from, if any.
+	 */
+	public LoopCounter(Option<CompilationUnitCFGs> cfgs) {
+		this.cfgs = cfgs;
 	}
 	
 	/**
@@ -54,117 +59,49 @@ public class LoopCounter extends ASTVisitor {
 	 * @return the depth of the node in loops. 0 is no loops, 1 is nested in one loop,
 	 * etc.
 	 */
-	public int getLoopDepth(ASTNode node) {		
-		if(!loopDepth.containsKey(node)) {
-			final MethodDeclaration d = Utilities.getMethodDeclaration(node);
-			if (d == null) {
-				return 0; // not in method --> cannot be in loop
-			}
-			else {
-				if (decl == null || !decl.equals(d))
-					reset(d);
-				decl.accept(this);
-			}
+	public int getLoopDepth(ASTNode node) {
+		final MethodDeclaration d = getMethodDeclaration(node);
+		if (d == null || d.getBody() == null)
+			return 0; // not in method --> cannot be in loop
+		if (decl != d) {
+			loops = cfgs.isSome() ? cfgs.unwrap().getLoopNestingForest(d) : 
+				new LoopNestingForest<ASTNode>(new EclipseNodeFirstCFG(d));
+			decl = d;
+		}
+		// nodes without control flow nodes of their own, such as names, 
+		// are as deep as the closest ancestor that has one
+		for (ASTNode n = node; n != d; n = n.getParent()) {
+			int depth = loops.getASTLoopDepth(n);
+			if (depth >= 0)
+				return depth;
 		}
-		// NEB: There's an annoying bug, and this is the only way I can
-		// see how to fix it now: If 'node' is code from a nested class of
-		// some kind and IT is not inside a method (e.g., it's a field 
-		// initializer) then getMethodDeclaration(node) will return the
-		// outer method, which we do not want. I think it is safe to return
-		// 0 here, if node is not in loopDepth.
-		return loopDepth.containsKey(node) ? 
-				loopDepth.get(node) : 0;
+		return 0;
 	}
 	
 	public boolean isInLoop(ASTNode node) {
 		return getLoopDepth(node) != 0;
 	}
 	
-	private void reset(MethodDeclaration method) {
-		if (method == null)
-			throw new IllegalArgumentException("Need a method declaration for counting loops");
-		decl = method;
-		currentLoopDepth = 0;
-		loopDepth = new HashMap<ASTNode, Integer>();
-		loopDepth.put(method, currentLoopDepth);
-	}
-
-	
-	@Override
-	public boolean visit(MethodDeclaration d) {
-		if (decl == null || !decl.equals(d))
-			reset(d);
-		return super.visit(d);
-	}
-	
-	@Override
-	public void preVisit(ASTNode node) {
-		loopDepth.put(node, currentLoopDepth);
-	}
-
-	@Override
-	public boolean visit(DoStatement node) {
-		currentLoopDepth++;
-		return super.visit(node);
-	}
-
-	@Override
-	public boolean visit(EnhancedForStatement node) {
-		currentLoopDepth++;
-		return super.visit(node);
-	}
-
-	@Override
-	public boolean visit(ForStatement node) {
-		currentLoopDepth++;
-		return super.visit(node);
-	}
-
-	@Override
-	public boolean visit(WhileStatement node) {
-		currentLoopDepth++;
-		return super.visit(node);
-	}
-
-	@Override
-	public boolean visit(AnonymousClassDeclaration node) {
-		// We don't want to descend into anonymous classes
-		return false;
-	}
-
-	@Override
-	public boolean visit(TypeDeclarationStatement node) {
-		// We don't want to descend into local classes
-		return false;
-	}
-	
-	@Override
-	public boolean visit(TypeDeclaration node) {
-		// We don't want to descend into local classes
-		return false;
-	}
-
-	@Override
-	public void endVisit(DoStatement node) {
-		currentLoopDepth--;
-		super.endVisit(node);
-	}
-
-	@Override
-	public void endVisit(EnhancedForStatement node) {
-		currentLoopDepth--;
-		super.endVisit(node);
-	}
-
-	@Override
-	public void endVisit(ForStatement node) {
-		currentLoopDepth--;
-		super.endVisit(node);
-	}
-
-	@Override
-	public void endVisit(WhileStatement node) {
-		currentLoopDepth--;
-		super.endVisit(node);
+	/**
+	 * Returns the method whose control flow graph includes the given node.
+	 * Code in nested classes, including field initializers, is not part of 
+	 * the surrounding method's control flow graph.
+	 * @param node
+	 * @return the method whose control flow graph includes the given node
+	 * or <code>null</code> if the node is not in a method.
+	 */
+	private static MethodDeclaration getMethodDeclaration(ASTNode node) {
+		for (; node != null; node = node.getParent()) {
+			switch (node.getNodeType()) {
+			case ASTNode.METHOD_DECLARATION:
+				return (MethodDeclaration) node;
+			case ASTNode.ANONYMOUS_CLASS_DECLARATION:
+			case ASTNode.TYPE_DECLARATION:
+			case ASTNode.ENUM_DECLARATION:
+			case ASTNode.ANNOTATION_TYPE_DECLARATION:
+				return null;
+			}
+		}
+		return null;
 	}
 }
@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.analysis.reaching;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+import edu.cmu.cs.crystal.bitvector.BitVector;
+import edu.cmu.cs.crystal.bitvector.BitVectorLatticeOperations;
+import edu.cmu.cs.crystal.bitvector.GenKillSets;
+import edu.cmu.cs.crystal.bitvector.GenKillTransferFunction;
+import edu.cmu.cs.crystal.flow.AnalysisDirection;
+import edu.cmu.cs.crystal.tac.model.AssignmentInstruction;
+import edu.cmu.cs.crystal.tac.model.SourceVariable;
+import edu.cmu.cs.crystal.tac.model.SourceVariableDeclaration;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.Variable;
+
+/**
+ * Reaching definitions analysis for local variables and parameters.  
+ * Definitions are the instructions that assign to a {@link SourceVariable}, as well
+ * as the declarations of parameters, caught exceptions, and enhanced for loop variables,
+ * which receive their values implicitly.  Every definition of a variable kills all other
+ * definitions of the same variable; declaring a local variable kills all its definitions.
+ * The results are the sets of definitions reaching a node.
+ */
+public class ReachingDefinitionsTransferFunction extends GenKillTransferFunction<TACInstruction> {
+
+	public ReachingDefinitionsTransferFunction() {
+		super(AnalysisDirection.FORWARD_ANALYSIS, BitVectorLatticeOperations.mayOperations());
+	}
+
+	@Override
+	protected void genKill(TACInstruction instr, GenKillSets<TACInstruction> genKill) {
+		if(instr instanceof AssignmentInstruction) {
+			Variable target = ((AssignmentInstruction) instr).getTarget();
+			if(target instanceof SourceVariable)
+				genKill.killGroup(target).gen(instr, target);
+		}
+		else if(instr instanceof SourceVariableDeclaration) {
+			SourceVariableDeclaration decl = (SourceVariableDeclaration) instr;
+			SourceVariable var = decl.getDeclaredVariable();
+			genKill.killGroup(var);
+			if(decl.isFormalParameter() || decl.isCaughtVariable() || decl.isEnhancedForLoopVariable())
+				genKill.gen(instr, var);
+		}
+	}
+
+	/**
+	 * Returns the definitions of the given variable that reach according to the given
+	 * analysis result.
+	 * @param value Analysis result for a node in the given method
+	 * @param var
+	 * @param method
+	 * @return the definitions of the given variable reaching according to the given result.
+	 */
+	public List<TACInstruction> getReachingDefinitions(BitVector value, Variable var, MethodDeclaration method) {
+		List<TACInstruction> result = new ArrayList<TACInstruction>();
+		for(TACInstruction def : getFacts(value, method)) {
+			if(var.equals(getDefinedVariable(def)))
+				result.add(def);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the variable defined by the given definition.
+	 * @param def A definition, as returned by {@link #getFacts(BitVector, MethodDeclaration)}
+	 * @return the variable defined by the given definition.
+	 */
+	public static Variable getDefinedVariable(TACInstruction def) {
+		if(def instanceof SourceVariableDeclaration)
+			return ((SourceVariableDeclaration) def).getDeclaredVariable();
+		return ((AssignmentInstruction) def).getTarget();
+	}
+
+}
@@ -27,6 +27,7 @@ import org.eclipse.jdt.core.ITypeRoot;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
 
+import edu.cmu.cs.crystal.internal.IncrementalMethodCache;
 import edu.cmu.cs.crystal.internal.WorkspaceUtilities;
 
 /**
@@ -38,6 +39,12 @@ import edu.cmu.cs.crystal.internal.WorkspaceUtilities;
  */
 public abstract class AbstractCrystalMethodAnalysis implements ICrystalAnalysis {
 
+	/**
+	 * System property that turns on {@link #setIncremental(boolean) incremental analysis}
+	 * by default for all method analyses that {@link #supportsIncremental() support it}.
+	 */
+	public static final String INCREMENTAL_PROPERTY = "edu.cmu.cs.crystal.incremental";
+
 	private static final Logger logger = Logger.getLogger(AbstractCrystalMethodAnalysis.class.getName());
 
 	/** Object used to report errors */
@@ -45,6 +52,9 @@ public abstract class AbstractCrystalMethodAnalysis implements ICrystalAnalysis
 	/** Auxiliary analysis input */
 	protected IAnalysisInput analysisInput = null;
 	
+	private boolean incremental = Boolean.getBoolean(INCREMENTAL_PROPERTY);
+	private final IncrementalMethodCache incrementalCache = new IncrementalMethodCache();
+	
 	public String getName() {
 		return this.getClass().getSimpleName();
 	}
@@ -53,7 +63,8 @@ public abstract class AbstractCrystalMethodAnalysis implements ICrystalAnalysis
 	 * {@link #beforeAllMethods} is run before any method is analyzed.<br/>
 	 * Then each method is analysed by {@link #analyzeMethod(MethodDeclaration)}.<br/>
 	 * Finally {@link #afterAllMethods} is run after all methods have
-	 * been analyzed.
+	 * been analyzed.  In {@link #isIncremental() incremental} mode, methods
+	 * that did not change since the last run are not analyzed again.
 	 * @param reporter {@inheritDoc}
 	 * @param input {@inheritDoc}
 	 * @param compUnit {@inheritDoc}
@@ -62,7 +73,9 @@ public abstract class AbstractCrystalMethodAnalysis implements ICrystalAnalysis
 	public final void runAnalysis(IAnalysisReporter reporter,
 			IAnalysisInput input, ITypeRoot compUnit, 
 			CompilationUnit rootNode) {
-		this.reporter = reporter;
+		IncrementalMethodCache.Session session = isIncremental() ? 
+				incrementalCache.startCompilationUnit(compUnit, rootNode, reporter) : null;
+		this.reporter = session == null ? reporter : session;
 		this.analysisInput = input;
 		
 		try {
@@ -72,8 +85,13 @@ public abstract class AbstractCrystalMethodAnalysis implements ICrystalAnalysis
 			List<MethodDeclaration> methods = WorkspaceUtilities.scanForMethodDeclarationsFromAST(rootNode);
 			for (MethodDeclaration md : methods) {
 				// TODO automatically poll for cancel here?  call afterAllMethods or not?
+				if (session != null && session.skip(md))
+					// previously reported problems were reported again
+					continue;
+				boolean completed = false;
 				try {
 					analyzeMethod(md);
+					completed = true;
 				}
 				catch (RuntimeException e) {
 					// analyze the remaining methods anyway
@@ -81,7 +99,13 @@ public abstract class AbstractCrystalMethodAnalysis implements ICrystalAnalysis
 					err = e;
 					logger.log(Level.SEVERE, "Analysis " + getName() + " had an error in " + md.resolveBinding().getDeclaringClass().getQualifiedName() + " when analyzing " + md.resolveBinding().toString(), e);
 				}
+				finally {
+					if (session != null)
+						session.methodFinished(completed);
+				}
 			}
+			if (session != null)
+				session.close();
 			
 			afterAllMethods(compUnit, rootNode);
 			
@@ -111,6 +135,53 @@ public abstract class AbstractCrystalMethodAnalysis implements ICrystalAnalysis
 		return analysisInput;
 	}
 
+	/**
+	 * Turns incremental analysis on or off for subsequent runs.  In incremental mode, 
+	 * {@link #analyzeMethod(MethodDeclaration)} is only invoked for methods whose 
+	 * {@link edu.cmu.cs.crystal.internal.MethodFingerprint fingerprint} changed since
+	 * they were last analyzed; for the other methods, the problems reported last 
+	 * time are reported again.  This has no effect for analyses that do not 
+	 * {@link #supportsIncremental() support} incremental mode.  The default is off, unless
+	 * the {@link #INCREMENTAL_PROPERTY} system property says otherwise.
+	 * @param incremental <code>true</code> to skip unchanged methods.
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+		if (!incremental)
+			incrementalCache.clear();
+	}
+
+	/**
+	 * Indicates whether methods that did not change since the last run are skipped.
+	 * @return <code>true</code> if methods that did not change are skipped.
+	 * @see #setIncremental(boolean)
+	 */
+	public boolean isIncremental() {
+		return incremental && supportsIncremental();
+	}
+
+	/**
+	 * Indicates whether this analysis can skip methods that did not change since 
+	 * the last run.  This is only correct for analyses whose results for a method 
+	 * are fully described by the problems reported while analyzing it, so analyses 
+	 * that collect information in {@link #analyzeMethod(MethodDeclaration)} for later 
+	 * use must not override this method.
+	 * @return <code>false</code> by default; override to return <code>true</code>
+	 * to allow {@link #setIncremental(boolean) incremental analysis}.
+	 */
+	protected boolean supportsIncremental() {
+		return false;
+	}
+
+	/**
+	 * Returns the results remembered for incremental analysis, including 
+	 * how many methods were skipped or analyzed.
+	 * @return the results remembered for incremental analysis.
+	 */
+	public IncrementalMethodCache getIncrementalCache() {
+		return incrementalCache;
+	}
+
 	/**
 	 * This method is invoked once before any methods are analyzed. 
 	 * It can be used to perform pre-analysis functionality, if needed.
@@ -22,6 +22,8 @@ package edu.cmu.cs.crystal;
 import org.eclipse.core.runtime.IProgressMonitor;
 
 import edu.cmu.cs.crystal.annotations.AnnotationDatabase;
+import edu.cmu.cs.crystal.flow.CompilationUnitFlowAnalyses;
+import edu.cmu.cs.crystal.flow.worklist.CompilationUnitCFGs;
 import edu.cmu.cs.crystal.tac.eclipse.CompilationUnitTACs;
 import edu.cmu.cs.crystal.util.Option;
 
@@ -42,6 +44,19 @@ public interface IAnalysisInput {
 	 * @return A cache of the TACs for every method declaration, if it is available.
 	 */
 	public Option<CompilationUnitTACs> getComUnitTACs();
+	
+	/**
+	 * @return A cache of the control flow graphs for every method declaration, 
+	 * if it is available.
+	 */
+	public Option<CompilationUnitCFGs> getComUnitCFGs();
+
+	/**
+	 * @return A registry of the flow analyses that analyses published for 
+	 * the compilation unit, if it is available.
+	 * @see IDependentAnalysis
+	 */
+	public Option<CompilationUnitFlowAnalyses> getComUnitFlowAnalyses();
 
 	/**
 	 * @return A progress monitor for canceling the ongoing
@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal;
+
+import java.util.Set;
+
+/**
+ * Analyses implement this interface to use the {@link IAnalysisInput#getComUnitFlowAnalyses() 
+ * published flow analyses} of other analyses.  Crystal runs the named analyses that 
+ * are part of the same run on each compilation unit before this analysis, so that 
+ * this analysis can reuse their results.  Other analyses run in the requested order.
+ * 
+ * @see edu.cmu.cs.crystal.flow.CompilationUnitFlowAnalyses
+ */
+public interface IDependentAnalysis extends ICrystalAnalysis {
+
+	/**
+	 * @return the names of the analyses this analysis depends on, possibly empty.
+	 */
+	public Set<String> getDependencies();
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal;
+
+import org.eclipse.jdt.core.ITypeRoot;
+
+/**
+ * Reporters implement this interface if they do not show problems as soon as they
+ * are reported but collect them per compilation unit.  Crystal calls 
+ * {@link #publishMarkersForCompUnit(ITypeRoot)} after running all analyses on a 
+ * compilation unit.  Other reporters do not need to implement this interface.
+ * 
+ * @see edu.cmu.cs.crystal.internal.StandardAnalysisReporter
+ */
+public interface IMarkerPublishingReporter extends IAnalysisReporter {
+
+	/**
+	 * For the given compilation unit, make the user problems reported since 
+	 * {@link #clearMarkersForCompUnit(ITypeRoot)} was last called visible.
+	 * 
+	 * @param compUnit The compilation unit that was analyzed.
+	 */
+	public void publishMarkersForCompUnit(ITypeRoot compUnit);
+}
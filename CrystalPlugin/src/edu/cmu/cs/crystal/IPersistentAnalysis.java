@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal;
+
+/**
+ * Method analyses implement this interface to allow Crystal to store the problems
+ * they report on disk, so that {@link AbstractCrystalMethodAnalysis#setIncremental(boolean) incremental}
+ * runs can skip unchanged methods even after Eclipse was restarted.  Results are
+ * stored by analysis {@link #getName() name}, {@link #getResultVersion() version}, 
+ * and method fingerprint.
+ * 
+ * @see edu.cmu.cs.crystal.internal.Crystal#setResultCacheLocation(java.io.File, long)
+ */
+public interface IPersistentAnalysis extends ICrystalAnalysis {
+
+	/**
+	 * Returns the version of this analysis's results.  Results stored by a
+	 * different version of the analysis are discarded, so the version must change 
+	 * whenever the problems this analysis reports for a given method may change, 
+	 * for instance, when the analysis is fixed or its configuration changes.
+	 * @return the version of this analysis's results.
+	 */
+	public String getResultVersion();
+}
@@ -0,0 +1,33 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal;
+
+/**
+ * Analyses implement this marker interface to indicate that Crystal may run them on
+ * several compilation units at the same time, which can happen if Crystal analyzes 
+ * compilation units in parallel.  Crystal runs other analyses on one compilation
+ * unit at a time.  Analyses that store information about the compilation unit being
+ * analyzed in fields, like {@link AbstractCrystalMethodAnalysis} and 
+ * {@link AbstractCompilationUnitAnalysis} do, are not thread-safe.
+ * 
+ * @see edu.cmu.cs.crystal.internal.Crystal#setParallelism(int)
+ */
+public interface IThreadSafeAnalysis extends ICrystalAnalysis {
+}
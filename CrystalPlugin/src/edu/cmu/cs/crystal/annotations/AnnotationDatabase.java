@@ -67,6 +67,9 @@ import edu.cmu.cs.crystal.util.Pair;
  * This can currently be done with @link{#getAnnosForType(IType)}, and the plan is to eventually allow methods and
  * fields based upon the Java Model instead of the Java ASTNodes.
  * 
+ * This class is thread-safe, so one database can be shared by analyses 
+ * running on different compilation units in parallel.
+ * 
  * @author ciera
  * @author Nels Beckman
  * 
@@ -109,7 +112,7 @@ public class AnnotationDatabase {
 
 	}
 
-	public void register(String fullyQualifiedName,
+	public synchronized void register(String fullyQualifiedName,
 	    Class<? extends ICrystalAnnotation> crystalAnnotationClass, boolean isMeta) {
 		Class<? extends ICrystalAnnotation> annoClass =
 		    isMeta ? metaQualNames.get(fullyQualifiedName) : qualNames.get(fullyQualifiedName);
@@ -130,7 +133,7 @@ public class AnnotationDatabase {
 	 * Given a method binding, returns a summary that represents annotation info for that method
 	 * declaration.
 	 */
-	public AnnotationSummary getSummaryForMethod(IMethodBinding binding) {
+	public synchronized AnnotationSummary getSummaryForMethod(IMethodBinding binding) {
 		while (binding != binding.getMethodDeclaration())
 			binding = binding.getMethodDeclaration();
 		String name = binding.getKey();
@@ -173,7 +176,7 @@ public class AnnotationDatabase {
 	 * and analyzed by Crystal.
 	 * @throws JavaModelException 
 	 */
-	public List<ICrystalAnnotation> getAnnosForType(IType type) throws JavaModelException {
+	public synchronized List<ICrystalAnnotation> getAnnosForType(IType type) throws JavaModelException {
 		String name = type.getKey();
 
 		List<ICrystalAnnotation> result = classes.get(name);
@@ -189,7 +192,7 @@ public class AnnotationDatabase {
 	 * given type. To work, this binding had to be parsed by Crystal. If you do not have
 	 * a type that was parsed by Crystal, use {@link #getAnnosForType(IType)}.
 	 */
-	public List<ICrystalAnnotation> getAnnosForType(ITypeBinding type) {
+	public synchronized List<ICrystalAnnotation> getAnnosForType(ITypeBinding type) {
 		while (type != type.getTypeDeclaration())
 			type = type.getTypeDeclaration();
 		if (type.isPrimitive())
@@ -212,7 +215,7 @@ public class AnnotationDatabase {
 	 * This method will return the list of annotations associated with the
 	 * given variable. 
 	 */
-	public List<ICrystalAnnotation> getAnnosForVariable(IVariableBinding binding) {
+	public synchronized List<ICrystalAnnotation> getAnnosForVariable(IVariableBinding binding) {
 		while (binding != binding.getVariableDeclaration())
 			binding = binding.getVariableDeclaration();
 		String name = binding.getKey();
@@ -489,7 +492,7 @@ public class AnnotationDatabase {
 	 * See {@link #createCrystalAnnotation(ITypeBinding)}.
 	 * @throws JavaModelException 
 	 */
-	public ICrystalAnnotation createCrystalAnnotation(IType typeOfAnnotation) throws JavaModelException {
+	public synchronized ICrystalAnnotation createCrystalAnnotation(IType typeOfAnnotation) throws JavaModelException {
 		Class<? extends ICrystalAnnotation> annoClass =
 		    qualNames.get(typeOfAnnotation.getFullyQualifiedName('.'));
 		
@@ -527,7 +530,7 @@ public class AnnotationDatabase {
 		}
 	}
 	
-	public ICrystalAnnotation createCrystalAnnotation(ITypeBinding typeBinding) {
+	public synchronized ICrystalAnnotation createCrystalAnnotation(ITypeBinding typeBinding) {
 		Class<? extends ICrystalAnnotation> annoClass =
 		    qualNames.get(typeBinding.getQualifiedName());
 
@@ -562,7 +565,7 @@ public class AnnotationDatabase {
 		}
 	}
 
-	public void addAnnotationToField(ICrystalAnnotation anno, FieldDeclaration field) {
+	public synchronized void addAnnotationToField(ICrystalAnnotation anno, FieldDeclaration field) {
 		IVariableBinding binding;
 		String name;
 		List<ICrystalAnnotation> annoList;
@@ -580,7 +583,7 @@ public class AnnotationDatabase {
 		annoList.add(anno);
 	}
 
-	public void addAnnotationToMethod(AnnotationSummary anno, MethodDeclaration method) {
+	public synchronized void addAnnotationToMethod(AnnotationSummary anno, MethodDeclaration method) {
 		IMethodBinding binding = method.resolveBinding();
 		String name = binding.getKey();
 
@@ -591,7 +594,7 @@ public class AnnotationDatabase {
 			existing.add(anno);
 	}
 
-	public void addAnnotationToType(ICrystalAnnotation anno, TypeDeclaration type) {
+	public synchronized void addAnnotationToType(ICrystalAnnotation anno, TypeDeclaration type) {
 		ITypeBinding binding = type.resolveBinding();
 		String name = binding.getKey();
 		List<ICrystalAnnotation> annoList;
@@ -0,0 +1,370 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.bitvector;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of non-negative integers represented as a bit vector.  
+ * Besides finite sets, bit vectors can represent the complement of a finite set, 
+ * i.e., all integers except for the ones in the finite set.  This allows
+ * "must" analyses to start out with the set of all facts without knowing how 
+ * many facts there are.
+ * <p>
+ * Set operations never modify their arguments; they return new bit vectors
+ * or, in trivial cases, one of their arguments.
+ * 
+ * @see DenseNumbering
+ */
+public final class BitVector {
+	
+	/** The empty set. */
+	public static final BitVector EMPTY = new BitVector(new long[0], false);
+	
+	/** The set of all non-negative integers. */
+	public static final BitVector FULL = new BitVector(new long[0], true);
+	
+	private static final int ADDRESS_BITS = 6;
+	
+	/** 
+	 * Bits of the finite set represented by (or complemented by) this bit vector.
+	 * The last word is never 0, and words are never modified. 
+	 */
+	private final long[] words;
+	
+	/** Indicates that this bit vector represents the complement of {@link #words}. */
+	private final boolean complemented;
+	
+	private BitVector(long[] words, boolean complemented) {
+		this.words = words;
+		this.complemented = complemented;
+	}
+
+	/**
+	 * Creates a finite bit vector with the given bits set.
+	 * @param bits Non-negative integers to be included in the set.
+	 * @return a finite bit vector containing exactly the given bits.
+	 */
+	public static BitVector of(int... bits) {
+		if(bits.length == 0)
+			return EMPTY;
+		int max = 0;
+		for(int bit : bits) {
+			checkBit(bit);
+			max = Math.max(max, bit);
+		}
+		long[] words = new long[wordIndex(max) + 1];
+		for(int bit : bits)
+			words[wordIndex(bit)] |= 1L << bit;
+		return new BitVector(words, false);
+	}
+
+	/**
+	 * Tests whether the given bit is in this set.
+	 * @param bit
+	 * @return <code>true</code> if the given bit is set, <code>false</code> otherwise.
+	 */
+	public boolean get(int bit) {
+		checkBit(bit);
+		int index = wordIndex(bit);
+		boolean set = index < words.length && (words[index] & (1L << bit)) != 0;
+		return set != complemented;
+	}
+
+	/**
+	 * Returns a bit vector that additionally contains the given bit.
+	 * @param bit
+	 * @return this bit vector if the given bit is already set, a new bit vector otherwise.
+	 */
+	public BitVector set(int bit) {
+		if(get(bit))
+			return this;
+		return complemented ? 
+				new BitVector(clearBit(words, bit), true) : new BitVector(setBit(words, bit), false);
+	}
+
+	/**
+	 * Returns a bit vector that does not contain the given bit.
+	 * @param bit
+	 * @return this bit vector if the given bit is not set, a new bit vector otherwise.
+	 */
+	public BitVector clear(int bit) {
+		if(! get(bit))
+			return this;
+		return complemented ? 
+				new BitVector(setBit(words, bit), true) : new BitVector(clearBit(words, bit), false);
+	}
+	
+	/**
+	 * Returns the complement of this set.
+	 * @return the complement of this set.
+	 */
+	public BitVector complement() {
+		if(words.length == 0)
+			return complemented ? EMPTY : FULL;
+		return new BitVector(words, ! complemented);
+	}
+
+	/**
+	 * Returns the union of this and the given set.
+	 * @param other
+	 * @return the union of this and the given set.
+	 */
+	public BitVector union(BitVector other) {
+		if(other == this || other.isEmpty())
+			return this;
+		if(isEmpty())
+			return other;
+		if(! complemented) {
+			if(! other.complemented)
+				return create(or(words, other.words), false);
+			else
+				return create(andNot(other.words, words), true);
+		}
+		else {
+			if(! other.complemented)
+				return create(andNot(words, other.words), true);
+			else
+				return create(and(words, other.words), true);
+		}
+	}
+
+	/**
+	 * Returns the intersection of this and the given set.
+	 * @param other
+	 * @return the intersection of this and the given set.
+	 */
+	public BitVector intersection(BitVector other) {
+		if(other == this || other.isFull())
+			return this;
+		if(isFull())
+			return other;
+		if(! complemented) {
+			if(! other.complemented)
+				return create(and(words, other.words), false);
+			else
+				return create(andNot(words, other.words), false);
+		}
+		else {
+			if(! other.complemented)
+				return create(andNot(other.words, words), false);
+			else
+				return create(or(words, other.words), true);
+		}
+	}
+
+	/**
+	 * Returns the elements of this set that are not in the given set.
+	 * @param other
+	 * @return this set minus the given set.
+	 */
+	public BitVector difference(BitVector other) {
+		if(other.isEmpty())
+			return this;
+		return intersection(other.complement());
+	}
+	
+	/**
+	 * Computes the classic gen/kill transfer <code>gen &cup; (this - kill)</code>
+	 * in one pass over the bits.
+	 * @param gen bits to add
+	 * @param kill bits to remove unless they are also in <code>gen</code>
+	 * @return <code>gen &cup; (this - kill)</code>
+	 */
+	public BitVector genKill(BitVector gen, BitVector kill) {
+		if(gen.isEmpty() && kill.isEmpty())
+			return this;
+		if(complemented || gen.complemented || kill.complemented)
+			return difference(kill).union(gen);
+		int length = Math.max(words.length, gen.words.length);
+		long[] result = new long[length];
+		for(int i = 0; i < length; i++)
+			result[i] = word(gen.words, i) | (word(words, i) & ~word(kill.words, i));
+		return create(result, false);
+	}
+
+	/**
+	 * Tests whether this is a subset of the given set.
+	 * @param other
+	 * @return <code>true</code> if all elements of this set are in the given set,
+	 * <code>false</code> otherwise.
+	 */
+	public boolean isSubsetOf(BitVector other) {
+		if(other == this)
+			return true;
+		if(! complemented && ! other.complemented) {
+			if(words.length > other.words.length)
+				return false;
+			for(int i = 0; i < words.length; i++) {
+				if((words[i] & ~other.words[i]) != 0)
+					return false;
+			}
+			return true;
+		}
+		return difference(other).isEmpty();
+	}
+
+	/**
+	 * Tests whether this set is empty.
+	 * @return <code>true</code> if this set is empty, <code>false</code> otherwise.
+	 */
+	public boolean isEmpty() {
+		return ! complemented && words.length == 0;
+	}
+
+	/**
+	 * Tests whether this set contains all non-negative integers.
+	 * @return <code>true</code> if this set is {@link #FULL}, <code>false</code> otherwise.
+	 */
+	public boolean isFull() {
+		return complemented && words.length == 0;
+	}
+
+	/**
+	 * Tests whether this bit vector represents the complement of a finite set.
+	 * @return <code>true</code> if this set is infinite, <code>false</code> otherwise.
+	 */
+	public boolean isComplemented() {
+		return complemented;
+	}
+
+	/**
+	 * Returns the number of bits in this set, which must be finite.
+	 * @return the number of bits in this set.
+	 * @throws IllegalStateException if this set is {@link #isComplemented() infinite}.
+	 */
+	public int cardinality() {
+		if(complemented)
+			throw new IllegalStateException("Complemented bit vectors are infinite");
+		int result = 0;
+		for(long word : words)
+			result += Long.bitCount(word);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+		if(! (obj instanceof BitVector))
+			return false;
+		BitVector other = (BitVector) obj;
+		return complemented == other.complemented && Arrays.equals(words, other.words);
+	}
+
+	@Override
+	public int hashCode() {
+		return complemented ? ~Arrays.hashCode(words) : Arrays.hashCode(words);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		if(complemented)
+			result.append('~');
+		result.append('{');
+		boolean first = true;
+		for(int i = 0; i < words.length; i++) {
+			long word = words[i];
+			while(word != 0) {
+				int bit = Long.numberOfTrailingZeros(word);
+				if(! first)
+					result.append(", ");
+				result.append((i << ADDRESS_BITS) + bit);
+				first = false;
+				word &= word - 1;
+			}
+		}
+		return result.append('}').toString();
+	}
+
+	private static void checkBit(int bit) {
+		if(bit < 0)
+			throw new IndexOutOfBoundsException("Negative bit: " + bit);
+	}
+
+	private static int wordIndex(int bit) {
+		return bit >> ADDRESS_BITS;
+	}
+	
+	private static long word(long[] words, int index) {
+		return index < words.length ? words[index] : 0L;
+	}
+
+	private static long[] setBit(long[] words, int bit) {
+		int index = wordIndex(bit);
+		long[] result = copyOf(words, Math.max(words.length, index + 1));
+		result[index] |= 1L << bit;
+		return result;
+	}
+
+	private static long[] clearBit(long[] words, int bit) {
+		long[] result = words.clone();
+		result[wordIndex(bit)] &= ~(1L << bit);
+		return trim(result);
+	}
+
+	private static long[] or(long[] left, long[] right) {
+		long[] longer = left.length >= right.length ? left : right;
+		long[] shorter = longer == left ? right : left;
+		long[] result = longer.clone();
+		for(int i = 0; i < shorter.length; i++)
+			result[i] |= shorter[i];
+		return result;
+	}
+
+	private static long[] and(long[] left, long[] right) {
+		long[] result = new long[Math.min(left.length, right.length)];
+		for(int i = 0; i < result.length; i++)
+			result[i] = left[i] & right[i];
+		return result;
+	}
+
+	private static long[] andNot(long[] left, long[] right) {
+		long[] result = left.clone();
+		for(int i = 0; i < result.length && i < right.length; i++)
+			result[i] &= ~right[i];
+		return result;
+	}
+	
+	/**
+	 * Creates a bit vector from the given words, which are trimmed first.
+	 * The canonical {@link #EMPTY} and {@link #FULL} bit vectors are used if possible.
+	 */
+	private static BitVector create(long[] words, boolean complemented) {
+		words = trim(words);
+		if(words.length == 0)
+			return complemented ? FULL : EMPTY;
+		return new BitVector(words, complemented);
+	}
+
+	private static long[] trim(long[] words) {
+		int length = words.length;
+		while(length > 0 && words[length - 1] == 0)
+			length--;
+		return length == words.length ? words : copyOf(words, length);
+	}
+
+	private static long[] copyOf(long[] words, int length) {
+		long[] result = new long[length];
+		System.arraycopy(words, 0, result, 0, Math.min(words.length, length));
+		return result;
+	}
+}
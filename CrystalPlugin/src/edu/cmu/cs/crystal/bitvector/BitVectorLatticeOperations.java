@@ -0,0 +1,100 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.bitvector;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+
+import edu.cmu.cs.crystal.flow.IFreezableLatticeOperations;
+import edu.cmu.cs.crystal.simple.SimpleLatticeOperations;
+
+/**
+ * Lattice operations for {@link BitVector}s.  "May" analyses, such as
+ * live variables, join by union, and their bottom element is the empty set.  
+ * "Must" analyses, such as definite assignment, join by intersection, and
+ * their bottom element is the set of all facts.
+ * Bit vectors are immutable, so they never need to be copied.
+ * 
+ * @see #mayOperations()
+ * @see #mustOperations()
+ */
+public final class BitVectorLatticeOperations extends SimpleLatticeOperations<BitVector> 
+implements IFreezableLatticeOperations<BitVector, ASTNode> {
+	
+	private static final BitVectorLatticeOperations MAY = new BitVectorLatticeOperations(false);
+	private static final BitVectorLatticeOperations MUST = new BitVectorLatticeOperations(true);
+	
+	/**
+	 * Returns lattice operations that join bit vectors by union.
+	 * @return lattice operations for "may" analyses.
+	 */
+	public static BitVectorLatticeOperations mayOperations() {
+		return MAY;
+	}
+	
+	/**
+	 * Returns lattice operations that join bit vectors by intersection.
+	 * @return lattice operations for "must" analyses.
+	 */
+	public static BitVectorLatticeOperations mustOperations() {
+		return MUST;
+	}
+	
+	private final boolean must;
+	
+	private BitVectorLatticeOperations(boolean must) {
+		this.must = must;
+	}
+
+	/**
+	 * Indicates whether bit vectors are joined by intersection.
+	 * @return <code>true</code> for "must" analyses, <code>false</code> for "may" analyses.
+	 */
+	public boolean isMust() {
+		return must;
+	}
+
+	@Override
+	public boolean atLeastAsPrecise(BitVector left, BitVector right) {
+		return must ? right.isSubsetOf(left) : left.isSubsetOf(right);
+	}
+
+	@Override
+	public BitVector bottom() {
+		return must ? BitVector.FULL : BitVector.EMPTY;
+	}
+
+	@Override
+	public BitVector copy(BitVector original) {
+		return original;
+	}
+
+	/**
+	 * Bit vectors are immutable.
+	 */
+	public BitVector freeze(BitVector info) {
+		return info;
+	}
+
+	@Override
+	public BitVector join(BitVector left, BitVector right) {
+		return must ? left.intersection(right) : left.union(right);
+	}
+
+}
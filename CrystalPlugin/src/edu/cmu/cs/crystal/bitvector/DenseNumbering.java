@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.bitvector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns consecutive numbers, starting at 0, to objects in the order in 
+ * which they are first numbered.  Bit vector analyses use this to map 
+ * the facts of a method, such as its variables, to bits.
+ * 
+ * @param <T> Type of objects being numbered
+ * @see BitVector
+ */
+public final class DenseNumbering<T> {
+	
+	private final Map<T, Integer> numbers = new HashMap<T, Integer>();
+	private final List<T> elements = new ArrayList<T>();
+	
+	/**
+	 * Returns the number for the given object, assigning the next 
+	 * available number if the object was not numbered before.
+	 * @param element
+	 * @return the number for the given object.
+	 */
+	public int number(T element) {
+		Integer result = numbers.get(element);
+		if(result == null) {
+			result = elements.size();
+			numbers.put(element, result);
+			elements.add(element);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the number for the given object, if any.
+	 * @param element
+	 * @return the number for the given object or <code>-1</code> 
+	 * if the object was not numbered.
+	 */
+	public int getNumber(T element) {
+		Integer result = numbers.get(element);
+		return result == null ? -1 : result;
+	}
+	
+	/**
+	 * Returns the object with the given number.
+	 * @param number
+	 * @return the object with the given number.
+	 * @throws IndexOutOfBoundsException if no object has the given number.
+	 */
+	public T get(int number) {
+		return elements.get(number);
+	}
+	
+	/**
+	 * Returns the number of objects numbered so far, which
+	 * is also the next number to be assigned.
+	 * @return the number of objects numbered so far.
+	 */
+	public int size() {
+		return elements.size();
+	}
+	
+	/**
+	 * Returns the numbered objects, in the order of their numbers.
+	 * @return an unmodifiable view of the numbered objects.
+	 */
+	public List<T> getElements() {
+		return Collections.unmodifiableList(elements);
+	}
+	
+	/**
+	 * Returns the objects whose numbers are in the given bit vector, in the
+	 * order of their numbers.  Bits without corresponding objects are ignored, 
+	 * which makes this method work for complemented bit vectors as well.
+	 * @param bits
+	 * @return the objects whose numbers are set in the given bit vector.
+	 */
+	public List<T> getElements(BitVector bits) {
+		List<T> result = new ArrayList<T>();
+		for(int i = 0; i < elements.size(); i++) {
+			if(bits.get(i))
+				result.add(elements.get(i));
+		}
+		return result;
+	}
+
+}
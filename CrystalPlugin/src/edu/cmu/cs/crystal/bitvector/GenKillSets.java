@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.bitvector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The facts an instruction generates and kills.  Transferring over an instruction
+ * results in <code>gen &cup; (incoming - kill)</code>, so facts that are both
+ * generated and killed hold after the instruction.
+ * <p>
+ * Besides individual facts, instructions can kill <i>groups</i> of facts, such as
+ * all definitions of a variable.  Facts are added to groups when they are generated,
+ * and killing a group kills all facts generated into the group <i>anywhere</i> in 
+ * the method being analyzed.  This is needed because the facts a method generates
+ * are only numbered as the method is being analyzed.
+ * 
+ * @param <F> Type of facts
+ * @see GenKillTransferFunction#genKill(edu.cmu.cs.crystal.tac.model.TACInstruction, GenKillSets)
+ */
+public final class GenKillSets<F> {
+	
+	private final DenseNumbering<F> numbering;
+	private final Map<Object, BitVector> groups;
+	private BitVector gen = BitVector.EMPTY;
+	private BitVector kill = BitVector.EMPTY;
+	private List<Object> killedGroups = Collections.emptyList();
+	
+	GenKillSets(DenseNumbering<F> numbering, Map<Object, BitVector> groups) {
+		this.numbering = numbering;
+		this.groups = groups;
+	}
+	
+	/**
+	 * Generates the given fact.  <code>null</code> facts are ignored.
+	 * @param fact
+	 * @return this object, for chaining calls.
+	 */
+	public GenKillSets<F> gen(F fact) {
+		if(fact != null)
+			gen = gen.set(numbering.number(fact));
+		return this;
+	}
+	
+	/**
+	 * Generates the given fact and adds it to the given group.  
+	 * <code>null</code> facts are ignored.
+	 * @param fact
+	 * @param group Key identifying a group of facts, such as a variable
+	 * @return this object, for chaining calls.
+	 * @see #killGroup(Object)
+	 */
+	public GenKillSets<F> gen(F fact, Object group) {
+		if(fact != null) {
+			int number = numbering.number(fact);
+			gen = gen.set(number);
+			BitVector members = groups.get(group);
+			groups.put(group, (members == null ? BitVector.EMPTY : members).set(number));
+		}
+		return this;
+	}
+	
+	/**
+	 * Kills the given fact.  <code>null</code> facts are ignored.
+	 * @param fact
+	 * @return this object, for chaining calls.
+	 */
+	public GenKillSets<F> kill(F fact) {
+		if(fact != null)
+			kill = kill.set(numbering.number(fact));
+		return this;
+	}
+	
+	/**
+	 * Kills all facts in the given group.
+	 * @param group Key identifying a group of facts, such as a variable
+	 * @return this object, for chaining calls.
+	 * @see #gen(Object, Object)
+	 */
+	public GenKillSets<F> killGroup(Object group) {
+		if(killedGroups.isEmpty())
+			killedGroups = new ArrayList<Object>(1);
+		killedGroups.add(group);
+		return this;
+	}
+	
+	/**
+	 * Transfers the given incoming facts over these gen and kill sets.
+	 * @param incoming
+	 * @return <code>gen &cup; (incoming - kill)</code>
+	 */
+	BitVector apply(BitVector incoming) {
+		BitVector allKilled = kill;
+		for(Object group : killedGroups) {
+			BitVector members = groups.get(group);
+			if(members != null)
+				allKilled = allKilled.union(members);
+		}
+		return incoming.genKill(gen, allKilled);
+	}
+
+}
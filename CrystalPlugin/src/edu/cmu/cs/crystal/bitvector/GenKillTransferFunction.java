@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.bitvector;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+import edu.cmu.cs.crystal.flow.AnalysisDirection;
+import edu.cmu.cs.crystal.flow.ILatticeOperations;
+import edu.cmu.cs.crystal.simple.AbstractingTransferFunction;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+
+/**
+ * Base class for classic bit vector analyses, whose transfer functions 
+ * generate and kill facts.  Subclasses only declare the facts each instruction
+ * generates and kills in {@link #genKill(TACInstruction, GenKillSets)}.
+ * The facts of each method, e.g., its variables, are numbered densely 
+ * as they are generated or killed, and sets of facts are represented with
+ * {@link BitVector}s.  Gen and kill sets are computed once per instruction,
+ * so transferring over an instruction again is a few bit operations.
+ * <p>
+ * Use this transfer function with {@link edu.cmu.cs.crystal.tac.TACFlowAnalysis} 
+ * like any other and use {@link #holds(BitVector, Object, MethodDeclaration)}
+ * or {@link #getFacts(BitVector, MethodDeclaration)} to interpret its results.
+ * Numberings are kept for all methods analyzed with this transfer function.
+ * 
+ * @param <F> Type of facts, such as {@link edu.cmu.cs.crystal.tac.model.Variable}.
+ * @see BitVectorLatticeOperations
+ */
+public abstract class GenKillTransferFunction<F> extends AbstractingTransferFunction<BitVector> {
+	
+	/**
+	 * Numbering, gen and kill sets for one method. 
+	 */
+	private static class MethodFacts<F> {
+		final DenseNumbering<F> numbering = new DenseNumbering<F>();
+		final Map<Object, BitVector> groups = new HashMap<Object, BitVector>();
+		final Map<TACInstruction, GenKillSets<F>> genKill = new HashMap<TACInstruction, GenKillSets<F>>();
+	}
+	
+	private final AnalysisDirection direction;
+	private final BitVectorLatticeOperations ops;
+	private final Map<MethodDeclaration, MethodFacts<F>> methodFacts = 
+		new HashMap<MethodDeclaration, MethodFacts<F>>();
+	
+	/** Facts for the method analyzed last, to avoid repeated lookups. */
+	private MethodDeclaration lastMethod;
+	private MethodFacts<F> lastFacts;
+
+	/**
+	 * Creates a bit vector transfer function.
+	 * @param direction Analysis direction
+	 * @param ops {@link BitVectorLatticeOperations#mayOperations()} or
+	 * {@link BitVectorLatticeOperations#mustOperations()}
+	 */
+	protected GenKillTransferFunction(AnalysisDirection direction, BitVectorLatticeOperations ops) {
+		this.direction = direction;
+		this.ops = ops;
+	}
+
+	@Override
+	public AnalysisDirection getAnalysisDirection() {
+		return direction;
+	}
+
+	public ILatticeOperations<BitVector> getLatticeOperations() {
+		return ops;
+	}
+
+	/**
+	 * By default, no facts hold when entering a method, or when leaving
+	 * it for backward analyses.
+	 * @return {@link BitVector#EMPTY}
+	 */
+	public BitVector createEntryValue(MethodDeclaration method) {
+		return BitVector.EMPTY;
+	}
+
+	/**
+	 * Transfers over the given instruction using its gen and kill sets, which
+	 * are declared with {@link #genKill(TACInstruction, GenKillSets)} when the 
+	 * instruction is first encountered.
+	 */
+	@Override
+	public final BitVector transfer(TACInstruction instr, BitVector value) {
+		MethodFacts<F> facts = getMethodFacts(getAnalysisContext().getAnalyzedMethod());
+		GenKillSets<F> result = facts.genKill.get(instr);
+		if(result == null) {
+			result = new GenKillSets<F>(facts.numbering, facts.groups);
+			genKill(instr, result);
+			facts.genKill.put(instr, result);
+		}
+		return result.apply(value);
+	}
+
+	/**
+	 * Declares the facts the given instruction generates and kills.
+	 * This method is called at most once for each instruction.
+	 * @param instr
+	 * @param genKill Gen and kill sets for the given instruction, which
+	 * should not be used after this method returns.
+	 */
+	protected abstract void genKill(TACInstruction instr, GenKillSets<F> genKill);
+
+	/**
+	 * Returns the numbering of facts in the given method.
+	 * @param method
+	 * @return the numbering of facts in the given method.
+	 */
+	public DenseNumbering<F> getNumbering(MethodDeclaration method) {
+		return getMethodFacts(method).numbering;
+	}
+
+	/**
+	 * Tests whether the given fact holds according to the given analysis result.
+	 * @param value Analysis result for a node in the given method
+	 * @param fact
+	 * @param method
+	 * @return <code>true</code> if the given fact holds, <code>false</code> otherwise.
+	 */
+	public boolean holds(BitVector value, F fact, MethodDeclaration method) {
+		int number = getNumbering(method).getNumber(fact);
+		if(number < 0)
+			// fact not mentioned anywhere in the method
+			return value.isComplemented();
+		return value.get(number);
+	}
+
+	/**
+	 * Returns the facts that hold according to the given analysis result.
+	 * @param value Analysis result for a node in the given method
+	 * @param method
+	 * @return the facts that hold according to the given analysis result.
+	 */
+	public List<F> getFacts(BitVector value, MethodDeclaration method) {
+		return getNumbering(method).getElements(value);
+	}
+
+	private MethodFacts<F> getMethodFacts(MethodDeclaration method) {
+		if(method == lastMethod && lastFacts != null)
+			return lastFacts;
+		MethodFacts<F> result = methodFacts.get(method);
+		if(result == null) {
+			result = new MethodFacts<F>();
+			methodFacts.put(method, result);
+		}
+		lastMethod = method;
+		lastFacts = result;
+		return result;
+	}
+
+}
@@ -0,0 +1,6 @@
+/**
+ * Framework for classic bit vector analyses, such as live variables, whose 
+ * transfer functions only generate and kill facts.  Extend 
+ * {@link edu.cmu.cs.crystal.bitvector.GenKillTransferFunction} to define such an analysis.
+ */
+package edu.cmu.cs.crystal.bitvector;
@@ -0,0 +1,402 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.cfg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+import att.grappa.Edge;
+import att.grappa.Graph;
+import att.grappa.Node;
+import edu.cmu.cs.crystal.flow.ILabel;
+
+/**
+ * Basic-block view of a control flow graph.  Maximal chains of nodes that control
+ * can only enter at the first node and only leave at the last node are collapsed
+ * into a single {@link Block}: a node is added to the block of its predecessor if
+ * it is that predecessor's only successor and the predecessor is its only predecessor.
+ * The {@link IControlFlowGraph#getStartNode() start node} always begins a block.
+ * Edges between blocks correspond one-to-one to edges from the last node of a
+ * block to the first node of another block in the underlying graph.
+ * <p>
+ * Only nodes that are reachable from the start node or that can reach the
+ * end node are part of blocks.  The underlying graph must not be modified 
+ * after creating a block graph for it.
+ * 
+ * @param <N> Type of AST nodes in the control flow graph.
+ */
+public class BasicBlockGraph<N> implements IControlFlowGraph<N> {
+
+	private final IControlFlowGraph<N> cfg;
+	/** Blocks in the order their first nodes were discovered. */
+	private final List<Block<N>> blocks;
+	/** Maps nodes in the underlying graph to the blocks containing them. */
+	private final Map<ICFGNode<N>, Block<N>> blockMap;
+
+	/**
+	 * Collapses chains of nodes in the given control flow graph into blocks.
+	 * @param cfg
+	 */
+	public BasicBlockGraph(IControlFlowGraph<N> cfg) {
+		this.cfg = cfg;
+		this.blockMap = new IdentityHashMap<ICFGNode<N>, Block<N>>();
+		ArrayList<Block<N>> result = new ArrayList<Block<N>>();
+		List<ICFGNode<N>> nodes = collectNodes(cfg);
+		for(ICFGNode<N> node : nodes) {
+			if(isFirst(node))
+				result.add(createBlock(node));
+		}
+		// chains that form a cycle have no first node; start them anywhere
+		for(ICFGNode<N> node : nodes) {
+			if(blockMap.containsKey(node) == false)
+				result.add(createBlock(node));
+		}
+		for(Block<N> block : result) {
+			for(ICFGEdge<N> edge : block.getLastNode().getOutputs()) {
+				Block<N> sink = blockMap.get(edge.getSink());
+				if(sink != null) {
+					BlockEdge<N> blockEdge = new BlockEdge<N>(block, sink, edge);
+					block.outputs.add(blockEdge);
+					sink.inputs.add(blockEdge);
+				}
+			}
+		}
+		result.trimToSize();
+		this.blocks = Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Returns the nodes reachable from the start node followed by the 
+	 * remaining nodes that can reach the end node.
+	 */
+	private static <N> List<ICFGNode<N>> collectNodes(IControlFlowGraph<N> cfg) {
+		Map<ICFGNode<N>, Boolean> collected = new IdentityHashMap<ICFGNode<N>, Boolean>();
+		ArrayList<ICFGNode<N>> result = new ArrayList<ICFGNode<N>>();
+		for(int direction = 0; direction < 2; ++direction) {
+			boolean isForward = direction == 0;
+			ICFGNode<N> root = isForward ? cfg.getStartNode() : cfg.getEndNode();
+			// each direction needs its own visited set since the end node 
+			// is usually reachable from the start node
+			Map<ICFGNode<N>, Boolean> seen = new IdentityHashMap<ICFGNode<N>, Boolean>();
+			seen.put(root, Boolean.TRUE);
+			ArrayList<ICFGNode<N>> stack = new ArrayList<ICFGNode<N>>();
+			stack.add(root);
+			while(stack.isEmpty() == false) {
+				ICFGNode<N> node = stack.remove(stack.size() - 1);
+				if(collected.put(node, Boolean.TRUE) == null)
+					result.add(node);
+				for(ICFGEdge<N> edge : isForward ? node.getOutputs() : node.getInputs()) {
+					ICFGNode<N> next = isForward ? edge.getSink() : edge.getSource();
+					if(seen.put(next, Boolean.TRUE) == null)
+						stack.add(next);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the block that starts with the given node.
+	 */
+	@SuppressWarnings("unchecked")
+	private Block<N> createBlock(ICFGNode<N> first) {
+		ArrayList<ICFGNode<N>> chain = new ArrayList<ICFGNode<N>>();
+		ICFGNode<N> node = first;
+		do {
+			chain.add(node);
+			node = getNext(node);
+		} while(node != null && node != first);
+		Block<N> result = new Block<N>(chain.toArray(new ICFGNode[chain.size()]));
+		for(ICFGNode<N> n : chain)
+			blockMap.put(n, result);
+		return result;
+	}
+
+	/**
+	 * Returns the node that follows the given node in its block, if any.
+	 */
+	private ICFGNode<N> getNext(ICFGNode<N> node) {
+		if(node.getOutputs().size() != 1)
+			return null;
+		ICFGNode<N> next = node.getOutputs().iterator().next().getSink();
+		if(next == node || next == cfg.getStartNode() || next.getInputs().size() != 1)
+			return null;
+		return next;
+	}
+
+	/**
+	 * Determines whether the given node begins a block.
+	 */
+	private boolean isFirst(ICFGNode<N> node) {
+		if(node == cfg.getStartNode() || node.getInputs().size() != 1)
+			return true;
+		return getNext(node.getInputs().iterator().next().getSource()) != node;
+	}
+
+	/**
+	 * Returns the underlying control flow graph.
+	 * @return the underlying control flow graph.
+	 */
+	public IControlFlowGraph<N> getControlFlowGraph() {
+		return cfg;
+	}
+
+	/**
+	 * Returns all blocks in this graph.
+	 * @return all blocks in this graph, as an unmodifiable list.
+	 */
+	public List<Block<N>> getBlocks() {
+		return blocks;
+	}
+
+	/**
+	 * Returns the block containing the given node of the underlying graph.
+	 * @param node
+	 * @return the block containing the given node or <code>null</code> if
+	 * the node is not part of any block.
+	 */
+	public Block<N> getBlock(ICFGNode<N> node) {
+		return blockMap.get(node);
+	}
+
+	public Block<N> getStartNode() {
+		return getBlock(cfg.getStartNode());
+	}
+
+	public Block<N> getEndNode() {
+		return getBlock(cfg.getEndNode());
+	}
+
+	public Block<N> getUberReturn() {
+		return getBlock(cfg.getUberReturn());
+	}
+
+	public Block<N> getUndeclaredExit() {
+		return getBlock(cfg.getUndeclaredExit());
+	}
+
+	public Map<ITypeBinding, Block<N>> getExceptionalExits() {
+		Map<ITypeBinding, ? extends ICFGNode<N>> exits = cfg.getExceptionalExits();
+		if(exits == null)
+			return null;
+		Map<ITypeBinding, Block<N>> result = new HashMap<ITypeBinding, Block<N>>();
+		for(Map.Entry<ITypeBinding, ? extends ICFGNode<N>> exit : exits.entrySet())
+			result.put(exit.getKey(), getBlock(exit.getValue()));
+		return result;
+	}
+
+	public Graph getDotGraph() {
+		Graph graph = new Graph("blocks");
+		Map<Block<N>, Node> dotNodes = new IdentityHashMap<Block<N>, Node>();
+		for(Block<N> block : blocks) {
+			Node dotNode = new Node(graph);
+			dotNode.setName("B" + dotNodes.size());
+			dotNode.setAttribute(Node.LABEL_ATTR, block.toString());
+			dotNode.setAttribute(Node.FONTNAME_ATTR, "Helvetica");
+			dotNode.setAttribute(Node.FONTSIZE_ATTR, new Integer(10));
+			graph.addNode(dotNode);
+			dotNodes.put(block, dotNode);
+		}
+		for(Block<N> block : blocks) {
+			for(BlockEdge<N> edge : block.outputs) {
+				Edge dotEdge = new Edge(graph, dotNodes.get(block), dotNodes.get(edge.getSink()));
+				dotEdge.setAttribute(Edge.LABEL_ATTR, edge.getLabel().getLabel());
+			}
+		}
+		return graph;
+	}
+
+	/**
+	 * A basic block: a chain of nodes in the underlying control flow graph.
+	 * Blocks are their own {@link #getStart() start} and {@link #getEnd() end}
+	 * and have no AST node of their own; use {@link #getNodes()} to find the
+	 * nodes they contain.
+	 * 
+	 * @param <N> Type of AST nodes in the control flow graph.
+	 */
+	public static final class Block<N> implements ICFGNode<N> {
+
+		private final ICFGNode<N>[] nodes;
+		private final Set<BlockEdge<N>> inputs = new LinkedHashSet<BlockEdge<N>>();
+		private final Set<BlockEdge<N>> outputs = new LinkedHashSet<BlockEdge<N>>();
+
+		private Block(ICFGNode<N>[] nodes) {
+			this.nodes = nodes;
+		}
+
+		/**
+		 * Returns the nodes in this block in control flow order.
+		 * @return the nodes in this block in control flow order, as an unmodifiable list.
+		 */
+		public List<ICFGNode<N>> getNodes() {
+			return Collections.unmodifiableList(Arrays.asList(nodes));
+		}
+
+		/**
+		 * Returns the number of nodes in this block.
+		 * @return the number of nodes in this block.
+		 */
+		public int size() {
+			return nodes.length;
+		}
+
+		/**
+		 * Returns the node at the given position in this block.
+		 * @param index
+		 * @return the node at the given position in this block.
+		 */
+		public ICFGNode<N> getNode(int index) {
+			return nodes[index];
+		}
+
+		/**
+		 * Returns the node control enters this block at.
+		 * @return the node control enters this block at.
+		 */
+		public ICFGNode<N> getFirstNode() {
+			return nodes[0];
+		}
+
+		/**
+		 * Returns the node control leaves this block from.
+		 * @return the node control leaves this block from.
+		 */
+		public ICFGNode<N> getLastNode() {
+			return nodes[nodes.length - 1];
+		}
+
+		/**
+		 * Returns the edge in the underlying graph from the node at the 
+		 * given position to the next node in this block.
+		 * @param index Position of the edge's source, less than <code>size() - 1</code>.
+		 * @return the edge from the node at the given position to the next node.
+		 */
+		public ICFGEdge<N> getInternalEdge(int index) {
+			if(index >= nodes.length - 1)
+				throw new IndexOutOfBoundsException("No node follows node " + index + " in " + this);
+			return nodes[index].getOutputs().iterator().next();
+		}
+
+		public Set<BlockEdge<N>> getInputs() {
+			return inputs;
+		}
+
+		public Set<BlockEdge<N>> getOutputs() {
+			return outputs;
+		}
+
+		/**
+		 * Blocks have no AST node of their own.
+		 * @return <code>null</code>.
+		 * @see #getNodes()
+		 */
+		public N getASTNode() {
+			return null;
+		}
+
+		public Set<BlockEdge<N>> getInputEdges(ILabel label) {
+			return filter(inputs, label);
+		}
+
+		public Set<BlockEdge<N>> getOutputEdges(ILabel label) {
+			return filter(outputs, label);
+		}
+
+		private static <N> Set<BlockEdge<N>> filter(Set<BlockEdge<N>> edges, ILabel label) {
+			Set<BlockEdge<N>> result = new LinkedHashSet<BlockEdge<N>>();
+			for(BlockEdge<N> edge : edges) {
+				if(edge.getLabel().equals(label))
+					result.add(edge);
+			}
+			return result;
+		}
+
+		public Block<N> getStart() {
+			return this;
+		}
+
+		public Block<N> getEnd() {
+			return this;
+		}
+
+		@Override
+		public String toString() {
+			return Arrays.toString(nodes);
+		}
+	}
+
+	/**
+	 * An edge between two blocks, which stands for an edge from the last node
+	 * of one block to the first node of the other block in the underlying graph.
+	 * 
+	 * @param <N> Type of AST nodes in the control flow graph.
+	 */
+	public static final class BlockEdge<N> implements ICFGEdge<N> {
+
+		private final Block<N> source;
+		private final Block<N> sink;
+		private final ICFGEdge<N> edge;
+
+		private BlockEdge(Block<N> source, Block<N> sink, ICFGEdge<N> edge) {
+			this.source = source;
+			this.sink = sink;
+			this.edge = edge;
+		}
+
+		public Block<N> getSource() {
+			return source;
+		}
+
+		public Block<N> getSink() {
+			return sink;
+		}
+
+		/**
+		 * Returns the label of the underlying edge.
+		 * @return the label of the underlying edge.
+		 */
+		public ILabel getLabel() {
+			return edge.getLabel();
+		}
+
+		/**
+		 * Returns the underlying edge.
+		 * @return the underlying edge.
+		 */
+		public ICFGEdge<N> getEdge() {
+			return edge;
+		}
+
+		@Override
+		public String toString() {
+			return source + " -" + edge.getLabel() + "-> " + sink;
+		}
+	}
+
+}
@@ -0,0 +1,581 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.cfg;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+import att.grappa.Edge;
+import att.grappa.Graph;
+import att.grappa.Node;
+import edu.cmu.cs.crystal.flow.ILabel;
+
+/**
+ * Frozen, array-based copy of a control flow graph.  Nodes are identified by
+ * dense <code>int</code> ids and edges are kept in compressed sparse row form:
+ * a node's outgoing edges have consecutive ids, and a separate index array lists
+ * each node's incoming edges.  Sources, sinks and labels of edges are kept in
+ * parallel arrays indexed by edge id.  Outgoing and incoming edges are kept in
+ * the iteration order of the original graph.
+ * <p>
+ * For compatibility, the graph's nodes and edges are also available as 
+ * {@link ICFGNode} and {@link ICFGEdge} objects, whose edge sets are read-only
+ * views of the arrays.  Node objects are created up-front, while edge objects are 
+ * only created when requested.  Clients that only need the graph structure, 
+ * such as worklists, should use the <code>int</code>-based methods instead, 
+ * which do not create any objects.
+ * <p>
+ * The copy contains all nodes connected to the original graph's start, end, 
+ * and exit nodes, no matter in which direction.  It does not refer to the 
+ * original graph's nodes and edges, so the original graph can be garbage-collected.
+ * The graph structure does not change after construction, but edge objects are
+ * cached without synchronization, so threads sharing a graph may get different, 
+ * though {@link Object#equals(Object) equal}, objects for the same edge.
+ * 
+ * @param <N> Type of AST nodes in the control flow graph.
+ */
+public class CompactCFG<N> implements IControlFlowGraph<N> {
+
+	/**
+	 * Name of the system property that, if set to <code>true</code>, makes 
+	 * worklists run on compact copies of the control flow graphs they build.
+	 * @see edu.cmu.cs.crystal.flow.worklist.AbstractWorklist#setCompactCFG(boolean)
+	 */
+	public static final String COMPACT_CFG_PROPERTY = "edu.cmu.cs.crystal.cfg.compact";
+
+	/** Node objects indexed by id. */
+	private final CompactNode<N>[] nodes;
+	/** AST nodes indexed by node id. */
+	private final N[] astNodes;
+	/** Names of the original nodes, for debugging. */
+	private final String[] names;
+	/** Ids of each node's {@link ICFGNode#getStart() start} node, or <code>-1</code>. */
+	private final int[] starts;
+	/** Ids of each node's {@link ICFGNode#getEnd() end} node, or <code>-1</code>. */
+	private final int[] ends;
+	/** Node <i>i</i>'s outgoing edges have ids <code>outputOffsets[i]</code> to <code>outputOffsets[i+1]-1</code>. */
+	private final int[] outputOffsets;
+	/** Node <i>i</i>'s incoming edges are at positions <code>inputOffsets[i]</code> to <code>inputOffsets[i+1]-1</code> in {@link #inputEdges}. */
+	private final int[] inputOffsets;
+	/** Ids of incoming edges, grouped by sink. */
+	private final int[] inputEdges;
+	/** Source node ids indexed by edge id. */
+	private final int[] sources;
+	/** Sink node ids indexed by edge id. */
+	private final int[] sinks;
+	/** Labels indexed by edge id. */
+	private final ILabel[] labels;
+	/** Edge objects indexed by edge id, created when first requested. */
+	private final CompactEdge<N>[] edges;
+	private final int start;
+	private final int end;
+	private final int uberReturn;
+	private final int undeclaredExit;
+	private final Map<ITypeBinding, CompactNode<N>> exceptionalExits;
+
+	/**
+	 * Creates a compact copy of the given control flow graph.
+	 * @param cfg
+	 */
+	@SuppressWarnings("unchecked")
+	public CompactCFG(IControlFlowGraph<N> cfg) {
+		// number nodes in the order they are discovered, following outgoing edges first
+		Map<ICFGNode<N>, Integer> ids = new IdentityHashMap<ICFGNode<N>, Integer>();
+		ArrayList<ICFGNode<N>> original = new ArrayList<ICFGNode<N>>();
+		ArrayList<ICFGNode<N>> roots = new ArrayList<ICFGNode<N>>();
+		roots.add(cfg.getStartNode());
+		roots.add(cfg.getEndNode());
+		roots.add(cfg.getUberReturn());
+		roots.add(cfg.getUndeclaredExit());
+		Map<ITypeBinding, ? extends ICFGNode<N>> exits = cfg.getExceptionalExits();
+		if(exits != null)
+			roots.addAll(exits.values());
+		ArrayList<ICFGNode<N>> stack = new ArrayList<ICFGNode<N>>();
+		for(ICFGNode<N> root : roots) {
+			push(root, ids, original, stack);
+			while(stack.isEmpty() == false) {
+				ICFGNode<N> node = stack.remove(stack.size() - 1);
+				push(node.getStart(), ids, original, stack);
+				push(node.getEnd(), ids, original, stack);
+				for(ICFGEdge<N> e : node.getInputs())
+					push(e.getSource(), ids, original, stack);
+				for(ICFGEdge<N> e : node.getOutputs())
+					push(e.getSink(), ids, original, stack);
+			}
+		}
+
+		final int size = original.size();
+		nodes = new CompactNode[size];
+		astNodes = (N[]) new Object[size];
+		names = new String[size];
+		starts = new int[size];
+		ends = new int[size];
+		outputOffsets = new int[size + 1];
+		inputOffsets = new int[size + 1];
+		int edgeCount = 0;
+		for(int i = 0; i < size; ++i) {
+			ICFGNode<N> node = original.get(i);
+			nodes[i] = new CompactNode<N>(this, i);
+			astNodes[i] = node.getASTNode();
+			names[i] = node.toString();
+			starts[i] = id(ids, node.getStart());
+			ends[i] = id(ids, node.getEnd());
+			outputOffsets[i] = edgeCount;
+			edgeCount += node.getOutputs().size();
+		}
+		outputOffsets[size] = edgeCount;
+
+		// outgoing edges are numbered consecutively for each source
+		sources = new int[edgeCount];
+		sinks = new int[edgeCount];
+		labels = new ILabel[edgeCount];
+		edges = new CompactEdge[edgeCount];
+		Map<ICFGEdge<N>, Integer> edgeIds = new IdentityHashMap<ICFGEdge<N>, Integer>(edgeCount);
+		int edge = 0;
+		for(int i = 0; i < size; ++i) {
+			for(ICFGEdge<N> e : original.get(i).getOutputs()) {
+				sources[edge] = i;
+				sinks[edge] = ids.get(e.getSink());
+				labels[edge] = e.getLabel();
+				edgeIds.put(e, edge);
+				++edge;
+			}
+		}
+		
+		inputEdges = new int[edgeCount];
+		int input = 0;
+		for(int i = 0; i < size; ++i) {
+			inputOffsets[i] = input;
+			for(ICFGEdge<N> e : original.get(i).getInputs()) {
+				Integer id = edgeIds.get(e);
+				if(id == null)
+					throw new IllegalArgumentException("Edge is not an output of its source: " + e);
+				inputEdges[input++] = id;
+			}
+		}
+		if(input != edgeCount)
+			throw new IllegalArgumentException("Edges are not inputs of their sinks in " + cfg);
+		inputOffsets[size] = input;
+
+		start = id(ids, cfg.getStartNode());
+		end = id(ids, cfg.getEndNode());
+		uberReturn = id(ids, cfg.getUberReturn());
+		undeclaredExit = id(ids, cfg.getUndeclaredExit());
+		if(exits == null)
+			exceptionalExits = null;
+		else {
+			Map<ITypeBinding, CompactNode<N>> m = new HashMap<ITypeBinding, CompactNode<N>>();
+			for(Map.Entry<ITypeBinding, ? extends ICFGNode<N>> exit : exits.entrySet())
+				m.put(exit.getKey(), nodes[ids.get(exit.getValue())]);
+			exceptionalExits = Collections.unmodifiableMap(m);
+		}
+	}
+
+	private static <N> void push(ICFGNode<N> node, Map<ICFGNode<N>, Integer> ids,
+			ArrayList<ICFGNode<N>> original, ArrayList<ICFGNode<N>> stack) {
+		if(node == null || ids.containsKey(node))
+			return;
+		ids.put(node, original.size());
+		original.add(node);
+		stack.add(node);
+	}
+
+	private static <N> int id(Map<ICFGNode<N>, Integer> ids, ICFGNode<N> node) {
+		if(node == null)
+			return -1;
+		return ids.get(node);
+	}
+
+	/**
+	 * Returns the number of nodes in this graph.
+	 * @return the number of nodes in this graph.
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns the number of edges in this graph.
+	 * @return the number of edges in this graph.
+	 */
+	public int getEdgeCount() {
+		return labels.length;
+	}
+
+	/**
+	 * Returns the node with the given id.
+	 * @param id
+	 * @return the node with the given id.
+	 */
+	public CompactNode<N> getNode(int id) {
+		return nodes[id];
+	}
+
+	/**
+	 * Returns the id of the given node.
+	 * @param node
+	 * @return the id of the given node or <code>-1</code> if the node
+	 * is not part of this graph.
+	 */
+	public int getId(ICFGNode<N> node) {
+		if(node instanceof CompactNode && ((CompactNode<N>) node).graph == this)
+			return ((CompactNode<N>) node).id;
+		return -1;
+	}
+
+	/**
+	 * Returns the AST node of the node with the given id.
+	 * @param id
+	 * @return the AST node of the node with the given id, 
+	 * <code>null</code> for dummy nodes.
+	 */
+	public N getASTNode(int id) {
+		return astNodes[id];
+	}
+
+	/**
+	 * Returns the id of the first of the given node's outgoing edges.
+	 * The node's outgoing edges have consecutive ids up to but
+	 * excluding {@link #getOutputEnd(int)}.
+	 * @param id
+	 * @return the id of the given node's first outgoing edge.
+	 */
+	public int getOutputBegin(int id) {
+		return outputOffsets[id];
+	}
+
+	/**
+	 * Returns the id following the id of the last of the given node's outgoing edges.
+	 * @param id
+	 * @return the id following the id of the given node's last outgoing edge.
+	 * @see #getOutputBegin(int)
+	 */
+	public int getOutputEnd(int id) {
+		return outputOffsets[id + 1];
+	}
+
+	/**
+	 * Returns the position of the first of the given node's incoming edges.
+	 * The node's incoming edges are at consecutive positions up to but
+	 * excluding {@link #getInputEnd(int)}.
+	 * @param id
+	 * @return the position of the given node's first incoming edge.
+	 * @see #getInputEdge(int)
+	 */
+	public int getInputBegin(int id) {
+		return inputOffsets[id];
+	}
+
+	/**
+	 * Returns the position following the position of the last of the given node's incoming edges.
+	 * @param id
+	 * @return the position following the given node's last incoming edge.
+	 * @see #getInputBegin(int)
+	 */
+	public int getInputEnd(int id) {
+		return inputOffsets[id + 1];
+	}
+
+	/**
+	 * Returns the id of the incoming edge at the given position.
+	 * @param position
+	 * @return the id of the incoming edge at the given position.
+	 * @see #getInputBegin(int)
+	 */
+	public int getInputEdge(int position) {
+		return inputEdges[position];
+	}
+
+	/**
+	 * Returns the id of the given edge's source node.
+	 * @param edge
+	 * @return the id of the given edge's source node.
+	 */
+	public int getSource(int edge) {
+		return sources[edge];
+	}
+
+	/**
+	 * Returns the id of the given edge's sink node.
+	 * @param edge
+	 * @return the id of the given edge's sink node.
+	 */
+	public int getSink(int edge) {
+		return sinks[edge];
+	}
+
+	/**
+	 * Returns the given edge's label.
+	 * @param edge
+	 * @return the given edge's label.
+	 */
+	public ILabel getLabel(int edge) {
+		return labels[edge];
+	}
+
+	/**
+	 * Returns the edge with the given id.
+	 * @param edge
+	 * @return the edge with the given id.
+	 */
+	public CompactEdge<N> getEdge(int edge) {
+		CompactEdge<N> result = edges[edge];
+		if(result == null) {
+			// benign race: edges with the same id are equal
+			result = new CompactEdge<N>(this, edge);
+			edges[edge] = result;
+		}
+		return result;
+	}
+
+	private CompactNode<N> node(int id) {
+		return id < 0 ? null : nodes[id];
+	}
+
+	public CompactNode<N> getStartNode() {
+		return node(start);
+	}
+
+	public CompactNode<N> getEndNode() {
+		return node(end);
+	}
+
+	public CompactNode<N> getUberReturn() {
+		return node(uberReturn);
+	}
+
+	public CompactNode<N> getUndeclaredExit() {
+		return node(undeclaredExit);
+	}
+
+	public Map<ITypeBinding, CompactNode<N>> getExceptionalExits() {
+		return exceptionalExits;
+	}
+
+	public Graph getDotGraph() {
+		Graph graph = new Graph("compact");
+		Node[] dotNodes = new Node[nodes.length];
+		for(int i = 0; i < nodes.length; ++i) {
+			Node dotNode = new Node(graph);
+			dotNode.setName(Integer.toString(i));
+			dotNode.setAttribute(Node.LABEL_ATTR, names[i]);
+			dotNode.setAttribute(Node.FONTNAME_ATTR, "Helvetica");
+			dotNode.setAttribute(Node.FONTSIZE_ATTR, new Integer(10));
+			graph.addNode(dotNode);
+			dotNodes[i] = dotNode;
+		}
+		for(int e = 0; e < labels.length; ++e) {
+			Edge dotEdge = new Edge(graph, dotNodes[sources[e]], dotNodes[sinks[e]]);
+			dotEdge.setAttribute(Edge.LABEL_ATTR, labels[e].getLabel());
+		}
+		return graph;
+	}
+
+	/**
+	 * A node in a {@link CompactCFG}.  Its edge sets are read-only views.
+	 * 
+	 * @param <N> Type of AST nodes in the control flow graph.
+	 */
+	public static final class CompactNode<N> implements ICFGNode<N> {
+
+		private final CompactCFG<N> graph;
+		private final int id;
+
+		private CompactNode(CompactCFG<N> graph, int id) {
+			this.graph = graph;
+			this.id = id;
+		}
+
+		/**
+		 * Returns this node's id in its graph.
+		 * @return this node's id in its graph.
+		 */
+		public int getId() {
+			return id;
+		}
+
+		public N getASTNode() {
+			return graph.astNodes[id];
+		}
+
+		public Set<CompactEdge<N>> getInputs() {
+			return new EdgeSet<N>(graph, id, false);
+		}
+
+		public Set<CompactEdge<N>> getOutputs() {
+			return new EdgeSet<N>(graph, id, true);
+		}
+
+		public Set<CompactEdge<N>> getInputEdges(ILabel label) {
+			return filter(getInputs(), label);
+		}
+
+		public Set<CompactEdge<N>> getOutputEdges(ILabel label) {
+			return filter(getOutputs(), label);
+		}
+
+		private static <N> Set<CompactEdge<N>> filter(Set<CompactEdge<N>> edges, ILabel label) {
+			Set<CompactEdge<N>> result = new LinkedHashSet<CompactEdge<N>>();
+			for(CompactEdge<N> edge : edges) {
+				if(edge.getLabel().equals(label))
+					result.add(edge);
+			}
+			return result;
+		}
+
+		public CompactNode<N> getStart() {
+			return graph.node(graph.starts[id]);
+		}
+
+		public CompactNode<N> getEnd() {
+			return graph.node(graph.ends[id]);
+		}
+
+		@Override
+		public String toString() {
+			return graph.names[id];
+		}
+	}
+
+	/**
+	 * An edge in a {@link CompactCFG}.  Edges with the same id in the same 
+	 * graph are equal.
+	 * 
+	 * @param <N> Type of AST nodes in the control flow graph.
+	 */
+	public static final class CompactEdge<N> implements ICFGEdge<N> {
+
+		private final CompactCFG<N> graph;
+		private final int id;
+
+		private CompactEdge(CompactCFG<N> graph, int id) {
+			this.graph = graph;
+			this.id = id;
+		}
+
+		/**
+		 * Returns this edge's id in its graph.
+		 * @return this edge's id in its graph.
+		 */
+		public int getId() {
+			return id;
+		}
+
+		public CompactNode<N> getSource() {
+			return graph.nodes[graph.sources[id]];
+		}
+
+		public CompactNode<N> getSink() {
+			return graph.nodes[graph.sinks[id]];
+		}
+
+		public ILabel getLabel() {
+			return graph.labels[id];
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj)
+				return true;
+			if(obj instanceof CompactEdge == false)
+				return false;
+			CompactEdge<?> other = (CompactEdge<?>) obj;
+			return graph == other.graph && id == other.id;
+		}
+
+		@Override
+		public int hashCode() {
+			return id;
+		}
+
+		@Override
+		public String toString() {
+			return getSource() + "->" + getSink();
+		}
+	}
+
+	/**
+	 * Read-only view of a node's incoming or outgoing edges.
+	 */
+	private static final class EdgeSet<N> extends AbstractSet<CompactEdge<N>> {
+
+		private final CompactCFG<N> graph;
+		private final int node;
+		private final boolean outputs;
+
+		EdgeSet(CompactCFG<N> graph, int node, boolean outputs) {
+			this.graph = graph;
+			this.node = node;
+			this.outputs = outputs;
+		}
+
+		@Override
+		public int size() {
+			int[] offsets = outputs ? graph.outputOffsets : graph.inputOffsets;
+			return offsets[node + 1] - offsets[node];
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if(o instanceof CompactEdge == false)
+				return false;
+			CompactEdge<?> e = (CompactEdge<?>) o;
+			if(e.graph != graph)
+				return false;
+			return (outputs ? graph.sources[e.id] : graph.sinks[e.id]) == node;
+		}
+
+		@Override
+		public Iterator<CompactEdge<N>> iterator() {
+			final int[] offsets = outputs ? graph.outputOffsets : graph.inputOffsets;
+			final int limit = offsets[node + 1];
+			return new Iterator<CompactEdge<N>>() {
+				private int position = offsets[node];
+
+				public boolean hasNext() {
+					return position < limit;
+				}
+
+				public CompactEdge<N> next() {
+					if(position >= limit)
+						throw new NoSuchElementException();
+					int edge = outputs ? position : graph.inputEdges[position];
+					++position;
+					return graph.getEdge(edge);
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException("Compact control flow graphs cannot be modified");
+				}
+			};
+		}
+	}
+
+}
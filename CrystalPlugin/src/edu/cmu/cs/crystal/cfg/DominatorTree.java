@@ -0,0 +1,409 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.cfg;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dominator tree and dominance frontiers of a control flow graph.
+ * A node <i>d</i> dominates a node <i>n</i> if every path from the
+ * {@link IControlFlowGraph#getStartNode() start node} to <i>n</i> goes through <i>d</i>.
+ * <p>
+ * Nodes reachable from the start node are numbered in reverse post-order, so the
+ * start node has number 0 and a node's number is greater than its immediate dominator's.  
+ * Nodes that are unreachable from the start node are not part of the tree.  
+ * Predecessors and successors are kept as arrays of numbers, one entry per edge, 
+ * which is what clients such as SSA construction iterate over.
+ * <p>
+ * Post-dominator trees are dominator trees of the reversed graph, rooted at the
+ * {@link IControlFlowGraph#getEndNode() end node}, which takes the role of the
+ * start node below.  For them, predecessors and successors are taken in the 
+ * reversed graph as well.
+ * <p>
+ * Immediate dominators are computed with the iterative algorithm by Cooper, 
+ * Harvey, and Kennedy, "A Simple, Fast Dominance Algorithm".  Dominance frontiers are 
+ * computed when first requested.
+ * 
+ * @param <N> Type of the nodes in the control flow graph.
+ */
+public class DominatorTree<N> {
+	
+	private static final int[] NONE = new int[0];
+
+	/** Nodes indexed by their reverse post-order number. */
+	private final ICFGNode<N>[] nodes;
+	/** Maps nodes to their numbers. */
+	private final Map<ICFGNode<N>, Integer> numbers;
+	/** Numbers of reachable predecessors, one per incoming edge. */
+	private final int[][] preds;
+	/** Numbers of successors, one per outgoing edge. */
+	private final int[][] succs;
+	/** Immediate dominators; the root's entry is <code>-1</code>. */
+	private final int[] idom;
+	/** Children in the dominator tree. */
+	private final int[][] children;
+	/** Pre-order number of each node in the dominator tree. */
+	private final int[] preorder;
+	/** Largest pre-order number in each node's dominator subtree. */
+	private final int[] lastDescendant;
+	/** Dominance frontiers, computed when first needed. */
+	private int[][] frontiers;
+
+	/**
+	 * Computes the dominator tree of the given control flow graph.
+	 * @param cfg
+	 */
+	public DominatorTree(IControlFlowGraph<N> cfg) {
+		this(cfg, true);
+	}
+
+	/**
+	 * Computes the dominator or post-dominator tree of the given control flow graph.
+	 * @param cfg
+	 * @param isForward <code>true</code> for the dominator tree, <code>false</code> 
+	 * for the post-dominator tree.
+	 */
+	@SuppressWarnings("unchecked")
+	public DominatorTree(IControlFlowGraph<N> cfg, boolean isForward) {
+		ArrayList<ICFGNode<N>> postOrder = new ArrayList<ICFGNode<N>>();
+		numbers = new IdentityHashMap<ICFGNode<N>, Integer>();
+		
+		// iterative depth-first search, numbering nodes in post-order
+		ArrayList<ICFGNode<N>> nodeStack = new ArrayList<ICFGNode<N>>();
+		ArrayList<Iterator<? extends ICFGEdge<N>>> edgeStack = new ArrayList<Iterator<? extends ICFGEdge<N>>>();
+		ICFGNode<N> node = isForward ? cfg.getStartNode() : cfg.getEndNode();
+		numbers.put(node, null);
+		nodeStack.add(node);
+		edgeStack.add(outputs(node, isForward).iterator());
+		newNode:
+		while(nodeStack.isEmpty() == false) {
+			Iterator<? extends ICFGEdge<N>> it = edgeStack.get(edgeStack.size() - 1);
+			while(it.hasNext()) {
+				node = sink(it.next(), isForward);
+				if(numbers.containsKey(node) == false) {
+					numbers.put(node, null);
+					nodeStack.add(node);
+					edgeStack.add(outputs(node, isForward).iterator());
+					continue newNode;
+				}
+			}
+			edgeStack.remove(edgeStack.size() - 1);
+			postOrder.add(nodeStack.remove(nodeStack.size() - 1));
+		}
+		
+		// reverse post-order
+		final int size = postOrder.size();
+		nodes = new ICFGNode[size];
+		for(int i = 0; i < size; ++i) {
+			nodes[i] = postOrder.get(size - 1 - i);
+			numbers.put(nodes[i], i);
+		}
+		
+		preds = new int[size][];
+		succs = new int[size][];
+		for(int i = 0; i < size; ++i) {
+			int[] p = new int[inputs(nodes[i], isForward).size()];
+			int count = 0;
+			for(ICFGEdge<N> e : inputs(nodes[i], isForward)) {
+				Integer source = numbers.get(source(e, isForward));
+				if(source != null)
+					p[count++] = source;
+			}
+			if(count < p.length) {
+				int[] trimmed = new int[count];
+				System.arraycopy(p, 0, trimmed, 0, count);
+				p = trimmed;
+			}
+			preds[i] = p;
+			
+			int[] s = new int[outputs(nodes[i], isForward).size()];
+			count = 0;
+			for(ICFGEdge<N> e : outputs(nodes[i], isForward))
+				s[count++] = numbers.get(sink(e, isForward));
+			succs[i] = s;
+		}
+		
+		idom = computeImmediateDominators(preds);
+		
+		// dominator tree children
+		int[] childCount = new int[size];
+		for(int i = 1; i < size; ++i)
+			childCount[idom[i]]++;
+		children = new int[size][];
+		for(int i = 0; i < size; ++i)
+			children[i] = childCount[i] == 0 ? NONE : new int[childCount[i]];
+		for(int i = size - 1; i > 0; --i)
+			children[idom[i]][--childCount[idom[i]]] = i;
+		
+		// pre-order intervals for constant-time dominance checks
+		preorder = new int[size];
+		lastDescendant = new int[size];
+		if(size > 0) {
+			int[] stack = new int[size];
+			int[] next = new int[size];
+			int top = 0;
+			int counter = 0;
+			stack[0] = 0;
+			preorder[0] = counter++;
+			while(top >= 0) {
+				int n = stack[top];
+				if(next[n] < children[n].length) {
+					int c = children[n][next[n]++];
+					preorder[c] = counter++;
+					stack[++top] = c;
+				}
+				else {
+					lastDescendant[n] = counter - 1;
+					--top;
+				}
+			}
+		}
+	}
+
+	private static <N> Set<? extends ICFGEdge<N>> inputs(ICFGNode<N> node, boolean isForward) {
+		return isForward ? node.getInputs() : node.getOutputs();
+	}
+
+	private static <N> Set<? extends ICFGEdge<N>> outputs(ICFGNode<N> node, boolean isForward) {
+		return isForward ? node.getOutputs() : node.getInputs();
+	}
+
+	private static <N> ICFGNode<N> source(ICFGEdge<N> edge, boolean isForward) {
+		return isForward ? edge.getSource() : edge.getSink();
+	}
+
+	private static <N> ICFGNode<N> sink(ICFGEdge<N> edge, boolean isForward) {
+		return isForward ? edge.getSink() : edge.getSource();
+	}
+
+	private static int[] computeImmediateDominators(int[][] preds) {
+		final int size = preds.length;
+		int[] idom = new int[size];
+		if(size == 0)
+			return idom;
+		for(int i = 1; i < size; ++i)
+			idom[i] = -1;
+		idom[0] = 0;
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			for(int b = 1; b < size; ++b) {
+				int newIdom = -1;
+				for(int p : preds[b]) {
+					if(idom[p] < 0)
+						// not yet processed
+						continue;
+					if(newIdom < 0)
+						newIdom = p;
+					else
+						newIdom = intersect(idom, p, newIdom);
+				}
+				if(idom[b] != newIdom) {
+					idom[b] = newIdom;
+					changed = true;
+				}
+			}
+		}
+		idom[0] = -1;
+		return idom;
+	}
+	
+	private static int intersect(int[] idom, int b1, int b2) {
+		// in reverse post-order, dominators have smaller numbers
+		while(b1 != b2) {
+			while(b1 > b2)
+				b1 = idom[b1];
+			while(b2 > b1)
+				b2 = idom[b2];
+		}
+		return b1;
+	}
+	
+	/**
+	 * Returns the number of nodes reachable from the start node.
+	 * @return the number of nodes in the tree.
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns the number of the given node.
+	 * @param node
+	 * @return the number of the given node or <code>-1</code> if the 
+	 * node is not reachable from the start node.
+	 */
+	public int getNumber(ICFGNode<N> node) {
+		Integer result = numbers.get(node);
+		return result == null ? -1 : result;
+	}
+
+	/**
+	 * Returns the node with the given number.
+	 * @param number
+	 * @return the node with the given number.
+	 */
+	public ICFGNode<N> getNode(int number) {
+		return nodes[number];
+	}
+	
+	/**
+	 * Returns the numbers of the given node's reachable predecessors, 
+	 * one for each incoming edge.
+	 * Callers must not modify the returned array.
+	 * @param number
+	 * @return the numbers of the given node's reachable predecessors.
+	 */
+	public int[] getPredecessors(int number) {
+		return preds[number];
+	}
+	
+	/**
+	 * Returns the numbers of the given node's successors, one for each outgoing edge.
+	 * Callers must not modify the returned array.
+	 * @param number
+	 * @return the numbers of the given node's successors.
+	 */
+	public int[] getSuccessors(int number) {
+		return succs[number];
+	}
+
+	/**
+	 * Returns the number of the given node's immediate dominator.
+	 * @param number
+	 * @return the number of the given node's immediate dominator or 
+	 * <code>-1</code> for the start node.
+	 */
+	public int getImmediateDominator(int number) {
+		return idom[number];
+	}
+
+	/**
+	 * Returns the given node's immediate dominator.
+	 * @param node
+	 * @return the given node's immediate dominator or <code>null</code>
+	 * for the start node and unreachable nodes.
+	 */
+	public ICFGNode<N> getImmediateDominator(ICFGNode<N> node) {
+		int number = getNumber(node);
+		if(number <= 0)
+			return null;
+		return nodes[idom[number]];
+	}
+	
+	/**
+	 * Returns the numbers of the nodes immediately dominated by the given node, 
+	 * in increasing order.
+	 * Callers must not modify the returned array.
+	 * @param number
+	 * @return the numbers of the given node's children in the dominator tree.
+	 */
+	public int[] getChildren(int number) {
+		return children[number];
+	}
+	
+	/**
+	 * Determines whether the first node dominates the second.  
+	 * Every node dominates itself.
+	 * @param dominator
+	 * @param node
+	 * @return <code>true</code> if <code>dominator</code> dominates <code>node</code>,
+	 * <code>false</code> otherwise.
+	 */
+	public boolean dominates(int dominator, int node) {
+		return preorder[dominator] <= preorder[node] && 
+			preorder[node] <= lastDescendant[dominator];
+	}
+
+	/**
+	 * Determines whether the first node dominates the second.  
+	 * Every reachable node dominates itself.
+	 * @param dominator
+	 * @param node
+	 * @return <code>true</code> if <code>dominator</code> dominates <code>node</code>,
+	 * <code>false</code> otherwise, including if either node is unreachable.
+	 */
+	public boolean dominates(ICFGNode<N> dominator, ICFGNode<N> node) {
+		int d = getNumber(dominator);
+		int n = getNumber(node);
+		if(d < 0 || n < 0)
+			return false;
+		return dominates(d, n);
+	}
+
+	/**
+	 * Returns the numbers of the nodes in the given node's dominance frontier, which
+	 * are the nodes where the given node's dominance ends: 
+	 * the node dominates a predecessor of each node in its frontier
+	 * but does not strictly dominate the frontier node itself.
+	 * Callers must not modify the returned array.
+	 * @param number
+	 * @return the numbers of the nodes in the given node's dominance frontier.
+	 */
+	public synchronized int[] getDominanceFrontier(int number) {
+		if(frontiers == null)
+			frontiers = computeFrontiers();
+		return frontiers[number];
+	}
+	
+	private int[][] computeFrontiers() {
+		final int size = nodes.length;
+		int[][] result = new int[size][];
+		int[] counts = new int[size];
+		for(int b = 0; b < size; ++b) {
+			if(preds[b].length < 2)
+				continue;
+			for(int p : preds[b]) {
+				int runner = p;
+				while(runner != idom[b] && runner >= 0) {
+					// a runner can reach b through several predecessors
+					int count = counts[runner];
+					if(count == 0 || result[runner][count - 1] != b) {
+						if(result[runner] == null)
+							result[runner] = new int[2];
+						else if(count == result[runner].length) {
+							int[] grown = new int[count * 2];
+							System.arraycopy(result[runner], 0, grown, 0, count);
+							result[runner] = grown;
+						}
+						result[runner][count] = b;
+						counts[runner] = count + 1;
+					}
+					runner = idom[runner];
+				}
+			}
+		}
+		for(int i = 0; i < size; ++i) {
+			if(counts[i] == 0)
+				result[i] = NONE;
+			else if(counts[i] < result[i].length) {
+				int[] trimmed = new int[counts[i]];
+				System.arraycopy(result[i], 0, trimmed, 0, counts[i]);
+				result[i] = trimmed;
+			}
+		}
+		return result;
+	}
+
+}
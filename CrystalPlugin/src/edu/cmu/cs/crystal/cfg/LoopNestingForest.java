@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.cfg;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Natural loops of a control flow graph and how they nest.  An edge is a back 
+ * edge if its sink dominates its source; the sink is then a loop header, and the 
+ * loop consists of the header and all nodes that can reach the back edge's source 
+ * without going through the header.  Loops with the same header are merged.
+ * Every loop is nested in the innermost other loop that contains its header,
+ * which makes the loops a forest.
+ * <p>
+ * Loops are found with a single pass over loop headers from innermost to outermost,
+ * collapsing inner loops into their headers with a union-find structure, so that 
+ * every node is assigned to its innermost loop once.  Afterwards, the loop depth
+ * of nodes, as well as of AST nodes, is available in constant time.
+ * Only nodes reachable from the start node are part of loops.  Irreducible 
+ * control flow, which Java code does not produce, is not recognized as a loop.
+ * 
+ * @param <N> Type of AST nodes in the control flow graph.
+ * @see DominatorTree
+ */
+public class LoopNestingForest<N> {
+	
+	private final DominatorTree<N> dominators;
+	/** Innermost loop of each node, indexed by node number, or <code>-1</code>. */
+	private final int[] innermost;
+	/** Number of each loop's header, indexed by loop. */
+	private final int[] headers;
+	/** Enclosing loop of each loop, or <code>-1</code> for outermost loops. */
+	private final int[] parents;
+	/** Depth of each loop, starting with 1 for outermost loops. */
+	private final int[] depths;
+	/** Largest loop depth of the nodes for each AST node. */
+	private final Map<N, Integer> astDepths;
+
+	/**
+	 * Finds the loops in the given control flow graph.
+	 * @param cfg
+	 */
+	public LoopNestingForest(IControlFlowGraph<N> cfg) {
+		this(new DominatorTree<N>(cfg));
+	}
+
+	/**
+	 * Finds the loops in the graph the given dominator tree was computed for.
+	 * @param dominators Forward dominator tree.
+	 */
+	public LoopNestingForest(DominatorTree<N> dominators) {
+		this.dominators = dominators;
+		final int size = dominators.size();
+		
+		// headers of loops that contain each node, -1 if none;
+		// for headers, the loop containing the header's loop
+		int[] loopOf = new int[size];
+		// union-find representatives: nodes in processed loops point towards their header
+		int[] representative = new int[size];
+		boolean[] isHeader = new boolean[size];
+		for(int i = 0; i < size; ++i) {
+			loopOf[i] = -1;
+			representative[i] = i;
+		}
+		int loopCount = 0;
+		int[] stack = new int[size];
+		
+		// headers dominate the nodes in their loops, so inner headers have larger 
+		// reverse post-order numbers than the headers of loops they are nested in
+		for(int h = size - 1; h >= 0; --h) {
+			int top = 0;
+			for(int p : dominators.getPredecessors(h)) {
+				if(dominators.dominates(h, p))
+					stack[top++] = p;
+			}
+			if(top == 0)
+				continue;
+			isHeader[h] = true;
+			++loopCount;
+			while(top > 0) {
+				int n = find(representative, stack[--top]);
+				if(n == h)
+					continue;
+				// n is a node or the header of an inner loop not yet assigned to an outer loop
+				representative[n] = h;
+				loopOf[n] = h;
+				for(int p : dominators.getPredecessors(n)) {
+					if(top == stack.length) {
+						int[] grown = new int[top * 2];
+						System.arraycopy(stack, 0, grown, 0, top);
+						stack = grown;
+					}
+					stack[top++] = p;
+				}
+			}
+		}
+		
+		// number loops from outermost to innermost headers
+		headers = new int[loopCount];
+		parents = new int[loopCount];
+		depths = new int[loopCount];
+		int[] loopIndex = new int[size];
+		int loop = 0;
+		for(int h = 0; h < size; ++h) {
+			if(isHeader[h] == false)
+				continue;
+			loopIndex[h] = loop;
+			headers[loop] = h;
+			parents[loop] = loopOf[h] < 0 ? -1 : loopIndex[loopOf[h]];
+			depths[loop] = parents[loop] < 0 ? 1 : depths[parents[loop]] + 1;
+			++loop;
+		}
+		innermost = new int[size];
+		astDepths = new HashMap<N, Integer>();
+		for(int n = 0; n < size; ++n) {
+			if(isHeader[n])
+				innermost[n] = loopIndex[n];
+			else
+				innermost[n] = loopOf[n] < 0 ? -1 : loopIndex[loopOf[n]];
+			N astNode = dominators.getNode(n).getASTNode();
+			if(astNode != null) {
+				int depth = innermost[n] < 0 ? 0 : depths[innermost[n]];
+				Integer known = astDepths.get(astNode);
+				if(known == null || known < depth)
+					astDepths.put(astNode, depth);
+			}
+		}
+	}
+
+	private static int find(int[] representative, int node) {
+		int root = node;
+		while(representative[root] != root)
+			root = representative[root];
+		// path compression
+		while(representative[node] != root) {
+			int next = representative[node];
+			representative[node] = root;
+			node = next;
+		}
+		return root;
+	}
+
+	/**
+	 * Returns the dominator tree loops were found with, which also defines
+	 * the node numbers used by this class.
+	 * @return the dominator tree loops were found with.
+	 */
+	public DominatorTree<N> getDominatorTree() {
+		return dominators;
+	}
+
+	/**
+	 * Returns the number of loops.
+	 * @return the number of loops.
+	 */
+	public int getLoopCount() {
+		return headers.length;
+	}
+
+	/**
+	 * Returns the given loop's header.  Loops are numbered such that 
+	 * enclosing loops have smaller numbers than the loops nested in them.
+	 * @param loop
+	 * @return the given loop's header.
+	 */
+	public ICFGNode<N> getHeader(int loop) {
+		return dominators.getNode(headers[loop]);
+	}
+
+	/**
+	 * Returns the loop the given loop is nested in.
+	 * @param loop
+	 * @return the loop the given loop is nested in or <code>-1</code>
+	 * for outermost loops.
+	 */
+	public int getParent(int loop) {
+		return parents[loop];
+	}
+
+	/**
+	 * Returns the number of loops the given loop is nested in, plus 1.
+	 * @param loop
+	 * @return the given loop's depth, starting with 1 for outermost loops.
+	 */
+	public int getDepth(int loop) {
+		return depths[loop];
+	}
+
+	/**
+	 * Returns the innermost loop containing the given node.
+	 * @param node
+	 * @return the innermost loop containing the given node or <code>-1</code> 
+	 * if the node is not in a loop.
+	 */
+	public int getLoop(ICFGNode<N> node) {
+		int number = dominators.getNumber(node);
+		return number < 0 ? -1 : innermost[number];
+	}
+
+	/**
+	 * Determines whether the given node is a loop header.
+	 * @param node
+	 * @return <code>true</code> if the given node is the header of a loop,
+	 * <code>false</code> otherwise.
+	 */
+	public boolean isLoopHeader(ICFGNode<N> node) {
+		int loop = getLoop(node);
+		return loop >= 0 && headers[loop] == dominators.getNumber(node);
+	}
+
+	/**
+	 * Returns the number of loops containing the given node.
+	 * @param node
+	 * @return the number of loops containing the given node, 0 if the node
+	 * is not in a loop or unreachable.
+	 */
+	public int getLoopDepth(ICFGNode<N> node) {
+		int loop = getLoop(node);
+		return loop < 0 ? 0 : depths[loop];
+	}
+
+	/**
+	 * Returns the largest number of loops containing any of the nodes 
+	 * for the given AST node.
+	 * @param astNode
+	 * @return the loop depth of the given AST node or <code>-1</code> if 
+	 * no reachable node corresponds to the given AST node.
+	 */
+	public int getASTLoopDepth(N astNode) {
+		Integer result = astDepths.get(astNode);
+		return result == null ? -1 : result;
+	}
+
+}
@@ -137,6 +137,15 @@ import edu.cmu.cs.crystal.flow.SwitchLabel;
  * children. - In the endvisit method, we put together the CFG for this node and its children (with
  * the exception of any edges that were added by children through the data structures.
  * 
+ * Finally blocks: By default, returns, breaks, continues, and throws that leave a try statement
+ * with a finally block share one copy of the finally block with all other paths that continue 
+ * at the same place, so the graph needs one copy of each finally block per place control can
+ * continue at after it rather than one per exit.  Analyses then merge the information of the
+ * paths to the same place before the finally block instead of after it.  Analyses that need 
+ * to distinguish these paths can build graphs that 
+ * {@link #EclipseCFG(MethodDeclaration, boolean) duplicate finally blocks} for every exit, which
+ * can make the graph grow multiplicatively with the number of exits and nested try statements.
+ * 
  * @author ciera
  */
 public class EclipseCFG extends ASTVisitor implements IControlFlowGraph<ASTNode>, Cloneable {
@@ -151,6 +160,24 @@ public class EclipseCFG extends ASTVisitor implements IControlFlowGraph<ASTNode>
 
 	// protected EclipseCFGNode normalExit;
 
+	/**
+	 * System property that makes control flow graphs duplicate finally blocks for every
+	 * exit through them by default.
+	 * @see #EclipseCFG(MethodDeclaration, boolean)
+	 */
+	public static final String DUPLICATE_FINALLY_PROPERTY = "edu.cmu.cs.crystal.cfg.duplicateFinally";
+
+	/**
+	 * Whether finally blocks are copied for every abrupt exit through them.
+	 */
+	protected final boolean duplicateFinally;
+
+	/**
+	 * Copies of finally blocks shared between paths, by original finally block and by
+	 * the node the paths continue at.
+	 */
+	private Map<EclipseCFGNode, Map<EclipseCFGNode, EclipseCFGNode>> sharedFinallyCopies;
+
 	protected BlockStack<EclipseCFGNode> blockStack;
 
 	protected ExceptionMap<ASTNode, EclipseCFGNode> exceptionMap;
@@ -169,10 +196,24 @@ public class EclipseCFG extends ASTVisitor implements IControlFlowGraph<ASTNode>
 	private EclipseCFGNode undeclExit;
 
 	public EclipseCFG(MethodDeclaration method) {
+		this(method, Boolean.getBoolean(DUPLICATE_FINALLY_PROPERTY));
+	}
+
+	/**
+	 * Builds the control flow graph for the given method.
+	 * @param method
+	 * @param duplicateFinally <code>true</code> to copy finally blocks for every return, break, 
+	 * continue, and exception that leaves them, so analyses can tell these paths apart; 
+	 * <code>false</code> to share copies of finally blocks between paths that continue 
+	 * at the same place.
+	 */
+	public EclipseCFG(MethodDeclaration method, boolean duplicateFinally) {
 		nodeMap = new HashMap<ASTNode, EclipseCFGNode>();
 		blockStack = new BlockStack<EclipseCFGNode>();
 		exceptionMap = new ExceptionMap<ASTNode, EclipseCFGNode>();
 		EclipseCFGNode.NEXT_ID = 0;
+		this.duplicateFinally = duplicateFinally;
+		sharedFinallyCopies = new HashMap<EclipseCFGNode, Map<EclipseCFGNode, EclipseCFGNode>>();
 		createGraph(method);
 	}
 
@@ -181,6 +222,8 @@ public class EclipseCFG extends ASTVisitor implements IControlFlowGraph<ASTNode>
 		blockStack = new BlockStack<EclipseCFGNode>();
 		exceptionMap = new ExceptionMap<ASTNode, EclipseCFGNode>();
 		EclipseCFGNode.NEXT_ID = 0;
+		this.duplicateFinally = Boolean.getBoolean(DUPLICATE_FINALLY_PROPERTY);
+		sharedFinallyCopies = new HashMap<EclipseCFGNode, Map<EclipseCFGNode, EclipseCFGNode>>();
 	}
 
 	public void createGraph(MethodDeclaration method) {
@@ -285,16 +328,38 @@ public class EclipseCFG extends ASTVisitor implements IControlFlowGraph<ASTNode>
 	 * blocks DIRECTLY to the destination. By directly, this means that it won't call getEnd or
 	 * getStart. It uses the exceptionToStopAt to determine which finally blocks to grab. It will
 	 * also make the edge from the source to the finally block have this exception. A normal edge
-	 * will be used when exceptionToStopAt is null
+	 * will be used when exceptionToStopAt is null.  If this graph duplicates finally blocks, 
+	 * the finally blocks are copied for this path.  Otherwise, the copies made for an earlier
+	 * path to the same destination are reused, and the path joins them at the first finally 
+	 * block that was already copied for this destination.
 	 */
 	protected void hookFinally(EclipseCFGNode source, ITypeBinding exceptionToStopAt,
 	    EclipseCFGNode dest) {
 		Stack<EclipseCFGNode> finallyStack = exceptionMap.getFinallyToException(exceptionToStopAt);
 		EclipseCFGNode last = null, current = null, cloneCurrent = null, first = null;
+		boolean joined = false;
 
-		while (!finallyStack.isEmpty()) {
+		while (!finallyStack.isEmpty() && !joined) {
 			current = finallyStack.pop();
-			cloneCurrent = copySubgraph(current);
+			if (duplicateFinally) {
+				cloneCurrent = copySubgraph(current);
+			}
+			else {
+				Map<EclipseCFGNode, EclipseCFGNode> copies = sharedFinallyCopies.get(current);
+				if (copies == null) {
+					copies = new HashMap<EclipseCFGNode, EclipseCFGNode>();
+					sharedFinallyCopies.put(current, copies);
+				}
+				cloneCurrent = copies.get(dest);
+				if (cloneCurrent == null) {
+					cloneCurrent = copySubgraph(current);
+					copies.put(dest, cloneCurrent);
+				}
+				else {
+					// the rest of the way to dest was hooked up by an earlier path
+					joined = true;
+				}
+			}
 
 			if (first == null)
 				first = cloneCurrent;
@@ -309,7 +374,8 @@ public class EclipseCFG extends ASTVisitor implements IControlFlowGraph<ASTNode>
 				createEdge(source, first.getStart());
 			else
 				createEdge(source, first.getStart(), exceptionToStopAt);
-			createEdge(last.getEnd(), dest);
+			if (!joined)
+				createEdge(last.getEnd(), dest);
 		}
 		else {
 			// no finally
@@ -44,6 +44,13 @@ public class EclipseNodeFirstCFG extends EclipseCFG {
 		super(method);
 	}
 
+	/**
+	 * @see EclipseCFG#EclipseCFG(MethodDeclaration, boolean)
+	 */
+	public EclipseNodeFirstCFG(MethodDeclaration method, boolean duplicateFinally) {
+		super(method, duplicateFinally);
+	}
+
 	@Override
 	public boolean visit(DoStatement node) {
 		EclipseCFGNode doBegin = nodeMap.get(node);
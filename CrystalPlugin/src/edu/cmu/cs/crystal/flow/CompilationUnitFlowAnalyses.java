@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.cmu.cs.crystal.util.Option;
+
+/**
+ * Registry of the flow analyses that ran on a compilation unit, so that
+ * analyses running on the same compilation unit can reuse each other's
+ * results instead of computing the same fixpoints again.  Flow analyses are
+ * published under a {@link Key} that identifies the analysis publishing 
+ * them and the transfer function they use.  Published flow analyses are
+ * shared between analyses and must not be reconfigured.
+ * 
+ * @see edu.cmu.cs.crystal.IAnalysisInput#getComUnitFlowAnalyses()
+ * @see edu.cmu.cs.crystal.IDependentAnalysis
+ */
+public class CompilationUnitFlowAnalyses {
+
+	private final Map<Key<?>, IFlowAnalysis<?>> analyses;
+
+	public CompilationUnitFlowAnalyses() {
+		this.analyses = new HashMap<Key<?>, IFlowAnalysis<?>>();
+	}
+
+	/**
+	 * Returns the flow analysis published under the given key.
+	 * @param <A> The type of flow analysis published under the key.
+	 * @param key
+	 * @return the flow analysis published under the given key, if any.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <A extends IFlowAnalysis<?>> Option<A> get(Key<A> key) {
+		return Option.wrap((A) analyses.get(key));
+	}
+
+	/**
+	 * Publishes the given flow analysis under the given key, replacing
+	 * any flow analysis previously published under the same key.
+	 * @param <A> The type of flow analysis published under the key.
+	 * @param key
+	 * @param analysis
+	 */
+	public synchronized <A extends IFlowAnalysis<?>> void put(Key<A> key, A analysis) {
+		analyses.put(key, analysis);
+	}
+
+	/**
+	 * Releases all published flow analyses.
+	 */
+	public synchronized void clear() {
+		analyses.clear();
+	}
+
+	/**
+	 * Identifies a published flow analysis by the name of the 
+	 * {@link edu.cmu.cs.crystal.ICrystalAnalysis analysis} that publishes it
+	 * and the class of the transfer function it uses.  Keys with the same
+	 * name and transfer function are equal, so they must be used with the same 
+	 * type of flow analysis.  Analyses should therefore keep their keys in constants.
+	 * 
+	 * @param <A> The type of flow analysis published under this key.
+	 */
+	public static final class Key<A extends IFlowAnalysis<?>> {
+		private final String analysisName;
+		private final Class<?> transferFunction;
+
+		/**
+		 * @param analysisName The name of the analysis publishing the flow analysis.
+		 * @param transferFunction The class of the transfer function the flow analysis uses.
+		 */
+		public Key(String analysisName, Class<?> transferFunction) {
+			if (analysisName == null || transferFunction == null)
+				throw new NullPointerException();
+			this.analysisName = analysisName;
+			this.transferFunction = transferFunction;
+		}
+
+		public String getAnalysisName() {
+			return analysisName;
+		}
+
+		public Class<?> getTransferFunction() {
+			return transferFunction;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * analysisName.hashCode() + transferFunction.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key<?> other = (Key<?>) obj;
+			return analysisName.equals(other.analysisName) && 
+				transferFunction.equals(other.transferFunction);
+		}
+
+		@Override
+		public String toString() {
+			return analysisName + "/" + transferFunction.getSimpleName();
+		}
+	}
+}
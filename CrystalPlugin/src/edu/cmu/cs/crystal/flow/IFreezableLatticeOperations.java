@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow;
+
+/**
+ * Lattice operations can implement this interface in addition to 
+ * {@link ILatticeOperations} to promise that lattice elements can be frozen,
+ * which allows flow analyses to share lattice elements instead of copying them.
+ * Implementers must guarantee the following:
+ * <ul>
+ * <li>{@link #freeze(Object)} makes the given lattice element immutable.
+ * Immutable lattice elements can simply be frozen by returning them.</li>
+ * <li>{@link #join(Object, Object, Object)} and 
+ * {@link #atLeastAsPrecise(Object, Object, Object)} never modify their arguments.
+ * (<code>join</code> may however return one of its arguments if it is frozen.)</li>
+ * <li>{@link #copy(Object)} returns a mutable lattice element that can be modified
+ * without affecting the original, even if the original is frozen.  
+ * The copy can share state with the original, e.g., until it is first modified.</li>
+ * </ul>
+ * Crystal's worklist algorithm freezes all lattice elements it keeps as results.
+ * It still copies lattice elements before handing them to transfer functions, 
+ * but it no longer copies them to protect them from joins.  Notice that analysis
+ * results, e.g., from {@link IFlowAnalysis#getResultsAfter(org.eclipse.jdt.core.dom.ASTNode)},
+ * are therefore frozen as well.
+ * 
+ * @param <LE> Analysis information being tracked.
+ * @param <N> Nodes our lattice information is computed over
+ * @see LatticeUtilities
+ * @see edu.cmu.cs.crystal.util.Freezable
+ */
+public interface IFreezableLatticeOperations<LE, N> extends IAbstractLatticeOperations<LE, N> {
+
+	/**
+	 * Freezes the given lattice element so that it can no longer be modified.
+	 * Freezing an already frozen lattice element has no effect.
+	 * @param info Analysis information to be frozen.
+	 * @return The given lattice element, now frozen.
+	 */
+	public LE freeze(LE info);
+
+}
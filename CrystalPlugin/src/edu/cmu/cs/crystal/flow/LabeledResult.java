@@ -108,21 +108,21 @@ public class LabeledResult<LE> implements IResult<LE> {
 		mergedLabels.addAll(keySet());
 		mergedLabels.addAll(otherResult.keySet());
 
-		otherLattice = op.copy(otherResult.get(null));
-		mergedResult = LabeledResult.createResult(op.join(op.copy(defaultValue), otherLattice, null));
+		otherLattice = LatticeUtilities.copyForJoin(op, otherResult.get(null));
+		mergedResult = LabeledResult.createResult(op.join(LatticeUtilities.copyForJoin(op, defaultValue), otherLattice, null));
 		
 		for (ILabel label : mergedLabels) {
 			if (otherLabels.contains(label) && labelMap.containsKey(label)) {
-				otherLattice = op.copy(otherResult.get(label));
-				thisLattice = op.copy(get(label));
+				otherLattice = LatticeUtilities.copyForJoin(op, otherResult.get(label));
+				thisLattice = LatticeUtilities.copyForJoin(op, get(label));
 				mergedResult.put(label, op.join(thisLattice, otherLattice, null));
 			}
 			else if (otherLabels.contains(label)) {
-				otherLattice = op.copy(otherResult.get(label));
+				otherLattice = LatticeUtilities.copyForJoin(op, otherResult.get(label));
 				mergedResult.put(label, otherLattice);
 			}
 			else {
-				thisLattice = op.copy(get(label));
+				thisLattice = LatticeUtilities.copyForJoin(op, get(label));
 				mergedResult.put(label, thisLattice);
 			}
 		}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow;
+
+/**
+ * Helpers for treating lattice elements according to the guarantees their
+ * lattice operations make.
+ * 
+ * @see IFreezableLatticeOperations
+ */
+public final class LatticeUtilities {
+
+	private LatticeUtilities() {
+		// static methods only
+	}
+
+	/**
+	 * Determines whether the given lattice operations support freezing lattice elements.
+	 * @param ops
+	 * @return <code>true</code> if the given lattice operations support freezing, 
+	 * <code>false</code> otherwise.
+	 */
+	public static boolean isFreezable(IAbstractLatticeOperations<?, ?> ops) {
+		return ops instanceof IFreezableLatticeOperations;
+	}
+
+	/**
+	 * Returns a lattice element that can be passed to 
+	 * {@link IAbstractLatticeOperations#join(Object, Object, Object)} without affecting
+	 * the given lattice element.  This is the given element itself if the given lattice 
+	 * operations {@link #isFreezable(IAbstractLatticeOperations) support freezing}, 
+	 * because then joins do not modify their arguments, and a copy otherwise.
+	 * @param <LE>
+	 * @param ops
+	 * @param info
+	 * @return a lattice element that can be safely joined.
+	 */
+	public static <LE> LE copyForJoin(IAbstractLatticeOperations<LE, ?> ops, LE info) {
+		if(ops instanceof IFreezableLatticeOperations)
+			return info;
+		return ops.copy(info);
+	}
+
+	/**
+	 * Freezes the given lattice element if the given lattice operations 
+	 * {@link #isFreezable(IAbstractLatticeOperations) support freezing}.
+	 * @param <LE>
+	 * @param ops
+	 * @param info
+	 * @return The given lattice element.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <LE> LE freeze(IAbstractLatticeOperations<LE, ?> ops, LE info) {
+		if(ops instanceof IFreezableLatticeOperations)
+			return ((IFreezableLatticeOperations<LE, ?>) ops).freeze(info);
+		return info;
+	}
+
+	/**
+	 * Freezes the lattice elements for all labels in the given result if the given 
+	 * lattice operations {@link #isFreezable(IAbstractLatticeOperations) support freezing}.
+	 * @param <LE>
+	 * @param ops
+	 * @param result
+	 * @return The given result.
+	 */
+	public static <LE> IResult<LE> freezeResult(IAbstractLatticeOperations<LE, ?> ops, IResult<LE> result) {
+		if(ops instanceof IFreezableLatticeOperations) {
+			for(ILabel label : result.keySet())
+				freeze(ops, result.get(label));
+		}
+		return result;
+	}
+
+}
@@ -31,8 +31,11 @@ import org.eclipse.jdt.core.dom.MethodDeclaration;
 
 import edu.cmu.cs.crystal.cfg.ICFGNode;
 import edu.cmu.cs.crystal.flow.worklist.AnalysisResult;
+import edu.cmu.cs.crystal.flow.worklist.CompilationUnitCFGs;
 import edu.cmu.cs.crystal.flow.worklist.WorklistFactory;
+import edu.cmu.cs.crystal.flow.worklist.WorklistStrategy;
 import edu.cmu.cs.crystal.flow.worklist.WorklistTemplate;
+import edu.cmu.cs.crystal.util.BoundedCache;
 import edu.cmu.cs.crystal.util.Option;
 import edu.cmu.cs.crystal.util.Utilities;
 
@@ -52,6 +55,12 @@ public abstract class MotherFlowAnalysis<LE> implements IFlowAnalysis<LE> {
 	
 	public static final Logger log = Logger.getLogger(MotherFlowAnalysis.class.getName());
 	
+	/**
+	 * Default number of methods whose results are cached.
+	 * @see #setResultCacheSize(int)
+	 */
+	public static final int DEFAULT_RESULT_CACHE_SIZE = 16;
+	
 	/**
 	 * the resulting lattices for each node in the control flow graph
 	 * for the method analyzed last.  Whenever results for an AST node
@@ -70,6 +79,7 @@ public abstract class MotherFlowAnalysis<LE> implements IFlowAnalysis<LE> {
 	
 	/**
 	 * Map to find CFGNodes corresponding to AST nodes.
+	 * This map may be shared with other analyses of the same method and is read-only.
 	 */
 	private Map<ASTNode, Set<ICFGNode<ASTNode>>> nodeMap = new HashMap<ASTNode, Set<ICFGNode<ASTNode>>>();
 
@@ -79,13 +89,72 @@ public abstract class MotherFlowAnalysis<LE> implements IFlowAnalysis<LE> {
 
 	private ICFGNode<ASTNode> cfgEndNode;
 	
+	/**
+	 * Results for recently analyzed methods, including the current method.
+	 * Switching back to a cached method restores its results instead of
+	 * re-running the worklist algorithm.
+	 */
+	private final BoundedCache<MethodDeclaration, AnalysisResult<LE, ASTNode, ILatticeOperations<LE>>> resultCache = 
+		new BoundedCache<MethodDeclaration, AnalysisResult<LE, ASTNode, ILatticeOperations<LE>>>(DEFAULT_RESULT_CACHE_SIZE, true);
+	
+	/** Number of nodes transferred over by worklist runs of this analysis. */
+	private long transferCount;
+	
 	/**
 	 * Initializes a fresh flow analysis object.
 	 */
-	public MotherFlowAnalysis() {
+	public MotherFlowAnalysis() {
 		this.factory = new WorklistFactory();
 	}
 	
+	/**
+	 * Sets the number of methods whose results are cached, which 
+	 * is {@link #DEFAULT_RESULT_CACHE_SIZE} by default.  Results for the least
+	 * recently used method are evicted when the cache is full.  
+	 * A size of 0 disables caching, meaning that results are only
+	 * kept for the method analyzed last.
+	 * @param size Number of methods whose results are cached.
+	 */
+	public void setResultCacheSize(int size) {
+		resultCache.setMaxSize(size);
+	}
+	
+	/**
+	 * Determines whether cached results are held through soft references,
+	 * which is the default.  Soft references allow the garbage collector 
+	 * to evict cached results when memory is tight.  This setting affects
+	 * results cached subsequently.
+	 * @param soft <code>true</code> to allow evicting results when memory
+	 * is tight, <code>false</code> to only evict results when the cache is full.
+	 */
+	public void setSoftResultCache(boolean soft) {
+		resultCache.setSoft(soft);
+	}
+	
+	/**
+	 * Returns how often switching to a method found its results in the cache.
+	 * @return the number of cache hits.
+	 */
+	public long getResultCacheHits() {
+		return resultCache.getHits();
+	}
+	
+	/**
+	 * Returns how often switching to a method required running the 
+	 * worklist algorithm.
+	 * @return the number of cache misses.
+	 */
+	public long getResultCacheMisses() {
+		return resultCache.getMisses();
+	}
+	
+	/**
+	 * Discards all cached results, except for the method analyzed last.
+	 */
+	public void clearResultCache() {
+		resultCache.clear();
+	}
+	
 	/**
 	 * Use the given progress monitor to cancel subsequent flow analysis runs.
 	 * Previously computed results may still be available.
@@ -99,6 +168,64 @@ public abstract class MotherFlowAnalysis<LE> implements IFlowAnalysis<LE> {
 		this.factory.setMonitor(monitor.isNone() ? null : monitor.unwrap());
 	}
 	
+	/**
+	 * Use control flow graphs from the given cache in subsequent flow analysis runs
+	 * instead of building fresh control flow graphs every time.
+	 * @param cfgs Cache of control flow graphs for the compilation unit being analyzed, 
+	 * or {@link Option#none()} to build fresh control flow graphs.
+	 * @see edu.cmu.cs.crystal.IAnalysisInput#getComUnitCFGs()
+	 */
+	public void setCompilationUnitCFGs(Option<CompilationUnitCFGs> cfgs) {
+		this.factory.setCompilationUnitCFGs(cfgs.isNone() ? null : cfgs.unwrap());
+	}
+	
+	/**
+	 * Run subsequent flow analyses on control flow graphs that duplicate finally blocks 
+	 * for every return, break, continue, and exception that leaves them.  By default,
+	 * paths that continue at the same place share a copy of each finally block, which 
+	 * merges analysis information from these paths before the finally block instead of
+	 * after it.  Call this before any results are computed.
+	 * @param duplicateFinally <code>true</code> to keep the paths through finally blocks apart.
+	 * @see edu.cmu.cs.crystal.cfg.eclipse.EclipseCFG#DUPLICATE_FINALLY_PROPERTY
+	 */
+	public void setDuplicateFinally(boolean duplicateFinally) {
+		this.factory.setDuplicateFinally(duplicateFinally);
+	}
+	
+	/**
+	 * Determines whether subsequent worklist runs visit basic blocks or individual 
+	 * nodes, which is the default.  Results for the nodes inside a basic block are 
+	 * computed lazily by transferring over the block again, so analyses should only 
+	 * turn this on if their transfer functions compute the same result when invoked 
+	 * twice with the same input.
+	 * @param useBasicBlocks <code>true</code> to visit basic blocks.
+	 * @see edu.cmu.cs.crystal.flow.worklist.WorklistTemplate#BASIC_BLOCKS_PROPERTY
+	 */
+	public void setUseBasicBlocks(boolean useBasicBlocks) {
+		this.factory.setUseBasicBlocks(useBasicBlocks);
+	}
+	
+	/**
+	 * Determines the order in which subsequent worklist runs visit pending nodes.
+	 * The default is reverse post-order.
+	 * @param strategy
+	 * @see edu.cmu.cs.crystal.flow.worklist.WorklistTemplate#WORKLIST_STRATEGY_PROPERTY
+	 */
+	public void setWorklistStrategy(WorklistStrategy strategy) {
+		this.factory.setWorklistStrategy(strategy);
+	}
+	
+	/**
+	 * Returns the number of times worklist runs of this analysis transferred over 
+	 * a node, summed over all analyzed methods.  Methods whose results were
+	 * restored from the cache do not add to this count.
+	 * @return the number of times this analysis transferred over a node.
+	 * @see WorklistTemplate#getTransferCount()
+	 */
+	public long getTransferCount() {
+		return transferCount;
+	}
+	
 	@Deprecated
 	public LE getResultsBefore(ASTNode node) {
     	return getResultsBeforeCFG(node);
@@ -143,10 +270,11 @@ public abstract class MotherFlowAnalysis<LE> implements IFlowAnalysis<LE> {
 	 * 					have a corresponding control flow node.
 	 */
     protected LE getResultsOrNull(ASTNode node, boolean getAfter, boolean useAST) {
-		if(nodeMap.containsKey(node) == false)
-			performAnalysisOnSurroundingMethodIfNeeded(node);
-
 		Set<ICFGNode<ASTNode>> cfgnodes = nodeMap.get(node);
+		if(cfgnodes == null) {
+			performAnalysisOnSurroundingMethodIfNeeded(node);
+			cfgnodes = nodeMap.get(node);
+		}
 
     	if(cfgnodes == null || cfgnodes.isEmpty()) {
     		if(log.isLoggable(Level.FINE))
@@ -217,18 +345,19 @@ public abstract class MotherFlowAnalysis<LE> implements IFlowAnalysis<LE> {
     	LE result = null;
     	for(LE r : results.values()) {
     		if(result == null)
-    			result = currentLattice.copy(r);
+    			result = LatticeUtilities.copyForJoin(currentLattice, r);
     		else
-    			result = currentLattice.join(result, currentLattice.copy(r), node);
+    			result = currentLattice.join(result, LatticeUtilities.copyForJoin(currentLattice, r), node);
     	}
 		return result;
 	}
 
     public IResult<LE> getLabeledResultsBefore(ASTNode node) {
-		if(nodeMap.containsKey(node) == false)
-			performAnalysisOnSurroundingMethodIfNeeded(node);
-
 		Set<ICFGNode<ASTNode>> cfgnodes = nodeMap.get(node);
+		if(cfgnodes == null) {
+			performAnalysisOnSurroundingMethodIfNeeded(node);
+			cfgnodes = nodeMap.get(node);
+		}
 
     	if(cfgnodes == null || cfgnodes.isEmpty()) {
     		if(log.isLoggable(Level.FINE))
@@ -253,10 +382,11 @@ public abstract class MotherFlowAnalysis<LE> implements IFlowAnalysis<LE> {
    	}
     
     public IResult<LE> getLabeledResultsAfter(ASTNode node) {
-		if(nodeMap.containsKey(node) == false)
-			performAnalysisOnSurroundingMethodIfNeeded(node);
-
 		Set<ICFGNode<ASTNode>> cfgnodes = nodeMap.get(node);
+		if(cfgnodes == null) {
+			performAnalysisOnSurroundingMethodIfNeeded(node);
+			cfgnodes = nodeMap.get(node);
+		}
 
     	if(cfgnodes == null || cfgnodes.isEmpty()) {
     		if(log.isLoggable(Level.FINE))
@@ -353,9 +483,9 @@ public abstract class MotherFlowAnalysis<LE> implements IFlowAnalysis<LE> {
     	LE result = null;
     	for(ILabel label : labeledResult.keySet()) {
     		if(result == null)
-    			result = checkNull(currentLattice.copy(labeledResult.get(label)));
+    			result = checkNull(LatticeUtilities.copyForJoin(currentLattice, labeledResult.get(label)));
     		else
-    			result = checkNull(currentLattice.join(result, checkNull(currentLattice.copy(labeledResult.get(label))), node));
+    			result = checkNull(currentLattice.join(result, checkNull(LatticeUtilities.copyForJoin(currentLattice, labeledResult.get(label))), node));
     	}
 		return result;
 	}
@@ -372,12 +502,14 @@ public abstract class MotherFlowAnalysis<LE> implements IFlowAnalysis<LE> {
 	 */
     protected IResult<LE> getLabeledResultBefore(ICFGNode<ASTNode> node) {
     	// Retrieve results for the ControlFlowNode
-    	if(labeledResultsBefore.containsKey(node))
-    		return labeledResultsBefore.get(node);
+    	IResult<LE> result = labeledResultsBefore.get(node);
+    	if(result != null)
+    		return result;
     	// If results have not yet been collected, collect and retrieve again 
     	performAnalysisOnSurroundingMethodIfNeeded(node.getASTNode());
-    	if(labeledResultsBefore.containsKey(node))
-    		return labeledResultsBefore.get(node);
+    	result = labeledResultsBefore.get(node);
+    	if(result != null)
+    		return result;
 		if(log.isLoggable(Level.FINE))
 			log.fine("Unable to get results after CFG node [" + node + "]");
 		return null;
@@ -395,12 +527,14 @@ public abstract class MotherFlowAnalysis<LE> implements IFlowAnalysis<LE> {
 	 */
     protected IResult<LE> getLabeledResultAfter(ICFGNode<ASTNode> node) {
     	// Retrieve results for the ControlFlowNode
-    	if(labeledResultsAfter.containsKey(node))
-    		return labeledResultsAfter.get(node);
+    	IResult<LE> result = labeledResultsAfter.get(node);
+    	if(result != null)
+    		return result;
     	// If results have not yet been collected, collect and retrieve again 
     	performAnalysisOnSurroundingMethodIfNeeded(node.getASTNode());
-    	if(labeledResultsAfter.containsKey(node))
-    		return labeledResultsAfter.get(node);
+    	result = labeledResultsAfter.get(node);
+    	if(result != null)
+    		return result;
 		if(log.isLoggable(Level.FINE))
 			log.fine("Unable to get results after CFG node [" + node + "]");
 		return null;
@@ -418,20 +552,48 @@ public abstract class MotherFlowAnalysis<LE> implements IFlowAnalysis<LE> {
     
     /**
      * Runs worklist algorithm on given method, if not already analyzed.
-     * @param node A node that must be inside a method.
-     * 
-     * Nels: Caching only works if this was the last method to be analyzed? Is there an assumption
-     * that methods are analyzed in order an never returned to?
+     * Results for recently analyzed methods are cached, so switching back
+     * to one of them restores its results without re-running the worklist algorithm.
+     * @param methodDecl The method to switch to.
+     * @see #setResultCacheSize(int)
+     * @see #methodResultsRestored(MethodDeclaration)
      */
     protected void switchToMethod(MethodDeclaration methodDecl) {
-    	if(methodDecl != currentMethod)
+    	if(methodDecl == currentMethod)
+    		return;
+    	AnalysisResult<LE, ASTNode, ILatticeOperations<LE>> result = resultCache.get(methodDecl);
+    	if(result == null)
     		performAnalysis(methodDecl);
+    	else {
+    		currentMethod = methodDecl;
+    		useResult(result);
+    		methodResultsRestored(methodDecl);
+    	}
+    }
+    
+    /**
+     * Hook called when {@link #switchToMethod(MethodDeclaration)} restores 
+     * cached results for the given method instead of analyzing it.
+     * Subclasses that keep per-method state outside of the analysis results 
+     * should switch that state to the given method here.  
+     * The default implementation does nothing.
+     * @param methodDecl The method whose results were restored, which is now
+     * the {@link #getCurrentMethod() current method}.
+     */
+    protected void methodResultsRestored(MethodDeclaration methodDecl) {
+    	// nothing to do by default
     }
     
     private void performAnalysis(MethodDeclaration methodDecl) {
     	currentMethod = methodDecl;
     	WorklistTemplate<LE, ASTNode, ILatticeOperations<LE>> worklist = createWorklist(methodDecl);
     	AnalysisResult<LE, ASTNode, ILatticeOperations<LE>> result = worklist.performAnalysis();
+    	transferCount += worklist.getTransferCount();
+    	resultCache.put(methodDecl, result);
+    	useResult(result);
+    }
+    
+    private void useResult(AnalysisResult<LE, ASTNode, ILatticeOperations<LE>> result) {
     	labeledResultsBefore = result.getLabeledResultsBefore();
     	labeledResultsAfter = result.getLabeledResultsAfter();
     	nodeMap = result.getNodeMap();
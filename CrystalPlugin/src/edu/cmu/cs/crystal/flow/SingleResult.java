@@ -64,17 +64,17 @@ public class SingleResult<LE> implements IResult<LE> {
 	public IResult<LE> join(IResult<LE> otherResult, IAbstractLatticeOperations<LE, ?> op) {
 		if (otherResult instanceof SingleResult) {
 			return new SingleResult<LE>(
-					op.join(op.copy(singleValue), op.copy(((SingleResult<LE>) otherResult).singleValue), null));
+					op.join(LatticeUtilities.copyForJoin(op, singleValue), LatticeUtilities.copyForJoin(op, ((SingleResult<LE>) otherResult).singleValue), null));
 		}
 		LE otherLattice, mergedLattice;
 		LabeledResult<LE> mergedResult;
 		
-		otherLattice = op.copy(otherResult.get(null));
-		mergedResult = LabeledResult.createResult(op.join(op.copy(singleValue), otherLattice, null));
+		otherLattice = LatticeUtilities.copyForJoin(op, otherResult.get(null));
+		mergedResult = LabeledResult.createResult(op.join(LatticeUtilities.copyForJoin(op, singleValue), otherLattice, null));
 		
 		for (ILabel label : mergedResult.keySet()) {
-			otherLattice = op.copy(otherResult.get(label));
-			mergedLattice = op.join(op.copy(singleValue), otherLattice, null);
+			otherLattice = LatticeUtilities.copyForJoin(op, otherResult.get(label));
+			mergedLattice = op.join(LatticeUtilities.copyForJoin(op, singleValue), otherLattice, null);
 			mergedResult.put(label, mergedLattice);
 		}
 		
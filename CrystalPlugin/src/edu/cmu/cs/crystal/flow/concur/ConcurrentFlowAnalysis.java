@@ -19,41 +19,66 @@
  */
 package edu.cmu.cs.crystal.flow.concur;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-
-import org.eclipse.jdt.core.dom.ASTNode;
-import org.eclipse.jdt.core.dom.MethodDeclaration;
-
-import edu.cmu.cs.crystal.flow.FlowAnalysis;
-import edu.cmu.cs.crystal.flow.IBranchSensitiveTransferFunction;
-import edu.cmu.cs.crystal.flow.IFlowAnalysis;
-import edu.cmu.cs.crystal.flow.IResult;
-import edu.cmu.cs.crystal.flow.ITransferFunction;
-import edu.cmu.cs.crystal.internal.Crystal;
-import edu.cmu.cs.crystal.util.Utilities;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+import edu.cmu.cs.crystal.flow.FlowAnalysis;
+import edu.cmu.cs.crystal.flow.IBranchSensitiveTransferFunction;
+import edu.cmu.cs.crystal.flow.IFlowAnalysis;
+import edu.cmu.cs.crystal.flow.IResult;
+import edu.cmu.cs.crystal.flow.ITransferFunction;
+import edu.cmu.cs.crystal.internal.Crystal;
+import edu.cmu.cs.crystal.internal.CrystalRuntimeException;
+import edu.cmu.cs.crystal.util.DaemonThreadFactory;
+import edu.cmu.cs.crystal.util.Lambda;
+import edu.cmu.cs.crystal.util.Utilities;
 
 /**
- * An implementation of IFlowAnalysis that analyzes methods in
- * concurrently. Creates a thread pool, and when analyzedPreemtively
- * is called (or the constructor that takes a list of methods) we
- * generate a future for each method declaration, force its analysis
- * in a brand new FlowAnalysis object, and store that in a mapping
- * from method declarations to IFlowAnalysis objects. Later, we can
- * delegate the standard flow analysis methods on the future, forcing its
- * completion.
+ * An implementation of IFlowAnalysis that analyzes methods
+ * concurrently.  When {@link #analyzePreemitively(List)} is called (or the 
+ * constructor that takes a list of methods), we submit a task for each method
+ * declaration to an executor.  The task forces the method's analysis
+ * in a brand new flow analysis object, so different methods never share
+ * a flow analysis object.  Later, we delegate the standard flow analysis methods 
+ * to the flow analysis object for the method surrounding the given node, waiting 
+ * for its analysis to finish if necessary.  Methods that were not submitted 
+ * up front are analyzed on the calling thread when results are first requested,
+ * and so are submitted methods whose analysis has not started yet.
+ * <p>
+ * By default, tasks run on a {@link #getSharedExecutor() shared executor} with
+ * one daemon thread per processor, which lives until {@link #shutdownSharedExecutor()}
+ * is called.  Alternatively, clients can provide their own executor.
+ * Results for different methods can be requested from different threads.
+ * If analyzing a method fails, requesting results for that method throws
+ * a {@link CrystalRuntimeException} with the original exception as its cause.
+ * <p>
+ * Each method gets its own flow analysis object, but transfer functions
+ * given to the constructors are shared between them, so they must be
+ * thread-safe.  To use stateful transfer functions, including 3-address code
+ * transfer functions, create flow analyses with a 
+ * {@link #ConcurrentFlowAnalysis(Lambda, Executor) factory} that instantiates
+ * a new transfer function for every flow analysis object, or use 
+ * {@link ConcurrentTACFlowAnalysis}.
  * 
  * This class is EXPERIMENTAL because certain shared classes, most notably
- * EclipseTAC, are not yet thought to be thread-safe. The biggest worry is
- * that there is no memory barrier between different analyses.
+ * EclipseTAC, are not yet thought to be thread-safe.
  * 
  * @author Nels Beckman
  *
@@ -62,51 +87,158 @@ import edu.cmu.cs.crystal.util.Utilities;
 public class ConcurrentFlowAnalysis<LE> 
 implements IFlowAnalysis<LE> {
 	
+	private static final Logger log = Logger.getLogger(ConcurrentFlowAnalysis.class.getName());
+	
 	/**
-	 * Thread pool for executing concurrent flow analyses.
+	 * Thread pool shared by all concurrent flow analyses that
+	 * do not use their own executor.
 	 */
-	private ExecutorService threadPool = 
-		Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-	
-	private final Map<MethodDeclaration, Future<IFlowAnalysis<LE>>> analyzedMethods = 
-		new HashMap<MethodDeclaration, Future<IFlowAnalysis<LE>>>();  
+	private static ExecutorService sharedThreadPool;
 	
-	private final Crystal myCrystal;
-	private final ITransferFunction<LE> transferFunction;
-	protected final IFlowAnalysis<LE> defaultFlowAnalysis;
+	/**
+	 * Returns the thread pool shared by all concurrent flow analyses that do not 
+	 * use their own executor, creating it if necessary.  The pool has one daemon
+	 * thread per processor.
+	 * @return the thread pool shared by concurrent flow analyses.
+	 */
+	public static synchronized ExecutorService getSharedExecutor() {
+		if(sharedThreadPool == null || sharedThreadPool.isShutdown())
+			sharedThreadPool = Executors.newFixedThreadPool(
+					Runtime.getRuntime().availableProcessors(),
+					new DaemonThreadFactory("Crystal flow analysis "));
+		return sharedThreadPool;
+	}
 	
-	@SuppressWarnings("unused")
-	private ConcurrentFlowAnalysis() {
-		throw new RuntimeException("Bug: Invalid constuctor called");
+	/**
+	 * Shuts down the shared thread pool.  Methods submitted but not yet 
+	 * analyzed are analyzed when their results are requested.  
+	 * The next concurrent flow analysis created will create a new shared thread pool.
+	 */
+	public static synchronized void shutdownSharedExecutor() {
+		if(sharedThreadPool != null) {
+			sharedThreadPool.shutdown();
+			sharedThreadPool = null;
+		}
 	}
 	
+	private final ConcurrentMap<MethodDeclaration, FutureTask<IFlowAnalysis<LE>>> analyzedMethods = 
+		new ConcurrentHashMap<MethodDeclaration, FutureTask<IFlowAnalysis<LE>>>();  
+	
+	private final Lambda<MethodDeclaration, ? extends IFlowAnalysis<LE>> flowAnalysisFactory;
+	private final Executor executor;
+	
+	/**
+	 * Refers to this object, which delegates to the flow analysis object 
+	 * of the method surrounding a given node.
+	 * @deprecated Every method now has its own flow analysis object; 
+	 * use {@link #getFlowAnalysis(MethodDeclaration)} or this object directly.
+	 */
+	@Deprecated
+	protected final IFlowAnalysis<LE> defaultFlowAnalysis = this;
+	
 	/**
 	 * Creates a new concurrent flow analysis and begins to analyze the given
 	 * method bodies immediately. 
 	 * @param transferFunction The transfer function defining the analysis.
 	 * @param methods Starts analyzing these methods immediately in background threads.
-	 * @param crystal
+	 * @param crystal Ignored.
+	 * @deprecated Use {@link #ConcurrentFlowAnalysis(ITransferFunction, List)} instead.
 	 */
+	@Deprecated
 	public ConcurrentFlowAnalysis(ITransferFunction<LE> transferFunction,
 			List<MethodDeclaration> methods,
 			Crystal crystal) {
-		
-		this(transferFunction, crystal);
-		analyzePreemitively(methods);
+		this(transferFunction, methods);
 	}
 	
 	/**
 	 * Creates a new concurrent flow analysis but does not analyze any methods
 	 * immediately. 
-	 * @see #analyzePreemitively
-	 * @param transferFunction
-	 * @param crystal
+	 * @param transferFunction The transfer function defining the analysis.
+	 * @param crystal Ignored.
+	 * @deprecated Use {@link #ConcurrentFlowAnalysis(ITransferFunction)} instead.
 	 */
+	@Deprecated
 	public ConcurrentFlowAnalysis(ITransferFunction<LE> transferFunction,
 			Crystal crystal) {
-		this.myCrystal = crystal;
-		this.transferFunction = transferFunction;
-		this.defaultFlowAnalysis = this.createNewFlowAnalysis(transferFunction, crystal);
+		this(transferFunction);
+	}
+	
+	/**
+	 * Creates a new concurrent flow analysis and begins to analyze the given
+	 * method bodies immediately. 
+	 * @param transferFunction The transfer function defining the analysis.
+	 * It will be used concurrently, so it must be thread-safe.
+	 * @param methods Starts analyzing these methods immediately in background threads.
+	 */
+	public ConcurrentFlowAnalysis(ITransferFunction<LE> transferFunction,
+			List<MethodDeclaration> methods) {
+		this(transferFunction);
+		analyzePreemitively(methods);
+	}
+	
+	/**
+	 * Creates a new concurrent flow analysis but does not analyze any methods
+	 * immediately. 
+	 * @see #analyzePreemitively
+	 * @param transferFunction The transfer function defining the analysis.
+	 * It will be used concurrently, so it must be thread-safe.
+	 */
+	public ConcurrentFlowAnalysis(final ITransferFunction<LE> transferFunction) {
+		this(new Lambda<MethodDeclaration, IFlowAnalysis<LE>>() {
+			@SuppressWarnings("unchecked")
+			public IFlowAnalysis<LE> call(MethodDeclaration method) {
+				if(transferFunction instanceof IBranchSensitiveTransferFunction)
+					return new FlowAnalysis<LE>((IBranchSensitiveTransferFunction<LE>) transferFunction);
+				return new FlowAnalysis<LE>(transferFunction);
+			}
+		}, getSharedExecutor());
+	}
+	
+	/**
+	 * Creates a new concurrent, branch-sensitive flow analysis and begins to 
+	 * analyze the given method bodies immediately. 
+	 * @param transferFunction The transfer function defining the analysis.
+	 * It will be used concurrently, so it must be thread-safe.
+	 * @param methods Starts analyzing these methods immediately in background threads.
+	 */
+	public ConcurrentFlowAnalysis(IBranchSensitiveTransferFunction<LE> transferFunction,
+			List<MethodDeclaration> methods) {
+		this(transferFunction);
+		analyzePreemitively(methods);
+	}
+	
+	/**
+	 * Creates a new concurrent, branch-sensitive flow analysis but does not 
+	 * analyze any methods immediately. 
+	 * @see #analyzePreemitively
+	 * @param transferFunction The transfer function defining the analysis.
+	 * It will be used concurrently, so it must be thread-safe.
+	 */
+	public ConcurrentFlowAnalysis(final IBranchSensitiveTransferFunction<LE> transferFunction) {
+		this(new Lambda<MethodDeclaration, IFlowAnalysis<LE>>() {
+			public IFlowAnalysis<LE> call(MethodDeclaration method) {
+				return new FlowAnalysis<LE>(transferFunction);
+			}
+		}, getSharedExecutor());
+	}
+	
+	/**
+	 * Creates a new concurrent flow analysis that uses the given factory
+	 * to create a flow analysis object for every analyzed method and runs
+	 * analyses on the given executor.  Does not analyze any methods immediately.
+	 * @see #analyzePreemitively
+	 * @param flowAnalysisFactory Creates a fresh flow analysis object 
+	 * for the given method.  The returned object will only be used for the given method.
+	 * The factory may be called from different threads.
+	 * @param executor Executor for analyzing methods in the background.
+	 * Callers are responsible for shutting down the executor.
+	 */
+	public ConcurrentFlowAnalysis(
+			Lambda<MethodDeclaration, ? extends IFlowAnalysis<LE>> flowAnalysisFactory,
+			Executor executor) {
+		this.flowAnalysisFactory = flowAnalysisFactory;
+		this.executor = executor;
 	}
 	
 	/**
@@ -115,177 +247,162 @@ implements IFlowAnalysis<LE> {
 	 * performed in another thread. If you have already called the constructor
 	 * that takes a list of methods, calling this method is not required unless
 	 * you have added new methods to analyze.
+	 * If the executor does not accept more tasks, the remaining methods will
+	 * be analyzed when their results are requested.
 	 * 
 	 * @param methods
 	 */
 	public void analyzePreemitively(List<MethodDeclaration> methods) {
 		for(final MethodDeclaration decl: methods) {
-			if( this.analyzedMethods.containsKey(decl) ) continue;
-			
-			Future<IFlowAnalysis<LE>> future =
-				threadPool.submit(new Callable<IFlowAnalysis<LE>>() {
-					public IFlowAnalysis<LE> call() throws Exception {
-						IFlowAnalysis<LE> analyzer =
-							ConcurrentFlowAnalysis.this.createNewFlowAnalysis(transferFunction, myCrystal);
-						/*
-						 * TODO: Ugly, we are forcing an analysis by calling getresults
-						 * on the method declaration. This only works because of my
-						 * inside knowledge of how FlowAnalysis works and is not inherent
-						 * in the interface of the method.
-						 */
-						analyzer.getResultsAfter(decl);
-						return analyzer;
-					}
+			FutureTask<IFlowAnalysis<LE>> task = createTask(decl);
+			if(analyzedMethods.putIfAbsent(decl, task) != null)
+				continue;
+			try {
+				executor.execute(task);
+			}
+			catch(RejectedExecutionException e) {
+				if(log.isLoggable(Level.FINE))
+					log.log(Level.FINE, "Executor rejected method, will analyze it on demand: " + decl.getName(), e);
+			}
+		}
+	}
 
-				});
-			
-			analyzedMethods.put(decl, future);
+	/**
+	 * Cancels analyses that have not started yet and discards all results.
+	 * Analyses that are already running will finish but their results will
+	 * be discarded.  Results requested subsequently will be recomputed.
+	 */
+	public void cancel() {
+		for(Future<IFlowAnalysis<LE>> f : analyzedMethods.values()) {
+			f.cancel(false);
 		}
+		analyzedMethods.clear();
 	}
 	
-	@SuppressWarnings("unchecked")
-	private IFlowAnalysis<LE> createNewFlowAnalysis(ITransferFunction<LE> transferFunction,
-			Crystal crystal) {
-		/*
-		 * This will be called once for each method so that threads
-		 * will not step on each other. In ConcurrentTACFlowAnalysis,
-		 * hopefully we can just override this to return an TACFA.
-		 */
-		if( transferFunction instanceof IBranchSensitiveTransferFunction ) {
-			return new FlowAnalysis<LE>((IBranchSensitiveTransferFunction<LE>)transferFunction);
+	private FutureTask<IFlowAnalysis<LE>> createTask(final MethodDeclaration decl) {
+		return new FutureTask<IFlowAnalysis<LE>>(new Callable<IFlowAnalysis<LE>>() {
+			public IFlowAnalysis<LE> call() {
+				// failures are reported to whoever requests results for this method
+				IFlowAnalysis<LE> analyzer = flowAnalysisFactory.call(decl);
+				/*
+				 * TODO: Ugly, we are forcing an analysis by calling getresults
+				 * on the method declaration. This only works because of my
+				 * inside knowledge of how FlowAnalysis works and is not inherent
+				 * in the interface of the method.
+				 */
+				analyzer.getResultsAfterCFG(decl);
+				return analyzer;
+			}
+		});
+	}
+	
+	/**
+	 * Returns the flow analysis object for the given method, analyzing the method
+	 * on the calling thread if its analysis has not started yet and waiting for the 
+	 * analysis to finish if it is running in another thread.
+	 * @param decl
+	 * @return the flow analysis object for the given method.
+	 * @throws CrystalRuntimeException If analyzing the given method failed.
+	 * @throws CancellationException If analyzing the given method was canceled,
+	 * or the calling thread was interrupted while waiting for results.
+	 */
+	public IFlowAnalysis<LE> getFlowAnalysis(MethodDeclaration decl) {
+		FutureTask<IFlowAnalysis<LE>> task = analyzedMethods.get(decl);
+		if(task == null) {
+			FutureTask<IFlowAnalysis<LE>> newTask = createTask(decl);
+			task = analyzedMethods.putIfAbsent(decl, newTask);
+			if(task == null)
+				task = newTask;
 		}
-		else {
-			return new FlowAnalysis<LE>(transferFunction);
+		// runs the analysis here unless it is already running or done
+		task.run();
+		try {
+			return task.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Interrupted while waiting for results for method " + decl.getName());
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof CancellationException)
+				// preserve cancellation so Crystal recognizes it
+				throw new CancellationException(cause.getMessage());
+			if(cause instanceof Error)
+				throw (Error) cause;
+			throw new CrystalRuntimeException("Flow analysis failed for method " + decl.getName(), cause);
 		}
 	}
 	
-	public IResult<LE> getLabeledResultsAfter(ASTNode node) {
-		/*
-		 * TODO: Need a find a way to get rid of this call...
-		 */
+	/**
+	 * Returns the flow analysis object for the method surrounding the given node.
+	 * @param node
+	 * @return the flow analysis object for the method surrounding the given node.
+	 * @throws IllegalArgumentException If the given node is not inside a method.
+	 * @see #getFlowAnalysis(MethodDeclaration)
+	 */
+	protected IFlowAnalysis<LE> getFlowAnalysis(ASTNode node) {
 		MethodDeclaration decl = Utilities.getMethodDeclaration(node);
-		
-		if( decl!= null && this.analyzedMethods.containsKey(decl) ) {
-			try {
-				return this.analyzedMethods.get(decl).get().getLabeledResultsAfter(node);
-			} catch (Exception e) {/* Do nothing, let fall through to default. */ }
-		}
-		return addAsFakeFuture(decl,defaultFlowAnalysis).getLabeledResultsAfter(node);
+		if(decl == null)
+			throw new IllegalArgumentException("Node is not inside a method: " + node);
+		return getFlowAnalysis(decl);
+	}
+	
+	public IResult<LE> getLabeledResultsAfter(ASTNode node) {
+		return getFlowAnalysis(node).getLabeledResultsAfter(node);
 	}
 
 	public IResult<LE> getLabeledResultsBefore(ASTNode node) {
-		MethodDeclaration decl = Utilities.getMethodDeclaration(node);
-		
-		if( decl!= null && this.analyzedMethods.containsKey(decl) ) {
-			try {
-				return this.analyzedMethods.get(decl).get().getLabeledResultsBefore(node);
-			} catch (Exception e) {/* Do nothing, let fall through to default. */ }
-		}
-		return addAsFakeFuture(decl,defaultFlowAnalysis).getLabeledResultsBefore(node);
+		return getFlowAnalysis(node).getLabeledResultsBefore(node);
+	}
+
+	@Deprecated
+	public LE getResultsAfter(ASTNode node) {
+		return getResultsAfterCFG(node);
 	}
-
+
 	@Deprecated
-	public LE getResultsAfter(ASTNode node) {
-		return getResultsAfterCFG(node);
-	}
-
-	@Deprecated
-	public LE getResultsBefore(ASTNode node) {
-		return getResultsBeforeCFG(node);
-	}
-
+	public LE getResultsBefore(ASTNode node) {
+		return getResultsBeforeCFG(node);
+	}
+
 	public LE getResultsAfterCFG(ASTNode node) {
-		MethodDeclaration decl = Utilities.getMethodDeclaration(node);
-		
-		if( decl!= null && this.analyzedMethods.containsKey(decl) ) {
-			try {
-				return this.analyzedMethods.get(decl).get().getResultsAfterCFG(node);
-			} catch (Exception e) {/* Do nothing, let fall through to default. */ }
-		}
-		return addAsFakeFuture(decl,defaultFlowAnalysis).getResultsAfterCFG(node);
+		return getFlowAnalysis(node).getResultsAfterCFG(node);
 	}
-
-	public LE getResultsBeforeCFG(ASTNode node) {
-		MethodDeclaration decl = Utilities.getMethodDeclaration(node);
-		
-		if( decl!= null && this.analyzedMethods.containsKey(decl) ) {
-			try {
-				return this.analyzedMethods.get(decl).get().getResultsBeforeCFG(node);
-			} catch (Exception e) {/* Do nothing, let fall through to default. */ }
-		}
-		return addAsFakeFuture(decl,defaultFlowAnalysis).getResultsBeforeCFG(node);
-	}
-
-	public LE getResultsBeforeAST(ASTNode node) {
-		MethodDeclaration decl = Utilities.getMethodDeclaration(node);
-		
-		if( decl!= null && this.analyzedMethods.containsKey(decl) ) {
-			try {
-				return this.analyzedMethods.get(decl).get().getResultsBeforeAST(node);
-			} catch (Exception e) {/* Do nothing, let fall through to default. */ }
-		}
-		return addAsFakeFuture(decl,defaultFlowAnalysis).getResultsBeforeAST(node);
-	}
-
-	public LE getResultsAfterAST(ASTNode node) {
-		MethodDeclaration decl = Utilities.getMethodDeclaration(node);
-		
-		if( decl!= null && this.analyzedMethods.containsKey(decl) ) {
-			try {
-				return this.analyzedMethods.get(decl).get().getResultsAfterAST(node);
-			} catch (Exception e) {/* Do nothing, let fall through to default. */ }
-		}
-		return addAsFakeFuture(decl,defaultFlowAnalysis).getResultsAfterAST(node);
-	}
-
-
-	/*
-	 * In an effort provide further caching, this method will add the given
-	 * method declaration to the analyzedMethods map immediately, without
-	 * attempting to perform any computation asynchronously (hence the FAKE future).
-	 * Can't decide if this is a good idea or not... 
-	 */
-	private IFlowAnalysis<LE> addAsFakeFuture(MethodDeclaration decl, 
-			final IFlowAnalysis<LE> fa) {
-		this.analyzedMethods.put(decl, new Future<IFlowAnalysis<LE>>() {
-			public boolean cancel(boolean mayInterruptIfRunning) {
-				return false;
-			}
-			public IFlowAnalysis<LE> get() throws InterruptedException, ExecutionException {
-				return fa;
-			}
-			public IFlowAnalysis<LE> get(long timeout, TimeUnit unit)
-					throws InterruptedException, ExecutionException,
-					TimeoutException {
-				return fa;
-			}
-			public boolean isCancelled() {
-				return false;
-			}
-			public boolean isDone() {
-				return true;
-			}
-		});
-		return fa;
+
+	public LE getResultsBeforeCFG(ASTNode node) {
+		return getFlowAnalysis(node).getResultsBeforeCFG(node);
 	}
 
-	protected Map<MethodDeclaration, Future<IFlowAnalysis<LE>>> getAnalyzedMethods() {
-		return analyzedMethods;
+	public LE getResultsBeforeAST(ASTNode node) {
+		return getFlowAnalysis(node).getResultsBeforeAST(node);
+	}
+
+	public LE getResultsAfterAST(ASTNode node) {
+		return getFlowAnalysis(node).getResultsAfterAST(node);
+	}
+
+	/**
+	 * Returns a read-only view of the methods submitted or analyzed so far.
+	 * @return a read-only view of the methods submitted or analyzed so far.
+	 */
+	protected Map<MethodDeclaration, ? extends Future<IFlowAnalysis<LE>>> getAnalyzedMethods() {
+		return Collections.unmodifiableMap(analyzedMethods);
 	}
 
 	public LE getEndResults(MethodDeclaration d) {
-		throw new UnsupportedOperationException("Unimplemented");
+		return getFlowAnalysis(d).getEndResults(d);
 	}
 
 	public IResult<LE> getLabeledEndResult(MethodDeclaration d) {
-		throw new UnsupportedOperationException("Unimplemented");
+		return getFlowAnalysis(d).getLabeledEndResult(d);
 	}
 
 	public IResult<LE> getLabeledStartResult(MethodDeclaration d) {
-		throw new UnsupportedOperationException("Unimplemented");
+		return getFlowAnalysis(d).getLabeledStartResult(d);
 	}
 
 	public LE getStartResults(MethodDeclaration d) {
-		throw new UnsupportedOperationException("Unimplemented");
+		return getFlowAnalysis(d).getStartResults(d);
 	}
 }
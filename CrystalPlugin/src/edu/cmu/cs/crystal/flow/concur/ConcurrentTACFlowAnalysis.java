@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.concur;
+
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+import edu.cmu.cs.crystal.flow.IResult;
+import edu.cmu.cs.crystal.tac.ITACFlowAnalysis;
+import edu.cmu.cs.crystal.tac.TACFlowAnalysis;
+import edu.cmu.cs.crystal.tac.model.SourceVariable;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.ThisVariable;
+import edu.cmu.cs.crystal.tac.model.Variable;
+import edu.cmu.cs.crystal.util.Lambda;
+
+/**
+ * Concurrent flow analysis over 3-address code.  3-address code transfer 
+ * functions are bound to the flow analysis object using them, so the factory 
+ * given to the constructor must create a new transfer function for every
+ * flow analysis object it creates, for instance:
+ * <pre>
+ * new Lambda&lt;MethodDeclaration, ITACFlowAnalysis&lt;LE&gt;&gt;() {
+ *     public ITACFlowAnalysis&lt;LE&gt; call(MethodDeclaration method) {
+ *         return new TACFlowAnalysis&lt;LE&gt;(new MyTransferFunction(), compUnitTacs);
+ *     }
+ * }
+ * </pre>
+ * Both branch-sensitive and branch-insensitive transfer functions can be used 
+ * this way.
+ * Queries are answered by the flow analysis object for the method surrounding
+ * the given node or instruction.
+ * 
+ * @param <LE>
+ * @see ConcurrentFlowAnalysis
+ * @see TACFlowAnalysis
+ */
+public class ConcurrentTACFlowAnalysis<LE> extends ConcurrentFlowAnalysis<LE>
+implements ITACFlowAnalysis<LE> {
+
+	/**
+	 * Creates a new concurrent flow analysis that uses the given factory
+	 * to create a flow analysis object for every analyzed method and runs
+	 * analyses on the {@link #getSharedExecutor() shared executor}.  
+	 * Does not analyze any methods immediately.
+	 * @param flowAnalysisFactory Creates a fresh flow analysis object with a
+	 * fresh transfer function for the given method.
+	 * @see #analyzePreemitively
+	 */
+	public ConcurrentTACFlowAnalysis(
+			Lambda<MethodDeclaration, ? extends ITACFlowAnalysis<LE>> flowAnalysisFactory) {
+		super(flowAnalysisFactory, getSharedExecutor());
+	}
+
+	/**
+	 * Creates a new concurrent flow analysis that uses the given factory
+	 * to create a flow analysis object for every analyzed method and runs
+	 * analyses on the given executor.  Does not analyze any methods immediately.
+	 * @param flowAnalysisFactory Creates a fresh flow analysis object with a
+	 * fresh transfer function for the given method.
+	 * @param executor Executor for analyzing methods in the background.
+	 * Callers are responsible for shutting down the executor.
+	 * @see #analyzePreemitively
+	 */
+	public ConcurrentTACFlowAnalysis(
+			Lambda<MethodDeclaration, ? extends ITACFlowAnalysis<LE>> flowAnalysisFactory,
+			Executor executor) {
+		super(flowAnalysisFactory, executor);
+	}
+
+	/**
+	 * Returns the flow analysis object for the given method.
+	 * @param decl
+	 * @return the flow analysis object for the given method.
+	 * @see #getFlowAnalysis(MethodDeclaration)
+	 */
+	public ITACFlowAnalysis<LE> getTACFlowAnalysis(MethodDeclaration decl) {
+		return (ITACFlowAnalysis<LE>) getFlowAnalysis(decl);
+	}
+
+	/**
+	 * Returns the flow analysis object for the method surrounding the given node.
+	 * @param node
+	 * @return the flow analysis object for the method surrounding the given node.
+	 * @see #getFlowAnalysis(ASTNode)
+	 */
+	protected ITACFlowAnalysis<LE> getTACFlowAnalysis(ASTNode node) {
+		return (ITACFlowAnalysis<LE>) getFlowAnalysis(node);
+	}
+
+	public LE getResultsBefore(TACInstruction instr) {
+		return getTACFlowAnalysis(instr.getNode()).getResultsBefore(instr);
+	}
+
+	public LE getResultsAfter(TACInstruction instr) {
+		return getTACFlowAnalysis(instr.getNode()).getResultsAfter(instr);
+	}
+
+	public IResult<LE> getLabeledResultsBefore(TACInstruction instr) {
+		return getTACFlowAnalysis(instr.getNode()).getLabeledResultsBefore(instr);
+	}
+
+	public IResult<LE> getLabeledResultsAfter(TACInstruction instr) {
+		return getTACFlowAnalysis(instr.getNode()).getLabeledResultsAfter(instr);
+	}
+
+	public Variable getVariable(ASTNode node) {
+		return getTACFlowAnalysis(node).getVariable(node);
+	}
+
+	public ThisVariable getThisVariable(MethodDeclaration methodDecl) {
+		return getTACFlowAnalysis(methodDecl).getThisVariable(methodDecl);
+	}
+
+	/**
+	 * The variable is looked up in the flow analysis object for the method 
+	 * declaring the given local or parameter, which must have been 
+	 * submitted or analyzed before.
+	 */
+	public SourceVariable getSourceVariable(IVariableBinding varBinding) {
+		IMethodBinding declaringMethod = varBinding.getDeclaringMethod();
+		if(declaringMethod == null)
+			throw new IllegalArgumentException("Not a local or parameter: " + varBinding);
+		for(MethodDeclaration decl : getAnalyzedMethods().keySet()) {
+			if(declaringMethod.equals(decl.resolveBinding()))
+				return getTACFlowAnalysis(decl).getSourceVariable(varBinding);
+		}
+		throw new IllegalArgumentException("Not analyzing method declaring variable: " + varBinding);
+	}
+
+	/**
+	 * The implicit <b>this</b> variable belongs to the method surrounding the 
+	 * access, and the accessed element's binding does not say which method that is.  
+	 * Therefore, the variable is looked up in the flow analysis object for the 
+	 * only method submitted or analyzed so far.  Clients that analyze more than 
+	 * one method with this object must use 
+	 * {@link #getImplicitThisVariable(IBinding, MethodDeclaration)} instead.
+	 * @throws IllegalStateException If more or less than one method was 
+	 * submitted or analyzed.
+	 * @see #getImplicitThisVariable(IBinding, MethodDeclaration)
+	 */
+	public ThisVariable getImplicitThisVariable(IBinding accessedElement) {
+		Iterator<MethodDeclaration> methods = getAnalyzedMethods().keySet().iterator();
+		if(methods.hasNext()) {
+			MethodDeclaration accessingMethod = methods.next();
+			if(methods.hasNext() == false)
+				return getImplicitThisVariable(accessedElement, accessingMethod);
+		}
+		throw new IllegalStateException("Accessing method ambiguous for implicit this: " + accessedElement);
+	}
+
+	/**
+	 * Returns the implicit <b>this</b> variable for accessing a given method 
+	 * or field from the given method.  The variable is looked up in the flow 
+	 * analysis object for the accessing method, which is analyzed if necessary.
+	 * @param accessedElement
+	 * @param accessingMethod The method surrounding the access.
+	 * @return the implicit this for the accessed element.
+	 * @see ITACFlowAnalysis#getImplicitThisVariable(IBinding)
+	 */
+	public ThisVariable getImplicitThisVariable(IBinding accessedElement, MethodDeclaration accessingMethod) {
+		return getTACFlowAnalysis(accessingMethod).getImplicitThisVariable(accessedElement);
+	}
+
+	public ASTNode getNode(Variable x, TACInstruction instruction) {
+		return getTACFlowAnalysis(instruction.getNode()).getNode(x, instruction);
+	}
+
+}
@@ -32,7 +32,9 @@ import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
 
+import edu.cmu.cs.crystal.cfg.CompactCFG;
 import edu.cmu.cs.crystal.cfg.IControlFlowGraph;
+import edu.cmu.cs.crystal.cfg.eclipse.EclipseCFG;
 import edu.cmu.cs.crystal.cfg.eclipse.EclipseNodeFirstCFG;
 import edu.cmu.cs.crystal.flow.ILatticeOperations;
 
@@ -46,6 +48,9 @@ public abstract class AbstractWorklist<LE> extends WorklistTemplate<LE, ASTNode,
 	
 	private final MethodDeclaration method;
 	private final IProgressMonitor monitor;
+	private CompilationUnitCFGs cfgs;
+	private boolean duplicateFinally = Boolean.getBoolean(EclipseCFG.DUPLICATE_FINALLY_PROPERTY);
+	private boolean compactCFG = Boolean.getBoolean(CompactCFG.COMPACT_CFG_PROPERTY);
 	private int lastLine = -1;
 	
 	public AbstractWorklist(MethodDeclaration method) {
@@ -60,7 +65,47 @@ public abstract class AbstractWorklist<LE> extends WorklistTemplate<LE, ASTNode,
 	
 	@Override
 	protected IControlFlowGraph<ASTNode> getControlFlowGraph() {
-		return new EclipseNodeFirstCFG(method);
+		IControlFlowGraph<ASTNode> cfg = new EclipseNodeFirstCFG(method, duplicateFinally);
+		return compactCFG ? new CompactCFG<ASTNode>(cfg) : cfg;
+	}
+	
+	@Override
+	protected WorklistGraph<ASTNode> getWorklistGraph() {
+		if(cfgs == null)
+			return super.getWorklistGraph();
+		return cfgs.getMethodGraph(method, duplicateFinally);
+	}
+	
+	/**
+	 * Use control flow graphs from the given cache instead of 
+	 * building a fresh control flow graph for this worklist run.
+	 * @param cfgs Cache of control flow graphs or <code>null</code>
+	 * to build a fresh control flow graph.
+	 */
+	public void setCompilationUnitCFGs(CompilationUnitCFGs cfgs) {
+		this.cfgs = cfgs;
+	}
+
+	/**
+	 * Determines whether this worklist runs on a control flow graph
+	 * that duplicates finally blocks for every exit through them.
+	 * @param duplicateFinally
+	 * @see EclipseCFG#EclipseCFG(MethodDeclaration, boolean)
+	 */
+	public void setDuplicateFinally(boolean duplicateFinally) {
+		this.duplicateFinally = duplicateFinally;
+	}
+
+	/**
+	 * Determines whether this worklist runs on a {@link CompactCFG compact copy} 
+	 * of the control flow graph it builds, which is off by default.  
+	 * This setting has no effect if graphs are taken from a 
+	 * {@link #setCompilationUnitCFGs(CompilationUnitCFGs) cache}.
+	 * @param compactCFG
+	 * @see CompactCFG#COMPACT_CFG_PROPERTY
+	 */
+	public void setCompactCFG(boolean compactCFG) {
+		this.compactCFG = compactCFG;
 	}
 
 	/**
@@ -86,6 +131,9 @@ public abstract class AbstractWorklist<LE> extends WorklistTemplate<LE, ASTNode,
 		if(node == null)
 			return false;
 		final CompilationUnit compUnit = (CompilationUnit) node.getRoot();
+		if(compUnit.getJavaElement() == null)
+			// AST was not created from a workspace resource, so there are no breakpoints
+			return false;
 		int nodeLine = compUnit.getLineNumber(node.getStartPosition());
 		if(nodeLine < 0 || lastLine == nodeLine)
 			// error getting the line number or last AST node seen was on the same line
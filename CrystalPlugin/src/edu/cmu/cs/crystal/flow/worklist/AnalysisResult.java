@@ -41,6 +41,8 @@ public class AnalysisResult<LE, N, OP extends IAbstractLatticeOperations<LE, N>>
 	private final Map<N, Set<ICFGNode<N>>> nodeMap;
 	private final Map<ICFGNode<N>, IResult<LE>> labeledResultsAfter;
 	private final Map<ICFGNode<N>, IResult<LE>> labeledResultsBefore;
+	/** Array-based results, or <code>null</code> if results were given as maps. */
+	private final NodeResultStore<N, LE> results;
 	private final OP lattice;
 	
 	private final ICFGNode<N> cfgStartNode;
@@ -68,6 +70,30 @@ public class AnalysisResult<LE, N, OP extends IAbstractLatticeOperations<LE, N>>
 		labeledResultsBefore =
 			java.util.Collections.unmodifiableMap(
 					new java.util.HashMap<ICFGNode<N>, IResult<LE>>(_lrb));	
+		results = null;
+		lattice = _l;
+		cfgStartNode = _startNode;
+		cfgEndNode = _endNode;
+	}
+
+	/**
+	 * Encapsulates the given result store as a new, un-modifiable 
+	 * result of an analysis.  The given objects are not copied and 
+	 * must not be modified after calling this constructor.
+	 * The node map is used as-is and should be un-modifiable already, so
+	 * it can be shared with other results for the same control flow graph.
+	 * 
+	 * @param _nm
+	 * @param _results
+	 * @param _l
+	 */
+	public AnalysisResult(Map<N, Set<ICFGNode<N>>> _nm,
+				NodeResultStore<N, LE> _results,
+				OP _l, ICFGNode<N> _startNode, ICFGNode<N> _endNode) {
+		nodeMap = _nm;
+		results = _results;
+		labeledResultsAfter = _results.getLabeledResultsAfter();
+		labeledResultsBefore = _results.getLabeledResultsBefore();
 		lattice = _l;
 		cfgStartNode = _startNode;
 		cfgEndNode = _endNode;
@@ -85,6 +111,32 @@ public class AnalysisResult<LE, N, OP extends IAbstractLatticeOperations<LE, N>>
 		return labeledResultsBefore;
 	}
 
+	/**
+	 * Returns the labeled results after the given node (relative to normal control flow).
+	 * This is faster than looking up results in {@link #getLabeledResultsAfter()}.
+	 * @param node
+	 * @return the labeled results after the given node or <code>null</code> if 
+	 * there are none.
+	 */
+	public IResult<LE> getLabeledResultAfter(ICFGNode<N> node) {
+		if(results != null)
+			return results.getLabeledResultAfter(node);
+		return labeledResultsAfter.get(node);
+	}
+
+	/**
+	 * Returns the labeled results before the given node (relative to normal control flow).
+	 * This is faster than looking up results in {@link #getLabeledResultsBefore()}.
+	 * @param node
+	 * @return the labeled results before the given node or <code>null</code> if 
+	 * there are none.
+	 */
+	public IResult<LE> getLabeledResultBefore(ICFGNode<N> node) {
+		if(results != null)
+			return results.getLabeledResultBefore(node);
+		return labeledResultsBefore.get(node);
+	}
+
 	public OP getLattice() {
 		return lattice;
 	}
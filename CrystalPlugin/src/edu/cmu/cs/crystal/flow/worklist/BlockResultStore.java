@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+import edu.cmu.cs.crystal.flow.IResult;
+
+/**
+ * Analysis results computed by a worklist that iterates over basic blocks.
+ * While the worklist runs, only the incoming result of each block is kept.  
+ * The results for the individual nodes in a block are computed from the block's 
+ * incoming result when any of them is first requested, by transferring over the 
+ * block's nodes once more.
+ * 
+ * @param <N> Type of AST nodes in the CFG.
+ * @param <LE> Lattice element type held by the results.
+ * @see WorklistBlockOrder
+ */
+class BlockResultStore<N, LE> extends NodeResultStore<N, LE> {
+
+	/**
+	 * Computes the results for the nodes in a block.
+	 */
+	interface BlockTransfer<N, LE> {
+		/**
+		 * Transfers over the nodes in the given block, starting with the given 
+		 * incoming result, and stores the results for these nodes.
+		 * @param block Number of the block in the {@link WorklistBlockOrder}.
+		 * @param incoming Incoming result for the block (relative to the analysis direction).
+		 * @param results Store for the results of the block's nodes.
+		 */
+		void transferOverBlock(int block, IResult<LE> incoming, NodeResultStore<N, LE> results);
+	}
+
+	private final WorklistBlockOrder<N> blocks;
+	private final boolean[] materialized;
+	/** Number of blocks whose nodes' results are not yet stored. */
+	private int remaining;
+	/** Incoming results for each block; dropped once all results are stored. */
+	private IResult<LE>[] incoming;
+	/** Computes results for nodes; dropped once all results are stored. */
+	private BlockTransfer<N, LE> transfer;
+
+	/**
+	 * Creates a result store for the given blocks.
+	 * @param blocks
+	 * @param incoming Incoming results for each block (relative to the analysis direction),
+	 * indexed by block number.  The array must not be modified afterwards.
+	 * @param isForward
+	 * @param transfer Computes the results for the nodes in a block when they are requested.
+	 */
+	BlockResultStore(WorklistBlockOrder<N> blocks, IResult<LE>[] incoming, 
+			boolean isForward, BlockTransfer<N, LE> transfer) {
+		super(blocks.getNodeOrder(), isForward);
+		this.blocks = blocks;
+		this.incoming = incoming;
+		this.transfer = transfer;
+		this.materialized = new boolean[incoming.length];
+		this.remaining = incoming.length;
+	}
+
+	@Override
+	synchronized void materialize(int number) {
+		materializeBlock(blocks.getBlockNumber(number));
+	}
+
+	@Override
+	synchronized void materializeAll() {
+		for(int block = 0; remaining > 0 && block < materialized.length; ++block)
+			materializeBlock(block);
+	}
+
+	private void materializeBlock(int block) {
+		if(block < 0 || materialized[block])
+			return;
+		if(incoming[block] != null)
+			transfer.transferOverBlock(block, incoming[block], this);
+		materialized[block] = true;
+		if(--remaining == 0) {
+			// the worklist and block results are no longer needed
+			incoming = null;
+			transfer = null;
+		}
+	}
+
+}
@@ -20,10 +20,6 @@
 package edu.cmu.cs.crystal.flow.worklist;
 
 import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Set;
-import java.util.WeakHashMap;
 import java.util.concurrent.CancellationException;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -32,7 +28,6 @@ import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.eclipse.jdt.core.dom.PrefixExpression;
 
-import edu.cmu.cs.crystal.cfg.ICFGEdge;
 import edu.cmu.cs.crystal.cfg.ICFGNode;
 import edu.cmu.cs.crystal.flow.AnalysisDirection;
 import edu.cmu.cs.crystal.flow.BooleanLabel;
@@ -54,8 +49,6 @@ public class BranchSensitiveWorklist<LE> extends
 	
 	/** The analysis-specific transfer function. */
 	private final IBranchSensitiveTransferFunction<LE> transferFunction;
-	/** Cache of label lists for recently visited nodes. */
-	private final WeakHashMap<ICFGNode<ASTNode>, List<ILabel>> labelMap = new WeakHashMap<ICFGNode<ASTNode>, List<ILabel>>();
 
 	/**
 	 * Creates a worklist instance for the given method and transfer function.
@@ -126,25 +119,4 @@ public class BranchSensitiveWorklist<LE> extends
 		return transferFunction.transfer(astNode, getLabels(cfgNode), incoming);
 	}
 
-	/**
-	 * Returns the labels out of the given node (relative to the analysis direction) 
-	 * as a list.
-	 * @param cfgNode
-	 * @return the labels out of the given node (relative to the analysis direction).
-	 */
-	private List<ILabel> getLabels(ICFGNode<ASTNode> cfgNode) {
-		if(labelMap.containsKey(cfgNode))
-			return labelMap.get(cfgNode);
-		
-		Set<? extends ICFGEdge<ASTNode>> edges = (AnalysisDirection.FORWARD_ANALYSIS == getAnalysisDirection() ? cfgNode.getOutputs() : cfgNode.getInputs());
-		List<ILabel> labels = new LinkedList<ILabel>();
-		for(ICFGEdge<ASTNode> e : edges) {
-			if(labels.contains(e.getLabel()) == false)
-				labels.add(e.getLabel());
-		}
-		labels = Collections.unmodifiableList(labels);
-		labelMap.put(cfgNode, labels);
-		return labels;
-	}
-
 }
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+import edu.cmu.cs.crystal.cfg.CompactCFG;
+import edu.cmu.cs.crystal.cfg.DominatorTree;
+import edu.cmu.cs.crystal.cfg.IControlFlowGraph;
+import edu.cmu.cs.crystal.cfg.LoopNestingForest;
+import edu.cmu.cs.crystal.cfg.eclipse.EclipseCFG;
+import edu.cmu.cs.crystal.cfg.eclipse.EclipseNodeFirstCFG;
+
+/**
+ * Cache of the control flow graphs for the methods in a compilation unit,
+ * so that a method's graph is built only once no matter how many analyses
+ * run over it.  Cached graphs are shared between analyses and must not be
+ * modified.  Graphs that {@link EclipseCFG#EclipseCFG(MethodDeclaration, boolean) duplicate 
+ * finally blocks} are cached separately.  If the 
+ * {@link CompactCFG#COMPACT_CFG_PROPERTY} system property is <code>true</code>,
+ * graphs are kept as {@link CompactCFG compact copies}.
+ * 
+ * @see edu.cmu.cs.crystal.IAnalysisInput#getComUnitCFGs()
+ * @see edu.cmu.cs.crystal.tac.eclipse.CompilationUnitTACs
+ */
+public class CompilationUnitCFGs {
+
+	private final Map<MethodDeclaration, WorklistGraph<ASTNode>> graphs;
+	private final Map<MethodDeclaration, WorklistGraph<ASTNode>> duplicatedFinallyGraphs;
+	private final boolean compact;
+
+	public CompilationUnitCFGs() {
+		this.compact = Boolean.getBoolean(CompactCFG.COMPACT_CFG_PROPERTY);
+		this.graphs = new HashMap<MethodDeclaration, WorklistGraph<ASTNode>>();
+		this.duplicatedFinallyGraphs = new HashMap<MethodDeclaration, WorklistGraph<ASTNode>>();
+	}
+
+	/**
+	 * Returns the control flow graph for the given method, together with
+	 * the information worklists derive from it.
+	 * @param methodDecl
+	 * @return the prepared control flow graph for the given method.
+	 * @see EclipseCFG#DUPLICATE_FINALLY_PROPERTY
+	 */
+	public WorklistGraph<ASTNode> getMethodGraph(MethodDeclaration methodDecl) {
+		return getMethodGraph(methodDecl, Boolean.getBoolean(EclipseCFG.DUPLICATE_FINALLY_PROPERTY));
+	}
+
+	/**
+	 * Returns the control flow graph for the given method, together with
+	 * the information worklists derive from it.
+	 * @param methodDecl
+	 * @param duplicateFinally Whether the graph duplicates finally blocks for every exit.
+	 * @return the prepared control flow graph for the given method.
+	 */
+	public synchronized WorklistGraph<ASTNode> getMethodGraph(MethodDeclaration methodDecl, 
+			boolean duplicateFinally) {
+		Map<MethodDeclaration, WorklistGraph<ASTNode>> cache = 
+			duplicateFinally ? duplicatedFinallyGraphs : graphs;
+		WorklistGraph<ASTNode> graph = cache.get(methodDecl);
+		if(graph == null) {
+			IControlFlowGraph<ASTNode> cfg = new EclipseNodeFirstCFG(methodDecl, duplicateFinally);
+			graph = new WorklistGraph<ASTNode>(compact ? new CompactCFG<ASTNode>(cfg) : cfg);
+			cache.put(methodDecl, graph);
+		}
+		return graph;
+	}
+
+	/**
+	 * Returns the control flow graph for the given method.
+	 * @param methodDecl
+	 * @return the control flow graph for the given method.
+	 */
+	public IControlFlowGraph<ASTNode> getMethodCFG(MethodDeclaration methodDecl) {
+		return getMethodGraph(methodDecl).getControlFlowGraph();
+	}
+
+	/**
+	 * Returns the dominator tree of the given method's control flow graph.
+	 * @param methodDecl
+	 * @return the dominator tree of the given method's control flow graph.
+	 */
+	public DominatorTree<ASTNode> getDominatorTree(MethodDeclaration methodDecl) {
+		return getMethodGraph(methodDecl).getDominatorTree();
+	}
+
+	/**
+	 * Returns the post-dominator tree of the given method's control flow graph.
+	 * @param methodDecl
+	 * @return the post-dominator tree of the given method's control flow graph.
+	 */
+	public DominatorTree<ASTNode> getPostDominatorTree(MethodDeclaration methodDecl) {
+		return getMethodGraph(methodDecl).getPostDominatorTree();
+	}
+
+	/**
+	 * Returns the loops in the given method's control flow graph.
+	 * @param methodDecl
+	 * @return the loops in the given method's control flow graph.
+	 */
+	public LoopNestingForest<ASTNode> getLoopNestingForest(MethodDeclaration methodDecl) {
+		return getMethodGraph(methodDecl).getLoopNestingForest();
+	}
+
+	/**
+	 * Releases all cached graphs.  Graphs requested afterwards are built again.
+	 */
+	public synchronized void clear() {
+		graphs.clear();
+		duplicatedFinallyGraphs.clear();
+	}
+
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+/**
+ * Worklist of node numbers that returns pending numbers in the order
+ * they were added.  Pending numbers are kept in a ring buffer, which cannot
+ * overflow since every number is pending at most once.
+ *
+ * @see WorklistStrategy#FIFO
+ */
+class FifoNodeWorklist implements NodeWorklist {
+
+	/** Pending numbers, starting at {@link #head}. */
+	private final int[] queue;
+	/** Pending numbers; bit <code>i % 64</code> of word <code>i / 64</code> represents number <code>i</code>. */
+	private final long[] pending;
+	private int head;
+	private int count;
+
+	/**
+	 * Creates an empty worklist for numbers between 0 and <code>size</code>-1.
+	 * @param size
+	 */
+	FifoNodeWorklist(int size) {
+		queue = new int[size];
+		pending = new long[(size + 63) >>> 6];
+	}
+
+	public void add(int number) {
+		long bit = 1L << (number & 63);
+		if((pending[number >>> 6] & bit) != 0)
+			return;
+		pending[number >>> 6] |= bit;
+		int tail = head + count;
+		queue[tail < queue.length ? tail : tail - queue.length] = number;
+		++count;
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	public int remove() {
+		if(count == 0)
+			throw new IllegalStateException("Worklist is empty");
+		int result = queue[head];
+		if(++head == queue.length)
+			head = 0;
+		--count;
+		pending[result >>> 6] &= ~(1L << (result & 63));
+		return result;
+	}
+
+}
@@ -0,0 +1,305 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import edu.cmu.cs.crystal.cfg.ICFGNode;
+import edu.cmu.cs.crystal.flow.IResult;
+
+/**
+ * Analysis results for the nodes of a control flow graph, stored in plain
+ * arrays indexed by the nodes' numbers in a {@link WorklistNodeOrder}.
+ * This replaces two hash maps from CFG nodes to results: the worklist algorithm 
+ * reads and writes results by number, and result queries look up a node's number
+ * only once to find both its before and after results.
+ * <p>
+ * Before and after are relative to normal control flow.  Worklist algorithms
+ * use the package-private methods that are relative to the analysis direction.
+ * 
+ * @param <N> Type of AST nodes in the CFG.
+ * @param <LE> Lattice element type held by the results.
+ * @see AnalysisResult
+ */
+public class NodeResultStore<N, LE> {
+	
+	private final WorklistNodeOrder<N> order;
+	/** Labeled results before each node, relative to normal control flow. */
+	private final Object[] before;
+	/** Labeled results after each node, relative to normal control flow. */
+	private final Object[] after;
+	/** Results before each node in analysis direction (one of the two arrays above). */
+	private final Object[] beforeAnalyzing;
+	/** Results after each node in analysis direction (one of the two arrays above). */
+	private final Object[] afterAnalyzing;
+	
+	/**
+	 * Creates an empty result store for the nodes in the given order.
+	 * @param order Numbering of the nodes that will have results.
+	 * @param isForward <code>true</code> if results are computed with a forward analysis, 
+	 * <code>false</code> for a backward analysis.
+	 */
+	NodeResultStore(WorklistNodeOrder<N> order, boolean isForward) {
+		this.order = order;
+		this.before = new Object[order.size()];
+		this.after = new Object[order.size()];
+		this.beforeAnalyzing = isForward ? before : after;
+		this.afterAnalyzing = isForward ? after : before;
+	}
+	
+	/**
+	 * Returns the numbering of CFG nodes used by this store.
+	 * @return the numbering of CFG nodes used by this store.
+	 */
+	public WorklistNodeOrder<N> getNodeOrder() {
+		return order;
+	}
+
+	/**
+	 * Returns the labeled results before the given node (relative to normal control flow).
+	 * @param node
+	 * @return the labeled results before the given node or <code>null</code> if 
+	 * there are none.
+	 */
+	public IResult<LE> getLabeledResultBefore(ICFGNode<N> node) {
+		int number = order.getNumber(node);
+		return number < 0 ? null : getLabeledResultBefore(number);
+	}
+
+	/**
+	 * Returns the labeled results after the given node (relative to normal control flow).
+	 * @param node
+	 * @return the labeled results after the given node or <code>null</code> if 
+	 * there are none.
+	 */
+	public IResult<LE> getLabeledResultAfter(ICFGNode<N> node) {
+		int number = order.getNumber(node);
+		return number < 0 ? null : getLabeledResultAfter(number);
+	}
+
+	/**
+	 * Returns the labeled results before the node with the given number 
+	 * (relative to normal control flow).
+	 * @param number
+	 * @return the labeled results before the given node or <code>null</code> if 
+	 * there are none.
+	 */
+	@SuppressWarnings("unchecked")
+	public IResult<LE> getLabeledResultBefore(int number) {
+		materialize(number);
+		return (IResult<LE>) before[number];
+	}
+
+	/**
+	 * Returns the labeled results after the node with the given number 
+	 * (relative to normal control flow).
+	 * @param number
+	 * @return the labeled results after the given node or <code>null</code> if 
+	 * there are none.
+	 */
+	@SuppressWarnings("unchecked")
+	public IResult<LE> getLabeledResultAfter(int number) {
+		materialize(number);
+		return (IResult<LE>) after[number];
+	}
+
+	@SuppressWarnings("unchecked")
+	IResult<LE> getBeforeAnalyzing(int number) {
+		return (IResult<LE>) beforeAnalyzing[number];
+	}
+
+	void setBeforeAnalyzing(int number, IResult<LE> result) {
+		beforeAnalyzing[number] = result;
+	}
+
+	void setAfterAnalyzing(int number, IResult<LE> result) {
+		afterAnalyzing[number] = result;
+	}
+
+	/**
+	 * Makes sure the results for the node with the given number are stored 
+	 * before they are read.  The worklist stores all results while it runs,
+	 * so this method does nothing by default.
+	 * @param number
+	 * @see BlockResultStore
+	 */
+	void materialize(int number) {
+		// results are already stored
+	}
+
+	/**
+	 * Makes sure the results for all nodes are stored before they are read.
+	 * This method does nothing by default.
+	 * @see #materialize(int)
+	 */
+	void materializeAll() {
+		// results are already stored
+	}
+	
+	/**
+	 * Returns an unmodifiable map view of the results before each node.
+	 * @return an unmodifiable map view of the results before each node.
+	 */
+	public Map<ICFGNode<N>, IResult<LE>> getLabeledResultsBefore() {
+		return new ResultMap(before);
+	}
+
+	/**
+	 * Returns an unmodifiable map view of the results after each node.
+	 * @return an unmodifiable map view of the results after each node.
+	 */
+	public Map<ICFGNode<N>, IResult<LE>> getLabeledResultsAfter() {
+		return new ResultMap(after);
+	}
+	
+	/**
+	 * Unmodifiable map view of one of the result arrays for clients
+	 * that expect a map.  Lookups do not iterate.
+	 */
+	private class ResultMap extends AbstractMap<ICFGNode<N>, IResult<LE>> {
+		
+		private final Object[] results;
+		
+		ResultMap(Object[] results) {
+			this.results = results;
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public IResult<LE> get(Object key) {
+			if(key instanceof ICFGNode == false)
+				return null;
+			int number = order.getNumber((ICFGNode<N>) key);
+			if(number < 0)
+				return null;
+			materialize(number);
+			return (IResult<LE>) results[number];
+		}
+
+		@Override
+		public Set<Map.Entry<ICFGNode<N>, IResult<LE>>> entrySet() {
+			return new AbstractSet<Map.Entry<ICFGNode<N>, IResult<LE>>>() {
+				@Override
+				public Iterator<Map.Entry<ICFGNode<N>, IResult<LE>>> iterator() {
+					materializeAll();
+					return new ResultIterator(results);
+				}
+				@Override
+				public int size() {
+					materializeAll();
+					int result = 0;
+					for(Object r : results) {
+						if(r != null)
+							++result;
+					}
+					return result;
+				}
+			};
+		}
+	}
+	
+	/**
+	 * Iterates over the nodes that have a result in the given array.
+	 */
+	private class ResultIterator implements Iterator<Map.Entry<ICFGNode<N>, IResult<LE>>> {
+		
+		private final Object[] results;
+		private int next = -1;
+		
+		ResultIterator(Object[] results) {
+			this.results = results;
+			advance();
+		}
+		
+		private void advance() {
+			do {
+				++next;
+			} while(next < results.length && results[next] == null);
+		}
+
+		public boolean hasNext() {
+			return next < results.length;
+		}
+
+		@SuppressWarnings("unchecked")
+		public Map.Entry<ICFGNode<N>, IResult<LE>> next() {
+			if(hasNext() == false)
+				throw new NoSuchElementException();
+			Map.Entry<ICFGNode<N>, IResult<LE>> result = 
+				new ResultEntry(order.getNode(next), (IResult<LE>) results[next]);
+			advance();
+			return result;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("Analysis results cannot be modified");
+		}
+	}
+	
+	/**
+	 * Immutable map entry.
+	 */
+	private class ResultEntry implements Map.Entry<ICFGNode<N>, IResult<LE>> {
+		
+		private final ICFGNode<N> node;
+		private final IResult<LE> result;
+
+		ResultEntry(ICFGNode<N> node, IResult<LE> result) {
+			this.node = node;
+			this.result = result;
+		}
+
+		public ICFGNode<N> getKey() {
+			return node;
+		}
+
+		public IResult<LE> getValue() {
+			return result;
+		}
+
+		public IResult<LE> setValue(IResult<LE> value) {
+			throw new UnsupportedOperationException("Analysis results cannot be modified");
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(o instanceof Map.Entry == false)
+				return false;
+			Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+			return node.equals(other.getKey()) && result.equals(other.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return node.hashCode() ^ result.hashCode();
+		}
+	}
+
+}
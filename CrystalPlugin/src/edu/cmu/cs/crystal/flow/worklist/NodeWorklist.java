@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+/**
+ * Worklist of node numbers, as assigned by {@link WorklistNodeOrder}.
+ * Adding a number that is already pending has no effect.  Implementations
+ * differ in the order in which pending numbers are removed.
+ * 
+ * @see WorklistStrategy
+ */
+interface NodeWorklist {
+
+	/**
+	 * Adds the given number to the worklist, unless it is already pending.
+	 * @param number
+	 */
+	void add(int number);
+
+	/**
+	 * Indicates whether there are pending numbers.
+	 * @return <code>true</code> if there are no pending numbers, <code>false</code> otherwise.
+	 */
+	boolean isEmpty();
+
+	/**
+	 * Removes and returns the pending number to visit next.
+	 * @return the pending number to visit next.
+	 * @throws IllegalStateException If the worklist is empty.
+	 */
+	int remove();
+
+}
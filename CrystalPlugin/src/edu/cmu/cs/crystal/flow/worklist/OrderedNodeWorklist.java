@@ -0,0 +1,78 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+/**
+ * Worklist of node numbers, as assigned by {@link WorklistNodeOrder}, kept
+ * in a bit set.  Adding a number that is already pending has no effect, and
+ * {@link #removeLast()} always returns the highest pending number, i.e.,
+ * nodes are taken off the worklist in reverse post-order.
+ * None of the operations allocate or box numbers.
+ *
+ * @see WorklistNodeOrder
+ * @see WorklistStrategy#REVERSE_POSTORDER
+ */
+class OrderedNodeWorklist implements NodeWorklist {
+
+	/** Pending numbers; bit <code>i % 64</code> of word <code>i / 64</code> represents number <code>i</code>. */
+	private final long[] words;
+	/** Upper bound on the index of the highest non-zero word, or -1 if empty. */
+	private int top = -1;
+
+	/**
+	 * Creates an empty worklist for numbers between 0 and <code>size</code>-1.
+	 * @param size
+	 */
+	OrderedNodeWorklist(int size) {
+		words = new long[(size + 63) >>> 6];
+	}
+
+	public void add(int number) {
+		int w = number >>> 6;
+		words[w] |= 1L << (number & 63);
+		if(w > top)
+			top = w;
+	}
+
+	public boolean isEmpty() {
+		while(top >= 0 && words[top] == 0)
+			--top;
+		return top < 0;
+	}
+
+	/**
+	 * Removes and returns the highest pending number.
+	 * @return the highest pending number.
+	 * @throws IllegalStateException If the worklist is empty.
+	 */
+	int removeLast() {
+		if(isEmpty())
+			throw new IllegalStateException("Worklist is empty");
+		long word = words[top];
+		int bit = 63 - Long.numberOfLeadingZeros(word);
+		words[top] = word & ~(1L << bit);
+		return (top << 6) + bit;
+	}
+
+	public int remove() {
+		return removeLast();
+	}
+
+}
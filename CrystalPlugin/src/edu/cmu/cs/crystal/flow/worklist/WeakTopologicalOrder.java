@@ -0,0 +1,320 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+import java.util.ArrayList;
+
+/**
+ * Weak topological ordering of the nodes in a {@link WorklistNodeOrder}, 
+ * following F. Bourdoncle, "Efficient chaotic iteration strategies with widenings".
+ * A weak topological ordering is a linear order of the nodes in which strongly
+ * connected components, and recursively the components nested in them, form 
+ * contiguous intervals that start with the component's <i>head</i>, such that 
+ * every edge that goes backwards in the order leads to the head of a component 
+ * containing the edge's source.
+ * <p>
+ * The {@link #createWorklist() worklist} for this ordering implements 
+ * Bourdoncle's recursive iteration strategy: once it enters a component through 
+ * its head, it only visits nodes in that component until none of them are pending
+ * any more, and only then continues with the rest of the enclosing component.
+ * This stabilizes inner loops before outer loops are revisited.
+ *
+ * @see WorklistStrategy#WEAK_TOPOLOGICAL_ORDER
+ */
+class WeakTopologicalOrder {
+
+	/** Node numbers indexed by position. */
+	private final int[] nodes;
+	/** Positions indexed by node number. */
+	private final int[] positions;
+	/** For component heads, position of the last node in their component; otherwise <code>-1</code>. */
+	private final int[] componentEnds;
+
+	/**
+	 * Computes a weak topological ordering of the nodes in the given numbering, 
+	 * starting from its {@link WorklistNodeOrder#getRoot() root}.
+	 * @param order
+	 */
+	WeakTopologicalOrder(WorklistNodeOrder<?> order) {
+		final int size = order.size();
+		nodes = new int[size];
+		positions = new int[size];
+		componentEnds = new int[size];
+		if(size == 0)
+			return;
+		ArrayList<Object> top = partition(order);
+		int end = flatten(top, 0);
+		if(end != size)
+			throw new IllegalStateException("Ordered " + end + " of " + size + " nodes");
+	}
+
+	/**
+	 * Bourdoncle's hierarchical decomposition, with the recursion turned into a loop 
+	 * over explicit frames so deeply nested methods cannot overflow the stack.
+	 * Since elements are always prepended, partitions are built in reverse.
+	 */
+	private static ArrayList<Object> partition(WorklistNodeOrder<?> order) {
+		final int size = order.size();
+		// depth-first numbers: 0 for unvisited nodes, MAX_VALUE for nodes already placed
+		int[] dfn = new int[size];
+		int num = 0;
+		int[] stack = new int[size];
+		int sp = 0;
+		ArrayList<Object> top = new ArrayList<Object>();
+		ArrayList<Frame> frames = new ArrayList<Frame>();
+		// head returned by the last visit that finished, if any
+		int returned = 0;
+		boolean hasReturned = false;
+		
+		Frame root = new Frame(order.getRoot(), false, top);
+		frames.add(root);
+		stack[sp++] = root.node;
+		dfn[root.node] = ++num;
+		root.head = num;
+		while(frames.isEmpty() == false) {
+			Frame f = frames.get(frames.size() - 1);
+			int[] successors = order.getTargets(f.node);
+			if(f.isComponent) {
+				// component(v): visit the head's unvisited successors into the component's partition
+				hasReturned = false;
+				if(f.next < successors.length) {
+					int w = successors[f.next++];
+					if(dfn[w] == 0) {
+						Frame visit = new Frame(w, false, f.partition);
+						frames.add(visit);
+						stack[sp++] = w;
+						dfn[w] = ++num;
+						visit.head = num;
+					}
+					continue;
+				}
+				frames.remove(frames.size() - 1);
+				continue;
+			}
+			
+			// visit(v)
+			if(f.component != null) {
+				// the component headed by this node is complete
+				f.partition.add(new Component(f.node, f.component));
+				frames.remove(frames.size() - 1);
+				returned = f.head;
+				hasReturned = true;
+				continue;
+			}
+			if(hasReturned) {
+				hasReturned = false;
+				if(returned <= f.head) {
+					f.head = returned;
+					f.loop = true;
+				}
+			}
+			if(f.next < successors.length) {
+				int w = successors[f.next++];
+				if(dfn[w] == 0) {
+					Frame visit = new Frame(w, false, f.partition);
+					frames.add(visit);
+					stack[sp++] = w;
+					dfn[w] = ++num;
+					visit.head = num;
+				}
+				else if(dfn[w] <= f.head) {
+					f.head = dfn[w];
+					f.loop = true;
+				}
+				continue;
+			}
+			if(f.head == dfn[f.node]) {
+				dfn[f.node] = Integer.MAX_VALUE;
+				int element = stack[--sp];
+				if(f.loop) {
+					while(element != f.node) {
+						dfn[element] = 0;
+						element = stack[--sp];
+					}
+					f.component = new ArrayList<Object>();
+					frames.add(new Frame(f.node, true, f.component));
+					continue;
+				}
+				f.partition.add(f.node);
+			}
+			frames.remove(frames.size() - 1);
+			returned = f.head;
+			hasReturned = true;
+		}
+		return top;
+	}
+
+	/**
+	 * Assigns positions to the elements of the given reversed partition.
+	 * @return the position following the partition's last node.
+	 */
+	private int flatten(ArrayList<Object> partition, int position) {
+		for(int i = partition.size() - 1; i >= 0; --i) {
+			Object element = partition.get(i);
+			if(element instanceof Component) {
+				Component c = (Component) element;
+				int start = position;
+				place(c.head, position++);
+				position = flatten(c.body, position);
+				componentEnds[start] = position - 1;
+			}
+			else
+				place((Integer) element, position++);
+		}
+		return position;
+	}
+
+	private void place(int node, int position) {
+		nodes[position] = node;
+		positions[node] = position;
+		componentEnds[position] = -1;
+	}
+
+	/**
+	 * Returns the number of the node at the given position.
+	 * @param position
+	 * @return the number of the node at the given position.
+	 */
+	int getNode(int position) {
+		return nodes[position];
+	}
+
+	/**
+	 * Returns the position of the given node.
+	 * @param number
+	 * @return the position of the given node.
+	 */
+	int getPosition(int number) {
+		return positions[number];
+	}
+
+	/**
+	 * Returns the position of the last node in the component headed by the
+	 * node at the given position.
+	 * @param position
+	 * @return the position of the last node in the component headed by 
+	 * the node at the given position, or <code>-1</code> if the node
+	 * does not head a component.
+	 */
+	int getComponentEnd(int position) {
+		return componentEnds[position];
+	}
+
+	/**
+	 * Creates an empty worklist that visits nodes with Bourdoncle's 
+	 * recursive iteration strategy.
+	 * @return an empty worklist.
+	 */
+	NodeWorklist createWorklist() {
+		return new Worklist();
+	}
+
+	private static final class Frame {
+		final int node;
+		final boolean isComponent;
+		/** Partition the node, or the nodes visited for a component, are added to. */
+		final ArrayList<Object> partition;
+		/** Index of the next successor to look at. */
+		int next;
+		int head;
+		boolean loop;
+		/** Body of the component headed by this node while it is being built. */
+		ArrayList<Object> component;
+
+		Frame(int node, boolean isComponent, ArrayList<Object> partition) {
+			this.node = node;
+			this.isComponent = isComponent;
+			this.partition = partition;
+		}
+	}
+
+	private static final class Component {
+		final int head;
+		/** Reversed partition of the nodes after the head. */
+		final ArrayList<Object> body;
+
+		Component(int head, ArrayList<Object> body) {
+			this.head = head;
+			this.body = body;
+		}
+	}
+
+	/**
+	 * Worklist that keeps pending positions in a bit set and a stack of the
+	 * components it is currently iterating.
+	 */
+	private final class Worklist implements NodeWorklist {
+
+		/** Pending positions; bit <code>i % 64</code> of word <code>i / 64</code> represents position <code>i</code>. */
+		private final long[] pending = new long[(nodes.length + 63) >>> 6];
+		private int count;
+		/** Start positions of the components being iterated, innermost last. */
+		private final int[] active = new int[nodes.length];
+		private int depth;
+
+		public void add(int number) {
+			int position = positions[number];
+			long bit = 1L << (position & 63);
+			if((pending[position >>> 6] & bit) == 0) {
+				pending[position >>> 6] |= bit;
+				++count;
+			}
+		}
+
+		public boolean isEmpty() {
+			return count == 0;
+		}
+
+		public int remove() {
+			if(count == 0)
+				throw new IllegalStateException("Worklist is empty");
+			while(true) {
+				int start = depth == 0 ? 0 : active[depth - 1];
+				int end = depth == 0 ? nodes.length - 1 : componentEnds[start];
+				int position = nextPending(start);
+				if(position >= 0 && position <= end) {
+					pending[position >>> 6] &= ~(1L << (position & 63));
+					--count;
+					if(componentEnds[position] >= 0 && (depth == 0 || active[depth - 1] != position))
+						// entering a component through its head
+						active[depth++] = position;
+					return nodes[position];
+				}
+				// innermost component is stable
+				--depth;
+			}
+		}
+
+		private int nextPending(int from) {
+			int w = from >>> 6;
+			if(w >= pending.length)
+				return -1;
+			long word = pending[w] & (-1L << (from & 63));
+			while(true) {
+				if(word != 0)
+					return (w << 6) + Long.numberOfTrailingZeros(word);
+				if(++w == pending.length)
+					return -1;
+				word = pending[w];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+
+import edu.cmu.cs.crystal.cfg.BasicBlockGraph;
+import edu.cmu.cs.crystal.cfg.ICFGEdge;
+import edu.cmu.cs.crystal.cfg.ICFGNode;
+import edu.cmu.cs.crystal.cfg.BasicBlockGraph.Block;
+
+/**
+ * Post-order numbering of the blocks in a {@link BasicBlockGraph}, together with
+ * the numbers the nodes in each block have in the {@link WorklistNodeOrder} of the
+ * underlying control flow graph.  Worklist algorithms schedule blocks by their numbers
+ * and transfer over the nodes in a block one after the other, in traversal direction,
+ * which avoids scheduling and storing results for the nodes inside blocks.
+ * 
+ * @param <N> Type of AST nodes in the control flow graph.
+ * @see WorklistGraph#getBlockOrder(boolean)
+ */
+public class WorklistBlockOrder<N> {
+
+	/** Post-order numbering of the blocks. */
+	private final WorklistNodeOrder<N> blockOrder;
+	/** Numbering of the nodes in the underlying graph. */
+	private final WorklistNodeOrder<N> nodeOrder;
+	/** Numbers of each block's nodes in traversal direction, indexed by block number. */
+	private final int[][] nodeNumbers;
+	/** Edges between consecutive nodes in {@link #nodeNumbers}, indexed by block number. */
+	private final ICFGEdge<N>[][] internalEdges;
+	/** Numbers of the blocks containing each node, indexed by node number. */
+	private final int[] blockNumbers;
+
+	/**
+	 * Numbers the blocks in the given graph in post-order.
+	 * @param blocks Basic-block view of the control flow graph the given node order numbers.
+	 * @param nodeOrder Numbering of the nodes in the underlying control flow graph.
+	 * @param isForward Traversal direction, which must be the direction of the node order.
+	 */
+	@SuppressWarnings("unchecked")
+	WorklistBlockOrder(BasicBlockGraph<N> blocks, WorklistNodeOrder<N> nodeOrder, boolean isForward) {
+		this.nodeOrder = nodeOrder;
+		this.blockOrder = WorklistNodeOrder.createPostOrderAndPopulateNodeMap(
+				blocks, new HashMap<N, Set<ICFGNode<N>>>(), isForward);
+		final int size = blockOrder.size();
+		this.nodeNumbers = new int[size][];
+		this.internalEdges = new ICFGEdge[size][];
+		this.blockNumbers = new int[nodeOrder.size()];
+		Arrays.fill(blockNumbers, -1);
+		for(int b = 0; b < size; ++b) {
+			Block<N> block = (Block<N>) blockOrder.getNode(b);
+			int length = block.size();
+			int[] numbers = new int[length];
+			ICFGEdge<N>[] edges = new ICFGEdge[length - 1];
+			for(int i = 0; i < length; ++i) {
+				int index = isForward ? i : length - 1 - i;
+				numbers[i] = nodeOrder.getNumber(block.getNode(index));
+				if(numbers[i] < 0)
+					throw new IllegalStateException("Block node not reachable: " + block.getNode(index));
+				blockNumbers[numbers[i]] = b;
+				if(i < length - 1)
+					edges[i] = block.getInternalEdge(isForward ? index : index - 1);
+			}
+			nodeNumbers[b] = numbers;
+			internalEdges[b] = edges;
+		}
+	}
+
+	/**
+	 * Returns the post-order numbering of the blocks.
+	 * @return the post-order numbering of the blocks.
+	 */
+	public WorklistNodeOrder<N> getBlockOrder() {
+		return blockOrder;
+	}
+
+	/**
+	 * Returns the numbering of the nodes in the underlying control flow graph.
+	 * @return the numbering of the nodes in the underlying control flow graph.
+	 */
+	public WorklistNodeOrder<N> getNodeOrder() {
+		return nodeOrder;
+	}
+
+	/**
+	 * Returns the numbers of the nodes in the given block, in traversal direction.
+	 * Callers must not modify the returned array.
+	 * @param block Number of a block.
+	 * @return the numbers of the nodes in the given block, in traversal direction.
+	 */
+	public int[] getNodeNumbers(int block) {
+		return nodeNumbers[block];
+	}
+
+	/**
+	 * Returns the edges between consecutive {@link #getNodeNumbers(int) nodes}
+	 * in the given block: the edge at index <i>i</i> leads from node <i>i</i> 
+	 * to node <i>i+1</i> in traversal direction.  Callers must not modify the 
+	 * returned array.
+	 * @param block Number of a block.
+	 * @return the edges inside the given block, in traversal direction.
+	 */
+	public ICFGEdge<N>[] getInternalEdges(int block) {
+		return internalEdges[block];
+	}
+
+	/**
+	 * Returns the number of the block containing the given node.
+	 * @param node Number of a node in the underlying control flow graph.
+	 * @return the number of the block containing the given node.
+	 */
+	public int getBlockNumber(int node) {
+		return blockNumbers[node];
+	}
+
+}
@@ -23,6 +23,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
 
+import edu.cmu.cs.crystal.cfg.eclipse.EclipseCFG;
 import edu.cmu.cs.crystal.flow.IBranchSensitiveTransferFunction;
 import edu.cmu.cs.crystal.flow.ILatticeOperations;
 import edu.cmu.cs.crystal.flow.ITransferFunction;
@@ -38,6 +39,11 @@ import edu.cmu.cs.crystal.flow.MotherFlowAnalysis;
 public class WorklistFactory {
 	
 	private IProgressMonitor monitor;
+	private boolean useTreeSetWorklist;
+	private CompilationUnitCFGs cfgs;
+	private boolean duplicateFinally;
+	private boolean useBasicBlocks;
+	private WorklistStrategy strategy;
 
 	/**
 	 * Default worklist factory.
@@ -45,6 +51,10 @@ public class WorklistFactory {
 	 */
 	public WorklistFactory() {
 		this.monitor = null;
+		this.useTreeSetWorklist = Boolean.getBoolean(WorklistTemplate.TREESET_WORKLIST_PROPERTY);
+		this.duplicateFinally = Boolean.getBoolean(EclipseCFG.DUPLICATE_FINALLY_PROPERTY);
+		this.useBasicBlocks = Boolean.getBoolean(WorklistTemplate.BASIC_BLOCKS_PROPERTY);
+		this.strategy = WorklistTemplate.getDefaultStrategy();
 	}
 	
 	/**
@@ -56,6 +66,59 @@ public class WorklistFactory {
 	public void setMonitor(IProgressMonitor monitor) {
 		this.monitor = monitor;
 	}
+	
+	/**
+	 * Makes subsequently created worklist instances use the original 
+	 * <code>TreeSet</code>-based worklist, which is useful for comparing results.
+	 * @param useTreeSetWorklist
+	 * @see WorklistTemplate#setUseTreeSetWorklist(boolean)
+	 */
+	public void setUseTreeSetWorklist(boolean useTreeSetWorklist) {
+		this.useTreeSetWorklist = useTreeSetWorklist;
+	}
+	
+	/**
+	 * Makes subsequently created worklist instances take control flow 
+	 * graphs from the given cache.
+	 * @param cfgs Cache of control flow graphs or <code>null</code>
+	 * if worklists should build fresh control flow graphs.
+	 * @see AbstractWorklist#setCompilationUnitCFGs(CompilationUnitCFGs)
+	 */
+	public void setCompilationUnitCFGs(CompilationUnitCFGs cfgs) {
+		this.cfgs = cfgs;
+	}
+
+	/**
+	 * Makes subsequently created worklist instances run on control flow graphs
+	 * that duplicate finally blocks for every exit through them.
+	 * @param duplicateFinally
+	 * @see AbstractWorklist#setDuplicateFinally(boolean)
+	 */
+	public void setDuplicateFinally(boolean duplicateFinally) {
+		this.duplicateFinally = duplicateFinally;
+	}
+
+	/**
+	 * Makes subsequently created worklist instances visit basic blocks
+	 * or individual nodes.
+	 * @param useBasicBlocks
+	 * @see WorklistTemplate#setUseBasicBlocks(boolean)
+	 */
+	public void setUseBasicBlocks(boolean useBasicBlocks) {
+		this.useBasicBlocks = useBasicBlocks;
+	}
+
+	/**
+	 * Makes subsequently created worklist instances visit pending nodes
+	 * in the order given by the given strategy.
+	 * @param strategy
+	 * @see WorklistTemplate#setWorklistStrategy(WorklistStrategy)
+	 */
+	public void setWorklistStrategy(WorklistStrategy strategy) {
+		if(strategy == null)
+			throw new NullPointerException("No worklist strategy given");
+		this.strategy = strategy;
+	}
 
 	/**
 	 * Creates a worklist object that performs a conventional flow analysis on the given method
@@ -69,7 +132,13 @@ public class WorklistFactory {
 	public <LE> WorklistTemplate<LE, ASTNode, ILatticeOperations<LE>> createBranchInsensitiveWorklist(
 			MethodDeclaration method,
 			ITransferFunction<LE> transferFunction) {
-		return new BranchInsensitiveWorklist<LE>(method, monitor, transferFunction);
+		BranchInsensitiveWorklist<LE> result = new BranchInsensitiveWorklist<LE>(method, monitor, transferFunction);
+		result.setUseTreeSetWorklist(useTreeSetWorklist);
+		result.setCompilationUnitCFGs(cfgs);
+		result.setDuplicateFinally(duplicateFinally);
+		result.setUseBasicBlocks(useBasicBlocks);
+		result.setWorklistStrategy(strategy);
+		return result;
 	}
 
 	/**
@@ -85,7 +154,13 @@ public class WorklistFactory {
 	public <LE> WorklistTemplate<LE, ASTNode, ILatticeOperations<LE>> createBranchSensitiveWorklist(
 			MethodDeclaration method,
 			IBranchSensitiveTransferFunction<LE> transferFunction) {
-		return new BranchSensitiveWorklist<LE>(method, monitor, transferFunction);
+		BranchSensitiveWorklist<LE> result = new BranchSensitiveWorklist<LE>(method, monitor, transferFunction);
+		result.setUseTreeSetWorklist(useTreeSetWorklist);
+		result.setCompilationUnitCFGs(cfgs);
+		result.setDuplicateFinally(duplicateFinally);
+		result.setUseBasicBlocks(useBasicBlocks);
+		result.setWorklistStrategy(strategy);
+		return result;
 	}
 
 }
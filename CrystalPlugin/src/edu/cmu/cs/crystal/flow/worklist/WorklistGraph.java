@@ -0,0 +1,169 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import edu.cmu.cs.crystal.cfg.BasicBlockGraph;
+import edu.cmu.cs.crystal.cfg.DominatorTree;
+import edu.cmu.cs.crystal.cfg.ICFGNode;
+import edu.cmu.cs.crystal.cfg.IControlFlowGraph;
+import edu.cmu.cs.crystal.cfg.LoopNestingForest;
+
+/**
+ * A control flow graph together with the information worklists derive
+ * from it before they start iterating, namely the 
+ * {@link WorklistNodeOrder post-order numbering} of its nodes, the map
+ * from AST nodes to CFG nodes, and the {@link WorklistBlockOrder numbering} of 
+ * its {@link BasicBlockGraph basic blocks}, for each analysis direction.  
+ * Structural information about the graph, namely its (post-)dominator trees
+ * and loops, is available as well.
+ * This information is computed when first needed and then kept, so that 
+ * graphs can be shared between worklist runs, including runs of different analyses.
+ * Neither the graph nor the derived information may be modified.
+ * Instances are thread-safe.
+ * 
+ * @param <N> Type of AST nodes in the graph.
+ * @see CompilationUnitCFGs
+ */
+public class WorklistGraph<N> {
+
+	private final IControlFlowGraph<N> cfg;
+	private WorklistNodeOrder<N> forwardOrder;
+	private WorklistNodeOrder<N> backwardOrder;
+	private Map<N, Set<ICFGNode<N>>> forwardNodeMap;
+	private Map<N, Set<ICFGNode<N>>> backwardNodeMap;
+	private BasicBlockGraph<N> blocks;
+	private WorklistBlockOrder<N> forwardBlockOrder;
+	private WorklistBlockOrder<N> backwardBlockOrder;
+	private DominatorTree<N> dominators;
+	private DominatorTree<N> postDominators;
+	private LoopNestingForest<N> loops;
+
+	/**
+	 * Prepares the given control flow graph for worklist runs.
+	 * @param cfg
+	 */
+	public WorklistGraph(IControlFlowGraph<N> cfg) {
+		this.cfg = cfg;
+	}
+
+	/**
+	 * Returns the underlying control flow graph.
+	 * @return the underlying control flow graph.
+	 */
+	public IControlFlowGraph<N> getControlFlowGraph() {
+		return cfg;
+	}
+
+	/**
+	 * Returns the post-order numbering of the nodes reachable in the given direction.
+	 * @param isForward
+	 * @return the post-order numbering of the nodes reachable in the given direction.
+	 * @see WorklistNodeOrder#createPostOrderAndPopulateNodeMap(IControlFlowGraph, Map, boolean)
+	 */
+	public synchronized WorklistNodeOrder<N> getNodeOrder(boolean isForward) {
+		prepare(isForward);
+		return isForward ? forwardOrder : backwardOrder;
+	}
+
+	/**
+	 * Returns a read-only map from AST nodes to the CFG nodes reachable
+	 * in the given direction.
+	 * @param isForward
+	 * @return a read-only map from AST nodes to the CFG nodes reachable
+	 * in the given direction.
+	 */
+	public synchronized Map<N, Set<ICFGNode<N>>> getNodeMap(boolean isForward) {
+		prepare(isForward);
+		return isForward ? forwardNodeMap : backwardNodeMap;
+	}
+
+	/**
+	 * Returns the numbering of the basic blocks reachable in the given direction.
+	 * @param isForward
+	 * @return the numbering of the basic blocks reachable in the given direction.
+	 */
+	public synchronized WorklistBlockOrder<N> getBlockOrder(boolean isForward) {
+		prepare(isForward);
+		if(blocks == null)
+			blocks = new BasicBlockGraph<N>(cfg);
+		if(isForward) {
+			if(forwardBlockOrder == null)
+				forwardBlockOrder = new WorklistBlockOrder<N>(blocks, forwardOrder, true);
+			return forwardBlockOrder;
+		}
+		else {
+			if(backwardBlockOrder == null)
+				backwardBlockOrder = new WorklistBlockOrder<N>(blocks, backwardOrder, false);
+			return backwardBlockOrder;
+		}
+	}
+
+	/**
+	 * Returns the dominator tree of the graph.
+	 * @return the dominator tree of the graph.
+	 */
+	public synchronized DominatorTree<N> getDominatorTree() {
+		if(dominators == null)
+			dominators = new DominatorTree<N>(cfg, true);
+		return dominators;
+	}
+
+	/**
+	 * Returns the post-dominator tree of the graph.
+	 * @return the post-dominator tree of the graph.
+	 */
+	public synchronized DominatorTree<N> getPostDominatorTree() {
+		if(postDominators == null)
+			postDominators = new DominatorTree<N>(cfg, false);
+		return postDominators;
+	}
+
+	/**
+	 * Returns the loops in the graph.
+	 * @return the loops in the graph.
+	 */
+	public synchronized LoopNestingForest<N> getLoopNestingForest() {
+		if(loops == null)
+			loops = new LoopNestingForest<N>(getDominatorTree());
+		return loops;
+	}
+
+	private void prepare(boolean isForward) {
+		if((isForward ? forwardOrder : backwardOrder) != null)
+			return;
+		HashMap<N, Set<ICFGNode<N>>> nodeMap = new HashMap<N, Set<ICFGNode<N>>>();
+		WorklistNodeOrder<N> order = 
+			WorklistNodeOrder.createPostOrderAndPopulateNodeMap(cfg, nodeMap, isForward);
+		if(isForward) {
+			forwardOrder = order;
+			forwardNodeMap = Collections.unmodifiableMap(nodeMap);
+		}
+		else {
+			backwardOrder = order;
+			backwardNodeMap = Collections.unmodifiableMap(nodeMap);
+		}
+	}
+
+}
@@ -0,0 +1,403 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.cmu.cs.crystal.cfg.CompactCFG;
+import edu.cmu.cs.crystal.cfg.ICFGEdge;
+import edu.cmu.cs.crystal.cfg.ICFGNode;
+import edu.cmu.cs.crystal.cfg.IControlFlowGraph;
+import edu.cmu.cs.crystal.flow.ILabel;
+
+/**
+ * Dense post-order numbering of the nodes in a control flow graph.
+ * Every node reachable from the start of the traversal is assigned a number
+ * between 0 and {@link #size()}-1 such that a node is numbered after all
+ * of its successors (predecessors for backwards traversals), except along back edges.
+ * Visiting nodes with <i>higher</i> numbers first therefore corresponds to
+ * <i>reverse</i> post-order, which gives the best worklist performance.
+ * <p>
+ * In addition to the numbering, this class remembers for each node the edges
+ * leaving it in the traversal direction together with the numbers of the nodes
+ * these edges lead to, as well as the distinct labels on these edges.  
+ * That allows worklist algorithms to schedule nodes and transfer over them
+ * using just their numbers, without any hashing.  {@link CompactCFG Compact} 
+ * graphs are numbered using their <code>int</code> node and edge ids directly.
+ *
+ * @see WorklistNodeOrderComparator
+ * @see OrderedNodeWorklist
+ */
+public class WorklistNodeOrder<N> {
+
+	/**
+	 * Numbers the nodes in the given CFG in post-order and populates a map from
+	 * AST nodes to all their corresponding nodes in the given CFG.
+	 * Most AST nodes correspond to a single CFG node; they are mapped to 
+	 * {@link Collections#singleton(Object) singleton sets}.
+	 * This method visits nodes in the same order as
+	 * {@link WorklistNodeOrderComparator#createPostOrderAndPopulateNodeMap(IControlFlowGraph, Map, boolean)}.
+	 * @param cfg
+	 * @param nodeMap Node map to be populated (will not be cleared).
+	 * @param isForward If <code>true</code> the CFG is traversed in the forward
+	 * direction, meaning starting from the {@link IControlFlowGraph#getStartNode() start node}
+	 * following {@link ICFGNode#getOutputs() outgoing edges}; if
+	 * <code>false</code> the traversal direction is reversed, meaning traversal starts
+	 * from the {@link IControlFlowGraph#getEndNode() end node} and follows
+	 * {@link ICFGNode#getInputs() incoming edges}.
+	 * @return Post-order numbering of the nodes in the given CFG.
+	 */
+	public static <N> WorklistNodeOrder<N> createPostOrderAndPopulateNodeMap(
+			final IControlFlowGraph<N> cfg,
+			final Map<N, Set<ICFGNode<N>>> nodeMap,
+			final boolean isForward) {
+		if(cfg instanceof CompactCFG)
+			return createPostOrderAndPopulateNodeMap((CompactCFG<N>) cfg, nodeMap, isForward);
+		// the worklist works off the numbers; the map is only used to find a given node's number
+		Map<ICFGNode<N>, Integer> order = new IdentityHashMap<ICFGNode<N>, Integer>();
+		ArrayList<ICFGNode<N>> postOrder = new ArrayList<ICFGNode<N>>();
+
+		// iterative post-order visit / depth-first search (DFS)
+		// "visits" (numbers) nodes after all their children are
+		// visited (ie., when nodes become "black")
+		ArrayList<ICFGNode<N>> nodeStack = new ArrayList<ICFGNode<N>>();
+		ArrayList<Iterator<? extends ICFGEdge<N>>> edgeStack = new ArrayList<Iterator<? extends ICFGEdge<N>>>();
+		ICFGNode<N> node = isForward ? cfg.getStartNode() : cfg.getEndNode();
+		order.put(node, null);
+		nodeStack.add(node);
+		edgeStack.add(edges(node, isForward).iterator());
+
+		newNode:
+		while(nodeStack.isEmpty() == false) {
+			Iterator<? extends ICFGEdge<N>> it = edgeStack.get(edgeStack.size() - 1);
+			while(it.hasNext()) {
+				node = target(it.next(), isForward);
+				if(order.containsKey(node) == false) {
+					order.put(node, null);
+					nodeStack.add(node);
+					edgeStack.add(edges(node, isForward).iterator());
+					continue newNode;
+				}
+			}
+			edgeStack.remove(edgeStack.size() - 1);
+			node = nodeStack.remove(nodeStack.size() - 1);
+			// number nodes in increasing order
+			if(order.put(node, postOrder.size()) != null)
+				throw new IllegalStateException("Node already visited: " + node);
+			postOrder.add(node);
+			// also register node so that we can find it given its AST node
+			registerCfgNode(nodeMap, node);
+		}
+
+		return new WorklistNodeOrder<N>(postOrder, order, isForward);
+	}
+
+	/**
+	 * Numbers the nodes in the given compact CFG in the same order as 
+	 * {@link #createPostOrderAndPopulateNodeMap(IControlFlowGraph, Map, boolean)},
+	 * keeping track of visited nodes with an array indexed by node id.
+	 */
+	private static <N> WorklistNodeOrder<N> createPostOrderAndPopulateNodeMap(
+			final CompactCFG<N> cfg,
+			final Map<N, Set<ICFGNode<N>>> nodeMap,
+			final boolean isForward) {
+		final int size = cfg.size();
+		// post-order numbers indexed by node id: -1 for unvisited nodes, -2 for nodes on the stack
+		int[] order = new int[size];
+		Arrays.fill(order, -1);
+		int[] postOrder = new int[size];
+		int count = 0;
+		
+		// iterative post-order visit with the next edge position for each node on the stack
+		int[] nodeStack = new int[size];
+		int[] positionStack = new int[size];
+		int depth = 0;
+		int root = cfg.getId(isForward ? cfg.getStartNode() : cfg.getEndNode());
+		order[root] = -2;
+		nodeStack[depth] = root;
+		positionStack[depth] = begin(cfg, root, isForward);
+		++depth;
+
+		newNode:
+		while(depth > 0) {
+			int node = nodeStack[depth - 1];
+			int limit = end(cfg, node, isForward);
+			while(positionStack[depth - 1] < limit) {
+				int next = target(cfg, edgeAt(cfg, positionStack[depth - 1]++, isForward), isForward);
+				if(order[next] == -1) {
+					order[next] = -2;
+					nodeStack[depth] = next;
+					positionStack[depth] = begin(cfg, next, isForward);
+					++depth;
+					continue newNode;
+				}
+			}
+			--depth;
+			order[node] = count;
+			postOrder[count++] = node;
+			registerCfgNode(nodeMap, cfg.getNode(node));
+		}
+
+		return new WorklistNodeOrder<N>(cfg, postOrder, count, order, isForward);
+	}
+
+	private static int begin(CompactCFG<?> cfg, int node, boolean isForward) {
+		return isForward ? cfg.getOutputBegin(node) : cfg.getInputBegin(node);
+	}
+
+	private static int end(CompactCFG<?> cfg, int node, boolean isForward) {
+		return isForward ? cfg.getOutputEnd(node) : cfg.getInputEnd(node);
+	}
+
+	private static int edgeAt(CompactCFG<?> cfg, int position, boolean isForward) {
+		return isForward ? position : cfg.getInputEdge(position);
+	}
+
+	private static int target(CompactCFG<?> cfg, int edge, boolean isForward) {
+		return isForward ? cfg.getSink(edge) : cfg.getSource(edge);
+	}
+
+	/**
+	 * Add the given CFG node to the node map.
+	 * @param nodeMap
+	 * @param cfgNode
+	 */
+	private static <N> void registerCfgNode(
+			Map<N, Set<ICFGNode<N>>> nodeMap,
+			ICFGNode<N> cfgNode) {
+		N astnode = cfgNode.getASTNode();
+		if(astnode == null)
+			return;
+		Set<ICFGNode<N>> cfgnodes = nodeMap.get(astnode);
+		if (cfgnodes == null) {
+			// most AST nodes have only one CFG node; avoid a hash set for those
+			nodeMap.put(astnode, Collections.singleton(cfgNode));
+		}
+		else if (cfgnodes.size() == 1) {
+			cfgnodes = new HashSet<ICFGNode<N>>(cfgnodes);
+			cfgnodes.add(cfgNode);
+			nodeMap.put(astnode, cfgnodes);
+		}
+		else
+			cfgnodes.add(cfgNode);
+	}
+
+	/**
+	 * Returns the distinct labels on the edges leaving the given node in traversal 
+	 * direction, in iteration order of these edges.
+	 * @param node
+	 * @param isForward
+	 * @return the distinct labels on the edges leaving the given node in 
+	 * traversal direction, as an unmodifiable list.
+	 */
+	static <N> List<ILabel> createLabels(ICFGNode<N> node, boolean isForward) {
+		Set<? extends ICFGEdge<N>> out = edges(node, isForward);
+		if(out.size() == 1)
+			return Collections.singletonList(out.iterator().next().getLabel());
+		List<ILabel> labels = new ArrayList<ILabel>(out.size());
+		for(ICFGEdge<N> e : out) {
+			if(labels.contains(e.getLabel()) == false)
+				labels.add(e.getLabel());
+		}
+		return Collections.unmodifiableList(labels);
+	}
+
+	private static <N> Set<? extends ICFGEdge<N>> edges(ICFGNode<N> node, boolean isForward) {
+		return isForward ? node.getOutputs() : node.getInputs();
+	}
+
+	private static <N> ICFGNode<N> target(ICFGEdge<N> edge, boolean isForward) {
+		return isForward ? edge.getSink() : edge.getSource();
+	}
+
+	/** Nodes indexed by their post-order number. */
+	private final ICFGNode<N>[] nodes;
+	/** Edges leaving each node in traversal direction, indexed by post-order number. */
+	private final ICFGEdge<N>[][] edges;
+	/** Numbers of the nodes the edges in {@link #edges} lead to. */
+	private final int[][] targets;
+	/** Distinct labels on the edges in {@link #edges}, computed when first needed. */
+	private final List<ILabel>[] labels;
+	/** Traversal direction. */
+	private final boolean isForward;
+	/** Maps nodes to their numbers, unless numbering a compact graph. */
+	private final Map<ICFGNode<N>, Integer> numbers;
+	/** Compact graph being numbered, if any. */
+	private final CompactCFG<N> compact;
+	/** Numbers indexed by compact node id, or <code>-1</code> for unreachable nodes. */
+	private final int[] compactNumbers;
+	/** Weak topological ordering of the numbered nodes, computed when first needed. */
+	private WeakTopologicalOrder weakTopologicalOrder;
+
+	@SuppressWarnings("unchecked")
+	private WorklistNodeOrder(ArrayList<ICFGNode<N>> postOrder,
+			Map<ICFGNode<N>, Integer> order, boolean isForward) {
+		final int size = postOrder.size();
+		this.nodes = postOrder.toArray(new ICFGNode[size]);
+		this.edges = new ICFGEdge[size][];
+		this.targets = new int[size][];
+		this.labels = new List[size];
+		this.numbers = order;
+		this.compact = null;
+		this.compactNumbers = null;
+		this.isForward = isForward;
+		for(int i = 0; i < size; ++i) {
+			Set<? extends ICFGEdge<N>> out = edges(nodes[i], isForward);
+			ICFGEdge<N>[] e = out.toArray(new ICFGEdge[out.size()]);
+			int[] t = new int[e.length];
+			for(int j = 0; j < e.length; ++j)
+				t[j] = order.get(target(e[j], isForward));
+			edges[i] = e;
+			targets[i] = t;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private WorklistNodeOrder(CompactCFG<N> cfg, int[] postOrder, int size, 
+			int[] order, boolean isForward) {
+		this.nodes = new ICFGNode[size];
+		this.edges = new ICFGEdge[size][];
+		this.targets = new int[size][];
+		this.labels = new List[size];
+		this.numbers = null;
+		this.compact = cfg;
+		this.compactNumbers = order;
+		this.isForward = isForward;
+		for(int i = 0; i < size; ++i) {
+			int node = postOrder[i];
+			int begin = begin(cfg, node, isForward);
+			ICFGEdge<N>[] e = new ICFGEdge[end(cfg, node, isForward) - begin];
+			int[] t = new int[e.length];
+			for(int j = 0; j < e.length; ++j) {
+				int edge = edgeAt(cfg, begin + j, isForward);
+				e[j] = cfg.getEdge(edge);
+				t[j] = order[target(cfg, edge, isForward)];
+			}
+			nodes[i] = cfg.getNode(node);
+			edges[i] = e;
+			targets[i] = t;
+		}
+	}
+
+	/**
+	 * Returns the number of nodes reachable in the traversal direction.
+	 * @return the number of nodes reachable in the traversal direction.
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns the number of the node the traversal started from, which is
+	 * always the last node in post-order.
+	 * @return the number of the node the traversal started from.
+	 */
+	public int getRoot() {
+		return nodes.length - 1;
+	}
+
+	/**
+	 * Returns the number of the given node.
+	 * @param node
+	 * @return the number of the given node or <code>-1</code> if the 
+	 * node is not reachable in the traversal direction.
+	 */
+	public int getNumber(ICFGNode<N> node) {
+		if(compact != null) {
+			int id = compact.getId(node);
+			return id < 0 ? -1 : compactNumbers[id];
+		}
+		Integer result = numbers.get(node);
+		return result == null ? -1 : result;
+	}
+
+	/**
+	 * Returns the node with the given number.
+	 * @param number
+	 * @return the node with the given number.
+	 */
+	public ICFGNode<N> getNode(int number) {
+		return nodes[number];
+	}
+
+	/**
+	 * Returns the edges leaving the given node in traversal direction.
+	 * Callers must not modify the returned array.
+	 * @param number
+	 * @return the edges leaving the given node in traversal direction.
+	 */
+	public ICFGEdge<N>[] getEdges(int number) {
+		return edges[number];
+	}
+
+	/**
+	 * Returns the numbers of the nodes that the {@link #getEdges(int) edges} leaving
+	 * the given node lead to, in the same order as the edges.
+	 * Callers must not modify the returned array.
+	 * @param number
+	 * @return the numbers of the nodes the given node's edges lead to.
+	 */
+	public int[] getTargets(int number) {
+		return targets[number];
+	}
+
+	/**
+	 * Returns the distinct labels on the {@link #getEdges(int) edges} leaving
+	 * the given node, which branch-sensitive transfer functions need to produce
+	 * results for.  The list is computed when first requested for a given node 
+	 * and then re-used.
+	 * @param number
+	 * @return the distinct labels on the edges leaving the given node, as an
+	 * unmodifiable list.
+	 */
+	public List<ILabel> getLabels(int number) {
+		List<ILabel> result = labels[number];
+		if(result == null) {
+			// benign race: concurrent callers compute equal lists
+			result = createLabels(nodes[number], isForward);
+			labels[number] = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a weak topological ordering of the numbered nodes, which is
+	 * computed when first requested and then re-used.
+	 * @return a weak topological ordering of the numbered nodes.
+	 */
+	WeakTopologicalOrder getWeakTopologicalOrder() {
+		WeakTopologicalOrder result = weakTopologicalOrder;
+		if(result == null) {
+			// benign race: concurrent callers compute equal orderings
+			result = new WeakTopologicalOrder(this);
+			weakTopologicalOrder = result;
+		}
+		return result;
+	}
+
+}
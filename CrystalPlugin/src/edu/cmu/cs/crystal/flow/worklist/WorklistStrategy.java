@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+/**
+ * Strategies for choosing the next node, or basic block, a worklist visits.
+ * For monotone, distributive transfer functions, all strategies compute the 
+ * same fixed point and only differ in how often nodes have to be visited until 
+ * it is reached.  For other analyses, the fixed point can depend on the order in
+ * which nodes are visited (see {@link #FIFO}).
+ * Strategies do not apply to the {@link WorklistTemplate#setUseTreeSetWorklist(boolean) 
+ * TreeSet-based} worklist, which always visits nodes in reverse post-order.
+ * 
+ * @see WorklistTemplate#setWorklistStrategy(WorklistStrategy)
+ * @see WorklistTemplate#getTransferCount()
+ */
+public enum WorklistStrategy {
+	
+	/** 
+	 * Always visit the pending node that comes first in reverse post-order.
+	 * This is the default.
+	 */
+	REVERSE_POSTORDER {
+		@Override
+		NodeWorklist createWorklist(WorklistNodeOrder<?> order) {
+			return new OrderedNodeWorklist(order.size());
+		}
+	},
+	
+	/**
+	 * Visit nodes in a weak topological ordering and iterate every loop,
+	 * starting with its innermost loops, until it is stable before moving 
+	 * past it.  This tends to reduce visits for nested loops.
+	 * @see WeakTopologicalOrder
+	 */
+	WEAK_TOPOLOGICAL_ORDER {
+		@Override
+		NodeWorklist createWorklist(WorklistNodeOrder<?> order) {
+			return order.getWeakTopologicalOrder().createWorklist();
+		}
+	},
+	
+	/** 
+	 * Visit nodes in the order they were added to the worklist, which is mostly
+	 * useful for comparison.  Unlike the other strategies, this may visit a node
+	 * before all its predecessors outside of loops were visited.  Analyses that
+	 * are not distributive, such as many branch-sensitive ones, can then reach 
+	 * a less precise fixed point than with the other strategies, because 
+	 * results passed along an edge are never taken back.
+	 */
+	FIFO {
+		@Override
+		NodeWorklist createWorklist(WorklistNodeOrder<?> order) {
+			return new FifoNodeWorklist(order.size());
+		}
+	};
+	
+	/**
+	 * Creates an empty worklist for the nodes in the given numbering.
+	 * @param order
+	 * @return an empty worklist for the nodes in the given numbering.
+	 */
+	abstract NodeWorklist createWorklist(WorklistNodeOrder<?> order);
+
+}
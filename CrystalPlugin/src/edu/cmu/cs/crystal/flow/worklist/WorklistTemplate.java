@@ -21,6 +21,8 @@ package edu.cmu.cs.crystal.flow.worklist;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
@@ -28,6 +30,7 @@ import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import edu.cmu.cs.crystal.cfg.BasicBlockGraph;
 import edu.cmu.cs.crystal.cfg.ICFGEdge;
 import edu.cmu.cs.crystal.cfg.ICFGNode;
 import edu.cmu.cs.crystal.cfg.IControlFlowGraph;
@@ -37,6 +40,7 @@ import edu.cmu.cs.crystal.flow.IAbstractLatticeOperations;
 import edu.cmu.cs.crystal.flow.ILabel;
 import edu.cmu.cs.crystal.flow.ILatticeOperations;
 import edu.cmu.cs.crystal.flow.IResult;
+import edu.cmu.cs.crystal.flow.LatticeUtilities;
 import edu.cmu.cs.crystal.flow.NormalLabel;
 
 /**
@@ -60,6 +64,131 @@ public abstract class WorklistTemplate<LE, N, OP extends IAbstractLatticeOperati
 	
 	private static final Logger log = Logger.getLogger(WorklistTemplate.class.getName());
 	
+	/**
+	 * Name of the system property that, if set to <code>true</code>, makes worklists
+	 * use the original {@link TreeSet}-based node ordering by default.
+	 * @see #setUseTreeSetWorklist(boolean)
+	 */
+	public static final String TREESET_WORKLIST_PROPERTY = "edu.cmu.cs.crystal.worklist.treeset";
+	
+	/** 
+	 * Schedule nodes with a {@link TreeSet} and {@link WorklistNodeOrderComparator} 
+	 * instead of dense post-order numbers.
+	 */
+	private boolean useTreeSetWorklist = Boolean.getBoolean(TREESET_WORKLIST_PROPERTY);
+	
+	/**
+	 * Name of the system property that, if set to <code>true</code>, makes worklists
+	 * visit basic blocks instead of individual CFG nodes by default.
+	 * @see #setUseBasicBlocks(boolean)
+	 */
+	public static final String BASIC_BLOCKS_PROPERTY = "edu.cmu.cs.crystal.worklist.basicBlocks";
+	
+	/** Schedule basic blocks instead of individual nodes. */
+	private boolean useBasicBlocks = Boolean.getBoolean(BASIC_BLOCKS_PROPERTY);
+	
+	/**
+	 * Name of the system property that selects the default {@link WorklistStrategy},
+	 * such as <code>WEAK_TOPOLOGICAL_ORDER</code> or <code>fifo</code>.
+	 * @see #setWorklistStrategy(WorklistStrategy)
+	 */
+	public static final String WORKLIST_STRATEGY_PROPERTY = "edu.cmu.cs.crystal.worklist.strategy";
+	
+	/** Order in which pending nodes or blocks are visited. */
+	private WorklistStrategy strategy = getDefaultStrategy();
+	
+	/** Last unknown strategy name warned about, to only warn once per name. */
+	private static volatile String unknownStrategy;
+	
+	/**
+	 * Returns the strategy named by the {@link #WORKLIST_STRATEGY_PROPERTY} property,
+	 * ignoring case.  Falls back to {@link WorklistStrategy#REVERSE_POSTORDER} if the 
+	 * property is not set or does not name a strategy.
+	 * @return the default worklist strategy.
+	 */
+	static WorklistStrategy getDefaultStrategy() {
+		String name = System.getProperty(WORKLIST_STRATEGY_PROPERTY);
+		if(name == null)
+			return WorklistStrategy.REVERSE_POSTORDER;
+		try {
+			return WorklistStrategy.valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+		}
+		catch(IllegalArgumentException e) {
+			if(!name.equals(unknownStrategy)) {
+				unknownStrategy = name;
+				log.log(Level.WARNING, "Unknown worklist strategy \"" + name + "\" in " + 
+						WORKLIST_STRATEGY_PROPERTY + ", using " + WorklistStrategy.REVERSE_POSTORDER);
+			}
+			return WorklistStrategy.REVERSE_POSTORDER;
+		}
+	}
+	
+	/** Number of nodes transferred over by the last {@link #performAnalysis()}. */
+	private int transferCount;
+	
+	/** Node numbering used by the running worklist, if any. */
+	private WorklistNodeOrder<N> currentOrder;
+	/** Number of the node currently being transferred over, or -1. */
+	private int currentNumber = -1;
+	
+	/**
+	 * Determines how {@link #performAnalysis()} keeps track of nodes that need to be visited.
+	 * By default, nodes are numbered in post-order once and pending nodes are kept in 
+	 * a bit set, which avoids hashing and comparisons while iterating.  The original 
+	 * implementation keeps pending nodes in a {@link TreeSet}; it is available for
+	 * comparing results and visits nodes in the same order.
+	 * @param useTreeSetWorklist <code>true</code> to use the original {@link TreeSet}-based
+	 * worklist, <code>false</code> to use dense post-order numbers.
+	 * @see #TREESET_WORKLIST_PROPERTY
+	 */
+	public void setUseTreeSetWorklist(boolean useTreeSetWorklist) {
+		this.useTreeSetWorklist = useTreeSetWorklist;
+	}
+	
+	/**
+	 * Determines whether {@link #performAnalysis()} schedules 
+	 * {@link BasicBlockGraph basic blocks} or individual nodes.  
+	 * By default, the worklist visits individual nodes.  Otherwise, it visits basic 
+	 * blocks, transferring over the nodes in a block one after the other, and only 
+	 * keeps results at block boundaries.  
+	 * Results for the nodes inside a block are computed again from the block's
+	 * incoming result when they are first requested.  This requires transfer 
+	 * functions to compute the same results when invoked again with the same input,
+	 * which is why basic blocks have to be turned on explicitly.
+	 * This setting has no effect with the {@link #setUseTreeSetWorklist(boolean) 
+	 * TreeSet-based} worklist.
+	 * @param useBasicBlocks <code>true</code> to visit basic blocks, <code>false</code>
+	 * to visit individual nodes.
+	 * @see #BASIC_BLOCKS_PROPERTY
+	 */
+	public void setUseBasicBlocks(boolean useBasicBlocks) {
+		this.useBasicBlocks = useBasicBlocks;
+	}
+	
+	/**
+	 * Determines the order in which {@link #performAnalysis()} visits pending nodes,
+	 * or basic blocks.  By default, nodes are visited in reverse post-order.
+	 * This setting has no effect with the {@link #setUseTreeSetWorklist(boolean) 
+	 * TreeSet-based} worklist.
+	 * @param strategy
+	 * @see #WORKLIST_STRATEGY_PROPERTY
+	 */
+	public void setWorklistStrategy(WorklistStrategy strategy) {
+		if(strategy == null)
+			throw new NullPointerException("No worklist strategy given");
+		this.strategy = strategy;
+	}
+	
+	/**
+	 * Returns the number of times the last {@link #performAnalysis()} transferred 
+	 * over a node until it reached a fixed point.  Transferring over a node again
+	 * to retrieve results for nodes inside basic blocks is not counted.
+	 * @return the number of times the last analysis transferred over a node.
+	 */
+	public int getTransferCount() {
+		return transferCount;
+	}
+	
 	/**
      * Carries out the worklist algorithm to discover the results
      * of the ASTNode argument.  This method implements the <i>Template 
@@ -74,30 +203,226 @@ public abstract class WorklistTemplate<LE, N, OP extends IAbstractLatticeOperati
      */
     public AnalysisResult<LE, N, OP> performAnalysis() {
     	
-		// Setup result mappings
-    	HashMap<ICFGNode<N>, IResult<LE>> labeledResultsBefore = new HashMap<ICFGNode<N>, IResult<LE>>();
-    	HashMap<ICFGNode<N>, IResult<LE>> labeledResultsAfter = new HashMap<ICFGNode<N>, IResult<LE>>();
-    	HashMap<N, Set<ICFGNode<N>>> nodeMap = new HashMap<N, Set<ICFGNode<N>>>();
-		
 		// 0. Verify and Collect required data: direction, lattice, CFG
 		AnalysisDirection direction;
-		IControlFlowGraph<N> cfg;
-		OP ops;
-		LE entry;
+		WorklistGraph<N> graph;
+		OP ops;
+		LE entry;
 		
 		direction = getAnalysisDirection();
 		assert direction != null : "Cannot perform dataflow analysis without a direction";
-		ops = getLatticeOperations();
-		assert ops != null : "Cannot perform analysis without lattice operations";
+		ops = getLatticeOperations();
+		assert ops != null : "Cannot perform analysis without lattice operations";
 		entry = getEntryValue();
-		if(entry == null)
-			// always check this one since not sure when this would fail subsequently
-			throw new NullPointerException("Cannot perform dataflow analysis without entry analysis information");
-		cfg = getControlFlowGraph();
-		assert cfg != null : "Cannot perform dataflow analysis without a CFG";
+		if(entry == null)
+			// always check this one since not sure when this would fail subsequently
+			throw new NullPointerException("Cannot perform dataflow analysis without entry analysis information");
+		LatticeUtilities.freeze(ops, entry);
+		graph = getWorklistGraph();
+		assert graph != null && graph.getControlFlowGraph() != null : "Cannot perform dataflow analysis without a CFG";
 
 		// Populate fields about the current analysis
 		boolean isForward = direction.equals(AnalysisDirection.FORWARD_ANALYSIS);
+		transferCount = 0;
+
+		// 1. Set up worklist with initial node and
+		// 2. LOOP Until Worklist is Empty
+		if(useTreeSetWorklist)
+			return runTreeSetWorklist(graph.getControlFlowGraph(), isForward, ops, entry);
+		else if(useBasicBlocks)
+			return runBlockWorklist(graph, isForward, ops, entry);
+		else
+			return runOrderedWorklist(graph, isForward, ops, entry);
+    }
+
+	/**
+	 * Runs the worklist loop over the basic blocks of the given graph, using dense
+	 * post-order numbers for blocks that are visited in the order given by the
+	 * {@link #setWorklistStrategy(WorklistStrategy) strategy}.  Only incoming results 
+	 * of blocks are kept while iterating; results for individual nodes are computed when they are requested.
+	 * @see WorklistBlockOrder
+	 * @see BlockResultStore
+	 */
+	@SuppressWarnings("unchecked")
+	private AnalysisResult<LE, N, OP> runBlockWorklist(WorklistGraph<N> graph, 
+			final boolean isForward, final OP ops, LE entry) {
+		IControlFlowGraph<N> cfg = graph.getControlFlowGraph();
+		Map<N, Set<ICFGNode<N>>> nodeMap = graph.getNodeMap(isForward);
+		final WorklistBlockOrder<N> blocks = graph.getBlockOrder(isForward);
+		WorklistNodeOrder<N> order = blocks.getBlockOrder();
+		// incoming results for blocks, relative to analysis direction
+		IResult<LE>[] incoming = new IResult[order.size()];
+
+		// 1. Set up worklist with initial block.
+		NodeWorklist worklist = strategy.createWorklist(order);
+		int initial = order.getRoot();
+		worklist.add(initial);
+		incoming[initial] = new IncomingResult<LE>(entry);
+		
+		// 2. LOOP Until Worklist is Empty
+		while (! worklist.isEmpty()) {
+			
+			int from = worklist.remove();
+			transferCount += blocks.getNodeNumbers(from).length;
+			
+			// 2a. and 2b. transfer over the block's nodes
+			IResult<LE> afterResults = 
+				transferOverBlock(blocks, from, checkNull(incoming[from]), isForward, ops, null);
+			
+			// 2c. Transfer over following edges
+			ICFGEdge<N>[] edges = order.getEdges(from);
+			int[] targets = order.getTargets(from);
+			for (int i = 0; i < edges.length; ++i) {
+				ICFGEdge<N> edge = ((BasicBlockGraph.BlockEdge<N>) edges[i]).getEdge();
+				int to = targets[i];
+				IncomingResult<LE> beforeToResults = mergeAlongEdge(edge, isForward, afterResults, 
+						(IncomingResult<LE>) incoming[to], ops);
+				if(beforeToResults != null) {
+					incoming[to] = beforeToResults;
+					// 2c-iii. Add to the worklist for further processing
+					worklist.add(to);
+				}
+			}
+		}
+		
+		BlockResultStore<N, LE> results = new BlockResultStore<N, LE>(blocks, incoming, isForward, 
+				new BlockResultStore.BlockTransfer<N, LE>() {
+					public void transferOverBlock(int block, IResult<LE> blockIncoming, 
+							NodeResultStore<N, LE> store) {
+						WorklistTemplate.this.transferOverBlock(blocks, block, blockIncoming, 
+								isForward, ops, store);
+					}
+				});
+		return createAnalysisResult(results, nodeMap, ops, cfg.getStartNode(), cfg.getEndNode());
+	}
+
+	/**
+	 * Transfers over the nodes in the given block one after the other, in analysis
+	 * direction.  Nodes inside a block have only one incoming edge, so the result 
+	 * along that edge becomes the next node's incoming result without merging.
+	 * @param blocks
+	 * @param block Number of the block to transfer over.
+	 * @param incoming Incoming result for the block (relative to the analysis direction).
+	 * @param isForward
+	 * @param ops
+	 * @param results Store for the results of the individual nodes, or <code>null</code> 
+	 * if only the block's outgoing results are needed.
+	 * @return Outgoing results for the block (relative to the analysis direction).
+	 */
+	private IResult<LE> transferOverBlock(WorklistBlockOrder<N> blocks, int block, 
+			IResult<LE> incoming, boolean isForward, OP ops, NodeResultStore<N, LE> results) {
+		WorklistNodeOrder<N> order = blocks.getNodeOrder();
+		int[] numbers = blocks.getNodeNumbers(block);
+		ICFGEdge<N>[] edges = blocks.getInternalEdges(block);
+		IResult<LE> beforeResults = incoming;
+		currentOrder = order;
+		try {
+			for (int i = 0; ; ++i) {
+				int number = numbers[i];
+				ICFGNode<N> node = order.getNode(number);
+				currentNumber = number;
+				IResult<LE> afterResults;
+				try {
+					afterResults = transferOver(node, beforeResults, ops);
+				}
+				catch(RuntimeException e) {
+					// for debugging purposes, catch and rethrow exceptions to print out source AST node where it happened
+					log.log(Level.WARNING, "Runtime exception processing node: " + node + " with code " + node.getASTNode(), e);
+					throw e;
+				}
+				if(results != null) {
+					results.setBeforeAnalyzing(number, beforeResults);
+					results.setAfterAnalyzing(number, afterResults);
+				}
+				if(i == edges.length)
+					return afterResults;
+				beforeResults = mergeAlongEdge(edges[i], isForward, afterResults, null, ops);
+			}
+		}
+		finally {
+			currentNumber = -1;
+		}
+	}
+
+	/**
+	 * Runs the worklist loop over dense post-order numbers, visiting pending
+	 * nodes in the order given by the {@link #setWorklistStrategy(WorklistStrategy) strategy}.
+	 * Nodes are scheduled without hashing or boxing; the CFG is numbered once up-front,
+	 * and results are kept in arrays indexed by these numbers.
+	 * The numbering and node map are taken from the given graph, which may
+	 * have computed them for a previous worklist run.
+	 * @see WorklistNodeOrder
+	 * @see NodeResultStore
+	 */
+	private AnalysisResult<LE, N, OP> runOrderedWorklist(WorklistGraph<N> graph, 
+			boolean isForward, OP ops, LE entry) {
+		// Setup result mappings
+		IControlFlowGraph<N> cfg = graph.getControlFlowGraph();
+		Map<N, Set<ICFGNode<N>>> nodeMap = graph.getNodeMap(isForward);
+		WorklistNodeOrder<N> order = graph.getNodeOrder(isForward);
+		// results are relative to analysis direction
+		NodeResultStore<N, LE> results = new NodeResultStore<N, LE>(order, isForward);
+
+		currentOrder = order;
+
+		// 1. Set up worklist with initial node.
+		NodeWorklist worklist = strategy.createWorklist(order);
+		int initial = order.getRoot();
+		worklist.add(initial);
+		results.setBeforeAnalyzing(initial, new IncomingResult<LE>(entry));
+		
+		// 2. LOOP Until Worklist is Empty
+		while (! worklist.isEmpty()) {
+			
+			int from = worklist.remove();
+			ICFGNode<N> fromNode = order.getNode(from);
+			++transferCount;
+			currentNumber = from;
+			
+			try {
+				// 2a. and 2b. transfer over node
+				IResult<LE> afterResults = 
+					transferOver(fromNode, checkNull(results.getBeforeAnalyzing(from)), ops);
+				results.setAfterAnalyzing(from, afterResults);
+				
+				// 2c. Transfer over following edges
+				ICFGEdge<N>[] edges = order.getEdges(from);
+				int[] targets = order.getTargets(from);
+				for (int i = 0; i < edges.length; ++i) {
+					ICFGEdge<N> edge = edges[i];
+					int to = targets[i];
+					IncomingResult<LE> beforeToResults = mergeAlongEdge(edge, isForward, afterResults, 
+							(IncomingResult<LE>) results.getBeforeAnalyzing(to), ops);
+					if(beforeToResults != null) {
+						results.setBeforeAnalyzing(to, beforeToResults);
+						// 2c-iii. Add to the worklist for further processing
+						worklist.add(to);
+					}
+				}
+			}
+			catch(RuntimeException e) {
+				// for debugging purposes, catch and rethrow exceptions to print out source AST node where it happened
+				log.log(Level.WARNING, "Runtime exception processing node: " + fromNode + " with code " + fromNode.getASTNode(), e);
+				throw e;
+			}
+		}
+		currentNumber = -1;
+		return createAnalysisResult(results, nodeMap, ops, cfg.getStartNode(), cfg.getEndNode());
+	}
+
+	/**
+	 * Runs the worklist loop with a {@link TreeSet} of CFG nodes ordered by 
+	 * {@link WorklistNodeOrderComparator} and keeps results in hash maps.  
+	 * This was the original implementation and is kept to be able to compare results.
+	 * @see #setUseTreeSetWorklist(boolean)
+	 */
+	private AnalysisResult<LE, N, OP> runTreeSetWorklist(IControlFlowGraph<N> cfg, 
+			boolean isForward, OP ops, LE entry) {
+		// Setup result mappings
+    	HashMap<ICFGNode<N>, IResult<LE>> labeledResultsBefore = new HashMap<ICFGNode<N>, IResult<LE>>();
+    	HashMap<ICFGNode<N>, IResult<LE>> labeledResultsAfter = new HashMap<ICFGNode<N>, IResult<LE>>();
+    	HashMap<N, Set<ICFGNode<N>>> nodeMap = new HashMap<N, Set<ICFGNode<N>>>();
+		
 		Map<ICFGNode<N>, IResult<LE>> resultsBeforeAnalyzing;  
 		Map<ICFGNode<N>, IResult<LE>> resultsAfterAnalyzing;
 		// make result mappings relative to analysis direction
@@ -126,78 +451,24 @@ public abstract class WorklistTemplate<LE, N, OP extends IAbstractLatticeOperati
 			// Pick last in post-order to visit nodes in "reverse" post-order
 			ICFGNode<N> fromNode = worklist.last();
 			worklist.remove(fromNode);
+			++transferCount;
 			
 			try {
-				// 2a. Establish before-node analysis result
-				
-				// Retrieve the lattice information from the fromNode
-				// It's an error if this information doesn't exist
-				IResult<LE> beforeFromLattice = checkNull(resultsBeforeAnalyzing.get(fromNode));
-	
-				// 2b. transfer over node
-				IResult<LE> afterResults = null;
-				for (ILabel transferLabel : beforeFromLattice.keySet()) {
-				
-					// Create a copy of the lattice to protect it from accidental
-					// manipulation by the transfer function.
-					LE beforeFromLatticeCopy = checkNull(ops.copy(beforeFromLattice.get(transferLabel)));
-					
-					// Carry out the associated flow function with the copy lattice
-					IResult<LE> transferResults = 
-						checkNull(transferNode(fromNode, beforeFromLatticeCopy, transferLabel));
-							
-					if (afterResults == null)
-						afterResults = transferResults;
-					else
-						afterResults = checkNull(afterResults.join(transferResults, ops));
-				}		
-						
-				// put result back in
-				resultsAfterAnalyzing.put(fromNode, checkNull(afterResults));
+				// 2a. and 2b. transfer over node
+				IResult<LE> afterResults = 
+					transferOver(fromNode, checkNull(resultsBeforeAnalyzing.get(fromNode)), ops);
+				resultsAfterAnalyzing.put(fromNode, afterResults);
 							
 				// 2c. Transfer over following edges
 				for (ICFGEdge<N> edge : (isForward ? fromNode.getOutputs() : fromNode.getInputs())) {
-					ILabel edgeLabel = edge.getLabel();
-					ILabel toLabel = incomingLabel(edgeLabel);
-					
-					// 2c-i. Find node and lattice to merge
 					ICFGNode<N> toNode = isForward ? edge.getSink() : edge.getSource();
-					LE mergeIntoNode = afterResults.get(edgeLabel);
-					
-					// 2c-ii. Update following node
-					if (resultsBeforeAnalyzing.containsKey(toNode)) {
-						// Get the previously stored "before" results of the toNode
-						IncomingResult<LE> beforeToResults = (IncomingResult<LE>) resultsBeforeAnalyzing.get(toNode);
-						// If the child node's before lattice is not null and the beforeTo 
-						// is more precise than the result then join and revisit this child.
-						if (! beforeToResults.keySet().contains(toLabel)) {
-							// no previous result for this branch
-							beforeToResults.put(toLabel, checkNull(mergeIntoNode));
-						}
-						else if (! ops.atLeastAsPrecise(mergeIntoNode, beforeToResults.get(toLabel), 
-								toNode.getASTNode())) {
-							if(ops.atLeastAsPrecise(beforeToResults.get(toLabel), mergeIntoNode, toNode.getASTNode()))
-								// no need to join, just override existing result
-								beforeToResults.put(toLabel, mergeIntoNode);
-							else {
-								// Make a deep copy of the result lattice
-								LE beforeToLatticeCopy = checkNull(ops.copy(beforeToResults.get(toLabel)));
-								LE resultLatticeCopy = checkNull(ops.copy(mergeIntoNode));
-								// Store the join of the resultLattice and the beforeToLattice
-								beforeToResults.put(toLabel, checkNull(
-										ops.join(beforeToLatticeCopy, resultLatticeCopy, toNode.getASTNode())));
-							}
-						} 
-						else
-							// in this case we did not update the lattice, so don't change the results
-							continue;
+					IncomingResult<LE> beforeToResults = mergeAlongEdge(edge, isForward, afterResults, 
+							(IncomingResult<LE>) resultsBeforeAnalyzing.get(toNode), ops);
+					if(beforeToResults != null) {
+						resultsBeforeAnalyzing.put(toNode, beforeToResults);
+						// 2c-iii. Add to the worklist for further processing
+						worklist.add(toNode);
 					}
-					else
-						// no previous "before" result for toNode
-						resultsBeforeAnalyzing.put(toNode, new IncomingResult<LE>(mergeIntoNode, toLabel));
-					
-					// 2c-iii. Add to the worklist for further processing
-					worklist.add(toNode);
 				}
 			}
 			catch(RuntimeException e) {
@@ -208,7 +479,124 @@ public abstract class WorklistTemplate<LE, N, OP extends IAbstractLatticeOperati
 		}
 		return createAnalysisResult(labeledResultsBefore, labeledResultsAfter, nodeMap,
 				                    ops, cfg.getStartNode(), cfg.getEndNode());
-    }
+	}
+
+	/**
+	 * Transfers over the given node for every label of its incoming result and 
+	 * joins the outgoing results.
+	 * If the lattice supports freezing, the outgoing results are frozen.
+	 * @param fromNode
+	 * @param beforeFromLattice Incoming result for the given node (relative to the analysis direction).
+	 * @param ops
+	 * @return Outgoing results for the given node (relative to the analysis direction).
+	 */
+	private IResult<LE> transferOver(ICFGNode<N> fromNode, IResult<LE> beforeFromLattice, OP ops) {
+		// 2b. transfer over node
+		IResult<LE> afterResults = null;
+		for (ILabel transferLabel : beforeFromLattice.keySet()) {
+		
+			// Create a copy of the lattice to protect it from accidental
+			// manipulation by the transfer function.
+			LE beforeFromLatticeCopy = checkNull(ops.copy(beforeFromLattice.get(transferLabel)));
+			
+			// Carry out the associated flow function with the copy lattice
+			IResult<LE> transferResults = 
+				checkNull(transferNode(fromNode, beforeFromLatticeCopy, transferLabel));
+					
+			if (afterResults == null)
+				afterResults = transferResults;
+			else
+				afterResults = checkNull(afterResults.join(transferResults, ops));
+		}
+		return LatticeUtilities.freezeResult(ops, checkNull(afterResults));
+	}
+
+	/**
+	 * Merges the result for the given edge's label into the incoming result of the 
+	 * node the edge leads to.
+	 * @param edge
+	 * @param isForward
+	 * @param afterResults Outgoing results of the node the edge comes from.
+	 * @param beforeToResults Previous incoming result of the node the edge leads to,
+	 * or <code>null</code> if there is none yet.
+	 * @param ops
+	 * @return The incoming result of the node the edge leads to if it changed and the 
+	 * node needs to be (re-)visited, <code>null</code> otherwise.
+	 */
+	private IncomingResult<LE> mergeAlongEdge(ICFGEdge<N> edge, boolean isForward, IResult<LE> afterResults,
+			IncomingResult<LE> beforeToResults, OP ops) {
+		ILabel edgeLabel = edge.getLabel();
+		ILabel toLabel = incomingLabel(edgeLabel);
+		
+		// 2c-i. Find node and lattice to merge
+		ICFGNode<N> toNode = isForward ? edge.getSink() : edge.getSource();
+		// edge label may not be among the result's labels, which may yield an unfrozen default
+		LE mergeIntoNode = LatticeUtilities.freeze(ops, afterResults.get(edgeLabel));
+		
+		// 2c-ii. Update following node
+		if (beforeToResults != null) {
+			// If the child node's before lattice is not null and the beforeTo 
+			// is more precise than the result then join and revisit this child.
+			if (! beforeToResults.keySet().contains(toLabel)) {
+				// no previous result for this branch
+				beforeToResults.put(toLabel, checkNull(mergeIntoNode));
+			}
+			else if (! ops.atLeastAsPrecise(mergeIntoNode, beforeToResults.get(toLabel), 
+					toNode.getASTNode())) {
+				if(ops.atLeastAsPrecise(beforeToResults.get(toLabel), mergeIntoNode, toNode.getASTNode()))
+					// no need to join, just override existing result
+					beforeToResults.put(toLabel, mergeIntoNode);
+				else {
+					// Make a deep copy of the result lattice, unless joins leave frozen lattices alone
+					LE beforeToLatticeCopy = checkNull(LatticeUtilities.copyForJoin(ops, beforeToResults.get(toLabel)));
+					LE resultLatticeCopy = checkNull(LatticeUtilities.copyForJoin(ops, mergeIntoNode));
+					// Store the join of the resultLattice and the beforeToLattice
+					beforeToResults.put(toLabel, LatticeUtilities.freeze(ops, checkNull(
+							ops.join(beforeToLatticeCopy, resultLatticeCopy, toNode.getASTNode()))));
+				}
+			} 
+			else
+				// in this case we did not update the lattice, so don't change the results
+				return null;
+			return beforeToResults;
+		}
+		else
+			// no previous "before" result for toNode
+			return new IncomingResult<LE>(mergeIntoNode, toLabel);
+	}
+
+	/**
+	 * Returns the distinct labels on the edges leaving the given node
+	 * (relative to the analysis direction).  For the node currently being
+	 * transferred over, the labels are taken from the graph's 
+	 * {@link WorklistNodeOrder#getLabels(int) precomputed label lists}.
+	 * @param cfgNode
+	 * @return the distinct labels on the edges leaving the given node
+	 * (relative to the analysis direction), as an unmodifiable list.
+	 */
+	protected List<ILabel> getLabels(ICFGNode<N> cfgNode) {
+		if(currentNumber >= 0 && currentOrder.getNode(currentNumber) == cfgNode)
+			return currentOrder.getLabels(currentNumber);
+		return WorklistNodeOrder.createLabels(cfgNode, 
+				AnalysisDirection.FORWARD_ANALYSIS == getAnalysisDirection());
+	}
+
+    /**
+     * Creates an analysis result object from the given result store.
+     * @param results Labeled results for the nodes in the analyzed control flow graph.
+     * @param nodeMap Map from AST to CFG nodes, to cover the case where one AST node maps to multiple CFG nodes.
+     * @param ops Lattice operations used for computing results; 
+     * this is useful in particular for acquiring {@link ILatticeOperations#bottom()} later
+     * @param _startNode Start node in the control flow graph
+     * @param _endNode End node in the control flow graph
+     * @return Analysis result object holding the given parameters.
+     */
+	protected AnalysisResult<LE, N, OP> createAnalysisResult(
+			NodeResultStore<N, LE> results,
+			Map<N, Set<ICFGNode<N>>> nodeMap,
+			OP ops, ICFGNode<N> _startNode, ICFGNode<N> _endNode) {
+		return new AnalysisResult<LE, N, OP>(nodeMap, results, ops, _startNode, _endNode);
+	}
 
     /**
      * Creates an analysis result object from the given result maps.
@@ -258,6 +646,19 @@ public abstract class WorklistTemplate<LE, N, OP extends IAbstractLatticeOperati
 	 */
 	protected abstract IControlFlowGraph<N> getControlFlowGraph();
 
+	/**
+	 * Returns the control flow graph for this worklist run together with the
+	 * information derived from it, such as the order in which to visit nodes.
+	 * This method will be invoked once per worklist instance.
+	 * The default implementation prepares the graph returned by 
+	 * {@link #getControlFlowGraph()}; override this method to re-use
+	 * graphs prepared for previous worklist runs.
+	 * @return Prepared control flow graph for this worklist run.
+	 */
+	protected WorklistGraph<N> getWorklistGraph() {
+		return new WorklistGraph<N>(getControlFlowGraph());
+	}
+
 	/**
 	 * Implement this method to create the lattice operations to be used in this worklist run.
 	 * This method will be invoked once per worklist instance.
@@ -412,13 +813,13 @@ public abstract class WorklistTemplate<LE, N, OP extends IAbstractLatticeOperati
 				IncomingResult<LE> other = (IncomingResult<LE>) otherResult;
 				LE nrm = this.normalResult;
 				if(other.normalResult != null)
-					nrm = (nrm == null) ? other.normalResult : op.join(op.copy(nrm), op.copy(other.normalResult), null);
+					nrm = (nrm == null) ? other.normalResult : op.join(LatticeUtilities.copyForJoin(op, nrm), LatticeUtilities.copyForJoin(op, other.normalResult), null);
 				LE tru = this.trueResult;
 				if(other.trueResult != null)
-					tru = (tru == null) ? other.trueResult : op.join(op.copy(tru), op.copy(other.trueResult), null);
+					tru = (tru == null) ? other.trueResult : op.join(LatticeUtilities.copyForJoin(op, tru), LatticeUtilities.copyForJoin(op, other.trueResult), null);
 				LE fls = this.falseResult;
 				if(other.falseResult != null)
-					fls = (fls == null) ? other.falseResult : op.join(op.copy(fls), op.copy(other.falseResult), null);
+					fls = (fls == null) ? other.falseResult : op.join(LatticeUtilities.copyForJoin(op, fls), LatticeUtilities.copyForJoin(op, other.falseResult), null);
 				return new IncomingResult<LE>(nrm, fls, tru);
 			}
 			throw new IllegalStateException("Internal results should never be joined with results of type: " + otherResult.getClass());
@@ -121,6 +121,8 @@ public abstract class AbstractCrystalPlugin extends AbstractUIPlugin {
 				crystal = new Crystal();
 		}
 		setupCrystalAnalyses(crystal);
+		crystal.setResultCacheLocation(
+				getStateLocation().append("results").toFile(), Crystal.DEFAULT_RESULT_CACHE_SIZE);
 
 		// analysis extensions
 		Set<String> disabled = CrystalPreferences.getDisabledAnalyses();
@@ -218,6 +220,11 @@ public abstract class AbstractCrystalPlugin extends AbstractUIPlugin {
 
 	@Override
 	public void stop(BundleContext context) throws Exception {
+		synchronized (AbstractCrystalPlugin.class) {
+			if (crystal != null)
+				// closes on-disk result stores
+				crystal.setResultCacheLocation(null, Crystal.DEFAULT_RESULT_CACHE_SIZE);
+		}
 		plugin = null;
 		super.stop(context);
 	}
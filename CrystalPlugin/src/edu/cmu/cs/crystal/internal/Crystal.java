@@ -17,29 +17,53 @@
  */
 package edu.cmu.cs.crystal.internal;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.ITypeRoot;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTRequestor;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.IBinding;
 
+import edu.cmu.cs.crystal.AbstractCrystalMethodAnalysis;
 import edu.cmu.cs.crystal.IAnalysisInput;
+import edu.cmu.cs.crystal.IAnalysisReporter;
 import edu.cmu.cs.crystal.ICrystalAnalysis;
+import edu.cmu.cs.crystal.IDependentAnalysis;
+import edu.cmu.cs.crystal.IMarkerPublishingReporter;
+import edu.cmu.cs.crystal.IPersistentAnalysis;
+import edu.cmu.cs.crystal.IThreadSafeAnalysis;
 import edu.cmu.cs.crystal.IRunCrystalCommand;
 import edu.cmu.cs.crystal.annotations.AnnotationDatabase;
 import edu.cmu.cs.crystal.annotations.ICrystalAnnotation;
+import edu.cmu.cs.crystal.flow.CompilationUnitFlowAnalyses;
+import edu.cmu.cs.crystal.flow.worklist.CompilationUnitCFGs;
 import edu.cmu.cs.crystal.tac.eclipse.CompilationUnitTACs;
+import edu.cmu.cs.crystal.util.Box;
+import edu.cmu.cs.crystal.util.DaemonThreadFactory;
+import edu.cmu.cs.crystal.util.MemoryGauge;
 import edu.cmu.cs.crystal.util.Option;
 
 /**
@@ -72,8 +96,41 @@ public class Crystal {
 	 */
 	public static final String MARKER_ATTR_ANALYSIS = "analysis";
 
+	/**
+	 * System property that sets the default {@link #setParallelism(int) parallelism}.
+	 */
+	public static final String PARALLELISM_PROPERTY = "edu.cmu.cs.crystal.parallelism";
+
+	/**
+	 * System property that sets the default {@link #setParseBatchSize(int) parse batch size}.
+	 */
+	public static final String PARSE_BATCH_SIZE_PROPERTY = "edu.cmu.cs.crystal.parseBatchSize";
+
+	/**
+	 * System property that turns on {@link #setStreaming(boolean) streaming} by default.
+	 */
+	public static final String STREAMING_PROPERTY = "edu.cmu.cs.crystal.streaming";
+
+	/**
+	 * {@link ASTNode#getProperty(String) Property} of compilation unit ASTs parsed outside 
+	 * of a workspace that holds the path of the unit's source file.
+	 * @see HeadlessCrystal
+	 */
+	public static final String SOURCE_PATH_PROPERTY = "edu.cmu.cs.crystal.sourcePath";
+
+	/**
+	 * Default size limit for each analysis's on-disk results, in bytes.
+	 * @see #setResultCacheLocation(File, long)
+	 */
+	public static final long DEFAULT_RESULT_CACHE_SIZE = 16L * 1024 * 1024;
+
 	private static final Logger logger = Logger.getLogger(Crystal.class.getName());
 
+	/**
+	 * How often to poll for cancellation while waiting for parallel jobs, in milliseconds.
+	 */
+	private static final long CANCEL_POLL_MILLIS = 100;
+
 	// TODO: Make these data structures are immutable (ie unchangable)
 	/**
 	 * the list of analyses to perfrom
@@ -86,10 +143,128 @@ public class Crystal {
 	private Map<AnnoRegister, Class<? extends ICrystalAnnotation>> annotationRegistry =
 	    new HashMap<AnnoRegister, Class<? extends ICrystalAnnotation>>();
 
+	/**
+	 * Maximum number of compilation units analyzed at the same time.
+	 */
+	private int parallelism = Math.max(1, Integer.getInteger(PARALLELISM_PROPERTY, 1));
+
+	/**
+	 * Maximum number of compilation units parsed together.
+	 */
+	private int parseBatchSize = Math.max(1, Integer.getInteger(PARSE_BATCH_SIZE_PROPERTY, 16));
+
+	/**
+	 * Whether per-unit caches are released as soon as a compilation unit is analyzed.
+	 */
+	private boolean streaming = Boolean.getBoolean(STREAMING_PROPERTY);
+
+	private final MemoryGauge memoryGauge = new MemoryGauge();
+
+	/**
+	 * Directory for on-disk analysis results, or <code>null</code> if results are only kept in memory.
+	 */
+	private File resultCacheLocation = null;
+	private long resultCacheSize = DEFAULT_RESULT_CACHE_SIZE;
+
 	public Crystal() {
 		analyses = new LinkedList<ICrystalAnalysis>();
 	}
 
+	/**
+	 * Sets the maximum number of compilation units analyzed at the same time
+	 * in subsequent runs.  The default is 1, meaning compilation units are analyzed one
+	 * after another on the thread calling {@link #runAnalyses(IRunCrystalCommand, IProgressMonitor)},
+	 * unless the {@link #PARALLELISM_PROPERTY} system property says otherwise.
+	 * Otherwise, compilation units are analyzed on a pool of worker threads 
+	 * that share one {@link AnnotationDatabase}.  Analyses that are not 
+	 * {@link IThreadSafeAnalysis thread-safe} still only run on one 
+	 * compilation unit at a time.
+	 * 
+	 * @param parallelism Maximum number of compilation units analyzed at the same time,
+	 * at least 1.
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Returns the maximum number of compilation units analyzed at the same time.
+	 * @return the maximum number of compilation units analyzed at the same time.
+	 * @see #setParallelism(int)
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the maximum number of compilation units that are parsed together in subsequent 
+	 * runs.  Source compilation units from the same project are parsed in batches that
+	 * share one binding environment, which is much faster than parsing each compilation
+	 * unit separately.  Each compilation unit is analyzed as soon as it is parsed, but
+	 * the binding environment is kept until the whole batch is analyzed, so larger
+	 * batches need more memory.  Each batch is analyzed by one thread.
+	 * The default is 16, unless the {@link #PARSE_BATCH_SIZE_PROPERTY} system property 
+	 * says otherwise.
+	 * 
+	 * @param size Maximum number of compilation units parsed together, at least 1.
+	 * 1 means that each compilation unit is parsed on its own.
+	 */
+	public void setParseBatchSize(int size) {
+		if (size < 1)
+			throw new IllegalArgumentException("Parse batch size must be at least 1: " + size);
+		this.parseBatchSize = size;
+	}
+
+	/**
+	 * Returns the maximum number of compilation units parsed together.
+	 * @return the maximum number of compilation units parsed together.
+	 * @see #setParseBatchSize(int)
+	 */
+	public int getParseBatchSize() {
+		return parseBatchSize;
+	}
+
+	/**
+	 * Turns streaming on or off for subsequent runs.  Crystal always parses compilation 
+	 * units only when they are about to be analyzed, and analyzes at most one compilation 
+	 * unit per {@link #setParallelism(int) worker thread} at a time.  In streaming mode, 
+	 * Crystal additionally releases the {@link IAnalysisInput#getComUnitTACs() TAC} and 
+	 * {@link IAnalysisInput#getComUnitCFGs() CFG} caches of each compilation unit as 
+	 * soon as all analyses ran on it, so that analyses that hold on to their
+	 * {@link IAnalysisInput} or flow analyses do not keep the TACs and graphs of every
+	 * method in the compilation unit alive.  This keeps memory use flat regardless of 
+	 * the number of compilation units, but analyses that use TACs of a compilation 
+	 * unit after it was analyzed, e.g., in {@link ICrystalAnalysis#afterAllCompilationUnits()},
+	 * get new TACs, with new variables.  The default is off, unless the 
+	 * {@link #STREAMING_PROPERTY} system property says otherwise.
+	 * 
+	 * @param streaming <code>true</code> to release per-unit caches as soon as possible.
+	 * @see #getMemoryGauge()
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Indicates whether per-unit caches are released as soon as a compilation unit is analyzed.
+	 * @return <code>true</code> if per-unit caches are released as soon as possible.
+	 * @see #setStreaming(boolean)
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
+
+	/**
+	 * Returns the gauge that tracks peak heap usage and the peak number of compilation
+	 * units analyzed at the same time during the most recent run.
+	 * @return the memory gauge for the most recent run.
+	 */
+	public MemoryGauge getMemoryGauge() {
+		return memoryGauge;
+	}
+
 	/**
 	 * Registers an analysis with the framework. All analyses must be registered in order for them
 	 * to be invoked.
@@ -116,6 +291,81 @@ public class Crystal {
 		throw new UnsupportedOperationException("Retrieving AST nodes for bindings not supported");
 	}
 
+	/**
+	 * Turns {@link AbstractCrystalMethodAnalysis#setIncremental(boolean) incremental analysis}
+	 * on or off for all registered method analyses.  This only affects analyses that
+	 * support incremental mode.
+	 * 
+	 * @param incremental <code>true</code> to skip methods that did not change since the last run.
+	 */
+	public void setIncremental(boolean incremental) {
+		for (ICrystalAnalysis analysis : analyses) {
+			if (analysis instanceof AbstractCrystalMethodAnalysis)
+				((AbstractCrystalMethodAnalysis) analysis).setIncremental(incremental);
+		}
+	}
+
+	/**
+	 * Sets the directory where {@link IPersistentAnalysis persistent} method analyses
+	 * store their results when running {@link AbstractCrystalMethodAnalysis#setIncremental(boolean) 
+	 * incrementally}.  Each analysis stores its results in a separate file, which 
+	 * is compacted when it exceeds the given size.  Stores opened for the previous 
+	 * location are closed.
+	 * 
+	 * @param directory Directory for analysis results, or <code>null</code> to only
+	 * keep results in memory.
+	 * @param maxBytes Size limit for each analysis's results, in bytes.
+	 */
+	public synchronized void setResultCacheLocation(File directory, long maxBytes) {
+		if (maxBytes < 0)
+			throw new IllegalArgumentException("Negative result cache size: " + maxBytes);
+		resultCacheLocation = directory;
+		resultCacheSize = maxBytes;
+		for (ICrystalAnalysis analysis : analyses) {
+			if (analysis instanceof AbstractCrystalMethodAnalysis)
+				// re-opened when needed
+				((AbstractCrystalMethodAnalysis) analysis).getIncrementalCache().setStore(null);
+		}
+	}
+
+	/**
+	 * Returns the directory where persistent analyses store their results.
+	 * @return the directory for analysis results, or <code>null</code> if results are only kept in memory.
+	 * @see #setResultCacheLocation(File, long)
+	 */
+	public synchronized File getResultCacheLocation() {
+		return resultCacheLocation;
+	}
+
+	/**
+	 * Makes sure that persistent incremental analyses among the given analyses 
+	 * have an on-disk store for the current result cache location.
+	 */
+	private synchronized void openResultStores(List<ICrystalAnalysis> analyses_to_use) {
+		if (resultCacheLocation == null)
+			return;
+		for (ICrystalAnalysis analysis : analyses_to_use) {
+			if (!(analysis instanceof IPersistentAnalysis) || 
+					!(analysis instanceof AbstractCrystalMethodAnalysis) ||
+					!((AbstractCrystalMethodAnalysis) analysis).isIncremental())
+				continue;
+			IncrementalMethodCache cache = ((AbstractCrystalMethodAnalysis) analysis).getIncrementalCache();
+			String version = ((IPersistentAnalysis) analysis).getResultVersion();
+			File file = new File(resultCacheLocation, 
+					analysis.getName().replaceAll("[^A-Za-z0-9._-]", "_") + ".results");
+			PersistentResultStore store = cache.getStore();
+			if (store != null && store.getFile().equals(file) && store.getVersion().equals(version))
+				continue;
+			try {
+				cache.setStore(new PersistentResultStore(file, version, resultCacheSize));
+			}
+			catch (IOException e) {
+				logger.log(Level.WARNING, "Cannot open result cache for " + analysis.getName(), e);
+				cache.setStore(null);
+			}
+		}
+	}
+
 	public List<ICrystalAnalysis> getAnalyses() {
 		return Collections.unmodifiableList(analyses);
 	}
@@ -141,103 +391,282 @@ public class Crystal {
 	 * @throws IllegalArgumentException If any analysis name given doesn't exist!
 	 */
 	private ICrystalJob createJobFromCommand(final IRunCrystalCommand command,
-	    final IProgressMonitor monitor) {
-		final int num_jobs = command.compilationUnits().size();
-		final List<ISingleCrystalJob> jobs = new ArrayList<ISingleCrystalJob>(num_jobs);
+	    final IProgressMonitor mon) {
+		final int num_units = command.compilationUnits().size();
+		List<List<ITypeRoot>> batches = createParseBatches(command.compilationUnits());
+		final List<ISingleCrystalJob> jobs = new ArrayList<ISingleCrystalJob>(batches.size());
+		final int num_threads = Math.min(parallelism, batches.size());
+		// worker threads share the monitor
+		final IProgressMonitor monitor = 
+			(num_threads > 1 && mon != null) ? new SynchronizedProgressMonitor(mon) : mon;
 
 		// Get a list of all the analyses to run
-		final List<ICrystalAnalysis> analyses_to_use =
-		    new ArrayList<ICrystalAnalysis>(command.analyses().size());
-		for (String analysis_name : command.analyses()) {
+		final List<ICrystalAnalysis> analyses_to_use = findAnalyses(command.analyses());
+
+		// Now, create one job per compilation unit or batch of compilation units
+		for (final List<ITypeRoot> batch : batches) {
+			if (batch.size() == 1) {
+				final ITypeRoot cu = batch.get(0);
+				jobs.add(new ISingleCrystalJob() {
+					public void run(final AnnotationDatabase annoDB) {
+						if (cu == null) {
+							if (logger.isLoggable(Level.WARNING))
+								logger.warning("Skipping null CompilationUnit");
+						}
+						else {
+							if (monitor != null) {
+								if(monitor.isCanceled())
+									return;
+								monitor.subTask(cu.getElementName());
+							}
+							CompilationUnit ast_comp_unit =
+							    (CompilationUnit) WorkspaceUtilities.getASTNodeFromCompilationUnit(cu);
+							analyzeUnit(command, analyses_to_use, annoDB, monitor, cu, ast_comp_unit);
+						}
+						if (monitor != null && !monitor.isCanceled()) {
+							// increment monitor
+							monitor.worked(1);
+						}
+					}
+				});
+			}
+			else {
+				final List<ICompilationUnit> units = new ArrayList<ICompilationUnit>(batch.size());
+				for (ITypeRoot cu : batch)
+					units.add((ICompilationUnit) cu);
+				jobs.add(new ISingleCrystalJob() {
+					public void run(final AnnotationDatabase annoDB) {
+						if(monitor != null && monitor.isCanceled())
+							return;
+						final Box<RuntimeException> err = Box.box(null);
+						// analyze each compilation unit as soon as it is parsed
+						WorkspaceUtilities.createASTs(units, new ASTRequestor() {
+							@Override
+							public void acceptAST(ICompilationUnit cu, CompilationUnit ast_comp_unit) {
+								if (monitor != null) {
+									if(monitor.isCanceled())
+										return;
+									monitor.subTask(cu.getElementName());
+								}
+								try {
+									analyzeUnit(command, analyses_to_use, annoDB, monitor, cu, ast_comp_unit);
+								}
+								catch (RuntimeException e) {
+									// analyze the remaining compilation units anyway
+									err.setValue(e);
+								}
+								if (monitor != null && !monitor.isCanceled()) {
+									// increment monitor
+									monitor.worked(1);
+								}
+							}
+						}, monitor);
+						if (err.getValue() != null)
+							// re-throw latest exception, if any, so user gets notified
+							throw err.getValue();
+					}
+				});
+			}
+		}
+
+		return createCrystalJobFromSingleJobs(monitor, num_units, num_threads, jobs, analyses_to_use);
+	}
+
+	/**
+	 * Splits the given compilation units into batches that are parsed together.
+	 * Source compilation units from the same project are parsed in batches of
+	 * up to {@link #getParseBatchSize()} units, so that they share one binding environment.
+	 * Other compilation units, such as class files, are parsed on their own.
+	 */
+	private List<List<ITypeRoot>> createParseBatches(Collection<? extends ITypeRoot> compUnits) {
+		List<List<ITypeRoot>> result = new ArrayList<List<ITypeRoot>>();
+		List<ITypeRoot> batch = null;
+		for (ITypeRoot cu : compUnits) {
+			if (batch != null && batch.size() < parseBatchSize && cu instanceof ICompilationUnit &&
+					cu.getJavaProject().equals(batch.get(0).getJavaProject())) {
+				batch.add(cu);
+				continue;
+			}
+			batch = new ArrayList<ITypeRoot>();
+			batch.add(cu);
+			result.add(batch);
+			if (!(cu instanceof ICompilationUnit))
+				// class files and null are not batched
+				batch = null;
+		}
+		return result;
+	}
+
+	/**
+	 * Clears markers for the given compilation unit, runs the given analyses on it, and
+	 * publishes the markers of reporters that batch them.
+	 */
+	private void analyzeUnit(IRunCrystalCommand command, List<ICrystalAnalysis> analyses_to_use,
+			AnnotationDatabase annoDB, IProgressMonitor monitor, ITypeRoot cu, 
+			CompilationUnit ast_comp_unit) {
+		if (logger.isLoggable(Level.FINE))
+			// class files and external compilation units have no resource
+			logger.fine("Running Crystal on: " + cu.getPath().toOSString());
+
+		// Clear any markers that may be onscreen...
+		if(monitor != null && monitor.isCanceled())
+			return;
+		IAnalysisReporter reporter = command.reporter();
+		reporter.clearMarkersForCompUnit(cu);
+
+		// Run each analysis on the current compilation unit.
+		try {
+			analyzeCompilationUnit(analyses_to_use, reporter, annoDB, 
+					monitor, cu, ast_comp_unit);
+		}
+		finally {
+			if (reporter instanceof IMarkerPublishingReporter)
+				// replace the markers cleared above
+				((IMarkerPublishingReporter) reporter).publishMarkersForCompUnit(cu);
+		}
+	}
+
+	/**
+	 * Returns the registered analyses with the given names, ordered so that
+	 * analyses come after the analyses they {@link IDependentAnalysis#getDependencies() depend on}.
+	 * @throws IllegalArgumentException If any analysis name given doesn't exist!
+	 */
+	List<ICrystalAnalysis> findAnalyses(Collection<String> analysis_names) {
+		List<ICrystalAnalysis> result = new ArrayList<ICrystalAnalysis>(analysis_names.size());
+		for (String analysis_name : analysis_names) {
 			Option<ICrystalAnalysis> analysis_ = findAnalysisWithName(analysis_name);
 			if (analysis_.isSome()) {
-				analyses_to_use.add(analysis_.unwrap());
+				result.add(analysis_.unwrap());
 			}
 			else {
 				throw new IllegalArgumentException("Analysis with name \"" + analysis_name +
 						"\" does not exist!");
 			}
 		}
+		return orderByDependencies(result);
+	}
+
+	/**
+	 * Orders the given analyses so that analyses come after the analyses in the list
+	 * they {@link IDependentAnalysis#getDependencies() depend on}.  Otherwise, analyses stay 
+	 * in the given order.  Dependencies on analyses that are not in the list are ignored,
+	 * and dependency cycles are broken arbitrarily.
+	 */
+	static List<ICrystalAnalysis> orderByDependencies(List<ICrystalAnalysis> analyses) {
+		Map<String, ICrystalAnalysis> byName = new LinkedHashMap<String, ICrystalAnalysis>();
+		for (ICrystalAnalysis analysis : analyses)
+			byName.put(analysis.getName(), analysis);
+		List<ICrystalAnalysis> result = new ArrayList<ICrystalAnalysis>(analyses.size());
+		Set<ICrystalAnalysis> visited = new HashSet<ICrystalAnalysis>();
+		for (ICrystalAnalysis analysis : analyses)
+			addWithDependencies(analysis, byName, visited, result);
+		return result;
+	}
 
-		// Now, create one job per compilation unit
-		for (final ITypeRoot cu : command.compilationUnits()) {
+	private static void addWithDependencies(ICrystalAnalysis analysis, 
+			Map<String, ICrystalAnalysis> byName, Set<ICrystalAnalysis> visited, 
+			List<ICrystalAnalysis> result) {
+		if (!visited.add(analysis))
+			// already added, or a dependency cycle
+			return;
+		if (analysis instanceof IDependentAnalysis) {
+			for (String dependency : ((IDependentAnalysis) analysis).getDependencies()) {
+				ICrystalAnalysis other = byName.get(dependency);
+				if (other != null)
+					addWithDependencies(other, byName, visited, result);
+			}
+		}
+		result.add(analysis);
+	}
 
-			jobs.add(new ISingleCrystalJob() {
-				public void run(final AnnotationDatabase annoDB) {
-					if (cu == null) {
-						if (logger.isLoggable(Level.WARNING))
-							logger.warning("Skipping null CompilationUnit");
+	/**
+	 * Runs the given analyses on one compilation unit.  The analyses share one
+	 * TAC and CFG cache and one registry of flow analyses for the compilation unit.  
+	 * Analyses that are not thread-safe are only run on one compilation unit at a time.
+	 * 
+	 * @param analyses_to_use The analyses to run.
+	 * @param reporter The reporter to report problems to.
+	 * @param annoDB Annotation database shared by all compilation units.
+	 * @param monitor Monitor to poll for cancellation, or <code>null</code>.
+	 * @param cu The compilation unit, or <code>null</code> for compilation units outside the workspace.
+	 * @param ast_comp_unit The AST of the compilation unit, with bindings.
+	 */
+	void analyzeCompilationUnit(List<ICrystalAnalysis> analyses_to_use, 
+			final IAnalysisReporter reporter, final AnnotationDatabase annoDB, 
+			final IProgressMonitor monitor, ITypeRoot cu, CompilationUnit ast_comp_unit) {
+		// Here, create one TAC cache per compilation unit.
+		final CompilationUnitTACs compUnitTacs = new CompilationUnitTACs();
+		// ...and one CFG cache
+		final CompilationUnitCFGs compUnitCfgs = new CompilationUnitCFGs();
+		// ...and one registry of flow analyses
+		final CompilationUnitFlowAnalyses compUnitFlowAnalyses = new CompilationUnitFlowAnalyses();
+
+		memoryGauge.unitStarted();
+		try {
+			for (ICrystalAnalysis analysis : analyses_to_use) {
+				if(monitor != null && monitor.isCanceled())
+					return;
+				IAnalysisInput input = new IAnalysisInput() {
+					private Option<IProgressMonitor> mon = 
+						Option.wrap(monitor);
+					public AnnotationDatabase getAnnoDB() {
+						return annoDB;
 					}
-					else {
-						if (monitor != null) {
-							if(monitor.isCanceled())
-								return;
-							monitor.subTask(cu.getElementName());
-						}
-						if (logger.isLoggable(Level.FINE))
-							logger.fine("Running Crystal on: " + cu.getResource().getLocation().toOSString());
-						
-						// Run each analysis on the current compilation unit.
-						CompilationUnit ast_comp_unit =
-						    (CompilationUnit) WorkspaceUtilities.getASTNodeFromCompilationUnit(cu);
 
-						// Here, create one TAC cache per compilation unit.
-						final CompilationUnitTACs compUnitTacs = new CompilationUnitTACs();
+					public Option<CompilationUnitTACs> getComUnitTACs() {
+						return Option.some(compUnitTacs);
+					}
 
-						// Clear any markers that may be onscreen...
-						if(monitor != null && monitor.isCanceled())
-							return;
-						command.reporter().clearMarkersForCompUnit(cu);
-
-						for (ICrystalAnalysis analysis : analyses_to_use) {
-							if(monitor != null && monitor.isCanceled())
-								return;
-							IAnalysisInput input = new IAnalysisInput() {
-								private Option<IProgressMonitor> mon = 
-									Option.wrap(monitor);
-								public AnnotationDatabase getAnnoDB() {
-									return annoDB;
-								}
+					public Option<CompilationUnitCFGs> getComUnitCFGs() {
+						return Option.some(compUnitCfgs);
+					}
 
-								public Option<CompilationUnitTACs> getComUnitTACs() {
-									return Option.some(compUnitTacs);
-								}
-								
-								public Option<IProgressMonitor> getProgressMonitor() {
-									return mon;
-								}
-							};
+					public Option<CompilationUnitFlowAnalyses> getComUnitFlowAnalyses() {
+						return Option.some(compUnitFlowAnalyses);
+					}
+				
+					public Option<IProgressMonitor> getProgressMonitor() {
+						return mon;
+					}
+				};
 
-							// Run the analysis
-							try {
-								analysis.runAnalysis(command.reporter(), input, cu, ast_comp_unit);
-							}
-							catch(CancellationException e) {
-								// this is probably because the user hit cancel on the monitor
-								// in this case, subsequent jobs won't run, either
-								if(logger.isLoggable(Level.FINE)) {
-									logger.log(Level.FINE, "Ongoing Crystal analysis job canceled", e);
-								}
-								else if(logger.isLoggable(Level.INFO)) {
-									logger.info("Ongoing Crystal analysis job canceled");
-								}
-							}
-							catch (RuntimeException err) {
-								logger.log(Level.SEVERE, "Analysis " + analysis.getName() + " had an error when analyzing " + cu, err);
-								throw err;
-							}
+				// Run the analysis
+				try {
+					if (analysis instanceof IThreadSafeAnalysis)
+						analysis.runAnalysis(reporter, input, cu, ast_comp_unit);
+					else {
+						// only one compilation unit at a time
+						synchronized (analysis) {
+							analysis.runAnalysis(reporter, input, cu, ast_comp_unit);
 						}
 					}
-					if (monitor != null && !monitor.isCanceled()) {
-						// increment monitor
-						monitor.worked(1);
+				}
+				catch(CancellationException e) {
+					// this is probably because the user hit cancel on the monitor
+					// in this case, subsequent jobs won't run, either
+					if(logger.isLoggable(Level.FINE)) {
+						logger.log(Level.FINE, "Ongoing Crystal analysis job canceled", e);
+					}
+					else if(logger.isLoggable(Level.INFO)) {
+						logger.info("Ongoing Crystal analysis job canceled");
 					}
 				}
-			});
+				catch (RuntimeException err) {
+					logger.log(Level.SEVERE, "Analysis " + analysis.getName() + " had an error when analyzing " + 
+							(cu == null ? ast_comp_unit.getProperty(SOURCE_PATH_PROPERTY) : cu), err);
+					throw err;
+				}
+			}
+		}
+		finally {
+			if (streaming) {
+				// don't let analyses that hold on to their input keep all TACs and graphs alive
+				compUnitTacs.clear();
+				compUnitCfgs.clear();
+				compUnitFlowAnalyses.clear();
+			}
+			memoryGauge.unitFinished();
 		}
-
-		return createCrystalJobFromSingleJobs(command, 
-				monitor, num_jobs, jobs, analyses_to_use);
 	}
 
 	/**
@@ -246,10 +675,12 @@ public class Crystal {
 	 * This basically packages the jobs into an interface, but it also runs
 	 * the annotation finder. We may be getting rid of this pre-emptive
 	 * annotation finder run soon.
+	 * 
+	 * If <code>num_threads</code> is greater than 1, the single jobs are
+	 * run in parallel; otherwise they run one after another on the calling thread.
 	 */
-	private ICrystalJob createCrystalJobFromSingleJobs(
-			final IRunCrystalCommand command, final IProgressMonitor monitor,
-			final int num_jobs, final List<ISingleCrystalJob> jobs,
+	ICrystalJob createCrystalJobFromSingleJobs(final IProgressMonitor monitor,
+			final int num_units, final int num_threads, final List<ISingleCrystalJob> jobs,
 			final List<ICrystalAnalysis> analyses_to_use) {
 		
 		// Just return an implementation of the ICrystalJob interface
@@ -261,12 +692,12 @@ public class Crystal {
 			public void runJobs() {
 				if (monitor != null) {
 					String task;
-					if(num_jobs == 1)
+					if(num_units == 1)
 						task = "Running Crystal on 1 compilation unit.";
 					else
 						task = "Running Crystal on " + 
-							num_jobs + " total compilation units.";
-					monitor.beginTask(task, num_jobs);
+							num_units + " total compilation units.";
+					monitor.beginTask(task, num_units);
 				}
 
 				AnnotationDatabase annoDB = new AnnotationDatabase();
@@ -274,6 +705,9 @@ public class Crystal {
 				// register annotations with database
 				registerAnnotationsWithDatabase(annoDB);
 
+				openResultStores(analyses_to_use);
+				memoryGauge.reset();
+
 				// tell analyses that the analysis is about to begin!
 				for (ICrystalAnalysis analysis : analyses_to_use ) {
 					if (monitor != null)
@@ -283,15 +717,20 @@ public class Crystal {
 				
 				// Now, run every single job
 				RuntimeException err = null;
-				for (ISingleCrystalJob job : analysisJobs()) {
-					if(monitor != null && monitor.isCanceled())
-						// TODO Do we run the after methods if canceled??
-						break;
-					try {
-						job.run(annoDB);
-					} catch (RuntimeException e) {
-						// don't abort the overall run if one job fails
-						err = e;
+				if (num_threads > 1) {
+					err = runJobsInParallel(analysisJobs(), annoDB, num_threads, monitor);
+				}
+				else {
+					for (ISingleCrystalJob job : analysisJobs()) {
+						if(monitor != null && monitor.isCanceled())
+							// TODO Do we run the after methods if canceled??
+							break;
+						try {
+							job.run(annoDB);
+						} catch (RuntimeException e) {
+							// don't abort the overall run if one job fails
+							err = e;
+						}
 					}
 				}
 				// Tell all analyses, we are done.
@@ -299,7 +738,14 @@ public class Crystal {
 					if (monitor != null)
 						monitor.subTask("Post-processing");
 					analysis.afterAllCompilationUnits();
+					if (logger.isLoggable(Level.FINE) && 
+							analysis instanceof AbstractCrystalMethodAnalysis &&
+							((AbstractCrystalMethodAnalysis) analysis).isIncremental())
+						logger.fine("Analysis " + analysis.getName() + ": " + 
+								((AbstractCrystalMethodAnalysis) analysis).getIncrementalCache());
 				}
+				if (logger.isLoggable(Level.FINE))
+					logger.fine("Memory: " + memoryGauge);
 				
 				if(monitor != null) {
 					// that's it folks!
@@ -313,6 +759,74 @@ public class Crystal {
 		};
 	}
 
+	/**
+	 * Runs the given jobs on a bounded pool of worker threads and waits for 
+	 * all of them to finish.  If the given monitor is canceled, jobs that
+	 * have not started yet are canceled; jobs already running poll the 
+	 * monitor themselves.  A failing job does not abort the other jobs.
+	 * 
+	 * @param jobs The jobs to run.
+	 * @param annoDB Annotation database shared by all jobs.
+	 * @param num_threads Maximum number of jobs to run at the same time.
+	 * @param monitor Thread-safe monitor to poll for cancellation, or <code>null</code>.
+	 * @return The last exception thrown by one of the jobs, or <code>null</code>
+	 * if all jobs ran successfully.  If the current thread is interrupted while waiting, 
+	 * only jobs that already finished are considered.
+	 */
+	private static RuntimeException runJobsInParallel(List<ISingleCrystalJob> jobs,
+			final AnnotationDatabase annoDB, int num_threads, IProgressMonitor monitor) {
+		ExecutorService pool = Executors.newFixedThreadPool(num_threads, 
+				new DaemonThreadFactory("Crystal worker "));
+		List<Future<?>> futures = new ArrayList<Future<?>>(jobs.size());
+		for (final ISingleCrystalJob job : jobs) {
+			futures.add(pool.submit(new Runnable() {
+				public void run() {
+					job.run(annoDB);
+				}
+			}));
+		}
+		pool.shutdown();
+
+		boolean interrupted = false;
+		try {
+			// wait for running jobs to finish even if canceled
+			while (pool.awaitTermination(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS) == false) {
+				if (monitor != null && monitor.isCanceled()) {
+					for (Future<?> f : futures)
+						f.cancel(false);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			if (logger.isLoggable(Level.INFO))
+				logger.info("Interrupted while waiting for Crystal jobs");
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+			interrupted = true;
+		}
+
+		RuntimeException err = null;
+		for (Future<?> f : futures) {
+			if (f.isCancelled() || (interrupted && !f.isDone()))
+				// don't wait for jobs that were interrupted
+				continue;
+			try {
+				f.get();
+			}
+			catch (ExecutionException e) {
+				// jobs can only throw unchecked exceptions
+				if (e.getCause() instanceof Error)
+					throw (Error) e.getCause();
+				err = (RuntimeException) e.getCause();
+			}
+			catch (InterruptedException e) {
+				// can't happen since we only look at jobs that are done
+				Thread.currentThread().interrupt();
+			}
+		}
+		return err;
+	}
+
 	/**
 	 * Register all of the annotations in the given annotation registry with the
 	 * given annotation database.
@@ -25,6 +25,8 @@ import java.util.StringTokenizer;
 
 import org.eclipse.core.runtime.preferences.AbstractPreferenceInitializer;
 
+import edu.cmu.cs.crystal.AbstractCrystalMethodAnalysis;
+
 /**
  * @author Kevin Bierhoff
  * @since Crystal 3.4.2
@@ -33,6 +35,7 @@ public class CrystalPreferences extends AbstractPreferenceInitializer {
 
 	private static final String P_DISABLED_ANALYSES = "enabledAnalyses";
 	private static final String P_INCLUDE_ARCHIVES = "includeArchives";
+	private static final String P_INCREMENTAL = "incremental";
 
 	@Override
 	public void initializeDefaultPreferences() {
@@ -40,6 +43,8 @@ public class CrystalPreferences extends AbstractPreferenceInitializer {
 			setDefault(P_DISABLED_ANALYSES, "");
 		AbstractCrystalPlugin.getDefault().getPreferenceStore().
 			setDefault(P_INCLUDE_ARCHIVES, false);
+		AbstractCrystalPlugin.getDefault().getPreferenceStore().
+			setDefault(P_INCREMENTAL, Boolean.getBoolean(AbstractCrystalMethodAnalysis.INCREMENTAL_PROPERTY));
 	}
 	
 	static Set<String> getDisabledAnalyses() {
@@ -77,4 +82,14 @@ public class CrystalPreferences extends AbstractPreferenceInitializer {
 		AbstractCrystalPlugin.getDefault().getPreferenceStore().
 				setValue(P_INCLUDE_ARCHIVES, include);
 	}
+
+	static boolean getIncremental() {
+		return AbstractCrystalPlugin.getDefault().getPreferenceStore().
+				getBoolean(P_INCREMENTAL);
+	}
+
+	static void setIncremental(boolean incremental) {
+		AbstractCrystalPlugin.getDefault().getPreferenceStore().
+				setValue(P_INCREMENTAL, incremental);
+	}
 }
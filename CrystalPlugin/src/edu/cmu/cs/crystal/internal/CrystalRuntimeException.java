@@ -26,4 +26,8 @@ public class CrystalRuntimeException extends RuntimeException {
 	public  CrystalRuntimeException(String message) {
 		super(message);
 	}
+
+	public  CrystalRuntimeException(String message, Throwable cause) {
+		super(message, cause);
+	}
 }
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.internal;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.core.IJavaElement;
+import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+
+import edu.cmu.cs.crystal.IAnalysisReporter;
+
+/**
+ * An analysis reporter that writes problems to a file, one line per problem,
+ * in the format <code>path:line: severity: [analysis] message</code>.
+ * Problems are collected in memory and written, sorted by file and position, 
+ * when the reporter is {@link #close() closed}, so the output does not depend 
+ * on the order in which compilation units were analyzed.  This reporter can
+ * be used from several threads at the same time.
+ * 
+ * Compilation units parsed outside of a workspace should have their path
+ * in the {@link Crystal#SOURCE_PATH_PROPERTY} property.
+ * 
+ * @see HeadlessCrystal
+ */
+public class FileAnalysisReporter implements IAnalysisReporter {
+
+	private final PrintWriter out;
+	private final List<Problem> problems = new ArrayList<Problem>();
+
+	/**
+	 * Creates a reporter that writes problems to the given writer.
+	 * @param out Where to write problems to; closed by {@link #close()}.
+	 */
+	public FileAnalysisReporter(Writer out) {
+		this.out = new PrintWriter(out);
+	}
+
+	public void reportUserProblem(String problemDescription, ASTNode node, String analysisName) {
+		reportUserProblem(problemDescription, node, analysisName, SEVERITY.INFO);
+	}
+
+	public void reportUserProblem(String problemDescription, ASTNode node, String analysisName,
+	    SEVERITY severity) {
+		if (node == null)
+			throw new NullPointerException("null ASTNode argument in reportUserProblem");
+		if (analysisName == null)
+			throw new NullPointerException("null analysis argument in reportUserProblem");
+		
+		String path = null;
+		int line = -1;
+		ASTNode root = node.getRoot();
+		if (root != null && root.getNodeType() == ASTNode.COMPILATION_UNIT) {
+			CompilationUnit cu = (CompilationUnit) root;
+			path = (String) cu.getProperty(Crystal.SOURCE_PATH_PROPERTY);
+			IJavaElement je = cu.getJavaElement();
+			if (path == null && je != null)
+				path = je.getPath().toString();
+			line = cu.getLineNumber(node.getStartPosition());
+		}
+		if (path == null)
+			path = "???";
+		
+		Problem p = new Problem(path, node.getStartPosition(), line, 
+				severity.toString().toLowerCase(), analysisName, problemDescription);
+		synchronized (problems) {
+			problems.add(p);
+		}
+	}
+
+	/**
+	 * @return the number of problems reported so far.
+	 */
+	public int getProblemCount() {
+		synchronized (problems) {
+			return problems.size();
+		}
+	}
+
+	/**
+	 * Writes all reported problems and closes the underlying writer.
+	 */
+	public void close() {
+		synchronized (problems) {
+			Collections.sort(problems);
+			for (Problem p : problems)
+				out.println(p);
+		}
+		out.close();
+	}
+
+	/**
+	 * Does nothing since this reporter only writes problems once.
+	 */
+	public void clearMarkersForCompUnit(ITypeRoot compUnit) {
+		// nothing to clear
+	}
+
+	public PrintWriter debugOut() {
+		return new PrintWriter(System.out, true);
+	}
+
+	public PrintWriter userOut() {
+		return new PrintWriter(System.out, true);
+	}
+
+	private static class Problem implements Comparable<Problem> {
+		final String path;
+		final int position;
+		final int line;
+		final String severity;
+		final String analysisName;
+		final String description;
+
+		Problem(String path, int position, int line, String severity, 
+				String analysisName, String description) {
+			this.path = path;
+			this.position = position;
+			this.line = line;
+			this.severity = severity;
+			this.analysisName = analysisName;
+			this.description = description;
+		}
+
+		public int compareTo(Problem o) {
+			int result = path.compareTo(o.path);
+			if (result == 0)
+				result = position < o.position ? -1 : (position == o.position ? 0 : 1);
+			if (result == 0)
+				result = analysisName.compareTo(o.analysisName);
+			if (result == 0)
+				result = description.compareTo(o.description);
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return path + ":" + line + ": " + severity + ": [" + analysisName + "] " + description;
+		}
+	}
+}
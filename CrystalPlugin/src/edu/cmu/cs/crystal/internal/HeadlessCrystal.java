@@ -0,0 +1,292 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.FileASTRequestor;
+
+import edu.cmu.cs.crystal.IAnalysisReporter;
+import edu.cmu.cs.crystal.ICrystalAnalysis;
+import edu.cmu.cs.crystal.annotations.AnnotationDatabase;
+
+/**
+ * Runs Crystal analyses on source trees without an Eclipse workspace, for instance,
+ * as part of a continuous integration build.  Source files are parsed directly from the
+ * given source roots, with bindings resolved against the source roots and the given
+ * classpath.  Analyses see <code>null</code> as the {@link org.eclipse.jdt.core.ITypeRoot}
+ * of each compilation unit; instead, the path of each source file is stored in
+ * the {@link Crystal#SOURCE_PATH_PROPERTY} property of its AST.
+ * 
+ * Source files are split into batches of up to {@link Crystal#getParseBatchSize()} files.
+ * Each batch is parsed with one binding environment on one of the
+ * {@link Crystal#getParallelism() worker threads}, and each compilation unit is
+ * analyzed as soon as it is parsed, so ASTs do not need to be kept in memory.
+ * 
+ * This class can be run from the command line; see {@link #main(String[])}.
+ * 
+ * @see FileAnalysisReporter
+ */
+public class HeadlessCrystal {
+
+	private final Crystal crystal;
+	private final List<String> sourceRoots = new ArrayList<String>();
+	private final List<String> classpath = new ArrayList<String>();
+	private String encoding = null;
+
+	/**
+	 * Creates a runner for the analyses registered with the given Crystal instance.
+	 * @param crystal Crystal instance with analyses and annotations registered.
+	 */
+	public HeadlessCrystal(Crystal crystal) {
+		this.crystal = crystal;
+	}
+
+	public Crystal getCrystal() {
+		return crystal;
+	}
+
+	/**
+	 * Adds a directory with source files to analyze.  Source roots are also 
+	 * used to resolve bindings.
+	 */
+	public void addSourceRoot(String directory) {
+		sourceRoots.add(directory);
+	}
+
+	/**
+	 * Adds a jar file or class folder used to resolve bindings.  The
+	 * running VM's boot classpath is always included.
+	 */
+	public void addClasspathEntry(String entry) {
+		classpath.add(entry);
+	}
+
+	/**
+	 * Sets the encoding of source files.
+	 * @param encoding Encoding of all source files, or <code>null</code> for the platform default.
+	 */
+	public void setEncoding(String encoding) {
+		this.encoding = encoding;
+	}
+
+	/**
+	 * @return the paths of all <code>.java</code> files in the source roots, sorted.
+	 */
+	public List<String> findSourceFiles() {
+		List<String> result = new ArrayList<String>();
+		for (String root : sourceRoots)
+			findSourceFiles(new File(root), result);
+		Collections.sort(result);
+		return result;
+	}
+
+	private static void findSourceFiles(File dir, List<String> result) {
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+		for (File f : files) {
+			if (f.isDirectory())
+				findSourceFiles(f, result);
+			else if (f.getName().endsWith(".java"))
+				result.add(f.getPath());
+		}
+	}
+
+	/**
+	 * Runs the analyses with the given names on all source files in the source roots.
+	 * @param analyses Names of registered analyses to run.
+	 * @param reporter The reporter to report problems to.
+	 * @param mon Monitor to report progress to, or <code>null</code>.
+	 * @throws IllegalArgumentException If any analysis name given doesn't exist!
+	 */
+	public void runAnalyses(Set<String> analyses, final IAnalysisReporter reporter, 
+			IProgressMonitor mon) {
+		final List<ICrystalAnalysis> analyses_to_use = crystal.findAnalyses(analyses);
+		List<String> files = findSourceFiles();
+		int batch_size = crystal.getParseBatchSize();
+		int num_batches = (files.size() + batch_size - 1) / batch_size;
+		final int num_threads = Math.max(1, Math.min(crystal.getParallelism(), num_batches));
+		// worker threads share the monitor
+		final IProgressMonitor monitor = 
+			(num_threads > 1 && mon != null) ? new SynchronizedProgressMonitor(mon) : mon;
+		
+		// contiguous batches keep packages together, so they share more bindings
+		List<ISingleCrystalJob> jobs = new ArrayList<ISingleCrystalJob>(num_batches);
+		for (int i = 0; i < files.size(); i += batch_size) {
+			final List<String> group = files.subList(i, Math.min(i + batch_size, files.size()));
+			jobs.add(new ISingleCrystalJob() {
+				public void run(AnnotationDatabase annoDB) {
+					parseAndAnalyze(group, analyses_to_use, reporter, annoDB, monitor);
+				}
+			});
+		}
+		crystal.createCrystalJobFromSingleJobs(monitor, files.size(), num_threads, 
+				jobs, analyses_to_use).runJobs();
+	}
+
+	private void parseAndAnalyze(List<String> files, List<ICrystalAnalysis> analyses_to_use,
+			IAnalysisReporter reporter, AnnotationDatabase annoDB, IProgressMonitor monitor) {
+		if (files.isEmpty())
+			return;
+		ASTParser parser = ASTParser.newParser(AST.JLS3);
+		Map options = JavaCore.getOptions();
+		JavaCore.setComplianceOptions(JavaCore.VERSION_1_5, options);
+		parser.setCompilerOptions(options);
+		parser.setResolveBindings(true);
+		parser.setEnvironment(
+				classpath.toArray(new String[classpath.size()]), 
+				sourceRoots.toArray(new String[sourceRoots.size()]), 
+				encodings(sourceRoots.size()), true);
+		
+		UnitAnalyzer requestor = new UnitAnalyzer(analyses_to_use, reporter, annoDB, monitor);
+		parser.createASTs(files.toArray(new String[files.size()]), encodings(files.size()), 
+				new String[0], requestor, null);
+		if (requestor.err != null)
+			// re-throw latest exception, if any, so user gets notified
+			throw requestor.err;
+	}
+
+	private String[] encodings(int count) {
+		if (encoding == null)
+			return null;
+		String[] result = new String[count];
+		Arrays.fill(result, encoding);
+		return result;
+	}
+
+	/**
+	 * Analyzes each compilation unit as soon as it is parsed.
+	 */
+	private class UnitAnalyzer extends FileASTRequestor {
+		private final List<ICrystalAnalysis> analyses_to_use;
+		private final IAnalysisReporter reporter;
+		private final AnnotationDatabase annoDB;
+		private final IProgressMonitor monitor;
+		RuntimeException err = null;
+
+		UnitAnalyzer(List<ICrystalAnalysis> analyses_to_use, IAnalysisReporter reporter, 
+				AnnotationDatabase annoDB, IProgressMonitor monitor) {
+			this.analyses_to_use = analyses_to_use;
+			this.reporter = reporter;
+			this.annoDB = annoDB;
+			this.monitor = monitor;
+		}
+
+		@Override
+		public void acceptAST(String sourceFilePath, CompilationUnit ast) {
+			if (monitor != null) {
+				if (monitor.isCanceled())
+					return;
+				monitor.subTask(sourceFilePath);
+			}
+			ast.setProperty(Crystal.SOURCE_PATH_PROPERTY, sourceFilePath);
+			try {
+				crystal.analyzeCompilationUnit(analyses_to_use, reporter, annoDB, monitor, null, ast);
+			}
+			catch (RuntimeException e) {
+				// analyze the remaining compilation units anyway
+				err = e;
+			}
+			if (monitor != null && !monitor.isCanceled())
+				monitor.worked(1);
+		}
+	}
+
+	/**
+	 * Runs the given analyses on the given source roots and writes problems 
+	 * to standard output or the given file.  Usage:
+	 * <pre>
+	 * HeadlessCrystal -sourcepath &lt;dirs&gt; [-classpath &lt;jars&gt;] [-encoding &lt;encoding&gt;]
+	 *     [-parallelism &lt;n&gt;] [-batch &lt;n&gt;] [-output &lt;file&gt;] &lt;analysis class&gt;...
+	 * </pre>
+	 * Source roots and classpath entries are separated by the platform's path separator.
+	 * Analysis classes must have a public no-argument constructor.
+	 */
+	public static void main(String[] args) throws Exception {
+		Crystal crystal = new Crystal();
+		HeadlessCrystal headless = new HeadlessCrystal(crystal);
+		String output = null;
+		Set<String> analyses = new LinkedHashSet<String>();
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.startsWith("-") && i + 1 == args.length)
+				usage("Missing value for " + arg);
+			if ("-sourcepath".equals(arg)) {
+				for (String s : args[++i].split(File.pathSeparator))
+					headless.addSourceRoot(s);
+			}
+			else if ("-classpath".equals(arg)) {
+				for (String s : args[++i].split(File.pathSeparator))
+					headless.addClasspathEntry(s);
+			}
+			else if ("-encoding".equals(arg))
+				headless.setEncoding(args[++i]);
+			else if ("-parallelism".equals(arg))
+				crystal.setParallelism(Integer.parseInt(args[++i]));
+			else if ("-batch".equals(arg))
+				crystal.setParseBatchSize(Integer.parseInt(args[++i]));
+			else if ("-output".equals(arg))
+				output = args[++i];
+			else if (arg.startsWith("-"))
+				usage("Unknown option: " + arg);
+			else {
+				ICrystalAnalysis analysis = (ICrystalAnalysis) Class.forName(arg).newInstance();
+				crystal.registerAnalysis(analysis);
+				analyses.add(analysis.getName());
+			}
+		}
+		if (headless.sourceRoots.isEmpty() || analyses.isEmpty())
+			usage("Source roots and analyses are required");
+		
+		Writer out = output == null ? 
+				new OutputStreamWriter(System.out) : 
+				new OutputStreamWriter(new FileOutputStream(output));
+		FileAnalysisReporter reporter = new FileAnalysisReporter(out);
+		try {
+			headless.runAnalyses(analyses, reporter, null);
+		}
+		finally {
+			reporter.close();
+		}
+	}
+
+	private static void usage(String message) {
+		System.err.println(message);
+		System.err.println("Usage: HeadlessCrystal -sourcepath <dirs> [-classpath <jars>] " +
+				"[-encoding <encoding>] [-parallelism <n>] [-batch <n>] [-output <file>] <analysis class>...");
+		System.exit(1);
+	}
+}
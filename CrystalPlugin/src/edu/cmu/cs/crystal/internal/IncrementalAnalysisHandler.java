@@ -0,0 +1,48 @@
+/**
+ * Copyright (c) 2006-2011 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,    
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.internal;
+
+import java.util.Map;
+
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.eclipse.ui.commands.IElementUpdater;
+import org.eclipse.ui.menus.UIElement;
+
+/**
+ * Toggles whether Crystal runs only re-analyze methods that changed since the last run.
+ * 
+ * @see edu.cmu.cs.crystal.AbstractCrystalMethodAnalysis#setIncremental(boolean)
+ */
+public class IncrementalAnalysisHandler extends AbstractHandler implements IElementUpdater {
+
+	public void updateElement(UIElement element, 
+			@SuppressWarnings("unchecked") Map parameters) {
+		element.setChecked(CrystalPreferences.getIncremental());
+	}
+
+	public Object execute(ExecutionEvent event) throws ExecutionException {
+		CrystalPreferences.setIncremental(! CrystalPreferences.getIncremental());
+		
+		// result must be null
+		return null;
+	}
+}
@@ -0,0 +1,356 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.internal;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+import edu.cmu.cs.crystal.AbstractCrystalMethodAnalysis;
+import edu.cmu.cs.crystal.IAnalysisReporter;
+import edu.cmu.cs.crystal.IAnalysisReporter.SEVERITY;
+
+/**
+ * Remembers the problems one method analysis reported for each method,
+ * together with the method's {@link MethodFingerprint fingerprint}, so 
+ * that methods whose fingerprint did not change since the last run
+ * do not need to be analyzed again.  Instead, the problems reported
+ * last time are reported again on the corresponding nodes of the
+ * new AST.
+ * 
+ * The cache keeps the results of the most recent run for each compilation
+ * unit, so results for deleted methods are dropped the next time their 
+ * compilation unit is analyzed.  Optionally, results are also kept in a 
+ * {@link PersistentResultStore} on disk, where they are found by fingerprint 
+ * alone, so results survive restarts.  The cache counts how many methods were
+ * skipped (hits), how many of those were found on disk, and how many were analyzed
+ * (misses), which can be reset with {@link #resetStatistics()}.
+ * 
+ * @see AbstractCrystalMethodAnalysis#setIncremental(boolean)
+ */
+public class IncrementalMethodCache {
+
+	/** Cached results, by compilation unit and method binding key. */
+	private final Map<String, Map<String, Entry>> units = new HashMap<String, Map<String, Entry>>();
+
+	private PersistentResultStore store;
+
+	private long hits = 0;
+	private long storeHits = 0;
+	private long misses = 0;
+
+	/**
+	 * Sets the on-disk store for results, replacing and closing the current store, if any.
+	 * @param store The on-disk store, or <code>null</code> to only keep results in memory.
+	 */
+	public synchronized void setStore(PersistentResultStore store) {
+		if (this.store != null && this.store != store)
+			this.store.close();
+		this.store = store;
+	}
+
+	/**
+	 * @return the on-disk store for results or <code>null</code> if there is none.
+	 */
+	public synchronized PersistentResultStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Starts analyzing a compilation unit.
+	 * @param compUnit The compilation unit being analyzed, possibly <code>null</code>.
+	 * @param rootNode The AST of the compilation unit being analyzed.
+	 * @param reporter The reporter to report problems to.
+	 * @return a session for analyzing the methods of the given compilation unit,
+	 * or <code>null</code> if results for the given compilation unit cannot be cached.
+	 */
+	public Session startCompilationUnit(ITypeRoot compUnit, CompilationUnit rootNode, 
+			IAnalysisReporter reporter) {
+		String unitKey = null;
+		if (compUnit != null)
+			unitKey = compUnit.getHandleIdentifier();
+		else if (!rootNode.types().isEmpty()) {
+			// identify the unit by its first type, for ASTs parsed outside the workspace
+			ITypeBinding type = ((AbstractTypeDeclaration) rootNode.types().get(0)).resolveBinding();
+			if (type != null)
+				unitKey = type.getKey();
+		}
+		if (unitKey == null)
+			return null;
+		Map<String, Entry> previous;
+		synchronized (this) {
+			previous = units.get(unitKey);
+		}
+		return new Session(unitKey, previous, reporter);
+	}
+
+	/**
+	 * Drops all cached results, for instance, because the analysis was reconfigured.
+	 */
+	public synchronized void clear() {
+		units.clear();
+	}
+
+	/**
+	 * @return the number of methods that were not analyzed because their
+	 * fingerprint did not change.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of methods that were not analyzed because results
+	 * for their fingerprint were found in the on-disk store.  These are included
+	 * in {@link #getHits()}.
+	 */
+	public synchronized long getStoreHits() {
+		return storeHits;
+	}
+
+	/**
+	 * @return the number of methods that had to be analyzed.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized void resetStatistics() {
+		hits = 0;
+		storeHits = 0;
+		misses = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "IncrementalMethodCache[units=" + units.size() + 
+			", hits=" + hits + ", storeHits=" + storeHits + ", misses=" + misses + "]";
+	}
+
+	private synchronized void count(boolean hit) {
+		if (hit)
+			hits++;
+		else
+			misses++;
+	}
+
+	private synchronized Problem[] load(String fingerprint) {
+		Problem[] result = store == null ? null : store.get(fingerprint);
+		if (result != null)
+			storeHits++;
+		return result;
+	}
+
+	private synchronized void save(String fingerprint, Problem[] problems) {
+		if (store != null)
+			store.put(fingerprint, problems);
+	}
+
+	private synchronized void update(String unitKey, Map<String, Entry> results) {
+		units.put(unitKey, results);
+	}
+
+	/**
+	 * The results of analyzing a compilation unit with incremental analysis.  
+	 * For each method, call {@link #skip(MethodDeclaration)} and, if that returns
+	 * <code>false</code>, analyze the method and call {@link #methodFinished(boolean)}.
+	 * Problems must be reported to the session, which forwards them to the 
+	 * underlying reporter and remembers problems reported for the current method.  
+	 * Finally, {@link #close()} replaces the cached results for the compilation unit 
+	 * with the results of this session.
+	 */
+	public class Session implements IAnalysisReporter {
+		private final String unitKey;
+		private final Map<String, Entry> previous;
+		private final Map<String, Entry> current = new HashMap<String, Entry>();
+		private final IAnalysisReporter delegate;
+
+		// the method being analyzed
+		private MethodDeclaration method;
+		private String methodKey;
+		private String fingerprint;
+		/** Problems reported for the current method, or <code>null</code> if they cannot be cached. */
+		private List<Problem> problems;
+		private Map<ASTNode, Integer> nodeIndices;
+
+		private Session(String unitKey, Map<String, Entry> previous, IAnalysisReporter delegate) {
+			this.unitKey = unitKey;
+			this.previous = previous;
+			this.delegate = delegate;
+		}
+
+		/**
+		 * Reports the problems remembered for the given method again,
+		 * if the method did not change since it was last analyzed.
+		 * Otherwise, starts remembering problems reported for the given method.
+		 * @param d The method about to be analyzed.
+		 * @return <code>true</code> if the given method does not need to be
+		 * analyzed, <code>false</code> if it must be analyzed.
+		 */
+		public boolean skip(MethodDeclaration d) {
+			method = d;
+			IMethodBinding binding = d.resolveBinding();
+			methodKey = binding == null ? null : binding.getKey();
+			if (methodKey == null || current.containsKey(methodKey)) {
+				// cannot tell methods apart
+				methodKey = null;
+				problems = null;
+				count(false);
+				return false;
+			}
+			fingerprint = MethodFingerprint.compute(d);
+			Entry cached = previous == null ? null : previous.get(methodKey);
+			if (cached == null || !cached.fingerprint.equals(fingerprint)) {
+				Problem[] stored = load(fingerprint);
+				cached = stored == null ? null : new Entry(fingerprint, stored);
+			}
+			List<ASTNode> nodes = cached == null ? null : MethodFingerprint.nodes(d);
+			if (cached != null && fits(cached.problems, nodes.size())) {
+				for (Problem p : cached.problems) {
+					if (p.severity == null)
+						delegate.reportUserProblem(p.description, nodes.get(p.node), p.analysisName);
+					else
+						delegate.reportUserProblem(p.description, nodes.get(p.node), p.analysisName, p.severity);
+				}
+				current.put(methodKey, cached);
+				method = null;
+				count(true);
+				return true;
+			}
+			problems = new ArrayList<Problem>();
+			count(false);
+			return false;
+		}
+
+		private boolean fits(Problem[] cached, int nodeCount) {
+			for (Problem p : cached) {
+				if (p.node < 0 || p.node >= nodeCount)
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Stops remembering problems for the current method.
+		 * @param completed <code>true</code> if the method was completely analyzed,
+		 * <code>false</code> if the analysis failed.
+		 */
+		public void methodFinished(boolean completed) {
+			if (completed && methodKey != null && problems != null) {
+				Problem[] result = problems.toArray(new Problem[problems.size()]);
+				current.put(methodKey, new Entry(fingerprint, result));
+				save(fingerprint, result);
+			}
+			method = null;
+			methodKey = null;
+			fingerprint = null;
+			problems = null;
+			nodeIndices = null;
+		}
+
+		/**
+		 * Remembers the results of this session for the next run.
+		 */
+		public void close() {
+			update(unitKey, current);
+			PersistentResultStore s = getStore();
+			if (s != null)
+				s.flush();
+		}
+
+		public void reportUserProblem(String problemDescription, ASTNode node, String analysisName) {
+			delegate.reportUserProblem(problemDescription, node, analysisName);
+			remember(problemDescription, node, analysisName, null);
+		}
+
+		public void reportUserProblem(String problemDescription, ASTNode node, String analysisName, 
+				SEVERITY severity) {
+			delegate.reportUserProblem(problemDescription, node, analysisName, severity);
+			remember(problemDescription, node, analysisName, severity);
+		}
+
+		private void remember(String problemDescription, ASTNode node, String analysisName, 
+				SEVERITY severity) {
+			if (method == null || problems == null)
+				return;
+			if (nodeIndices == null) {
+				nodeIndices = new IdentityHashMap<ASTNode, Integer>();
+				List<ASTNode> nodes = MethodFingerprint.nodes(method);
+				for (int i = 0; i < nodes.size(); i++)
+					nodeIndices.put(nodes.get(i), i);
+			}
+			Integer index = nodeIndices.get(node);
+			if (index == null)
+				// problem outside the current method: analyze the method every time
+				problems = null;
+			else
+				problems.add(new Problem(problemDescription, index, analysisName, severity));
+		}
+
+		public PrintWriter debugOut() {
+			return delegate.debugOut();
+		}
+
+		public PrintWriter userOut() {
+			return delegate.userOut();
+		}
+
+		public void clearMarkersForCompUnit(ITypeRoot compUnit) {
+			delegate.clearMarkersForCompUnit(compUnit);
+		}
+	}
+
+	private static class Entry {
+		final String fingerprint;
+		final Problem[] problems;
+
+		Entry(String fingerprint, Problem[] problems) {
+			this.fingerprint = fingerprint;
+			this.problems = problems;
+		}
+	}
+
+	static class Problem {
+		final String description;
+		/** Index into {@link MethodFingerprint#nodes(MethodDeclaration)} */
+		final int node;
+		final String analysisName;
+		/** <code>null</code> if reported with the reporter's default severity */
+		final SEVERITY severity;
+
+		Problem(String description, int node, String analysisName, SEVERITY severity) {
+			this.description = description;
+			this.node = node;
+			this.analysisName = analysisName;
+			this.severity = severity;
+		}
+	}
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.internal;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.ConstructorInvocation;
+import org.eclipse.jdt.core.dom.EnumConstantDeclaration;
+import org.eclipse.jdt.core.dom.IAnnotationBinding;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.StructuralPropertyDescriptor;
+import org.eclipse.jdt.core.dom.SuperConstructorInvocation;
+
+/**
+ * Computes fingerprints of method declarations that change whenever
+ * the result of analyzing the method may change.  A fingerprint 
+ * combines a normalized rendering of the method's syntax tree, which 
+ * ignores whitespace, comments, and Javadoc, with the binding keys,
+ * modifiers, and annotations of the methods, fields, and types the 
+ * method refers to, as well as the values of the constants it reads.  Changes to the bodies of other methods do
+ * not change a method's fingerprint, but changes to their signatures do.
+ * 
+ * Nodes inside a method are identified by their position in a 
+ * pre-order traversal of the method's syntax tree, which is stable
+ * as long as the method's fingerprint does not change.
+ * 
+ * @see IncrementalMethodCache
+ */
+public final class MethodFingerprint {
+
+	private MethodFingerprint() {
+		// static methods only
+	}
+
+	/**
+	 * Computes the fingerprint of the given method.
+	 * @param d A method or constructor declaration.
+	 * @return Hexadecimal digest of the given method's syntax and the 
+	 * signatures it refers to.
+	 */
+	public static String compute(MethodDeclaration d) {
+		StringBuilder text = new StringBuilder();
+		Set<String> signatures = new LinkedHashSet<String>();
+		describe(d.resolveBinding(), signatures);
+		render(d, text, signatures);
+		for (String s : signatures)
+			text.append('\n').append(s);
+		return digest(text.toString());
+	}
+
+	/**
+	 * Returns the nodes of the given method in pre-order, not including Javadoc.
+	 * @param d A method or constructor declaration.
+	 * @return the nodes of the given method, starting with <code>d</code> itself.
+	 */
+	public static List<ASTNode> nodes(MethodDeclaration d) {
+		List<ASTNode> result = new ArrayList<ASTNode>();
+		collect(d, result);
+		return result;
+	}
+
+	private static void render(ASTNode node, StringBuilder out, Set<String> signatures) {
+		out.append('(').append(node.getNodeType());
+		for (Object o : node.structuralPropertiesForType()) {
+			StructuralPropertyDescriptor p = (StructuralPropertyDescriptor) o;
+			Object value = node.getStructuralProperty(p);
+			out.append(' ').append(p.getId()).append('=');
+			if (p.isSimpleProperty()) {
+				// length prefix keeps identifiers and literals from running into each other
+				String s = String.valueOf(value);
+				out.append(s.length()).append(':').append(s);
+			}
+			else if (p.isChildProperty()) {
+				if (value == null || ((ASTNode) value).getNodeType() == ASTNode.JAVADOC)
+					out.append('-');
+				else
+					render((ASTNode) value, out, signatures);
+			}
+			else {
+				out.append('[');
+				for (Object child : (List<?>) value)
+					render((ASTNode) child, out, signatures);
+				out.append(']');
+			}
+		}
+		out.append(')');
+		
+		switch (node.getNodeType()) {
+		case ASTNode.SIMPLE_NAME:
+			describe(((SimpleName) node).resolveBinding(), signatures);
+			break;
+		case ASTNode.CLASS_INSTANCE_CREATION:
+			describe(((ClassInstanceCreation) node).resolveConstructorBinding(), signatures);
+			break;
+		case ASTNode.CONSTRUCTOR_INVOCATION:
+			describe(((ConstructorInvocation) node).resolveConstructorBinding(), signatures);
+			break;
+		case ASTNode.SUPER_CONSTRUCTOR_INVOCATION:
+			describe(((SuperConstructorInvocation) node).resolveConstructorBinding(), signatures);
+			break;
+		case ASTNode.ENUM_CONSTANT_DECLARATION:
+			describe(((EnumConstantDeclaration) node).resolveConstructorBinding(), signatures);
+			break;
+		}
+	}
+
+	private static void collect(ASTNode node, List<ASTNode> result) {
+		result.add(node);
+		for (Object o : node.structuralPropertiesForType()) {
+			StructuralPropertyDescriptor p = (StructuralPropertyDescriptor) o;
+			if (p.isChildProperty()) {
+				ASTNode child = (ASTNode) node.getStructuralProperty(p);
+				if (child != null && child.getNodeType() != ASTNode.JAVADOC)
+					collect(child, result);
+			}
+			else if (p.isChildListProperty()) {
+				for (Object child : (List<?>) node.getStructuralProperty(p))
+					collect((ASTNode) child, result);
+			}
+		}
+	}
+
+	/**
+	 * Adds a description of the given binding's signature to the given set.
+	 * Local variables are ignored since they are fully described by the method's syntax.
+	 */
+	private static void describe(IBinding binding, Set<String> signatures) {
+		if (binding == null)
+			return;
+		StringBuilder s = new StringBuilder();
+		switch (binding.getKind()) {
+		case IBinding.METHOD: {
+			IMethodBinding m = ((IMethodBinding) binding).getMethodDeclaration();
+			s.append(m.getKey()).append(' ').append(m.getModifiers());
+			appendKey(m.getReturnType(), s);
+			for (ITypeBinding t : m.getExceptionTypes())
+				appendKey(t, s);
+			appendAnnotations(m.getAnnotations(), s);
+			for (int i = 0; i < m.getParameterTypes().length; i++)
+				appendAnnotations(m.getParameterAnnotations(i), s);
+			if (!signatures.add(s.toString()))
+				return;
+			describe(m.getDeclaringClass(), signatures);
+			break;
+		}
+		case IBinding.VARIABLE: {
+			IVariableBinding v = ((IVariableBinding) binding).getVariableDeclaration();
+			if (!v.isField())
+				return;
+			s.append(v.getKey()).append(' ').append(v.getModifiers());
+			appendKey(v.getType(), s);
+			appendAnnotations(v.getAnnotations(), s);
+			Object constant = v.getConstantValue();
+			if (constant != null) {
+				// constants are inlined, so their values matter like literals do
+				String c = constant.toString();
+				s.append(" =").append(c.length()).append(':').append(c);
+			}
+			if (!signatures.add(s.toString()))
+				return;
+			describe(v.getDeclaringClass(), signatures);
+			break;
+		}
+		case IBinding.TYPE: {
+			ITypeBinding t = ((ITypeBinding) binding).getTypeDeclaration();
+			if (t.isArray())
+				t = t.getElementType().getTypeDeclaration();
+			if (t.isPrimitive() || t.isTypeVariable() || t.isWildcardType() || t.isCapture())
+				return;
+			s.append(t.getKey()).append(' ').append(t.getModifiers());
+			appendKey(t.getSuperclass(), s);
+			for (ITypeBinding i : t.getInterfaces())
+				appendKey(i, s);
+			appendAnnotations(t.getAnnotations(), s);
+			signatures.add(s.toString());
+			break;
+		}
+		}
+	}
+
+	private static void appendKey(ITypeBinding t, StringBuilder s) {
+		s.append(' ').append(t == null ? "-" : t.getKey());
+	}
+
+	private static void appendAnnotations(IAnnotationBinding[] annos, StringBuilder s) {
+		s.append(" [");
+		for (IAnnotationBinding a : annos)
+			s.append(a).append(';');
+		s.append(']');
+	}
+
+	private static String digest(String text) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			byte[] hash = md.digest(text.getBytes("UTF-8"));
+			StringBuilder result = new StringBuilder(2 * hash.length);
+			for (byte b : hash) {
+				result.append(Character.forDigit((b >> 4) & 0xF, 16));
+				result.append(Character.forDigit(b & 0xF, 16));
+			}
+			return result.toString();
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new CrystalRuntimeException("Cannot compute method fingerprints", e);
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new CrystalRuntimeException("Cannot compute method fingerprints", e);
+		}
+	}
+}
@@ -0,0 +1,340 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import edu.cmu.cs.crystal.IAnalysisReporter.SEVERITY;
+import edu.cmu.cs.crystal.internal.IncrementalMethodCache.Problem;
+
+/**
+ * An append-only log of the problems one analysis reported for methods,
+ * by method {@link MethodFingerprint fingerprint}.  The log starts with the
+ * version of the analysis results; a log written by a different version is
+ * discarded when the store is opened.  All entries are also kept in memory.
+ * When the log grows beyond its size limit, it is rewritten with only the 
+ * most recently used entries that fit into half the limit.
+ * 
+ * The store tolerates logs that end in an incomplete entry, which happens
+ * if Eclipse exits while an entry is being written.
+ * 
+ * @see IncrementalMethodCache#setStore(PersistentResultStore)
+ */
+public class PersistentResultStore {
+
+	private static final Logger logger = Logger.getLogger(PersistentResultStore.class.getName());
+
+	private static final String MAGIC = "CrystalResults";
+	private static final int FORMAT = 1;
+
+	private final File file;
+	private final String version;
+	private final long maxBytes;
+
+	/** Entries by fingerprint, least recently used first */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private DataOutputStream out;
+	private long size;
+
+	/**
+	 * Opens the log in the given file, creating it if necessary.
+	 * @param file The log file.
+	 * @param version The version of the analysis results.
+	 * @param maxBytes Size limit of the log file, in bytes.
+	 * @throws IOException If the log cannot be read or written.
+	 */
+	public PersistentResultStore(File file, String version, long maxBytes) throws IOException {
+		if (maxBytes < 0)
+			throw new IllegalArgumentException("Negative size limit: " + maxBytes);
+		this.file = file;
+		this.version = version;
+		this.maxBytes = maxBytes;
+		long valid = file.exists() ? read() : -1;
+		if (valid < 0) {
+			rewrite();
+		}
+		else {
+			if (valid < file.length()) {
+				// drop incomplete entry at the end
+				RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				try {
+					raf.setLength(valid);
+				}
+				finally {
+					raf.close();
+				}
+			}
+			size = valid;
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the problems stored for the given fingerprint.
+	 * @param fingerprint A method fingerprint.
+	 * @return the problems stored for the given fingerprint or <code>null</code> if none.
+	 */
+	synchronized Problem[] get(String fingerprint) {
+		Entry e = entries.get(fingerprint);
+		return e == null ? null : e.problems;
+	}
+
+	/**
+	 * Appends the given problems to the log, unless problems for the 
+	 * given fingerprint are already stored.
+	 * @param fingerprint A method fingerprint.
+	 * @param problems The problems reported for the method with the given fingerprint.
+	 */
+	synchronized void put(String fingerprint, Problem[] problems) {
+		if (out == null || entries.containsKey(fingerprint))
+			return;
+		byte[] record;
+		try {
+			record = encode(fingerprint, problems);
+		}
+		catch (IOException e) {
+			// problem description too long for the log
+			return;
+		}
+		try {
+			out.writeInt(record.length);
+			out.write(record);
+			size += 4 + record.length;
+			entries.put(fingerprint, new Entry(problems, 4 + record.length));
+			if (size > maxBytes)
+				compact();
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot write analysis results to " + file, e);
+			close();
+		}
+	}
+
+	/**
+	 * Writes buffered entries to disk.
+	 */
+	public synchronized void flush() {
+		if (out == null)
+			return;
+		try {
+			out.flush();
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot write analysis results to " + file, e);
+			close();
+		}
+	}
+
+	/**
+	 * Writes buffered entries to disk and closes the log.  
+	 * Subsequent entries are only kept in memory.
+	 */
+	public synchronized void close() {
+		if (out == null)
+			return;
+		try {
+			out.close();
+		}
+		catch (IOException e) {
+			logger.log(Level.WARNING, "Cannot close " + file, e);
+		}
+		out = null;
+	}
+
+	/**
+	 * @return the number of stored entries.
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Reads the log into memory.
+	 * @return the length of the log's valid prefix or -1 if the log cannot be used.
+	 */
+	private long read() throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			long valid;
+			try {
+				if (!MAGIC.equals(in.readUTF()) || in.readInt() != FORMAT || !version.equals(in.readUTF()))
+					return -1;
+				valid = headerLength();
+			}
+			catch (IOException e) {
+				return -1;
+			}
+			while (true) {
+				byte[] record;
+				try {
+					int length = in.readInt();
+					if (length < 0 || length > file.length() - valid)
+						// corrupt or incomplete
+						return valid;
+					record = new byte[length];
+					in.readFully(record);
+				}
+				catch (EOFException e) {
+					return valid;
+				}
+				try {
+					decode(record);
+				}
+				catch (IOException e) {
+					// corrupt
+					return valid;
+				}
+				catch (RuntimeException e) {
+					// corrupt
+					return valid;
+				}
+				valid += 4 + record.length;
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes a new log with the entries in memory, most recently used first,
+	 * that fit into half the size limit.
+	 */
+	private void rewrite() throws IOException {
+		List<Map.Entry<String, Entry>> keep = new ArrayList<Map.Entry<String, Entry>>(entries.entrySet());
+		long budget = maxBytes / 2 - headerLength();
+		int first = keep.size();
+		while (first > 0 && keep.get(first - 1).getValue().bytes <= budget) {
+			first--;
+			budget -= keep.get(first).getValue().bytes;
+		}
+		keep = new ArrayList<Map.Entry<String, Entry>>(keep.subList(first, keep.size()));
+		
+		if (out != null)
+			out.close();
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null)
+			parent.mkdirs();
+		File tmp = new File(file.getPath() + ".tmp");
+		DataOutputStream o = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			o.writeUTF(MAGIC);
+			o.writeInt(FORMAT);
+			o.writeUTF(version);
+			size = headerLength();
+			entries.clear();
+			for (Map.Entry<String, Entry> e : keep) {
+				byte[] record = encode(e.getKey(), e.getValue().problems);
+				o.writeInt(record.length);
+				o.write(record);
+				size += 4 + record.length;
+				entries.put(e.getKey(), e.getValue());
+			}
+		}
+		finally {
+			o.close();
+		}
+		if (file.exists() && !file.delete() || !tmp.renameTo(file))
+			throw new IOException("Cannot replace " + file);
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+	}
+
+	private void compact() throws IOException {
+		rewrite();
+		if (logger.isLoggable(Level.FINE))
+			logger.fine("Compacted " + file + " to " + entries.size() + " entries");
+	}
+
+	private int headerLength() throws IOException {
+		ByteArrayOutputStream b = new ByteArrayOutputStream();
+		DataOutputStream o = new DataOutputStream(b);
+		o.writeUTF(MAGIC);
+		o.writeInt(FORMAT);
+		o.writeUTF(version);
+		o.close();
+		return b.size();
+	}
+
+	private static byte[] encode(String fingerprint, Problem[] problems) throws IOException {
+		ByteArrayOutputStream b = new ByteArrayOutputStream();
+		DataOutputStream o = new DataOutputStream(b);
+		o.writeUTF(fingerprint);
+		o.writeInt(problems.length);
+		for (Problem p : problems) {
+			o.writeUTF(p.description);
+			o.writeInt(p.node);
+			o.writeUTF(p.analysisName);
+			o.writeByte(p.severity == null ? -1 : p.severity.ordinal());
+		}
+		o.close();
+		return b.toByteArray();
+	}
+
+	private void decode(byte[] record) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		String fingerprint = in.readUTF();
+		Problem[] problems = new Problem[in.readInt()];
+		for (int i = 0; i < problems.length; i++) {
+			String description = in.readUTF();
+			int node = in.readInt();
+			String analysisName = in.readUTF();
+			int severity = in.readByte();
+			problems[i] = new Problem(description, node, analysisName, 
+					severity < 0 ? null : SEVERITY.values()[severity]);
+		}
+		entries.put(fingerprint, new Entry(problems, 4 + record.length));
+	}
+
+	private static class Entry {
+		final Problem[] problems;
+		/** Length of this entry in the log */
+		final int bytes;
+
+		Entry(Problem[] problems, int bytes) {
+			this.problems = problems;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -52,14 +52,14 @@ public class RunCrystalHandler implements IHandler {
 				final List<ITypeRoot> cus = WorkspaceUtilities.scanForCompilationUnits(
 						CrystalPreferences.getIncludeArchives());
 				
+				final IAnalysisReporter reporter = new StandardAnalysisReporter(true);
 				IRunCrystalCommand run_command = new IRunCrystalCommand(){
 					public Set<String> analyses() { return enabled;	}
 					public List<ITypeRoot> compilationUnits() { return cus; }
-					public IAnalysisReporter reporter() { 
-						return new StandardAnalysisReporter(); 
-					}
+					public IAnalysisReporter reporter() { return reporter; }
 				};
 					
+				crystal.setIncremental(CrystalPreferences.getIncremental());
 				crystal.runAnalyses(run_command, monitor);
 				if(monitor.isCanceled())
 					return Status.CANCEL_STATUS;
@@ -89,16 +89,18 @@ public class RunCrystalOnCurrentFileHandler implements IHandler {
 			@Override
 			protected IStatus run(IProgressMonitor monitor) {
 				final Set<String> enabled = AbstractCrystalPlugin.getEnabledAnalyses();
+				final IAnalysisReporter reporter = new StandardAnalysisReporter(true);
 				IRunCrystalCommand run_command = new IRunCrystalCommand(){
 					public Set<String> analyses() {	return enabled;	}
 					public List<ICompilationUnit> compilationUnits() {
 						return compUnits;
 					}
 					public IAnalysisReporter reporter() {
-						return new StandardAnalysisReporter();
+						return reporter;
 					}
 				};
 
+				crystal.setIncremental(CrystalPreferences.getIncremental());
 				crystal.runAnalyses(run_command, monitor);
 				if(monitor.isCanceled())
 					return Status.CANCEL_STATUS;
@@ -18,38 +18,90 @@
 package edu.cmu.cs.crystal.internal;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.ITypeRoot;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 
-import edu.cmu.cs.crystal.IAnalysisReporter;
+import edu.cmu.cs.crystal.IMarkerPublishingReporter;
 
 /**
  * An analysis reporter to be used when running analyses through Eclipse. All methods will
  * print/output to the standard locations in Eclipse.
  * 
+ * When created to batch markers, this reporter does not delete the markers of a compilation
+ * unit when it is about to be analyzed.  Instead, it buffers the problems reported for the
+ * compilation unit until {@link #publishMarkersForCompUnit(ITypeRoot)} is called and then
+ * merges them with the existing markers in the background: markers whose attributes did not
+ * change are kept, and all marker creations and deletions happen in one workspace operation,
+ * which fires one resource change event instead of several per problem.
+ * 
  * @author Nels E. Beckman
  */
-public class StandardAnalysisReporter implements IAnalysisReporter {
+public class StandardAnalysisReporter implements IMarkerPublishingReporter {
 
 	public static final String REGRESSION_LOGGER = "edu.cmu.cs.crystal.regression";
 	private static final Logger logger = Logger.getLogger(Crystal.class.getName());
 	private static final Logger regressionLogger = Logger.getLogger(REGRESSION_LOGGER);
 
+	private final boolean batchMarkers;
+
+	/** Problems reported for compilation units being analyzed, by resource. */
+	private final Map<IResource, List<Map<String, Object>>> pending = 
+		new HashMap<IResource, List<Map<String, Object>>>();
+
+	/** Marker updates waiting to be applied, in the order they were made. */
+	private final LinkedList<MarkerUpdate> updates = new LinkedList<MarkerUpdate>();
+
+	private final Job publisher = new MarkerPublisher();
+
+	/**
+	 * Creates a reporter that creates and deletes markers right away.
+	 */
+	public StandardAnalysisReporter() {
+		this(false);
+	}
+
+	/**
+	 * @param batchMarkers <code>true</code> to buffer problems per compilation unit and merge them
+	 * with existing markers in the background, <code>false</code> to create and delete markers
+	 * right away.
+	 */
+	public StandardAnalysisReporter(boolean batchMarkers) {
+		this.batchMarkers = batchMarkers;
+	}
+
 	public void clearMarkersForCompUnit(ITypeRoot compUnit) {
 		try {
 			IResource resource = compUnit.getResource();
 			if (resource == null)
 				// this happens with external libraries like the Java runtime library
 				logger.warning("Cannot clear markers in " + compUnit);
+			else if (batchMarkers) {
+				// markers are replaced when the compilation unit is published
+				synchronized (pending) {
+					pending.put(resource, new ArrayList<Map<String, Object>>());
+				}
+			}
 			else
 				resource.deleteMarkers(
 				    Crystal.MARKER_DEFAULT, true, IResource.DEPTH_INFINITE);
@@ -59,6 +111,27 @@ public class StandardAnalysisReporter implements IAnalysisReporter {
 		}
 	}
 
+	/**
+	 * Replaces the markers of the given compilation unit with the problems reported since
+	 * {@link #clearMarkersForCompUnit(ITypeRoot)} was last called for it.  This does nothing
+	 * unless this reporter batches markers.  Markers are updated in the background.
+	 * 
+	 * @param compUnit The compilation unit that was analyzed.
+	 */
+	public void publishMarkersForCompUnit(ITypeRoot compUnit) {
+		if (!batchMarkers)
+			return;
+		IResource resource = compUnit.getResource();
+		if (resource == null)
+			return;
+		List<Map<String, Object>> problems;
+		synchronized (pending) {
+			problems = pending.remove(resource);
+		}
+		if (problems != null)
+			schedule(new MarkerUpdate(resource, problems, true));
+	}
+
 	public PrintWriter debugOut() {
 		return new PrintWriter(System.out, true);
 	}
@@ -117,23 +190,157 @@ public class StandardAnalysisReporter implements IAnalysisReporter {
 		else
 			sevMarker = IMarker.SEVERITY_INFO;
 
-		// Create the marker
+		// Collect the marker attributes
 		// TODO: create markers according to the type of the analysis
-		try {
-			IMarker marker = resource.createMarker(Crystal.MARKER_DEFAULT);
-			marker.setAttribute(IMarker.CHAR_START, node.getStartPosition());
-			marker.setAttribute(IMarker.CHAR_END, node.getStartPosition() + node.getLength());
-			marker.setAttribute(IMarker.MESSAGE, prefix + ": " + problemDescription);
-			marker.setAttribute(IMarker.PRIORITY, IMarker.PRIORITY_NORMAL);
-			marker.setAttribute(IMarker.SEVERITY, sevMarker);
-			marker.setAttribute(Crystal.MARKER_ATTR_ANALYSIS, analysisName);
-			CompilationUnit cu = (CompilationUnit) node.getRoot();
-			int line = cu.getLineNumber(node.getStartPosition());
-			if (line >= 0) // -1 and -2 indicate error conditions
-				marker.setAttribute(IMarker.LINE_NUMBER, line);
+		Map<String, Object> attributes = new HashMap<String, Object>();
+		attributes.put(IMarker.CHAR_START, node.getStartPosition());
+		attributes.put(IMarker.CHAR_END, node.getStartPosition() + node.getLength());
+		attributes.put(IMarker.MESSAGE, prefix + ": " + problemDescription);
+		attributes.put(IMarker.PRIORITY, IMarker.PRIORITY_NORMAL);
+		attributes.put(IMarker.SEVERITY, sevMarker);
+		attributes.put(Crystal.MARKER_ATTR_ANALYSIS, analysisName);
+		CompilationUnit cu = (CompilationUnit) node.getRoot();
+		int line = cu.getLineNumber(node.getStartPosition());
+		if (line >= 0) // -1 and -2 indicate error conditions
+			attributes.put(IMarker.LINE_NUMBER, line);
+
+		if (batchMarkers) {
+			synchronized (pending) {
+				List<Map<String, Object>> problems = pending.get(resource);
+				if (problems != null) {
+					problems.add(attributes);
+					return;
+				}
+			}
+			// not part of a compilation unit being analyzed, so just add the marker, 
+			// but after pending updates for the same resource
+			schedule(new MarkerUpdate(resource, 
+					Collections.singletonList(attributes), false));
 		}
-		catch (CoreException ce) {
-			logger.log(Level.SEVERE, "CoreException when creating marker", ce);
+		else {
+			// Create the marker
+			try {
+				createMarker(resource, attributes);
+			}
+			catch (CoreException ce) {
+				logger.log(Level.SEVERE, "CoreException when creating marker", ce);
+			}
+		}
+	}
+
+	private static void createMarker(IResource resource, Map<String, Object> attributes) 
+			throws CoreException {
+		// setting all attributes at once is one workspace modification
+		resource.createMarker(Crystal.MARKER_DEFAULT).setAttributes(attributes);
+	}
+
+	private void schedule(MarkerUpdate update) {
+		synchronized (updates) {
+			updates.add(update);
+		}
+		// re-schedules the publisher after the current run if it is already running
+		publisher.schedule();
+	}
+
+	/**
+	 * Marker creations, and possibly deletions, for one resource.
+	 */
+	private static class MarkerUpdate {
+		private final IResource resource;
+		private final List<Map<String, Object>> problems;
+		private final boolean replace;
+
+		/**
+		 * @param resource The resource whose markers to update.
+		 * @param problems The attributes of the markers the resource should have.
+		 * @param replace <code>true</code> to delete existing markers that are not in 
+		 * <code>problems</code>, <code>false</code> to just add markers.
+		 */
+		MarkerUpdate(IResource resource, List<Map<String, Object>> problems, boolean replace) {
+			this.resource = resource;
+			this.problems = problems;
+			this.replace = replace;
+		}
+
+		void apply() throws CoreException {
+			if (!resource.exists())
+				// deleted in the meantime
+				return;
+			if (!replace) {
+				for (Map<String, Object> attributes : problems)
+					createMarker(resource, attributes);
+				return;
+			}
+			
+			// index existing markers by their attributes, which include analysis, position, and message
+			Map<Map<String, Object>, List<IMarker>> existing = 
+				new HashMap<Map<String, Object>, List<IMarker>>();
+			for (IMarker marker : resource.findMarkers(
+					Crystal.MARKER_DEFAULT, true, IResource.DEPTH_INFINITE)) {
+				Map<String, Object> attributes = marker.getAttributes();
+				List<IMarker> same = existing.get(attributes);
+				if (same == null) {
+					same = new ArrayList<IMarker>(1);
+					existing.put(attributes, same);
+				}
+				same.add(marker);
+			}
+			// keep markers that are reported again, create the others
+			for (Map<String, Object> attributes : problems) {
+				List<IMarker> same = existing.get(attributes);
+				if (same != null && !same.isEmpty())
+					same.remove(same.size() - 1);
+				else
+					createMarker(resource, attributes);
+			}
+			// delete markers that were not reported again
+			for (List<IMarker> stale : existing.values()) {
+				for (IMarker marker : stale)
+					marker.delete();
+			}
+		}
+	}
+
+	/**
+	 * Applies all scheduled marker updates in one workspace operation.
+	 */
+	private class MarkerPublisher extends Job {
+
+		MarkerPublisher() {
+			super("Publishing Crystal markers");
+			setSystem(true);
+		}
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			final List<MarkerUpdate> todo;
+			synchronized (updates) {
+				todo = new ArrayList<MarkerUpdate>(updates);
+				updates.clear();
+			}
+			if (todo.isEmpty())
+				return Status.OK_STATUS;
+			IWorkspaceRunnable runnable = new IWorkspaceRunnable() {
+				public void run(IProgressMonitor monitor) throws CoreException {
+					for (MarkerUpdate update : todo) {
+						try {
+							update.apply();
+						}
+						catch (CoreException ce) {
+							logger.log(Level.SEVERE, "CoreException when updating markers of " +
+									update.resource, ce);
+						}
+					}
+				}
+			};
+			try {
+				// marker changes need no scheduling rule, so don't lock the workspace
+				ResourcesPlugin.getWorkspace().run(runnable, null, IWorkspace.AVOID_UPDATE, monitor);
+			}
+			catch (CoreException ce) {
+				logger.log(Level.SEVERE, "CoreException when updating markers", ce);
+			}
+			return Status.OK_STATUS;
 		}
 	}
 }
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.internal;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
+
+/**
+ * Progress monitor that serializes calls to a wrapped monitor.
+ * Crystal uses this wrapper to let worker threads report progress 
+ * when it analyzes several compilation units in parallel, since progress 
+ * monitors in general are not thread-safe.
+ * Polling for cancellation is not serialized.
+ * 
+ * @see Crystal#setParallelism(int)
+ */
+class SynchronizedProgressMonitor extends ProgressMonitorWrapper {
+
+	SynchronizedProgressMonitor(IProgressMonitor monitor) {
+		super(monitor);
+	}
+
+	@Override
+	public synchronized void beginTask(String name, int totalWork) {
+		super.beginTask(name, totalWork);
+	}
+
+	@Override
+	public synchronized void clearBlocked() {
+		super.clearBlocked();
+	}
+
+	@Override
+	public synchronized void done() {
+		super.done();
+	}
+
+	@Override
+	public synchronized void internalWorked(double work) {
+		super.internalWorked(work);
+	}
+
+	@Override
+	public synchronized void setBlocked(IStatus reason) {
+		super.setBlocked(reason);
+	}
+
+	@Override
+	public synchronized void setCanceled(boolean b) {
+		super.setCanceled(b);
+	}
+
+	@Override
+	public synchronized void setTaskName(String name) {
+		super.setTaskName(name);
+	}
+
+	@Override
+	public synchronized void subTask(String name) {
+		super.subTask(name);
+	}
+
+	@Override
+	public synchronized void worked(int work) {
+		super.worked(work);
+	}
+
+}
@@ -33,6 +33,9 @@ import java.util.logging.Logger;
 import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IJavaElement;
 import org.eclipse.jdt.core.IJavaModel;
@@ -46,6 +49,7 @@ import org.eclipse.jdt.core.JavaModelException;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTRequestor;
 import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
 import org.eclipse.jdt.core.dom.EnumConstantDeclaration;
@@ -442,6 +446,38 @@ public class WorkspaceUtilities {
 		}
 	}
 
+	/**
+	 * Parses the given compilation units with bindings on, sharing one binding 
+	 * environment, and passes each root ASTNode to the given requestor as soon as
+	 * it is created.  This is much faster than parsing each compilation unit with 
+	 * {@link #getASTNodeFromCompilationUnit(ITypeRoot)}.
+	 * @param compUnits Compilation units from the same project, never empty.
+	 * @param requestor Receives the root ASTNode of each compilation unit.
+	 * @param monitor Polled for cancellation only, progress is not reported; 
+	 * may be <code>null</code>.  Parsing stops early once it is canceled.
+	 * @see ASTParser#createASTs(ICompilationUnit[], String[], ASTRequestor, IProgressMonitor)
+	 */
+	public static void createASTs(List<ICompilationUnit> compUnits, ASTRequestor requestor, 
+			final IProgressMonitor monitor) {
+		ASTParser parser = ASTParser.newParser(AST.JLS3);
+		parser.setResolveBindings(true);
+		parser.setProject(compUnits.get(0).getJavaProject());
+		// only forward cancellation: passing in the monitor itself messes up its state
+		IProgressMonitor cancel = monitor == null ? null : new NullProgressMonitor() {
+			@Override
+			public boolean isCanceled() {
+				return monitor.isCanceled();
+			}
+		};
+		try {
+			parser.createASTs(compUnits.toArray(new ICompilationUnit[compUnits.size()]), new String[0], 
+					requestor, cancel);
+		}
+		catch (OperationCanceledException e) {
+			// caller notices cancellation through its own monitor
+		}
+	}
+
 	/**
 	 * Given an IType from the model, this method will return the ast node
 	 * associated with that type, or null if it doesn't exist.
@@ -0,0 +1,68 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.simple;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+
+import edu.cmu.cs.crystal.flow.IFreezableLatticeOperations;
+import edu.cmu.cs.crystal.flow.ILatticeOperations;
+import edu.cmu.cs.crystal.flow.LatticeUtilities;
+
+/**
+ * Lattice operations for TupleLatticeElements that can be {@link #freeze(TupleLatticeElement) frozen},
+ * which lets flow analyses share tuples instead of copying them.  Create this class
+ * instead of {@link TupleLatticeOperations} to opt into freezing.  Since flow analyses
+ * freeze the results they keep, tuples returned by their queries, e.g.,
+ * {@link edu.cmu.cs.crystal.flow.IFlowAnalysis#getResultsAfter(ASTNode)},
+ * cannot be modified; {@link #copy(TupleLatticeElement) copy} them first.
+ *
+ * Freezing a tuple also freezes the values in it, so the operations for the
+ * value lattice must support freezing as well.
+ *
+ * @param <K> The type of things that individual lattice elements are tracked for.
+ * @param <LE>  The element type of the underlying lattice.
+ * @see IFreezableLatticeOperations
+ */
+public class FreezableTupleLatticeOperations<K, LE> extends TupleLatticeOperations<K, LE>
+		implements IFreezableLatticeOperations<TupleLatticeElement<K, LE>, ASTNode> {
+
+	/**
+	 * @param operations The operations for the LE lattice, which must support freezing.
+	 * @param defaultElement The default LE, to be used for keys without explicit value
+	 * @throws IllegalArgumentException If the given operations do not support freezing.
+	 */
+	public FreezableTupleLatticeOperations(ILatticeOperations<LE> operations, LE defaultElement) {
+		super(operations, defaultElement);
+		if(!LatticeUtilities.isFreezable(operations))
+			throw new IllegalArgumentException("Value lattice cannot be frozen: " + operations);
+	}
+
+	/**
+	 * Freezes the given tuple as well as the values in it.
+	 * @see IFreezableLatticeOperations#freeze(Object)
+	 */
+	public TupleLatticeElement<K, LE> freeze(TupleLatticeElement<K, LE> info) {
+		if(info.isFrozen())
+			return info;
+		freezeValues(info);
+		return info.freeze();
+	}
+
+}
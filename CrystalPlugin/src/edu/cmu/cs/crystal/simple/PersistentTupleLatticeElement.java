@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.simple;
+
+import java.util.AbstractSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import edu.cmu.cs.crystal.util.PersistentHashMap;
+
+/**
+ * A {@link TupleLatticeElement} that keeps its elements in a {@link PersistentHashMap}.
+ * Copying such a tuple takes constant time, and modifying it takes logarithmic
+ * time while sharing most of its structure with the tuple it was copied from.
+ * Joins and comparisons of tuples derived from one another only have to look at 
+ * the entries that were changed.
+ * 
+ * Use {@link PersistentTupleLatticeOperations} to create and manipulate these tuples.
+ * 
+ * @param <K> The type of things that individual lattice elements are tracked for.
+ * @param <LE>  The element type of the underlying lattice.
+ * @see PersistentTupleLatticeOperations
+ */
+public class PersistentTupleLatticeElement<K, LE> extends TupleLatticeElement<K, LE> {
+
+	// if map==null, then this element is the bottom tuple lattice 
+	private PersistentHashMap<K, LE> map;
+
+	/**
+	 * Construct a tuple lattice.
+	 * 
+	 * @param b The bottom value for the underlying lattice
+	 * @param d The default lattice value for the underlying lattice
+	 * @param m Map from keys to non-default values, or <code>null</code> for bottom.
+	 */
+	protected PersistentTupleLatticeElement(LE b, LE d, PersistentHashMap<K, LE> m) {
+		super(b, d, null);
+		map = m;
+	}
+
+	/**
+	 * Returns the map underlying this tuple, which is <code>null</code> for bottom.
+	 * @return the map underlying this tuple.
+	 */
+	PersistentHashMap<K, LE> getMap() {
+		return map;
+	}
+
+	@Override
+	public LE get(K n) {
+		if (map == null)
+			return bot;
+		LE elem = map.get(n);
+		if (elem == null)
+			return theDefault;
+		else
+			return elem;
+	}
+
+	@Override
+	public LE put(K n, LE l) {
+		checkNotFrozen();
+		LE old = map.get(n);
+		map = map.put(n, l);
+		return old;
+	}
+
+	@Override
+	public LE remove(K n) {
+		checkNotFrozen();
+		LE old = map.get(n);
+		map = map.remove(n);
+		return old;
+	}
+
+	/**
+	 * Returns the set of keys for which lattice information was previously stored.
+	 * Removing elements from the set removes their entry in the tuple.  The set
+	 * can be iterated while the tuple is modified, in which case iteration
+	 * reflects the tuple's state when iteration started.
+	 */
+	@Override
+	public Set<K> getKeySet() {
+		if (map == null)
+			return new HashSet<K>();
+		return new AbstractSet<K>() {
+			@Override
+			public Iterator<K> iterator() {
+				final Iterator<K> it = map.keySet().iterator();
+				return new Iterator<K>() {
+					private K last;
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+					public K next() {
+						return last = it.next();
+					}
+					public void remove() {
+						if (last == null)
+							throw new IllegalStateException();
+						PersistentTupleLatticeElement.this.remove(last);
+						last = null;
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return map.size();
+			}
+			@Override
+			public boolean contains(Object o) {
+				return map.containsKey(o);
+			}
+			@Override
+			public boolean remove(Object o) {
+				if (!map.containsKey(o))
+					return false;
+				checkNotFrozen();
+				map = map.remove(o);
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Creates a copy of this tuple that can be modified, in constant time.  The copy 
+	 * <i>shares</i> the lattice elements stored in this tuple.
+	 */
+	@Override
+	public PersistentTupleLatticeElement<K, LE> mutableCopy() {
+		return new PersistentTupleLatticeElement<K, LE>(bot, theDefault, map);
+	}
+
+	private void checkNotFrozen() {
+		if (isFrozen())
+			throw new UnsupportedOperationException("Cannot modify frozen tuple");
+	}
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.simple;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+
+import edu.cmu.cs.crystal.flow.ILatticeOperations;
+import edu.cmu.cs.crystal.flow.LatticeUtilities;
+import edu.cmu.cs.crystal.util.Box;
+import edu.cmu.cs.crystal.util.Lambda3;
+import edu.cmu.cs.crystal.util.Pair;
+import edu.cmu.cs.crystal.util.PersistentHashMap;
+
+/**
+ * Lattice operations for {@link PersistentTupleLatticeElement}s, which can be used
+ * in place of {@link TupleLatticeOperations}: simply create this class instead, 
+ * and all tuples created by these operations will be persistent.
+ * Tuples share structure with the tuples they were copied from, so copies
+ * take constant time, and {@link #join(TupleLatticeElement, TupleLatticeElement, ASTNode) join}
+ * and {@link #atLeastAsPrecise(TupleLatticeElement, TupleLatticeElement, ASTNode) atLeastAsPrecise}
+ * skip entries the two given tuples share.  This relies on the 
+ * lattice laws for the value lattice: joining a value with itself yields the
+ * same value, and each value is at least as precise as itself.
+ * 
+ * Since values are shared between tuples, the operations for the value lattice
+ * must support freezing.  Like {@link FreezableTupleLatticeOperations}, these
+ * operations let flow analyses share frozen tuples, so tuples returned by flow
+ * analysis queries have to be copied before modifying them.
+ * 
+ * @param <K> The type of things that individual lattice elements are tracked for.
+ * @param <LE>  The element type of the underlying lattice.
+ * @see PersistentTupleLatticeElement
+ */
+public class PersistentTupleLatticeOperations<K, LE> extends FreezableTupleLatticeOperations<K, LE> {
+
+	/**
+	 * @param operations The operations for the LE lattice, which must support freezing.
+	 * @param defaultElement The default LE, to be used for keys without explicit value
+	 * @throws IllegalArgumentException If the given operations do not support freezing.
+	 */
+	public PersistentTupleLatticeOperations(ILatticeOperations<LE> operations, LE defaultElement) {
+		super(operations, defaultElement);
+	}
+
+	@Override
+	public boolean atLeastAsPrecise(TupleLatticeElement<K, LE> left, TupleLatticeElement<K, LE> right, final ASTNode node) {
+		final PersistentTupleLatticeElement<K, LE> l = persistent(left);
+		final PersistentTupleLatticeElement<K, LE> r = persistent(right);
+		if(l.getMap() == null || r.getMap() == null) {
+			Set<K> keys = new HashSet<K>(left.getKeySet());
+			keys.addAll(right.getKeySet());
+			for (K key : keys) {
+				if (!elementOps.atLeastAsPrecise(left.get(key), right.get(key), node))
+					return false;
+			}
+			return true;
+		}
+		// elementwise comparison of the entries that differ
+		return l.getMap().forEachDifference(r.getMap(), new Lambda3<K, LE, LE, Boolean>() {
+			public Boolean call(K key, LE leftLE, LE rightLE) {
+				return elementOps.atLeastAsPrecise(
+						leftLE == null ? l.theDefault : leftLE, 
+						rightLE == null ? r.theDefault : rightLE, node);
+			}
+		});
+	}
+
+	@Override
+	public TupleLatticeElement<K, LE> bottom() {
+		return new PersistentTupleLatticeElement<K, LE>(elementOps.bottom(), elementOps.copy(theDefault), null);
+	}
+
+	@Override
+	public TupleLatticeElement<K, LE> copy(TupleLatticeElement<K, LE> original) {
+		PersistentTupleLatticeElement<K, LE> o = persistent(original);
+		if(o.getMap() == null)
+			return bottom();
+		// values can be shared once they are frozen
+		if(!o.isFrozen())
+			freezeValues(o);
+		return o.mutableCopy();
+	}
+
+	@Override
+	public TupleLatticeElement<K, LE> join(TupleLatticeElement<K, LE> left, TupleLatticeElement<K, LE> right, final ASTNode node) {
+		final PersistentTupleLatticeElement<K, LE> l = persistent(left);
+		final PersistentTupleLatticeElement<K, LE> r = persistent(right);
+		final Box<PersistentHashMap<K, LE>> result;
+		if(l.getMap() == null || r.getMap() == null) {
+			// join each element, starting from scratch
+			result = Box.box(PersistentHashMap.<K, LE>empty());
+			Set<K> keys = new HashSet<K>(left.getKeySet());
+			keys.addAll(right.getKeySet());
+			for (K key : keys) {
+				LE leftLE = LatticeUtilities.copyForJoin(elementOps, left.get(key));
+				result.setValue(result.getValue().put(key, elementOps.join(leftLE, right.get(key), node)));
+			}
+		}
+		else {
+			// start from the left tuple and join the entries that differ
+			result = Box.box(l.getMap());
+			l.getMap().forEachDifference(r.getMap(), new Lambda3<K, LE, LE, Boolean>() {
+				public Boolean call(K key, LE leftLE, LE rightLE) {
+					LE newLE = elementOps.join(
+							LatticeUtilities.copyForJoin(elementOps, leftLE == null ? l.theDefault : leftLE), 
+							rightLE == null ? r.theDefault : rightLE, node);
+					result.setValue(result.getValue().put(key, newLE));
+					return true;
+				}
+			});
+		}
+		return new PersistentTupleLatticeElement<K, LE>(elementOps.bottom(), elementOps.copy(theDefault), result.getValue());
+	}
+
+	@Override
+	public TupleLatticeElement<K, LE> getDefault() {
+		return new PersistentTupleLatticeElement<K, LE>(elementOps.bottom(), elementOps.copy(theDefault), 
+				PersistentHashMap.<K, LE>empty());
+	}
+
+	@Override
+	protected void freezeValues(TupleLatticeElement<K, LE> info) {
+		PersistentTupleLatticeElement<K, LE> p = persistent(info);
+		if(p.getMap() == null)
+			return;
+		for(Pair<K, LE> e : p.getMap())
+			LatticeUtilities.freeze(elementOps, e.snd());
+	}
+
+	private static <K, LE> PersistentTupleLatticeElement<K, LE> persistent(TupleLatticeElement<K, LE> info) {
+		if(info instanceof PersistentTupleLatticeElement)
+			return (PersistentTupleLatticeElement<K, LE>) info;
+		throw new IllegalArgumentException("Not a persistent tuple: " + info);
+	}
+}
@@ -19,10 +19,13 @@
  */
 package edu.cmu.cs.crystal.simple;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 
+import edu.cmu.cs.crystal.util.Freezable;
+
 
 /**
  * Represents a lattice element that is a tuple of lattice elements for an underlying lattice.
@@ -34,7 +37,9 @@ import java.util.Set;
  * To use the TupleLatticeElement, create a TupleLatticeOperations.
  * 
  * <b>This lattice is mutable</b>; the {@link #put(Object, Object)} operation can be used to 
- * change its value.
+ * change its value, unless the tuple was {@link #freeze() frozen}.  
+ * {@link #mutableCopy() Mutable copies} share their map with the original tuple
+ * until either one is modified.
  * 
  * @author aldrich
  * @author Kevin Bierhoff
@@ -42,12 +47,18 @@ import java.util.Set;
  * @param <K> The type of things that individual lattice elements are tracked for.
  * @param <LE>  The element type of the underlying lattice.
  */
-public class TupleLatticeElement<K, LE> {
+public class TupleLatticeElement<K, LE> implements Freezable<TupleLatticeElement<K, LE>> {
 
 	protected final LE bot;
 	protected final LE theDefault;
 	// if elements==null, then this element is the bottom tuple lattice 
-	protected final HashMap<K,LE> elements;
+	// subclasses can read and modify this map directly; 
+	// their maps are never shared (see mutableCopy()) 
+	protected HashMap<K,LE> elements;
+	/** Frozen tuples cannot be modified. */
+	private boolean frozen;
+	/** If <code>true</code>, {@link #elements} may be shared with other tuples and must be copied before modifying it. */
+	private boolean shared;
 	
 	/**
 	 * Construct a tuple lattice.
@@ -97,7 +108,7 @@ public class TupleLatticeElement<K, LE> {
 	 * @return   The old value of the map
 	 */
 	public LE put(K n, LE l) {
-		return elements.put(n,l);
+		return writableElements().put(n,l);
 	}
 	
 	/**
@@ -108,7 +119,7 @@ public class TupleLatticeElement<K, LE> {
 	 * if element wasn't in the tuple.
 	 */
 	public LE remove(K n) {
-		return elements.remove(n);
+		return writableElements().remove(n);
 	}
 	
 	/** 
@@ -139,8 +150,8 @@ public class TupleLatticeElement<K, LE> {
 
 	/**
 	 * Returns the set of keys for which lattice information was previously stored.
-	 * This set is backed by the tuple, thus removing elements from the set removes
-	 * their entry in the tuple.
+	 * This set is a read-only view of the tuple's keys; use {@link #remove(Object)}
+	 * to remove entries from the tuple.
 	 * @return The set of keys for which lattice information was previously stored.
 	 * The result is never <code>null</code> but may be empty.
 	 * @see java.util.Map#keySet()
@@ -149,6 +160,68 @@ public class TupleLatticeElement<K, LE> {
 		if (elements == null)
 			return new HashSet<K>();
 		else
-			return elements.keySet();
+			return Collections.unmodifiableSet(elements.keySet());
+	}
+
+	/**
+	 * Indicates whether this tuple was frozen.
+	 * @return <code>true</code> if this tuple cannot be modified, <code>false</code> otherwise.
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * Prevents future modifications of this tuple.  Notice that lattice elements 
+	 * stored in the tuple are not frozen.
+	 * @return This tuple.
+	 */
+	public TupleLatticeElement<K, LE> freeze() {
+		frozen = true;
+		return this;
+	}
+
+	/**
+	 * Creates a copy of this tuple that can be modified.  The copy <i>shares</i> the
+	 * lattice elements stored in this tuple, and the underlying map is only copied
+	 * when this tuple or the copy is first modified.  The map of a mutable instance 
+	 * of a subclass is copied right away since subclasses may modify it directly.
+	 * @return A mutable copy of this tuple.
+	 * @see TupleLatticeOperations#copy(TupleLatticeElement)
+	 */
+	public TupleLatticeElement<K, LE> mutableCopy() {
+		if (elements != null && !frozen && getClass() != TupleLatticeElement.class)
+			return new TupleLatticeElement<K, LE>(bot, theDefault, new HashMap<K, LE>(elements));
+		TupleLatticeElement<K, LE> result = new TupleLatticeElement<K, LE>(bot, theDefault, elements);
+		if (elements != null) {
+			if (!frozen)
+				shared = true;
+			result.shared = true;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the map of this tuple for reading, which is <code>null</code> for bottom.
+	 * @return The map of this tuple; callers must not modify it.
+	 */
+	HashMap<K, LE> readableElements() {
+		return elements;
+	}
+
+	/**
+	 * Returns the map of this tuple for modification, copying it first if 
+	 * it may be shared with other tuples.
+	 * @return The map of this tuple, which can be modified.
+	 * @throws UnsupportedOperationException If this tuple is frozen.
+	 */
+	private HashMap<K, LE> writableElements() {
+		if (frozen)
+			throw new UnsupportedOperationException("Cannot modify frozen tuple");
+		if (shared) {
+			elements = new HashMap<K, LE>(elements);
+			shared = false;
+		}
+		return elements;
 	}
 }
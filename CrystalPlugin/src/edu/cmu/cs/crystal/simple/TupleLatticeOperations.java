@@ -19,6 +19,7 @@
  */
 package edu.cmu.cs.crystal.simple;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
@@ -26,12 +27,19 @@ import java.util.Set;
 import org.eclipse.jdt.core.dom.ASTNode;
 
 import edu.cmu.cs.crystal.flow.ILatticeOperations;
+import edu.cmu.cs.crystal.flow.LatticeUtilities;
 
 /**
  * Lattice operations for the TupleLatticeElement. To use TupleLatticeElement, create a
  * TupleLatticeOperations with the appropriate lattice operations for the value lattice element
  * and the default.
  * 
+ * If the operations for the value lattice support freezing, then 
+ * {@link #copy(TupleLatticeElement) copying} a tuple shares the values with the 
+ * original tuple and only copies the tuple's map when it is first modified; 
+ * otherwise, copies are deep as before.  Use {@link FreezableTupleLatticeOperations}
+ * to let flow analyses share tuples instead of copying them.
+ * 
  * @author ciera
  * @since Crystal 3.4.0
  */
@@ -49,8 +57,8 @@ public class TupleLatticeOperations<K, LE> implements ILatticeOperations<TupleLa
 	}
 	
 	public boolean atLeastAsPrecise(TupleLatticeElement<K, LE> left, TupleLatticeElement<K, LE> right, ASTNode node) {
-		Set<K> keys = new HashSet<K>(left.getKeySet());
-		keys.addAll(right.getKeySet());
+		Set<K> keys = new HashSet<K>(keys(left));
+		keys.addAll(keys(right));
 
 		// elementwise comparison: return false if any element is not atLeastAsPrecise
 		for (K key : keys) {
@@ -69,11 +77,18 @@ public class TupleLatticeOperations<K, LE> implements ILatticeOperations<TupleLa
 
 	public TupleLatticeElement<K, LE> copy(TupleLatticeElement<K, LE> original) {
 		
-		if(original.elements == null)
+		HashMap<K, LE> elements = original.readableElements();
+		if(elements == null)
 			return new TupleLatticeElement<K, LE>(elementOps.bottom(), elementOps.copy(theDefault), null);
-		HashMap<K, LE> elemCopy = new HashMap<K, LE>(original.elements.size());
-		for(K x : original.elements.keySet()) {
-			LE elementValue = original.elements.get(x);
+		if(LatticeUtilities.isFreezable(elementOps)) {
+			// values can be shared once they are frozen
+			if(!original.isFrozen())
+				freezeValues(original);
+			return original.mutableCopy();
+		}
+		HashMap<K, LE> elemCopy = new HashMap<K, LE>(elements.size());
+		for(K x : elements.keySet()) {
+			LE elementValue = elements.get(x);
 			elemCopy.put(x, elementOps.copy(elementValue));
 		}
 		return new TupleLatticeElement<K, LE>(elementOps.bottom(), elementOps.copy(theDefault), elemCopy);
@@ -82,12 +97,13 @@ public class TupleLatticeOperations<K, LE> implements ILatticeOperations<TupleLa
 	public TupleLatticeElement<K, LE> join(TupleLatticeElement<K, LE> left,	TupleLatticeElement<K, LE> right, ASTNode node) {
 		HashMap<K,LE> newMap = new HashMap<K,LE>();
 
-		Set<K> keys = new HashSet<K>(left.getKeySet());
-		keys.addAll(right.getKeySet());
+		Set<K> keys = new HashSet<K>(keys(left));
+		keys.addAll(keys(right));
 		
 		// join the tuple lattice by joining each element
+		// copy values that elementOps could modify since tuples must not be modified by joins
 		for (K key : keys) {
-			LE leftLE = left.get(key);
+			LE leftLE = LatticeUtilities.copyForJoin(elementOps, left.get(key));
 			LE rightLE = right.get(key);
 			LE newLE = elementOps.join(leftLE, rightLE, node);
 			newMap.put(key, newLE);
@@ -102,4 +118,27 @@ public class TupleLatticeOperations<K, LE> implements ILatticeOperations<TupleLa
 	public TupleLatticeElement<K, LE> getDefault() {
 		return new TupleLatticeElement<K, LE>(elementOps.bottom(), elementOps.copy(theDefault), new HashMap<K, LE>());
 	}
+
+	/**
+	 * Freezes the values in the given tuple, if the operations for the 
+	 * value lattice support freezing.
+	 * @param info
+	 */
+	protected void freezeValues(TupleLatticeElement<K, LE> info) {
+		if(info.readableElements() == null || !LatticeUtilities.isFreezable(elementOps))
+			return;
+		for(LE value : info.readableElements().values())
+			LatticeUtilities.freeze(elementOps, value);
+	}
+
+	/**
+	 * Returns the keys of the given tuple without copying its map.
+	 * @param info
+	 * @return the keys of the given tuple; callers must not modify this set.
+	 */
+	private Set<K> keys(TupleLatticeElement<K, LE> info) {
+		if(info.readableElements() == null)
+			return Collections.emptySet();
+		return info.readableElements().keySet();
+	}
 }
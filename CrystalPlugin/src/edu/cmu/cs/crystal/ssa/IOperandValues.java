@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.ssa;
+
+import edu.cmu.cs.crystal.tac.model.Variable;
+
+/**
+ * Gives {@link ISparseTransferFunction sparse transfer functions} the 
+ * analysis information for an instruction's operands.
+ * 
+ * @param <LE> Type representing the analysis knowledge about one variable.
+ */
+public interface IOperandValues<LE> {
+	
+	/**
+	 * Returns the analysis information for the given operand.
+	 * Do not modify the returned object.
+	 * @param operand A variable read by the current instruction.
+	 * @return the analysis information for the given operand.
+	 * @throws IllegalArgumentException if the current instruction does not read the given variable.
+	 */
+	public LE get(Variable operand);
+
+}
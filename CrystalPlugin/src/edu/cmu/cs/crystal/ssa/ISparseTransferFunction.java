@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.ssa;
+
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+import edu.cmu.cs.crystal.flow.ILatticeOperations;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.Variable;
+
+/**
+ * Transfer function for sparse flow analyses, which compute analysis information
+ * for each {@link SSAValue value} in a method's {@link SSAForm SSA form}.  
+ * Unlike dense transfer functions, which map the information for all variables
+ * before an instruction to the information for all variables after it, 
+ * sparse transfer functions compute information for the one variable an 
+ * instruction defines, given the information for the instruction's operands.
+ * <p>
+ * This is suitable for analyses that track information about individual variables,
+ * such as constant propagation, but not for analyses that learn about a variable from
+ * instructions that do not define it, such as learning that a method call's
+ * receiver was not <code>null</code>, or from branch conditions.  Such analyses
+ * should use {@link edu.cmu.cs.crystal.tac.TACFlowAnalysis}.
+ * 
+ * @param <LE> Type representing the analysis knowledge about one variable.
+ * @see SparseFlowAnalysis
+ */
+public interface ISparseTransferFunction<LE> {
+	
+	/**
+	 * Returns the lattice operations for the information tracked for individual
+	 * variables.  Values start out as {@link ILatticeOperations#bottom() bottom}.
+	 * @return the lattice operations for the information tracked for individual variables.
+	 */
+	public ILatticeOperations<LE> getLatticeOperations();
+	
+	/**
+	 * Returns the information for the given variable on entry to the given method, 
+	 * which is used where a variable is read without a definition reaching it.
+	 * Notice that method parameters are defined by their declarations.
+	 * @param variable
+	 * @param method
+	 * @return the information for the given variable on entry to the given method.
+	 */
+	public LE getEntryValue(Variable variable, MethodDeclaration method);
+	
+	/**
+	 * Computes the information for the variable the given instruction defines.
+	 * This method must be monotone in the operand values: more precise
+	 * operand information must not lead to less precise results.
+	 * @param instr Instruction that defines <code>target</code>.
+	 * @param target Variable the instruction defines, which is either
+	 * an assignment's target or a declared source variable.
+	 * @param operands Information for the variables the instruction reads.
+	 * @return the information for <code>target</code> after the instruction.
+	 */
+	public LE transfer(TACInstruction instr, Variable target, IOperandValues<LE> operands);
+
+}
@@ -0,0 +1,573 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.ssa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+import edu.cmu.cs.crystal.bitvector.DenseNumbering;
+import edu.cmu.cs.crystal.cfg.DominatorTree;
+import edu.cmu.cs.crystal.cfg.ICFGNode;
+import edu.cmu.cs.crystal.cfg.IControlFlowGraph;
+import edu.cmu.cs.crystal.tac.eclipse.EclipseTAC;
+import edu.cmu.cs.crystal.tac.model.ArrayInitInstruction;
+import edu.cmu.cs.crystal.tac.model.AssignmentInstruction;
+import edu.cmu.cs.crystal.tac.model.BinaryOperation;
+import edu.cmu.cs.crystal.tac.model.ConstructorCallInstruction;
+import edu.cmu.cs.crystal.tac.model.EnhancedForConditionInstruction;
+import edu.cmu.cs.crystal.tac.model.LoadArrayInstruction;
+import edu.cmu.cs.crystal.tac.model.LoadFieldInstruction;
+import edu.cmu.cs.crystal.tac.model.MethodCallInstruction;
+import edu.cmu.cs.crystal.tac.model.NewArrayInstruction;
+import edu.cmu.cs.crystal.tac.model.NewObjectInstruction;
+import edu.cmu.cs.crystal.tac.model.OneOperandInstruction;
+import edu.cmu.cs.crystal.tac.model.ReturnInstruction;
+import edu.cmu.cs.crystal.tac.model.SourceVariableDeclaration;
+import edu.cmu.cs.crystal.tac.model.SourceVariableReadInstruction;
+import edu.cmu.cs.crystal.tac.model.StoreArrayInstruction;
+import edu.cmu.cs.crystal.tac.model.StoreFieldInstruction;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.Variable;
+
+/**
+ * Static single assignment (SSA) form of a method's three-address code.  
+ * Every variable definition, including declarations, becomes a separate 
+ * {@link SSAValue value}, and every instruction reads the one value of each operand 
+ * that reaches it.  Where different definitions of a variable reach a control 
+ * flow graph node, a <i>phi</i> value merges them.
+ * <p>
+ * Phi values are placed at the iterated dominance frontiers of a variable's 
+ * definitions (Cytron et al., "Efficiently Computing Static Single Assignment 
+ * Form and the Control Dependence Graph"), but only where the variable is live 
+ * ("pruned" SSA form).  This is important because most of the variables in three-address
+ * code are temporaries that only live between two control flow graph nodes.
+ * <p>
+ * Like the dense flow analysis engine, SSA form treats each control flow graph node
+ * as a unit: definitions made by a node's instructions flow along all the node's outgoing 
+ * edges, including exceptional ones.  Variables that are read without any definition
+ * reaching them, such as <code>this</code>, read their {@link SSAValue.Kind#ENTRY entry} value.
+ * 
+ * @see SparseFlowAnalysis
+ */
+public class SSAForm {
+	
+	private static final TACInstruction[] NO_INSTRUCTIONS = new TACInstruction[0];
+	private static final Variable[] NO_VARIABLES = new Variable[0];
+	private static final SSAValue[] NO_PHIS = new SSAValue[0];
+
+	/**
+	 * Returns the variables the given instruction reads.
+	 * @param instr
+	 * @return the variables the given instruction reads, which may include duplicates.
+	 */
+	public static List<Variable> getReadVariables(TACInstruction instr) {
+		return Arrays.asList(readVariables(instr));
+	}
+	
+	/**
+	 * Returns the variable the given instruction defines, which is the target of an
+	 * assignment or the variable declared by a source variable declaration.
+	 * Notice that stores into fields and arrays do not define variables.
+	 * @param instr
+	 * @return the variable the given instruction defines or <code>null</code>.
+	 */
+	public static Variable getDefinedVariable(TACInstruction instr) {
+		if(instr instanceof AssignmentInstruction)
+			return ((AssignmentInstruction) instr).getTarget();
+		if(instr instanceof SourceVariableDeclaration)
+			return ((SourceVariableDeclaration) instr).getDeclaredVariable();
+		return null;
+	}
+	
+	private static Variable[] readVariables(TACInstruction instr) {
+		List<Variable> result = new ArrayList<Variable>(3);
+		if(instr instanceof ArrayInitInstruction) {
+			result.addAll(((ArrayInitInstruction) instr).getInitOperands());
+		}
+		else if(instr instanceof BinaryOperation) {
+			BinaryOperation binop = (BinaryOperation) instr;
+			result.add(binop.getOperand1());
+			result.add(binop.getOperand2());
+		}
+		else if(instr instanceof OneOperandInstruction) {
+			// casts, copies, instanceof, and unary operations
+			result.add(((OneOperandInstruction) instr).getOperand());
+		}
+		else if(instr instanceof ConstructorCallInstruction) {
+			result.addAll(((ConstructorCallInstruction) instr).getArgOperands());
+		}
+		else if(instr instanceof EnhancedForConditionInstruction) {
+			result.add(((EnhancedForConditionInstruction) instr).getIteratedOperand());
+		}
+		else if(instr instanceof LoadArrayInstruction) {
+			LoadArrayInstruction load = (LoadArrayInstruction) instr;
+			result.add(load.getSourceArray());
+			result.add(load.getArrayIndex());
+		}
+		else if(instr instanceof LoadFieldInstruction) {
+			LoadFieldInstruction load = (LoadFieldInstruction) instr;
+			// Static field accesses do not have source objects
+			if(! load.isStaticFieldAccess())
+				result.add(load.getSourceObject());
+		}
+		else if(instr instanceof MethodCallInstruction) {
+			MethodCallInstruction call = (MethodCallInstruction) instr;
+			result.add(call.getReceiverOperand());
+			result.addAll(call.getArgOperands());
+		}
+		else if(instr instanceof NewArrayInstruction) {
+			result.addAll(((NewArrayInstruction) instr).getDimensionOperands());
+		}
+		else if(instr instanceof NewObjectInstruction) {
+			NewObjectInstruction newObj = (NewObjectInstruction) instr;
+			result.add(newObj.getOuterObjectSpecifierOperand());
+			result.addAll(newObj.getArgOperands());
+		}
+		else if(instr instanceof ReturnInstruction) {
+			result.add(((ReturnInstruction) instr).getReturnedVariable());
+		}
+		else if(instr instanceof StoreArrayInstruction) {
+			StoreArrayInstruction store = (StoreArrayInstruction) instr;
+			result.add(store.getAccessedArrayOperand());
+			result.add(store.getArrayIndex());
+			result.add(store.getSourceOperand());
+		}
+		else if(instr instanceof StoreFieldInstruction) {
+			StoreFieldInstruction store = (StoreFieldInstruction) instr;
+			result.add(store.getAccessedObjectOperand());
+			result.add(store.getSourceOperand());
+		}
+		else if(instr instanceof SourceVariableReadInstruction) {
+			result.add(((SourceVariableReadInstruction) instr).getVariable());
+		}
+		// optional operands, such as static receivers, are null
+		while(result.remove(null)) { }
+		return result.isEmpty() ? NO_VARIABLES : result.toArray(new Variable[result.size()]);
+	}
+	
+	private static TACInstruction[] instructions(EclipseTAC tac, ASTNode node) {
+		if(node == null)
+			return NO_INSTRUCTIONS;
+		List<TACInstruction> result = tac.instructions(node);
+		return result.isEmpty() ? NO_INSTRUCTIONS : result.toArray(new TACInstruction[result.size()]);
+	}
+
+	private final MethodDeclaration method;
+	private final DominatorTree<ASTNode> dominators;
+	private final DenseNumbering<Variable> variables = new DenseNumbering<Variable>();
+	private final List<SSAValue> values = new ArrayList<SSAValue>();
+	private final List<SSAInstruction> instructions = new ArrayList<SSAInstruction>();
+	private final Map<TACInstruction, Object> instructionMap = new HashMap<TACInstruction, Object>();
+	/** Phi values indexed by node number. */
+	private final SSAValue[][] phis;
+	/** Entry values indexed by variable number, created when first needed. */
+	private final List<SSAValue> entryValues = new ArrayList<SSAValue>();
+	/** Highest version number used for each variable. */
+	private final IntList versions = new IntList();
+
+	/**
+	 * Converts the given method into SSA form.
+	 * @param method
+	 * @param cfg The method's control flow graph.
+	 * @param tac The method's three-address code.
+	 */
+	public SSAForm(MethodDeclaration method, IControlFlowGraph<ASTNode> cfg, EclipseTAC tac) {
+		this.method = method;
+		this.dominators = new DominatorTree<ASTNode>(cfg);
+		final int size = dominators.size();
+		
+		// 1. collect instructions, definitions, and upwards-exposed uses
+		TACInstruction[][] code = new TACInstruction[size][];
+		Variable[][][] reads = new Variable[size][][];
+		List<IntList> defNodes = new ArrayList<IntList>();
+		List<IntList> useNodes = new ArrayList<IntList>();
+		IntList definedIn = new IntList();
+		IntList usedIn = new IntList();
+		for(int b = 0; b < size; ++b) {
+			code[b] = instructions(tac, dominators.getNode(b).getASTNode());
+			// stamps are node number + 1 to distinguish them from 0
+			final int stamp = b + 1;
+			reads[b] = new Variable[code[b].length][];
+			for(int i = 0; i < code[b].length; ++i) {
+				TACInstruction instr = code[b][i];
+				reads[b][i] = readVariables(instr);
+				for(Variable v : reads[b][i]) {
+					int x = number(v, defNodes, useNodes, definedIn, usedIn);
+					if(definedIn.get(x) != stamp && usedIn.get(x) != stamp) {
+						useNodes.get(x).add(b);
+						usedIn.set(x, stamp);
+					}
+				}
+				Variable d = getDefinedVariable(instr);
+				if(d != null) {
+					int x = number(d, defNodes, useNodes, definedIn, usedIn);
+					if(definedIn.get(x) != stamp) {
+						defNodes.get(x).add(b);
+						definedIn.set(x, stamp);
+					}
+				}
+			}
+		}
+		
+		// 2. place phi functions where variables are live
+		IntList[] phiVariables = new IntList[size];
+		int[] defStamp = new int[size];
+		int[] liveStamp = new int[size];
+		int[] phiStamp = new int[size];
+		int[] workStamp = new int[size];
+		IntList work = new IntList();
+		for(int x = 0; x < variables.size(); ++x) {
+			IntList defs = defNodes.get(x);
+			IntList uses = useNodes.get(x);
+			if(defs.size() == 0 || uses.size() == 0)
+				continue;
+			// stamps are variable number + 1 to avoid clearing arrays
+			final int stamp = x + 1;
+			for(int i = 0; i < defs.size(); ++i)
+				defStamp[defs.get(i)] = stamp;
+			
+			// nodes where the variable is live on entry
+			work.clear();
+			for(int i = 0; i < uses.size(); ++i) {
+				liveStamp[uses.get(i)] = stamp;
+				work.add(uses.get(i));
+			}
+			while(work.size() > 0) {
+				int n = work.removeLast();
+				for(int p : dominators.getPredecessors(n)) {
+					if(liveStamp[p] != stamp && defStamp[p] != stamp) {
+						liveStamp[p] = stamp;
+						work.add(p);
+					}
+				}
+			}
+			
+			// iterated dominance frontier of the definitions
+			work.clear();
+			for(int i = 0; i < defs.size(); ++i) {
+				workStamp[defs.get(i)] = stamp;
+				work.add(defs.get(i));
+			}
+			while(work.size() > 0) {
+				int n = work.removeLast();
+				for(int y : dominators.getDominanceFrontier(n)) {
+					if(phiStamp[y] == stamp)
+						continue;
+					phiStamp[y] = stamp;
+					if(liveStamp[y] == stamp) {
+						if(phiVariables[y] == null)
+							phiVariables[y] = new IntList();
+						phiVariables[y].add(x);
+					}
+					if(workStamp[y] != stamp) {
+						workStamp[y] = stamp;
+						work.add(y);
+					}
+				}
+			}
+		}
+		
+		phis = new SSAValue[size][];
+		for(int b = 0; b < size; ++b) {
+			if(phiVariables[b] == null) {
+				phis[b] = NO_PHIS;
+				continue;
+			}
+			phis[b] = new SSAValue[phiVariables[b].size()];
+			for(int i = 0; i < phis[b].length; ++i) {
+				phis[b][i] = newValue(phiVariables[b].get(i), SSAValue.Kind.PHI, 
+						dominators.getNode(b), null, dominators.getPredecessors(b).length);
+			}
+		}
+		
+		// 3. rename variables, walking the dominator tree
+		rename(code, reads);
+	}
+	
+	private int number(Variable v, List<IntList> defNodes, List<IntList> useNodes,
+			IntList definedIn, IntList usedIn) {
+		int x = variables.number(v);
+		if(x == defNodes.size()) {
+			defNodes.add(new IntList());
+			useNodes.add(new IntList());
+			definedIn.add(0);
+			usedIn.add(0);
+			versions.add(0);
+			entryValues.add(null);
+		}
+		return x;
+	}
+	
+	private SSAValue newValue(int x, SSAValue.Kind kind, ICFGNode<ASTNode> node, 
+			SSAInstruction definition, int operandCount) {
+		int version = versions.get(x) + 1;
+		versions.set(x, version);
+		SSAValue result = new SSAValue(this, values.size(), variables.get(x), version, kind, 
+				node, definition, operandCount);
+		values.add(result);
+		return result;
+	}
+	
+	private void rename(TACInstruction[][] code, Variable[][][] reads) {
+		final int size = code.length;
+		if(size == 0)
+			return;
+		SSAValue[] current = new SSAValue[variables.size()];
+		// undo log for restoring current values when leaving a dominator subtree
+		IntList logVariables = new IntList();
+		List<SSAValue> logValues = new ArrayList<SSAValue>();
+		
+		// iterative pre-order walk of the dominator tree
+		int[] nodeStack = new int[size];
+		int[] childStack = new int[size];
+		int[] markStack = new int[size];
+		int top = 0;
+		nodeStack[0] = 0;
+		markStack[0] = 0;
+		enter(0, code[0], reads[0], current, logVariables, logValues);
+		while(top >= 0) {
+			int b = nodeStack[top];
+			int[] children = dominators.getChildren(b);
+			if(childStack[top] < children.length) {
+				int c = children[childStack[top]++];
+				++top;
+				nodeStack[top] = c;
+				childStack[top] = 0;
+				markStack[top] = logVariables.size();
+				enter(c, code[c], reads[c], current, logVariables, logValues);
+			}
+			else {
+				int mark = markStack[top];
+				while(logVariables.size() > mark) {
+					current[logVariables.removeLast()] = logValues.remove(logValues.size() - 1);
+				}
+				--top;
+			}
+		}
+	}
+	
+	private void enter(int b, TACInstruction[] code, Variable[][] codeReads, 
+			SSAValue[] current, IntList logVariables, List<SSAValue> logValues) {
+		final ICFGNode<ASTNode> node = dominators.getNode(b);
+		for(SSAValue phi : phis[b]) {
+			int x = variables.getNumber(phi.getVariable());
+			logVariables.add(x);
+			logValues.add(current[x]);
+			current[x] = phi;
+		}
+		
+		for(int k = 0; k < code.length; ++k) {
+			TACInstruction instr = code[k];
+			Variable[] reads = codeReads[k];
+			SSAInstruction ssaInstr = new SSAInstruction(instr, node, reads);
+			SSAValue[] readValues = ssaInstr.getReadValueArray();
+			for(int i = 0; i < reads.length; ++i) {
+				SSAValue value = lookup(variables.getNumber(reads[i]), current);
+				readValues[i] = value;
+				value.addUse(ssaInstr);
+			}
+			Variable d = getDefinedVariable(instr);
+			if(d != null) {
+				int x = variables.getNumber(d);
+				SSAValue value = newValue(x, SSAValue.Kind.DEFINITION, node, ssaInstr, 0);
+				ssaInstr.setDefinedValue(value);
+				logVariables.add(x);
+				logValues.add(current[x]);
+				current[x] = value;
+			}
+			instructions.add(ssaInstr);
+			registerInstruction(ssaInstr);
+		}
+		
+		// fill in phi operands in successors
+		int[] succs = dominators.getSuccessors(b);
+		for(int i = 0; i < succs.length; ++i) {
+			int s = succs[i];
+			if(phis[s].length == 0 || indexOf(succs, s) < i)
+				// no phis or successor already handled
+				continue;
+			int[] preds = dominators.getPredecessors(s);
+			for(SSAValue phi : phis[s]) {
+				SSAValue value = lookup(variables.getNumber(phi.getVariable()), current);
+				SSAValue[] operands = phi.getOperandArray();
+				for(int j = 0; j < preds.length; ++j) {
+					if(preds[j] == b)
+						operands[j] = value;
+				}
+				value.addUse(phi);
+			}
+		}
+	}
+	
+	private static int indexOf(int[] array, int element) {
+		for(int i = 0; i < array.length; ++i) {
+			if(array[i] == element)
+				return i;
+		}
+		return -1;
+	}
+
+	private SSAValue lookup(int x, SSAValue[] current) {
+		SSAValue result = current[x];
+		if(result == null) {
+			result = entryValues.get(x);
+			if(result == null) {
+				result = new SSAValue(this, values.size(), variables.get(x), 0, 
+						SSAValue.Kind.ENTRY, null, null, 0);
+				values.add(result);
+				entryValues.set(x, result);
+			}
+		}
+		return result;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private void registerInstruction(SSAInstruction ssaInstr) {
+		// most instructions occur once; avoid lists for those
+		Object previous = instructionMap.put(ssaInstr.getInstruction(), ssaInstr);
+		if(previous instanceof SSAInstruction) {
+			List<SSAInstruction> list = new ArrayList<SSAInstruction>(2);
+			list.add((SSAInstruction) previous);
+			list.add(ssaInstr);
+			instructionMap.put(ssaInstr.getInstruction(), list);
+		}
+		else if(previous != null) {
+			((List<SSAInstruction>) previous).add(ssaInstr);
+			instructionMap.put(ssaInstr.getInstruction(), previous);
+		}
+	}
+	
+	/**
+	 * Returns the method this is the SSA form of.
+	 * @return the method this is the SSA form of.
+	 */
+	public MethodDeclaration getMethod() {
+		return method;
+	}
+	
+	/**
+	 * Returns the dominator tree of the method's control flow graph.
+	 * @return the dominator tree of the method's control flow graph.
+	 */
+	public DominatorTree<ASTNode> getDominatorTree() {
+		return dominators;
+	}
+	
+	/**
+	 * Returns all values, ordered by {@link SSAValue#getId() id}.
+	 * @return all values.
+	 */
+	public List<SSAValue> getValues() {
+		return Collections.unmodifiableList(values);
+	}
+	
+	/**
+	 * Returns all instructions in dominator tree pre-order, which means that
+	 * definitions come before their uses except for uses in phi functions.
+	 * @return all instructions in dominator tree pre-order.
+	 */
+	public List<SSAInstruction> getInstructions() {
+		return Collections.unmodifiableList(instructions);
+	}
+	
+	/**
+	 * Returns the SSA instructions for the given three-address code instruction.
+	 * @param instr
+	 * @return the SSA instructions for the given three-address code instruction, 
+	 * which is a singleton list for most instructions and empty for unreachable instructions.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<SSAInstruction> getInstructions(TACInstruction instr) {
+		Object result = instructionMap.get(instr);
+		if(result == null)
+			return Collections.emptyList();
+		if(result instanceof SSAInstruction)
+			return Collections.singletonList((SSAInstruction) result);
+		return Collections.unmodifiableList((List<SSAInstruction>) result);
+	}
+	
+	/**
+	 * Returns the phi values at the given control flow graph node.
+	 * @param node
+	 * @return the phi values at the given control flow graph node.
+	 */
+	public List<SSAValue> getPhis(ICFGNode<ASTNode> node) {
+		int number = dominators.getNumber(node);
+		if(number < 0)
+			return Collections.emptyList();
+		return Collections.unmodifiableList(Arrays.asList(phis[number]));
+	}
+	
+	/**
+	 * Returns the given variable's entry value.
+	 * @param variable
+	 * @return the given variable's entry value or <code>null</code> if 
+	 * it is never read.
+	 */
+	public SSAValue getEntryValue(Variable variable) {
+		int x = variables.getNumber(variable);
+		return x < 0 ? null : entryValues.get(x);
+	}
+	
+	/**
+	 * Growable array of <code>int</code>s.
+	 */
+	private static final class IntList {
+		private int[] elements = new int[4];
+		private int size;
+		
+		int size() {
+			return size;
+		}
+		
+		int get(int index) {
+			return elements[index];
+		}
+		
+		void set(int index, int element) {
+			elements[index] = element;
+		}
+		
+		void add(int element) {
+			if(size == elements.length) {
+				int[] grown = new int[size * 2];
+				System.arraycopy(elements, 0, grown, 0, size);
+				elements = grown;
+			}
+			elements[size++] = element;
+		}
+		
+		int removeLast() {
+			return elements[--size];
+		}
+		
+		void clear() {
+			size = 0;
+		}
+	}
+
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.ssa;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+
+import edu.cmu.cs.crystal.cfg.ICFGNode;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.Variable;
+
+/**
+ * An instruction in {@link SSAForm SSA form}, which connects a three-address code
+ * instruction with the SSA values it reads and defines.
+ * Instructions of AST nodes that appear several times in the control flow graph,
+ * such as instructions in <code>finally</code> blocks, have one SSA instruction for 
+ * each control flow graph node they appear in. 
+ */
+public final class SSAInstruction {
+	
+	private final TACInstruction instruction;
+	private final ICFGNode<ASTNode> node;
+	private final Variable[] readVariables;
+	private final SSAValue[] readValues;
+	private SSAValue definedValue;
+	
+	SSAInstruction(TACInstruction instruction, ICFGNode<ASTNode> node, 
+			Variable[] readVariables) {
+		this.instruction = instruction;
+		this.node = node;
+		this.readVariables = readVariables;
+		this.readValues = new SSAValue[readVariables.length];
+	}
+
+	/**
+	 * Returns the three-address code instruction.
+	 * @return the three-address code instruction.
+	 */
+	public TACInstruction getInstruction() {
+		return instruction;
+	}
+
+	/**
+	 * Returns the control flow graph node this instruction occurs in.
+	 * @return the control flow graph node this instruction occurs in.
+	 */
+	public ICFGNode<ASTNode> getNode() {
+		return node;
+	}
+
+	/**
+	 * Returns the value defined by this instruction.
+	 * @return the value defined by this instruction or <code>null</code> if 
+	 * the instruction does not define a variable.
+	 */
+	public SSAValue getDefinedValue() {
+		return definedValue;
+	}
+	
+	void setDefinedValue(SSAValue definedValue) {
+		this.definedValue = definedValue;
+	}
+
+	/**
+	 * Returns the value of the given variable that this instruction reads.
+	 * @param variable
+	 * @return the value of the given variable that this instruction reads or
+	 * <code>null</code> if the instruction does not read the given variable.
+	 */
+	public SSAValue getReadValue(Variable variable) {
+		for(int i = 0; i < readVariables.length; ++i) {
+			if(readVariables[i].equals(variable))
+				return readValues[i];
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the values this instruction reads, in the order of the instruction's operands.
+	 * @return the values this instruction reads.
+	 */
+	public List<SSAValue> getReadValues() {
+		return Collections.unmodifiableList(Arrays.asList(readValues));
+	}
+	
+	Variable[] getReadVariableArray() {
+		return readVariables;
+	}
+	
+	SSAValue[] getReadValueArray() {
+		return readValues;
+	}
+
+	@Override
+	public String toString() {
+		return instruction.toString();
+	}
+
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.ssa;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+
+import edu.cmu.cs.crystal.cfg.ICFGNode;
+import edu.cmu.cs.crystal.tac.model.Variable;
+
+/**
+ * A single definition of a variable in {@link SSAForm SSA form}.  
+ * Every value is a specific version of a variable, defined either on entry to
+ * the method, by an instruction, or by a <i>phi</i> function that merges the 
+ * variable's values coming in along different control flow edges.
+ * Values know all the instructions and phi functions that use them (def-use chains).
+ */
+public final class SSAValue {
+	
+	/**
+	 * The different ways in which SSA values are defined.
+	 */
+	public enum Kind {
+		/** The value a variable has when the method is entered. */
+		ENTRY, 
+		/** A value defined by an instruction. */
+		DEFINITION, 
+		/** A value merging the values on incoming control flow edges. */
+		PHI
+	}
+	
+	private final SSAForm form;
+	private final int id;
+	private final Variable variable;
+	private final int version;
+	private final Kind kind;
+	private final ICFGNode<ASTNode> node;
+	private final SSAInstruction definition;
+	private final SSAValue[] operands;
+	private final List<SSAInstruction> instructionUses = new ArrayList<SSAInstruction>(2);
+	private final List<SSAValue> phiUses = new ArrayList<SSAValue>(1);
+	
+	SSAValue(SSAForm form, int id, Variable variable, int version, Kind kind, 
+			ICFGNode<ASTNode> node, SSAInstruction definition, int operandCount) {
+		this.form = form;
+		this.id = id;
+		this.variable = variable;
+		this.version = version;
+		this.kind = kind;
+		this.node = node;
+		this.definition = definition;
+		this.operands = new SSAValue[operandCount];
+	}
+	
+	SSAForm getForm() {
+		return form;
+	}
+	
+	/**
+	 * Returns a number for this value that is unique within its SSA form.
+	 * The values of an SSA form are numbered consecutively, starting at 0. 
+	 * @return a number for this value that is unique within its SSA form.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the variable this value is a version of.
+	 * @return the variable this value is a version of.
+	 */
+	public Variable getVariable() {
+		return variable;
+	}
+
+	/**
+	 * Returns the version number of this value, which is 0 for 
+	 * the {@link Kind#ENTRY entry} value and positive otherwise.
+	 * @return the version number of this value.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns how this value is defined.
+	 * @return how this value is defined.
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Returns the control flow graph node where this value is defined.
+	 * @return the control flow graph node where this value is defined or 
+	 * <code>null</code> for entry values.
+	 */
+	public ICFGNode<ASTNode> getNode() {
+		return node;
+	}
+
+	/**
+	 * Returns the instruction defining this value.
+	 * @return the instruction defining this value or 
+	 * <code>null</code> for entry values and phi functions.
+	 */
+	public SSAInstruction getDefinition() {
+		return definition;
+	}
+
+	/**
+	 * Returns the values merged by this phi function, one for each
+	 * of {@link #getNode() its node's} reachable incoming edges.
+	 * @return the values merged by this phi function, or an
+	 * empty list if this is not a phi function.
+	 */
+	public List<SSAValue> getOperands() {
+		return Collections.unmodifiableList(Arrays.asList(operands));
+	}
+	
+	SSAValue[] getOperandArray() {
+		return operands;
+	}
+	
+	/**
+	 * Returns the instructions that read this value.
+	 * @return the instructions that read this value.
+	 */
+	public List<SSAInstruction> getInstructionUses() {
+		return Collections.unmodifiableList(instructionUses);
+	}
+
+	/**
+	 * Returns the phi functions that merge this value with others.
+	 * @return the phi functions that use this value.
+	 */
+	public List<SSAValue> getPhiUses() {
+		return Collections.unmodifiableList(phiUses);
+	}
+	
+	void addUse(SSAInstruction use) {
+		// instructions reading a variable twice only count once
+		if(instructionUses.isEmpty() || instructionUses.get(instructionUses.size() - 1) != use)
+			instructionUses.add(use);
+	}
+	
+	void addUse(SSAValue phi) {
+		if(phiUses.isEmpty() || phiUses.get(phiUses.size() - 1) != phi)
+			phiUses.add(phi);
+	}
+
+	@Override
+	public String toString() {
+		return variable + "_" + version;
+	}
+
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.ssa;
+
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+import edu.cmu.cs.crystal.IAnalysisInput;
+import edu.cmu.cs.crystal.cfg.IControlFlowGraph;
+import edu.cmu.cs.crystal.cfg.eclipse.EclipseNodeFirstCFG;
+import edu.cmu.cs.crystal.flow.ILatticeOperations;
+import edu.cmu.cs.crystal.flow.worklist.CompilationUnitCFGs;
+import edu.cmu.cs.crystal.tac.eclipse.CompilationUnitTACs;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.Variable;
+import edu.cmu.cs.crystal.util.Option;
+import edu.cmu.cs.crystal.util.Utilities;
+
+/**
+ * Sparse flow analysis, which computes analysis information for each 
+ * {@link SSAValue value} in a method's {@link SSAForm SSA form} instead of 
+ * a lattice element for all variables at every control flow graph node.
+ * When a value's information changes, only the instructions and phi functions 
+ * that use the value are re-evaluated.  For methods with many variables this
+ * takes far less time and memory than {@link edu.cmu.cs.crystal.tac.TACFlowAnalysis},
+ * and computes the same information for each variable at the instructions 
+ * that read it, as long as the transfer function only depends on the operands.
+ * <p>
+ * Like other flow analyses, this class analyzes the method surrounding 
+ * a queried instruction on demand and remembers the results for 
+ * the most recently analyzed method.  Instructions outside of methods, 
+ * such as field initializers, are looked up in the most recently analyzed method.
+ * 
+ * @param <LE> Type representing the analysis knowledge about one variable.
+ * @see ISparseTransferFunction
+ */
+public class SparseFlowAnalysis<LE> {
+	
+	private final ISparseTransferFunction<LE> transferFunction;
+	private final CompilationUnitTACs tacs;
+	private Option<CompilationUnitCFGs> cfgs = Option.none();
+	
+	private SSAForm currentForm;
+	private Object[] currentResults;
+
+	/**
+	 * Creates a sparse flow analysis object.
+	 * @param transferFunction
+	 * @param analysisInput
+	 */
+	public SparseFlowAnalysis(ISparseTransferFunction<LE> transferFunction, IAnalysisInput analysisInput) {
+		this(transferFunction, analysisInput.getComUnitTACs().unwrap());
+		this.cfgs = analysisInput.getComUnitCFGs();
+	}
+
+	/**
+	 * Creates a sparse flow analysis object.
+	 * @param transferFunction
+	 * @param eclipseTAC
+	 */
+	public SparseFlowAnalysis(ISparseTransferFunction<LE> transferFunction, CompilationUnitTACs eclipseTAC) {
+		this.transferFunction = transferFunction;
+		this.tacs = eclipseTAC;
+	}
+	
+	/**
+	 * Use control flow graphs from the given cache instead of building
+	 * fresh control flow graphs for every analyzed method.
+	 * @param cfgs Cache of control flow graphs, if any.
+	 */
+	public void setCompilationUnitCFGs(Option<CompilationUnitCFGs> cfgs) {
+		this.cfgs = cfgs;
+	}
+	
+	/**
+	 * Returns the SSA form of the given method, analyzing the method if needed.
+	 * @param method
+	 * @return the SSA form of the given method.
+	 */
+	public SSAForm getSSAForm(MethodDeclaration method) {
+		switchToMethod(method);
+		return currentForm;
+	}
+	
+	/**
+	 * Returns the analysis information for the given value.
+	 * @param value
+	 * @return the analysis information for the given value.
+	 */
+	@SuppressWarnings("unchecked")
+	public LE getValue(SSAValue value) {
+		if(value.getForm() != currentForm)
+			switchToMethod(value.getForm().getMethod());
+		return (LE) currentResults[value.getId()];
+	}
+	
+	/**
+	 * Returns the analysis information for the variable the given instruction 
+	 * defines.  For instructions that appear several times in the control flow graph,
+	 * this is the join of the information computed for each occurrence.
+	 * @param instr
+	 * @return the analysis information for the variable the given instruction 
+	 * defines or <code>null</code> if the instruction does not define a 
+	 * variable or is not reachable.
+	 */
+	public LE getResult(TACInstruction instr) {
+		List<SSAInstruction> occurrences = getInstructions(instr);
+		LE result = null;
+		for(SSAInstruction ssaInstr : occurrences) {
+			if(ssaInstr.getDefinedValue() != null)
+				result = join(result, getValue(ssaInstr.getDefinedValue()), instr.getNode());
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the analysis information for the given operand of the given instruction.
+	 * For instructions that appear several times in the control flow graph,
+	 * this is the join of the information computed for each occurrence.
+	 * @param instr
+	 * @param operand
+	 * @return the analysis information for the given operand or <code>null</code> if
+	 * the instruction does not read the given variable or is not reachable.
+	 */
+	public LE getOperandValue(TACInstruction instr, Variable operand) {
+		List<SSAInstruction> occurrences = getInstructions(instr);
+		LE result = null;
+		for(SSAInstruction ssaInstr : occurrences) {
+			SSAValue value = ssaInstr.getReadValue(operand);
+			if(value != null)
+				result = join(result, getValue(value), instr.getNode());
+		}
+		return result;
+	}
+	
+	private List<SSAInstruction> getInstructions(TACInstruction instr) {
+		MethodDeclaration method = Utilities.getMethodDeclaration(instr.getNode());
+		if(method != null)
+			return getSSAForm(method).getInstructions(instr);
+		// field initializers are part of constructors: use the current method
+		if(currentForm == null)
+			throw new IllegalArgumentException("Instruction is not inside a method: " + instr);
+		return currentForm.getInstructions(instr);
+	}
+	
+	private LE join(LE result, LE info, ASTNode node) {
+		ILatticeOperations<LE> ops = transferFunction.getLatticeOperations();
+		if(result == null)
+			return ops.copy(info);
+		return ops.join(result, info, node);
+	}
+	
+	private void switchToMethod(MethodDeclaration method) {
+		if(currentForm != null && currentForm.getMethod() == method)
+			return;
+		IControlFlowGraph<ASTNode> cfg;
+		if(cfgs.isSome())
+			cfg = cfgs.unwrap().getMethodCFG(method);
+		else
+			cfg = new EclipseNodeFirstCFG(method);
+		SSAForm form = new SSAForm(method, cfg, tacs.getMethodTAC(method));
+		currentResults = propagate(form);
+		currentForm = form;
+	}
+	
+	/**
+	 * Propagates analysis information along def-use chains until nothing changes.
+	 * @param form
+	 * @return the analysis information for each value, indexed by value id.
+	 */
+	private Object[] propagate(SSAForm form) {
+		final ILatticeOperations<LE> ops = transferFunction.getLatticeOperations();
+		final List<SSAValue> values = form.getValues();
+		final int size = values.size();
+		final Object[] results = new Object[size];
+		for(int i = 0; i < size; ++i)
+			results[i] = ops.bottom();
+		
+		// queue of value ids, starting with all values in id order
+		int[] queue = new int[size];
+		boolean[] queued = new boolean[size];
+		int head = 0;
+		int count = size;
+		for(int i = 0; i < size; ++i) {
+			queue[i] = i;
+			queued[i] = true;
+		}
+		
+		OperandValues operands = new OperandValues(results);
+		while(count > 0) {
+			final SSAValue value = values.get(queue[head]);
+			head = (head + 1) % size;
+			--count;
+			queued[value.getId()] = false;
+			
+			final ASTNode node = value.getNode() == null ? null : value.getNode().getASTNode();
+			LE computed;
+			switch(value.getKind()) {
+			case ENTRY:
+				computed = transferFunction.getEntryValue(value.getVariable(), form.getMethod());
+				break;
+			case PHI:
+				computed = null;
+				for(SSAValue operand : value.getOperandArray()) {
+					@SuppressWarnings("unchecked")
+					LE info = (LE) results[operand.getId()];
+					computed = computed == null ? ops.copy(info) : ops.join(computed, info, node);
+				}
+				if(computed == null)
+					computed = ops.bottom();
+				break;
+			default:
+				operands.instruction = value.getDefinition();
+				computed = transferFunction.transfer(
+						value.getDefinition().getInstruction(), value.getVariable(), operands);
+			}
+			
+			@SuppressWarnings("unchecked")
+			LE old = (LE) results[value.getId()];
+			if(ops.atLeastAsPrecise(computed, old, node))
+				continue;
+			results[value.getId()] = ops.join(ops.copy(old), computed, node);
+			
+			// re-evaluate users
+			for(SSAValue phi : value.getPhiUses()) {
+				if(! queued[phi.getId()]) {
+					queued[phi.getId()] = true;
+					queue[(head + count++) % size] = phi.getId();
+				}
+			}
+			for(SSAInstruction use : value.getInstructionUses()) {
+				SSAValue defined = use.getDefinedValue();
+				if(defined != null && ! queued[defined.getId()]) {
+					queued[defined.getId()] = true;
+					queue[(head + count++) % size] = defined.getId();
+				}
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * Looks up the information for the operands of an instruction.
+	 */
+	private class OperandValues implements IOperandValues<LE> {
+		
+		private final Object[] results;
+		private SSAInstruction instruction;
+		
+		public OperandValues(Object[] results) {
+			this.results = results;
+		}
+
+		@SuppressWarnings("unchecked")
+		public LE get(Variable operand) {
+			SSAValue value = instruction.getReadValue(operand);
+			if(value == null)
+				throw new IllegalArgumentException("Not an operand of " + instruction + ": " + operand);
+			return (LE) results[value.getId()];
+		}
+		
+	}
+
+}
@@ -83,7 +83,7 @@ public class SimpleInstructionVisitor extends AbstractCrystalMethodAnalysis {
 
 	public final void doAccept(MethodDeclaration d) {
 		new TACFlowAnalysis<SingletonLatticeElement>(new TransferVisitor(), 
-				this.analysisInput.getComUnitTACs().unwrap())
+				this.analysisInput)
 				.getResultsAfter(d);
 	}
 
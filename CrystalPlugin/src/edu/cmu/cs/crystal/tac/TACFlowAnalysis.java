@@ -20,7 +20,9 @@
 package edu.cmu.cs.crystal.tac;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -37,10 +39,12 @@ import edu.cmu.cs.crystal.flow.ILatticeOperations;
 import edu.cmu.cs.crystal.flow.IResult;
 import edu.cmu.cs.crystal.flow.ITransferFunction;
 import edu.cmu.cs.crystal.flow.LabeledSingleResult;
+import edu.cmu.cs.crystal.flow.LatticeUtilities;
 import edu.cmu.cs.crystal.flow.MotherFlowAnalysis;
 import edu.cmu.cs.crystal.flow.SingleResult;
 import edu.cmu.cs.crystal.tac.eclipse.CompilationUnitTACs;
 import edu.cmu.cs.crystal.tac.eclipse.EclipseInstructionSequence;
+import edu.cmu.cs.crystal.tac.eclipse.EclipseInstructionSequence.SequenceResults;
 import edu.cmu.cs.crystal.tac.eclipse.EclipseTAC;
 import edu.cmu.cs.crystal.tac.model.SourceVariable;
 import edu.cmu.cs.crystal.tac.model.SuperVariable;
@@ -79,6 +83,7 @@ extends MotherFlowAnalysis<LE> implements ITACFlowAnalysis<LE> {
 		super();
 		this.driver = new BranchInsensitiveTACAnalysisDriver(transferFunction, analysisInput.getComUnitTACs().unwrap());
 		transferFunction.setAnalysisContext(driver);
+		setCompilationUnitCFGs(analysisInput.getComUnitCFGs());
 	}
 
 	/**
@@ -102,6 +107,7 @@ extends MotherFlowAnalysis<LE> implements ITACFlowAnalysis<LE> {
 		super();
 		this.driver = new BranchSensitiveTACAnalysisDriver(transferFunction, analysisInput.getComUnitTACs().unwrap());
 		transferFunction.setAnalysisContext(driver);
+		setCompilationUnitCFGs(analysisInput.getComUnitCFGs());
 	}
 
 	/**
@@ -129,15 +135,13 @@ extends MotherFlowAnalysis<LE> implements ITACFlowAnalysis<LE> {
 			return nodeResults;
 		}
 		else if(rootInstr instanceof EclipseInstructionSequence) {
-			// compute intermediary results for instruction sequence
-			EclipseInstructionSequence seq = (EclipseInstructionSequence) rootInstr;
-			LE incoming =  getResultsOrNull(node, this.driver.tf.getAnalysisDirection() == AnalysisDirection.BACKWARD_ANALYSIS, false);
-			if(incoming == null) 
+			// look up intermediary results for instruction sequence
+			IResult<LE> result = this.driver.deriveResult((EclipseInstructionSequence) rootInstr, instr, true);
+			if(result == null) 
 				// no result available -> return bottom
 				return nodeResults;
 			else
-				// derive result for needed instruction in sequence
-				return mergeLabeledResult(this.driver.deriveResult(seq, incoming, instr, true), node);
+				return mergeLabeledResult(result, node);
 		}
 		else
 			throw new UnsupportedOperationException("Can't determine results for instruction: " + instr);
@@ -156,15 +160,13 @@ extends MotherFlowAnalysis<LE> implements ITACFlowAnalysis<LE> {
 			return nodeResults;
 		}
 		else if(rootInstr instanceof EclipseInstructionSequence) {
-			// compute intermediary results for instruction sequence
-			EclipseInstructionSequence seq = (EclipseInstructionSequence) rootInstr;
-			LE incoming = getResultsOrNull(node, this.driver.tf.getAnalysisDirection() == AnalysisDirection.BACKWARD_ANALYSIS, false);
-			if(incoming == null) 
+			// look up intermediary results for instruction sequence
+			IResult<LE> result = this.driver.deriveResult((EclipseInstructionSequence) rootInstr, instr, false);
+			if(result == null) 
 				// no result available -> return bottom
 				return nodeResults;
 			else
-				// derive result for needed instruction in sequence
-				return mergeLabeledResult(this.driver.deriveResult(seq, incoming, instr, false), node);
+				return mergeLabeledResult(result, node);
 		}
 		else
 			throw new UnsupportedOperationException("Can't determine results for instruction: " + instr);
@@ -183,15 +185,13 @@ extends MotherFlowAnalysis<LE> implements ITACFlowAnalysis<LE> {
 			return nodeResults;
 		}
 		else if(rootInstr instanceof EclipseInstructionSequence) {
-			// compute intermediary results for instruction sequence
-			EclipseInstructionSequence seq = (EclipseInstructionSequence) rootInstr;
-			LE incoming = getResultsOrNull(node, this.driver.tf.getAnalysisDirection() == AnalysisDirection.BACKWARD_ANALYSIS, false);
-			if(incoming == null) 
+			// look up intermediary results for instruction sequence
+			IResult<LE> result = this.driver.deriveResult((EclipseInstructionSequence) rootInstr, instr, true);
+			if(result == null) 
 				// no result available -> return bottom
 				return nodeResults;
 			else
-				// derive result for needed instruction in sequence
-				return this.driver.deriveResult(seq, incoming, instr, true);
+				return result;
 		}
 		else
 			throw new UnsupportedOperationException("Can't determine results for instruction: " + instr);
@@ -210,15 +210,13 @@ extends MotherFlowAnalysis<LE> implements ITACFlowAnalysis<LE> {
 			return nodeResults;
 		}
 		else if(rootInstr instanceof EclipseInstructionSequence) {
-			// compute intermediary results for instruction sequence
-			EclipseInstructionSequence seq = (EclipseInstructionSequence) rootInstr;
-			LE incoming = getResultsOrNull(node, this.driver.tf.getAnalysisDirection() == AnalysisDirection.BACKWARD_ANALYSIS, false);
-			if(incoming == null) 
+			// look up intermediary results for instruction sequence
+			IResult<LE> result = this.driver.deriveResult((EclipseInstructionSequence) rootInstr, instr, false);
+			if(result == null) 
 				// no result available -> return bottom
 				return nodeResults;
 			else
-				// derive result for needed instruction in sequence
-				return this.driver.deriveResult(seq, incoming, instr, false);
+				return result;
 		}
 		else
 			throw new UnsupportedOperationException("Can't determine results for instruction: " + instr);
@@ -262,6 +260,12 @@ extends MotherFlowAnalysis<LE> implements ITACFlowAnalysis<LE> {
 		driver.switchToMethod(method);
 		return driver;
 	}
+	
+	@Override
+	protected void methodResultsRestored(MethodDeclaration methodDecl) {
+		// keep driver.tac in sync with the current method
+		driver.switchToMethod(methodDecl);
+	}
 
 	/**
 	 * Subclasses of this class transfer over AST nodes by translating 
@@ -340,22 +344,36 @@ extends MotherFlowAnalysis<LE> implements ITACFlowAnalysis<LE> {
 			return tac.variable(node);
 		}
 
-		/**
-		 * Internal method to derive the result for a specific instruction
-		 * in an instruction sequence (which is an internal class used to
-		 * represent some eclipse AST nodes as instructions.
-		 * @param seq Instruction sequence
-		 * @param incoming Incoming analysis information
-		 * @param targetInstruction instruction within the sequence
-		 * @param afterResult <code>true</code> if the <i>after</i> result is
-		 * requested, <code>false</code> for the <i>before</i> result.
-		 * While <code>incoming</code> is relative to the analysis direction,
-		 * <code>afterResult</code> is not.
-		 * @return result before or after <code>targetInstruction</code>
-		 * @see EclipseInstructionSequence#deriveResult(ITACTransferFunction, TACInstruction, Object, boolean)
-		 * @see EclipseInstructionSequence#deriveResult(ITACBranchSensitiveTransferFunction, List, TACInstruction, Object, boolean)
-		 */
-		public abstract IResult<LE> deriveResult(EclipseInstructionSequence seq, LE incoming, TACInstruction targetInstruction, boolean afterResult);
+		/**
+		 * Internal method to derive the result for a specific instruction
+		 * in an instruction sequence (which is an internal class used to
+		 * represent some eclipse AST nodes as instructions.
+		 * Results for all instructions in a sequence are derived when one of them
+		 * is first requested.  If the lattice can be frozen, they are cached until
+		 * switching to another method; otherwise they are derived anew for every
+		 * request, so callers modifying a result cannot affect later requests.
+		 * @param seq Instruction sequence
+		 * @param targetInstruction instruction within the sequence
+		 * @param afterResult <code>true</code> if the <i>after</i> result is
+		 * requested, <code>false</code> for the <i>before</i> result.
+		 * @return result before or after <code>targetInstruction</code>, or
+		 * <code>null</code> if there are no results for the sequence's node.
+		 * @see EclipseInstructionSequence#deriveResults(ITACTransferFunction, ILatticeOperations, Object)
+		 * @see EclipseInstructionSequence#deriveResults(ITACBranchSensitiveTransferFunction, List, ILatticeOperations, Object)
+		 */
+		public abstract IResult<LE> deriveResult(EclipseInstructionSequence seq, TACInstruction targetInstruction, boolean afterResult);
+		
+		/**
+		 * Returns the analysis information flowing into the given instruction sequence, 
+		 * relative to the analysis direction.
+		 * @param seq Instruction sequence
+		 * @return the analysis information flowing into the given sequence or 
+		 * <code>null</code> if there are no results for the sequence's node.
+		 */
+		protected LE getIncomingResult(EclipseInstructionSequence seq) {
+			return getResultsOrNull(seq.getNode(), 
+					tf.getAnalysisDirection() == AnalysisDirection.BACKWARD_ANALYSIS, false);
+		}
 	}
 	
 	/**
@@ -372,6 +390,16 @@ extends MotherFlowAnalysis<LE> implements ITACFlowAnalysis<LE> {
 			super(tf, compUnitTacs);
 		}
 		
+		/** Results derived for instruction sequences in the current method. */
+		private final Map<EclipseInstructionSequence, SequenceResults<LE>> sequenceResults = 
+			new HashMap<EclipseInstructionSequence, SequenceResults<LE>>();
+		
+		@Override
+		public void switchToMethod(MethodDeclaration methodDecl) {
+			super.switchToMethod(methodDecl);
+			sequenceResults.clear();
+		}
+		
 		public LE transfer(ASTNode astNode, LE incoming) {
 			LE result;
 			TACInstruction instr = tac.instruction(astNode);
@@ -382,8 +410,18 @@ extends MotherFlowAnalysis<LE> implements ITACFlowAnalysis<LE> {
 			return result;
 		}
 		
-		public IResult<LE> deriveResult(EclipseInstructionSequence seq, LE incoming, TACInstruction targetInstruction, boolean afterResult) {
-			return new SingleResult<LE>(seq.deriveResult(tf, targetInstruction, incoming, afterResult));
+		public IResult<LE> deriveResult(EclipseInstructionSequence seq, TACInstruction targetInstruction, boolean afterResult) {
+			SequenceResults<LE> results = sequenceResults.get(seq);
+			if(results == null) {
+				LE incoming = getIncomingResult(seq);
+				if(incoming == null)
+					return null;
+				results = seq.deriveResults(tf, getLatticeOperations(), incoming);
+				// only frozen results are safe to hand out repeatedly
+				if(LatticeUtilities.isFreezable(getLatticeOperations()))
+					sequenceResults.put(seq, results);
+			}
+			return new SingleResult<LE>(results.get(targetInstruction, afterResult));
 		}
 
 	}
@@ -402,6 +440,16 @@ extends MotherFlowAnalysis<LE> implements ITACFlowAnalysis<LE> {
 			super(tf, compUnitTacs);
 		}
 
+		/** Results derived for instruction sequences in the current method. */
+		private final Map<EclipseInstructionSequence, SequenceResults<IResult<LE>>> sequenceResults = 
+			new HashMap<EclipseInstructionSequence, SequenceResults<IResult<LE>>>();
+		
+		@Override
+		public void switchToMethod(MethodDeclaration methodDecl) {
+			super.switchToMethod(methodDecl);
+			sequenceResults.clear();
+		}
+
 		public IResult<LE> transfer(ASTNode astNode, List<ILabel> labels, LE value) {
 			TACInstruction instr = tac.instruction(astNode);
 			if(instr == null)
@@ -410,12 +458,22 @@ extends MotherFlowAnalysis<LE> implements ITACFlowAnalysis<LE> {
 				return instr.transfer(tf, labels, value);
 		}
 		
-		public IResult<LE> deriveResult(EclipseInstructionSequence seq, LE incoming, 
+		public IResult<LE> deriveResult(EclipseInstructionSequence seq, 
 				TACInstruction targetInstruction, boolean afterResult) {
-			Set<ILabel> labels = tf.getAnalysisDirection() == AnalysisDirection.BACKWARD_ANALYSIS ?
-					getLabeledResultsBefore(targetInstruction.getNode()).keySet() :
-						getLabeledResultsAfter(targetInstruction.getNode()).keySet();
-			return seq.deriveResult(tf, new ArrayList<ILabel>(labels), targetInstruction, incoming, afterResult);
+			SequenceResults<IResult<LE>> results = sequenceResults.get(seq);
+			if(results == null) {
+				LE incoming = getIncomingResult(seq);
+				if(incoming == null)
+					return null;
+				Set<ILabel> labels = tf.getAnalysisDirection() == AnalysisDirection.BACKWARD_ANALYSIS ?
+						getLabeledResultsBefore(seq.getNode()).keySet() :
+							getLabeledResultsAfter(seq.getNode()).keySet();
+				results = seq.deriveResults(tf, new ArrayList<ILabel>(labels), getLatticeOperations(), incoming);
+				// only frozen results are safe to hand out repeatedly
+				if(LatticeUtilities.isFreezable(getLatticeOperations()))
+					sequenceResults.put(seq, results);
+			}
+			return results.get(targetInstruction, afterResult);
 		}
 	}
 
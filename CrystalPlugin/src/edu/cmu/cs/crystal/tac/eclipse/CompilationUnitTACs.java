@@ -48,5 +48,13 @@ public class CompilationUnitTACs {
 		}
 		return tac;
 	}
+
+	/**
+	 * Releases all cached TACs.  TACs requested afterwards are created 
+	 * again, with new {@link edu.cmu.cs.crystal.tac.model.Variable variables}.
+	 */
+	public synchronized void clear() {
+		tacs.clear();
+	}
 	
 }
@@ -19,6 +19,7 @@
  */
 package edu.cmu.cs.crystal.tac.eclipse;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -26,8 +27,10 @@ import org.eclipse.jdt.core.dom.ASTNode;
 
 import edu.cmu.cs.crystal.flow.AnalysisDirection;
 import edu.cmu.cs.crystal.flow.ILabel;
+import edu.cmu.cs.crystal.flow.ILatticeOperations;
 import edu.cmu.cs.crystal.flow.IResult;
 import edu.cmu.cs.crystal.flow.LabeledSingleResult;
+import edu.cmu.cs.crystal.flow.LatticeUtilities;
 import edu.cmu.cs.crystal.flow.NormalLabel;
 import edu.cmu.cs.crystal.tac.ITACBranchSensitiveTransferFunction;
 import edu.cmu.cs.crystal.tac.ITACTransferFunction;
@@ -206,6 +209,98 @@ public class EclipseInstructionSequence extends ResultfulInstruction<ASTNode> {
 		throw new IllegalArgumentException("Given instruction is unknown: " + targetInstr);
 	}
 
+	/**
+	 * Derives the results before and after every instruction in this sequence, 
+	 * as well as before and after the sequence itself, in a single pass.
+	 * Every instruction transfers over a copy of its incoming value, and all 
+	 * derived values are frozen if the given lattice operations support it, 
+	 * in which case the derived results can be handed out repeatedly.
+	 * @param tf
+	 * @param ops lattice operations used to copy and freeze values
+	 * @param value Incoming analysis information, relative to the analysis direction
+	 * @return results for every instruction in this sequence
+	 * @see #deriveResult(ITACTransferFunction, TACInstruction, Object, boolean)
+	 */
+	public <LE> SequenceResults<LE> deriveResults(ITACTransferFunction<LE> tf, ILatticeOperations<LE> ops, LE value) {
+		SequenceResults<LE> result = new SequenceResults<LE>(this);
+		value = LatticeUtilities.freeze(ops, value);
+		if(AnalysisDirection.FORWARD_ANALYSIS.equals(tf.getAnalysisDirection())) {
+			result.sequenceBefore = value;
+			for(int i = 0; i < instructions.length; i++) {
+				result.before.set(i, value);
+				value = LatticeUtilities.freeze(ops, instructions[i].transfer(tf, ops.copy(value)));
+				result.after.set(i, value);
+			}
+			result.sequenceAfter = value;
+		}
+		else {
+			result.sequenceAfter = value;
+			for(int i = instructions.length - 1; i >= 0; i--) {
+				result.after.set(i, value);
+				value = LatticeUtilities.freeze(ops, instructions[i].transfer(tf, ops.copy(value)));
+				result.before.set(i, value);
+			}
+			result.sequenceBefore = value;
+		}
+		return result;
+	}
+
+	/**
+	 * Derives the results before and after every instruction in this sequence, 
+	 * as well as before and after the sequence itself, in a single pass.
+	 * Every instruction transfers over a copy of its incoming value, and all 
+	 * derived values are frozen if the given lattice operations support it, 
+	 * in which case the derived results can be handed out repeatedly.
+	 * @param tf
+	 * @param labels Labels the last instruction in the sequence, relative to the 
+	 * analysis direction, should generate results for
+	 * @param ops lattice operations used to copy and freeze values
+	 * @param value Incoming analysis information, relative to the analysis direction
+	 * @return results for every instruction in this sequence
+	 * @see #deriveResult(ITACBranchSensitiveTransferFunction, List, TACInstruction, Object, boolean)
+	 */
+	public <LE> SequenceResults<IResult<LE>> deriveResults(ITACBranchSensitiveTransferFunction<LE> tf, List<ILabel> labels, ILatticeOperations<LE> ops, LE value) {
+		ILabel normal = NormalLabel.getNormalLabel();
+		List<ILabel> normalOnly = Collections.singletonList(normal);
+		SequenceResults<IResult<LE>> result = new SequenceResults<IResult<LE>>(this);
+		value = LatticeUtilities.freeze(ops, value);
+		
+		// same simplifying assumption as in transfer(): only the last instruction in the sequence 
+		// relative to the analysis direction generates results for the provided list of labels.
+		switch(tf.getAnalysisDirection()) {
+		case FORWARD_ANALYSIS:
+			result.sequenceBefore = LabeledSingleResult.createResult(value, normalOnly);
+			for(int i = 0; i < instructions.length-1; i++) {
+				result.before.set(i, LabeledSingleResult.createResult(value, normalOnly));
+				IResult<LE> after = LatticeUtilities.freezeResult(ops, 
+						instructions[i].transfer(tf, normalOnly, ops.copy(value)));
+				result.after.set(i, after);
+				value = after.get(normal);
+			}
+			result.before.set(instructions.length-1, LabeledSingleResult.createResult(value, normalOnly));
+			result.sequenceAfter = LatticeUtilities.freezeResult(ops, 
+					instructions[instructions.length-1].transfer(tf, labels, ops.copy(value)));
+			result.after.set(instructions.length-1, result.sequenceAfter);
+			return result;
+		case BACKWARD_ANALYSIS:
+			result.sequenceAfter = LabeledSingleResult.createResult(value, normalOnly);
+			for(int i = instructions.length-1; i > 0; i--) {
+				result.after.set(i, LabeledSingleResult.createResult(value, normalOnly));
+				IResult<LE> before = LatticeUtilities.freezeResult(ops, 
+						instructions[i].transfer(tf, normalOnly, ops.copy(value)));
+				result.before.set(i, before);
+				value = before.get(normal);
+			}
+			result.after.set(0, LabeledSingleResult.createResult(value, normalOnly));
+			result.sequenceBefore = LatticeUtilities.freezeResult(ops, 
+					instructions[0].transfer(tf, labels, ops.copy(value)));
+			result.before.set(0, result.sequenceBefore);
+			return result;
+		default:
+			throw new UnsupportedOperationException("Unknown analysis direction: " + tf.getAnalysisDirection());
+		}
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder result_ = new StringBuilder("Instructions: ");
@@ -215,4 +310,44 @@ public class EclipseInstructionSequence extends ResultfulInstruction<ASTNode> {
 		result_.delete(result_.length()-2, result_.length()-1);
 		return result_.toString();
 	}
+	
+	/**
+	 * Results before and after the instructions in an instruction sequence,
+	 * derived in a single pass over the sequence.
+	 * Before and after are relative to normal program flow and not the analysis direction.
+	 * @param <R> Type of results
+	 * @see EclipseInstructionSequence#deriveResults(ITACTransferFunction, ILatticeOperations, Object)
+	 * @see EclipseInstructionSequence#deriveResults(ITACBranchSensitiveTransferFunction, List, ILatticeOperations, Object)
+	 */
+	public static final class SequenceResults<R> {
+		
+		private final EclipseInstructionSequence seq;
+		private final List<R> before;
+		private final List<R> after;
+		private R sequenceBefore;
+		private R sequenceAfter;
+		
+		private SequenceResults(EclipseInstructionSequence seq) {
+			this.seq = seq;
+			this.before = new ArrayList<R>(Collections.<R>nCopies(seq.instructions.length, null));
+			this.after = new ArrayList<R>(Collections.<R>nCopies(seq.instructions.length, null));
+		}
+		
+		/**
+		 * Returns the result before or after the given instruction.
+		 * @param targetInstr The sequence itself or an instruction within the sequence
+		 * @param afterResult <code>true</code> if the <i>after</i> result is
+		 * requested, <code>false</code> for the <i>before</i> result.
+		 * @return result before or after <code>targetInstr</code>
+		 */
+		public R get(TACInstruction targetInstr, boolean afterResult) {
+			if(targetInstr == seq)
+				return afterResult ? sequenceAfter : sequenceBefore;
+			for(int i = 0; i < seq.instructions.length; i++) {
+				if(seq.instructions[i] == targetInstr)
+					return afterResult ? after.get(i) : before.get(i);
+			}
+			throw new IllegalArgumentException("Given instruction is unknown: " + targetInstr);
+		}
+	}
 }
@@ -19,7 +19,10 @@
  */
 package edu.cmu.cs.crystal.tac.eclipse;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
@@ -202,6 +205,30 @@ public class EclipseTAC implements IEclipseVariableQuery {
 		instr.put(astNode, result);
 		return result;
 	}
+	
+	/**
+	 * The individual instructions that flow analyses transfer over for a given AST node, 
+	 * in execution order.  This expands instruction sequences and omits internal
+	 * helper instructions that have no effect, such as the ones that give both branches of
+	 * a conditional expression a common result variable.
+	 * @param astNode
+	 * @return Instructions for the given AST node, which may be empty.
+	 */
+	public List<TACInstruction> instructions(ASTNode astNode) {
+		TACInstruction result = instruction(astNode);
+		if(result == null || result instanceof EclipseMergeHelper)
+			return Collections.emptyList();
+		if(result instanceof EclipseInstructionSequence) {
+			TACInstruction[] seq = ((EclipseInstructionSequence) result).getInstructions();
+			List<TACInstruction> list = new ArrayList<TACInstruction>(seq.length);
+			for(TACInstruction i : seq) {
+				if(! (i instanceof EclipseMergeHelper))
+					list.add(i);
+			}
+			return list;
+		}
+		return Collections.singletonList(result);
+	}
 
 	public Variable variable(ASTNode astNode) {
 		if(astNode == null)
@@ -19,6 +19,8 @@
  */
 package edu.cmu.cs.crystal.tac.model;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.ITypeBinding;
@@ -45,14 +47,14 @@ import org.eclipse.jdt.core.dom.ITypeBinding;
  */
 public class TempVariable extends Variable {
 	
-	private static int temp = 0;
+	private static final AtomicInteger temp = new AtomicInteger();
 	
 	private ASTNode node;
 	private String name;
 
 	public TempVariable(ASTNode node) {
 		this.node = node;
-		this.name = "temp" + (temp++);
+		this.name = "temp" + temp.getAndIncrement();
 	}
 
 	public ASTNode getNode() {
@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.util;
+
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache that holds at most a given number of entries and evicts the least
+ * recently used entry when it is full.  Optionally, values are held through 
+ * {@link SoftReference}s so the garbage collector can evict them when memory 
+ * is tight, even before the size limit is reached.  The cache counts hits, 
+ * misses, and evictions.
+ * <p>
+ * Keys are compared with {@link Object#equals(Object)}.  This class is not thread-safe.
+ * 
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class BoundedCache<K, V> {
+	
+	private final LinkedHashMap<K, Object> entries;
+	private int maxSize;
+	private boolean soft;
+	
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates an empty cache.
+	 * @param maxSize Maximum number of entries; 0 disables caching.
+	 * @param soft <code>true</code> to hold values through soft references, 
+	 * <code>false</code> to hold them strongly.
+	 */
+	public BoundedCache(int maxSize, boolean soft) {
+		if(maxSize < 0)
+			throw new IllegalArgumentException("Negative cache size: " + maxSize);
+		this.maxSize = maxSize;
+		this.soft = soft;
+		this.entries = new LinkedHashMap<K, Object>(16, 0.75f, true) {
+			private static final long serialVersionUID = 7395611837213046325L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Object> eldest) {
+				if(size() > BoundedCache.this.maxSize) {
+					++evictions;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the value cached for the given key, if any, and counts a hit or miss.
+	 * @param key
+	 * @return the value cached for the given key or <code>null</code> if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(K key) {
+		Object entry = entries.get(key);
+		V result;
+		if(entry instanceof SoftReference) {
+			result = ((SoftReference<V>) entry).get();
+			if(result == null) {
+				// collected by the garbage collector
+				entries.remove(key);
+				++evictions;
+			}
+		}
+		else
+			result = (V) entry;
+		if(result == null)
+			++misses;
+		else
+			++hits;
+		return result;
+	}
+
+	/**
+	 * Caches the given value for the given key, possibly evicting the 
+	 * least recently used entry.
+	 * @param key
+	 * @param value Must not be <code>null</code>.
+	 */
+	public void put(K key, V value) {
+		if(value == null)
+			throw new NullPointerException("Cannot cache null for key: " + key);
+		if(maxSize == 0)
+			return;
+		entries.put(key, soft ? new SoftReference<V>(value) : value);
+	}
+
+	/**
+	 * Removes the value cached for the given key, if any.
+	 * @param key
+	 */
+	public void remove(K key) {
+		entries.remove(key);
+	}
+
+	/**
+	 * Removes all entries.  Does not reset the statistics.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Changes the maximum number of entries and evicts entries as needed.
+	 * @param maxSize Maximum number of entries; 0 disables caching.
+	 */
+	public void setMaxSize(int maxSize) {
+		if(maxSize < 0)
+			throw new IllegalArgumentException("Negative cache size: " + maxSize);
+		this.maxSize = maxSize;
+		while(entries.size() > maxSize) {
+			entries.remove(entries.keySet().iterator().next());
+			++evictions;
+		}
+	}
+
+	/**
+	 * Determines whether values added subsequently are held through soft references.
+	 * @param soft
+	 */
+	public void setSoft(boolean soft) {
+		this.soft = soft;
+	}
+
+	/**
+	 * Returns the maximum number of entries.
+	 * @return the maximum number of entries.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Returns the number of entries currently in the cache, including
+	 * entries whose soft references may have been cleared.
+	 * @return the number of entries currently in the cache.
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of lookups that found a value.
+	 * @return the number of lookups that found a value.
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of lookups that did not find a value.
+	 * @return the number of lookups that did not find a value.
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of entries evicted because the cache was full 
+	 * or their value was garbage-collected.
+	 * @return the number of evicted entries.
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public String toString() {
+		return "BoundedCache[size=" + entries.size() + "/" + maxSize + ", hits=" + hits + 
+			", misses=" + misses + ", evictions=" + evictions + "]";
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks the high-water marks of heap usage and of the number of units of work
+ * (such as compilation units) being processed at the same time.  Heap usage is 
+ * sampled whenever a unit finishes.  Where the VM supports it, heap usage 
+ * is measured right after the most recent garbage collection of each heap pool, 
+ * which approximates the memory that is actually reachable rather than garbage
+ * that happens not to have been collected yet.  This class is thread-safe.
+ */
+public class MemoryGauge {
+
+	private final List<MemoryPoolMXBean> heapPools = new ArrayList<MemoryPoolMXBean>();
+
+	private int inFlight = 0;
+	private int maxInFlight = 0;
+	private long finished = 0;
+	private long highWaterMark = 0;
+
+	public MemoryGauge() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null)
+				heapPools.add(pool);
+		}
+	}
+
+	/**
+	 * Records that a unit of work started.
+	 */
+	public synchronized void unitStarted() {
+		inFlight++;
+		if (inFlight > maxInFlight)
+			maxInFlight = inFlight;
+	}
+
+	/**
+	 * Records that a unit of work finished and samples heap usage.
+	 */
+	public synchronized void unitFinished() {
+		inFlight--;
+		finished++;
+		sample();
+	}
+
+	/**
+	 * Samples heap usage.
+	 * @return the current heap usage, in bytes.
+	 */
+	public synchronized long sample() {
+		long used = 0;
+		if (heapPools.isEmpty()) {
+			used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		}
+		else {
+			for (MemoryPoolMXBean pool : heapPools) {
+				MemoryUsage usage = pool.getCollectionUsage();
+				if (usage != null)
+					used += usage.getUsed();
+			}
+		}
+		if (used > highWaterMark)
+			highWaterMark = used;
+		return used;
+	}
+
+	/**
+	 * @return the highest heap usage sampled since the last {@link #reset()}, in bytes.
+	 */
+	public synchronized long getHighWaterMark() {
+		return highWaterMark;
+	}
+
+	/**
+	 * @return the highest number of units of work processed at the same time 
+	 * since the last {@link #reset()}.
+	 */
+	public synchronized int getMaxUnitsInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * @return the number of units of work finished since the last {@link #reset()}.
+	 */
+	public synchronized long getUnitsFinished() {
+		return finished;
+	}
+
+	/**
+	 * Forgets the high-water marks, for instance, at the beginning of a new run.
+	 */
+	public synchronized void reset() {
+		maxInFlight = inFlight;
+		finished = 0;
+		highWaterMark = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "MemoryGauge[highWaterMark=" + (highWaterMark >> 20) + "MB, maxUnitsInFlight=" + 
+			maxInFlight + ", unitsFinished=" + finished + "]";
+	}
+}
@@ -0,0 +1,552 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.util;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * An immutable hash map implemented as a hash array mapped trie (HAMT).
+ * Because maps cannot be modified, {@link #put(Object, Object)} and 
+ * {@link #remove(Object)} return new maps that share all but O(log n) of their 
+ * structure with the original map.  Lookups and updates take O(log n) time 
+ * (with a base of 32, so at most 7 levels for 32-bit hash codes).
+ * {@link #forEachDifference(PersistentHashMap, Lambda3)} compares two maps
+ * and skips sub-tries that the two maps share, which makes comparing
+ * a map with a map derived from it proportional to the number of changes.
+ * <p>
+ * Neither keys nor values can be <code>null</code>.
+ * 
+ * @param <K> The type of keys in the map.
+ * @param <V> The type of values in the map.
+ */
+public final class PersistentHashMap<K, V> implements Iterable<Pair<K, V>> {
+
+	@SuppressWarnings("unchecked")
+	private static final PersistentHashMap EMPTY = new PersistentHashMap(null, 0);
+
+	/**
+	 * Returns the empty map.
+	 * @param <K>
+	 * @param <V>
+	 * @return the empty map.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentHashMap<K, V> empty() {
+		return EMPTY;
+	}
+
+	/** Root node, or <code>null</code> if this map is empty. */
+	private final Node root;
+	private final int size;
+
+	private PersistentHashMap(Node root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	/**
+	 * Returns the number of entries in this map.
+	 * @return the number of entries in this map.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Indicates whether this map is empty.
+	 * @return <code>true</code> if this map has no entries, <code>false</code> otherwise.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the value for the given key.
+	 * @param key
+	 * @return the value for the given key or <code>null</code> if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		if(root == null)
+			return null;
+		return (V) root.get(key, hash(key), 0);
+	}
+
+	/**
+	 * Indicates whether this map has an entry for the given key.
+	 * @param key
+	 * @return <code>true</code> if this map has an entry for the given key, 
+	 * <code>false</code> otherwise.
+	 */
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Returns a map that maps the given key to the given value and is otherwise 
+	 * identical to this map.
+	 * @param key
+	 * @param value
+	 * @return a map with the given entry; this map itself if it already
+	 * maps the given key to the given value (in the sense of <code>==</code>).
+	 */
+	public PersistentHashMap<K, V> put(K key, V value) {
+		if(key == null || value == null)
+			throw new NullPointerException("Null keys and values are not supported");
+		int hash = hash(key);
+		boolean[] added = new boolean[1];
+		Node newRoot = root == null ? 
+				BitmapNode.EMPTY.put(key, hash, value, 0, added) :
+				root.put(key, hash, value, 0, added);
+		if(newRoot == root)
+			return this;
+		return new PersistentHashMap<K, V>(newRoot, added[0] ? size + 1 : size);
+	}
+
+	/**
+	 * Returns a map without an entry for the given key that is otherwise 
+	 * identical to this map.
+	 * @param key
+	 * @return a map without an entry for the given key; this map itself if it
+	 * has no entry for the given key.
+	 */
+	public PersistentHashMap<K, V> remove(Object key) {
+		if(root == null)
+			return this;
+		Node newRoot = root.remove(key, hash(key), 0);
+		if(newRoot == root)
+			return this;
+		if(newRoot == null)
+			return empty();
+		return new PersistentHashMap<K, V>(newRoot, size - 1);
+	}
+
+	/**
+	 * Returns an un-modifiable view of the keys in this map.
+	 * @return an un-modifiable view of the keys in this map.
+	 */
+	public Set<K> keySet() {
+		return new AbstractSet<K>() {
+			@Override
+			public Iterator<K> iterator() {
+				final Iterator<Pair<K, V>> it = PersistentHashMap.this.iterator();
+				return new Iterator<K>() {
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+					public K next() {
+						return it.next().fst();
+					}
+					public void remove() {
+						throw new UnsupportedOperationException("Map is immutable");
+					}
+				};
+			}
+			@Override
+			public int size() {
+				return size;
+			}
+			@Override
+			public boolean contains(Object o) {
+				return containsKey(o);
+			}
+		};
+	}
+
+	/**
+	 * Iterates over the entries in this map in no particular order.
+	 */
+	public Iterator<Pair<K, V>> iterator() {
+		return new EntryIterator<K, V>(root);
+	}
+
+	/**
+	 * Calls the given visitor for every key that this map and the given map
+	 * associate with different values, including keys for which only one of the
+	 * maps has an entry.  Values are compared with <code>==</code>; 
+	 * keys mapped to equal but different objects are visited as well. 
+	 * Sub-tries shared between the two maps are skipped.
+	 * @param other
+	 * @param visitor Receives the key, the value in this map, and the value in
+	 * the other map (<code>null</code> if the respective map has no entry).  
+	 * Returning <code>false</code> stops the traversal.
+	 * @return <code>false</code> if the visitor stopped the traversal, 
+	 * <code>true</code> otherwise.
+	 */
+	public boolean forEachDifference(PersistentHashMap<K, V> other, Lambda3<K, V, V, Boolean> visitor) {
+		return diffNodes(root, other.root, 0, visitor);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("{");
+		for(Pair<K, V> e : this) {
+			if(result.length() > 1)
+				result.append(", ");
+			result.append(e.fst()).append('=').append(e.snd());
+		}
+		return result.append('}').toString();
+	}
+
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		// spread higher bits into the lower bits used on the first levels
+		return h ^ (h >>> 16);
+	}
+
+	private static int bit(int hash, int shift) {
+		return 1 << ((hash >>> shift) & 31);
+	}
+
+	/*
+	 * Comparison
+	 */
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> boolean diffNodes(Node a, Node b, int shift, Lambda3<K, V, V, Boolean> visitor) {
+		if(a == b)
+			return true;
+		if(a instanceof BitmapNode && b instanceof BitmapNode) {
+			BitmapNode x = (BitmapNode) a;
+			BitmapNode y = (BitmapNode) b;
+			int bits = x.bitmap | y.bitmap;
+			while(bits != 0) {
+				int bit = Integer.lowestOneBit(bits);
+				bits &= ~bit;
+				Object kx = null, vx = null, ky = null, vy = null;
+				if((x.bitmap & bit) != 0) {
+					int i = x.index(bit);
+					kx = x.array[i];
+					vx = x.array[i + 1];
+				}
+				if((y.bitmap & bit) != 0) {
+					int i = y.index(bit);
+					ky = y.array[i];
+					vy = y.array[i + 1];
+				}
+				if(vx == vy && (kx == ky || (kx != null && kx.equals(ky))))
+					// shared sub-trie or identical entry; different keys can map to the same value
+					continue;
+				if(kx == null && ky == null && vx != null && vy != null) {
+					// two sub-tries
+					if(! diffNodes((Node) vx, (Node) vy, shift + 5, visitor))
+						return false;
+				}
+				else if(kx != null && ky != null && kx.equals(ky)) {
+					// same key with different values
+					if(! visitor.call((K) kx, (V) vx, (V) vy))
+						return false;
+				}
+				else if(! diffSlots(kx, vx, ky, vy, shift + 5, visitor))
+					return false;
+			}
+			return true;
+		}
+		return diffSlots(null, a, null, b, shift, visitor);
+	}
+
+	/**
+	 * Compares the entries in two slots; a slot is either empty 
+	 * (both arguments <code>null</code>), an entry, or a sub-trie (<code>null</code> key).
+	 * This method looks up every entry on one side in the other side.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K, V> boolean diffSlots(Object kx, Object vx, Object ky, Object vy, 
+			int shift, Lambda3<K, V, V, Boolean> visitor) {
+		for(Iterator<Pair<Object, Object>> it = slotIterator(kx, vx); it.hasNext(); ) {
+			Pair<Object, Object> e = it.next();
+			Object other = slotGet(ky, vy, e.fst(), shift);
+			if(e.snd() != other && ! visitor.call((K) e.fst(), (V) e.snd(), (V) other))
+				return false;
+		}
+		for(Iterator<Pair<Object, Object>> it = slotIterator(ky, vy); it.hasNext(); ) {
+			Pair<Object, Object> e = it.next();
+			if(slotGet(kx, vx, e.fst(), shift) == null && ! visitor.call((K) e.fst(), null, (V) e.snd()))
+				return false;
+		}
+		return true;
+	}
+
+	private static Iterator<Pair<Object, Object>> slotIterator(Object k, Object v) {
+		if(k == null)
+			return new EntryIterator<Object, Object>((Node) v);
+		return java.util.Collections.singletonList(new Pair<Object, Object>(k, v)).iterator();
+	}
+
+	private static Object slotGet(Object k, Object v, Object key, int shift) {
+		if(v == null)
+			return null;
+		if(k == null)
+			return ((Node) v).get(key, hash(key), shift);
+		return key.equals(k) ? v : null;
+	}
+
+	/*
+	 * Trie nodes
+	 */
+
+	/**
+	 * Trie nodes keep entries in an array of key-value pairs.  If the key is 
+	 * <code>null</code>, then the value is a sub-trie.
+	 */
+	private static abstract class Node {
+		final Object[] array;
+
+		Node(Object[] array) {
+			this.array = array;
+		}
+
+		abstract Object get(Object key, int hash, int shift);
+
+		abstract Node put(Object key, int hash, Object value, int shift, boolean[] added);
+
+		/** Returns <code>null</code> if the resulting node would be empty. */
+		abstract Node remove(Object key, int hash, int shift);
+	}
+
+	/**
+	 * Node with up to 32 slots, one for each 5-bit hash code fragment, 
+	 * of which only occupied slots are stored.
+	 */
+	private static final class BitmapNode extends Node {
+
+		static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+		final int bitmap;
+
+		BitmapNode(int bitmap, Object[] array) {
+			super(array);
+			this.bitmap = bitmap;
+		}
+
+		int index(int bit) {
+			return 2 * Integer.bitCount(bitmap & (bit - 1));
+		}
+
+		@Override
+		Object get(Object key, int hash, int shift) {
+			int bit = bit(hash, shift);
+			if((bitmap & bit) == 0)
+				return null;
+			int i = index(bit);
+			Object k = array[i];
+			if(k == null)
+				return ((Node) array[i + 1]).get(key, hash, shift + 5);
+			return key.equals(k) ? array[i + 1] : null;
+		}
+
+		@Override
+		Node put(Object key, int hash, Object value, int shift, boolean[] added) {
+			int bit = bit(hash, shift);
+			int i = index(bit);
+			if((bitmap & bit) == 0) {
+				added[0] = true;
+				Object[] a = new Object[array.length + 2];
+				System.arraycopy(array, 0, a, 0, i);
+				a[i] = key;
+				a[i + 1] = value;
+				System.arraycopy(array, i, a, i + 2, array.length - i);
+				return new BitmapNode(bitmap | bit, a);
+			}
+			Object k = array[i];
+			Object v = array[i + 1];
+			if(k == null) {
+				Node n = ((Node) v).put(key, hash, value, shift + 5, added);
+				return n == v ? this : with(i, null, n);
+			}
+			if(key.equals(k))
+				return value == v ? this : with(i, k, value);
+			added[0] = true;
+			return with(i, null, createNode(k, v, key, hash, value, shift + 5));
+		}
+
+		@Override
+		Node remove(Object key, int hash, int shift) {
+			int bit = bit(hash, shift);
+			if((bitmap & bit) == 0)
+				return this;
+			int i = index(bit);
+			Object k = array[i];
+			if(k == null) {
+				Node sub = (Node) array[i + 1];
+				Node n = sub.remove(key, hash, shift + 5);
+				if(n == sub)
+					return this;
+				if(n != null)
+					return with(i, null, n);
+			}
+			else if(! key.equals(k))
+				return this;
+			// remove slot
+			if(bitmap == bit)
+				return null;
+			Object[] a = new Object[array.length - 2];
+			System.arraycopy(array, 0, a, 0, i);
+			System.arraycopy(array, i + 2, a, i, array.length - i - 2);
+			return new BitmapNode(bitmap & ~bit, a);
+		}
+
+		private BitmapNode with(int i, Object key, Object value) {
+			Object[] a = array.clone();
+			a[i] = key;
+			a[i + 1] = value;
+			return new BitmapNode(bitmap, a);
+		}
+
+		private static Node createNode(Object k1, Object v1, Object k2, int h2, Object v2, int shift) {
+			int h1 = hash(k1);
+			if(h1 == h2)
+				return new CollisionNode(h1, new Object[] { k1, v1, k2, v2 });
+			boolean[] added = new boolean[1];
+			return EMPTY.put(k1, h1, v1, shift, added).put(k2, h2, v2, shift, added);
+		}
+	}
+
+	/**
+	 * Node for keys with identical hash codes.
+	 */
+	private static final class CollisionNode extends Node {
+
+		final int hash;
+
+		CollisionNode(int hash, Object[] array) {
+			super(array);
+			this.hash = hash;
+		}
+
+		private int find(Object key) {
+			for(int i = 0; i < array.length; i += 2) {
+				if(key.equals(array[i]))
+					return i;
+			}
+			return -1;
+		}
+
+		@Override
+		Object get(Object key, int hash, int shift) {
+			int i = find(key);
+			return i < 0 ? null : array[i + 1];
+		}
+
+		@Override
+		Node put(Object key, int hash, Object value, int shift, boolean[] added) {
+			if(hash != this.hash) {
+				// push this node down one level
+				return new BitmapNode(bit(this.hash, shift), new Object[] { null, this })
+					.put(key, hash, value, shift, added);
+			}
+			int i = find(key);
+			Object[] a;
+			if(i < 0) {
+				added[0] = true;
+				a = new Object[array.length + 2];
+				System.arraycopy(array, 0, a, 0, array.length);
+				a[array.length] = key;
+				a[array.length + 1] = value;
+			}
+			else if(array[i + 1] == value)
+				return this;
+			else {
+				a = array.clone();
+				a[i + 1] = value;
+			}
+			return new CollisionNode(hash, a);
+		}
+
+		@Override
+		Node remove(Object key, int hash, int shift) {
+			int i = find(key);
+			if(i < 0)
+				return this;
+			if(array.length == 2)
+				return null;
+			Object[] a = new Object[array.length - 2];
+			System.arraycopy(array, 0, a, 0, i);
+			System.arraycopy(array, i + 2, a, i, array.length - i - 2);
+			return new CollisionNode(hash, a);
+		}
+	}
+
+	/**
+	 * Depth-first iterator over the entries in a trie.
+	 */
+	private static final class EntryIterator<K, V> implements Iterator<Pair<K, V>> {
+
+		/** Arrays of the nodes being visited; 7 bitmap levels plus collision nodes. */
+		private final Object[][] arrays = new Object[8][];
+		/** Next position to look at in each array. */
+		private final int[] positions = new int[8];
+		private int depth = -1;
+		private Object nextKey;
+		private Object nextValue;
+
+		EntryIterator(Node root) {
+			if(root != null) {
+				arrays[0] = root.array;
+				depth = 0;
+			}
+			advance();
+		}
+
+		private void advance() {
+			nextKey = null;
+			while(depth >= 0) {
+				Object[] a = arrays[depth];
+				int i = positions[depth];
+				if(i >= a.length) {
+					arrays[depth--] = null;
+					continue;
+				}
+				positions[depth] = i + 2;
+				if(a[i] == null) {
+					++depth;
+					arrays[depth] = ((Node) a[i + 1]).array;
+					positions[depth] = 0;
+				}
+				else {
+					nextKey = a[i];
+					nextValue = a[i + 1];
+					return;
+				}
+			}
+		}
+
+		public boolean hasNext() {
+			return nextKey != null;
+		}
+
+		@SuppressWarnings("unchecked")
+		public Pair<K, V> next() {
+			if(nextKey == null)
+				throw new NoSuchElementException();
+			Pair<K, V> result = new Pair<K, V>((K) nextKey, (V) nextValue);
+			advance();
+			return result;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException("Map is immutable");
+		}
+	}
+
+}
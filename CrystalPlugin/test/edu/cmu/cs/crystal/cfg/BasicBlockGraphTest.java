@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.cfg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.flow.ILabel;
+import edu.cmu.cs.crystal.flow.NormalLabel;
+
+public class BasicBlockGraphTest {
+	
+	private Node[] nodes;
+	private BasicBlockGraph<String> blocks;
+	
+	/**
+	 * Builds a loop around a diamond, with a chain that is unreachable from
+	 * the start node but reaches the end node:
+	 * 0 -> 1 -> 2 -> {3, 4} -> 5 -> 6 -> {1, 7}, and 8 -> 9 -> 7.
+	 */
+	@Before
+	public void setUp() {
+		nodes = new Node[10];
+		for(int i = 0; i < nodes.length; ++i)
+			nodes[i] = new Node("n" + i);
+		connect(0, 1);
+		connect(1, 2);
+		connect(2, 3);
+		connect(2, 4);
+		connect(3, 5);
+		connect(4, 5);
+		connect(5, 6);
+		connect(6, 1);
+		connect(6, 7);
+		connect(8, 9);
+		connect(9, 7);
+		blocks = new BasicBlockGraph<String>(new TestGraph(nodes[0], nodes[7]));
+	}
+
+	@Test
+	public void testBlocks() {
+		assertEquals(7, blocks.getBlocks().size());
+		assertBlock(0);
+		assertBlock(1, 2);
+		assertBlock(3);
+		assertBlock(4);
+		assertBlock(5, 6);
+		assertBlock(7);
+		// only reachable backwards from the end node
+		assertBlock(8, 9);
+		assertSame(blocks.getBlock(nodes[0]), blocks.getStartNode());
+		assertSame(blocks.getBlock(nodes[7]), blocks.getEndNode());
+	}
+
+	@Test
+	public void testEdges() {
+		BasicBlockGraph.Block<String> loop = blocks.getBlock(nodes[5]);
+		assertEquals(2, loop.getOutputs().size());
+		Set<BasicBlockGraph.Block<String>> sinks = new HashSet<BasicBlockGraph.Block<String>>();
+		for(BasicBlockGraph.BlockEdge<String> edge : loop.getOutputs()) {
+			sinks.add(edge.getSink());
+			assertSame(nodes[6], edge.getEdge().getSource());
+		}
+		assertEquals(new HashSet<BasicBlockGraph.Block<String>>(Arrays.asList(
+				blocks.getBlock(nodes[1]), blocks.getBlock(nodes[7]))), sinks);
+		assertEquals(2, blocks.getBlock(nodes[1]).getInputs().size());
+		assertEquals(2, blocks.getEndNode().getInputs().size());
+		assertSame(nodes[6], loop.getInternalEdge(0).getSink());
+	}
+	
+	private void assertBlock(int... members) {
+		BasicBlockGraph.Block<String> block = blocks.getBlock(nodes[members[0]]);
+		assertNotNull(block);
+		assertEquals(members.length, block.size());
+		for(int i = 0; i < members.length; ++i)
+			assertSame(nodes[members[i]], block.getNode(i));
+	}
+	
+	private void connect(int source, int sink) {
+		Edge e = new Edge(nodes[source], nodes[sink]);
+		nodes[source].outputs.add(e);
+		nodes[sink].inputs.add(e);
+	}
+	
+	private static class Node implements ICFGNode<String> {
+		final String name;
+		final Set<Edge> inputs = new LinkedHashSet<Edge>();
+		final Set<Edge> outputs = new LinkedHashSet<Edge>();
+		
+		Node(String name) {
+			this.name = name;
+		}
+		
+		public String getASTNode() {
+			return name;
+		}
+		
+		public Set<Edge> getInputs() {
+			return inputs;
+		}
+		
+		public Set<Edge> getOutputs() {
+			return outputs;
+		}
+		
+		public Set<Edge> getInputEdges(ILabel label) {
+			return inputs;
+		}
+		
+		public Set<Edge> getOutputEdges(ILabel label) {
+			return outputs;
+		}
+		
+		public ICFGNode<String> getStart() {
+			return this;
+		}
+		
+		public ICFGNode<String> getEnd() {
+			return this;
+		}
+		
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+	
+	private static class Edge implements ICFGEdge<String> {
+		final Node source;
+		final Node sink;
+		
+		Edge(Node source, Node sink) {
+			this.source = source;
+			this.sink = sink;
+		}
+		
+		public ICFGNode<String> getSource() {
+			return source;
+		}
+		
+		public ICFGNode<String> getSink() {
+			return sink;
+		}
+		
+		public ILabel getLabel() {
+			return NormalLabel.getNormalLabel();
+		}
+	}
+	
+	private static class TestGraph implements IControlFlowGraph<String> {
+		final Node start;
+		final Node end;
+		
+		TestGraph(Node start, Node end) {
+			this.start = start;
+			this.end = end;
+		}
+		
+		public ICFGNode<String> getStartNode() {
+			return start;
+		}
+		
+		public ICFGNode<String> getEndNode() {
+			return end;
+		}
+		
+		public ICFGNode<String> getUberReturn() {
+			return end;
+		}
+		
+		public ICFGNode<String> getUndeclaredExit() {
+			return end;
+		}
+		
+		public Map<ITypeBinding, ? extends ICFGNode<String>> getExceptionalExits() {
+			return null;
+		}
+		
+		public att.grappa.Graph getDotGraph() {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.cfg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.cfg.eclipse.EclipseNodeFirstCFG;
+import edu.cmu.cs.crystal.flow.worklist.WorklistNodeOrder;
+import edu.cmu.cs.crystal.test.StressSources;
+
+/**
+ * Tests that compact copies of control flow graphs have the same structure, 
+ * including the order of edges, as the original graphs.
+ */
+public class CompactCFGTest {
+	
+	private EclipseNodeFirstCFG cfg;
+	private CompactCFG<ASTNode> compact;
+	
+	@Before
+	public void setUp() {
+		cfg = new EclipseNodeFirstCFG(parse(StressSources.nestedTryFinally(3)), false);
+		compact = new CompactCFG<ASTNode>(cfg);
+	}
+
+	@Test
+	public void testStructure() {
+		Map<ICFGNode<ASTNode>, ICFGNode<ASTNode>> copies = 
+			new IdentityHashMap<ICFGNode<ASTNode>, ICFGNode<ASTNode>>();
+		LinkedList<ICFGNode<ASTNode>> todo = new LinkedList<ICFGNode<ASTNode>>();
+		copies.put(cfg.getStartNode(), compact.getStartNode());
+		todo.add(cfg.getStartNode());
+		int edges = 0;
+		while(todo.isEmpty() == false) {
+			ICFGNode<ASTNode> node = todo.removeFirst();
+			ICFGNode<ASTNode> copy = copies.get(node);
+			assertSame(node.getASTNode(), copy.getASTNode());
+			assertEquals(node.toString(), copy.toString());
+			assertEquals(node.getInputs().size(), copy.getInputs().size());
+			assertEquals(node.getOutputs().size(), copy.getOutputs().size());
+			Iterator<? extends ICFGEdge<ASTNode>> copied = copy.getOutputs().iterator();
+			for(ICFGEdge<ASTNode> edge : node.getOutputs()) {
+				ICFGEdge<ASTNode> copiedEdge = copied.next();
+				assertEquals(edge.getLabel(), copiedEdge.getLabel());
+				assertSame(copy, copiedEdge.getSource());
+				assertTrue(copiedEdge.getSink().getInputs().contains(copiedEdge));
+				ICFGNode<ASTNode> sinkCopy = copies.get(edge.getSink());
+				if(sinkCopy == null) {
+					copies.put(edge.getSink(), copiedEdge.getSink());
+					todo.add(edge.getSink());
+				}
+				else
+					assertSame(sinkCopy, copiedEdge.getSink());
+				++edges;
+			}
+		}
+		assertSame(copies.get(cfg.getEndNode()), compact.getEndNode());
+		assertTrue(edges <= compact.getEdgeCount());
+	}
+
+	@Test
+	public void testIntAccess() {
+		for(int node = 0; node < compact.size(); ++node) {
+			assertEquals(node, compact.getId(compact.getNode(node)));
+			for(int e = compact.getOutputBegin(node); e < compact.getOutputEnd(node); ++e)
+				assertEquals(node, compact.getSource(e));
+			for(int i = compact.getInputBegin(node); i < compact.getInputEnd(node); ++i)
+				assertEquals(node, compact.getSink(compact.getInputEdge(i)));
+		}
+		assertEquals(-1, compact.getId(cfg.getStartNode()));
+	}
+
+	@Test
+	public void testWorklistOrder() {
+		for(boolean isForward : new boolean[] { true, false }) {
+			Map<ASTNode, Set<ICFGNode<ASTNode>>> nodeMap = new HashMap<ASTNode, Set<ICFGNode<ASTNode>>>();
+			WorklistNodeOrder<ASTNode> original = 
+				WorklistNodeOrder.createPostOrderAndPopulateNodeMap(cfg, nodeMap, isForward);
+			WorklistNodeOrder<ASTNode> copy = 
+				WorklistNodeOrder.createPostOrderAndPopulateNodeMap(compact, nodeMap, isForward);
+			assertEquals(original.size(), copy.size());
+			for(int i = 0; i < original.size(); ++i) {
+				assertSame(original.getNode(i).getASTNode(), copy.getNode(i).getASTNode());
+				assertEquals(i, copy.getNumber(copy.getNode(i)));
+				assertEquals(original.getTargets(i).length, copy.getTargets(i).length);
+				for(int j = 0; j < original.getTargets(i).length; ++j)
+					assertEquals(original.getTargets(i)[j], copy.getTargets(i)[j]);
+			}
+		}
+	}
+
+	private static MethodDeclaration parse(String source) {
+		ASTParser parser = ASTParser.newParser(AST.JLS3);
+		Map options = JavaCore.getOptions();
+		JavaCore.setComplianceOptions(JavaCore.VERSION_1_5, options);
+		parser.setCompilerOptions(options);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setEnvironment(new String[0], new String[0], null, true);
+		parser.setUnitName("A.java");
+		parser.setResolveBindings(true);
+		parser.setSource(source.toCharArray());
+		final List<MethodDeclaration> result = new LinkedList<MethodDeclaration>();
+		((CompilationUnit) parser.createAST(null)).accept(new ASTVisitor() {
+			@Override
+			public boolean visit(MethodDeclaration node) {
+				result.add(node);
+				return false;
+			}
+		});
+		return result.get(0);
+	}
+}
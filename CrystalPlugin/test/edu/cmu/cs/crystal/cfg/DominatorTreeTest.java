@@ -0,0 +1,240 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.cfg;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.flow.ILabel;
+import edu.cmu.cs.crystal.flow.NormalLabel;
+
+public class DominatorTreeTest {
+	
+	private Node[] nodes;
+	private DominatorTree<String> dom;
+	
+	/**
+	 * Builds a loop around a diamond, with an unreachable node jumping into the loop:
+	 * 0 -> 1 -> {2, 3} -> 4 -> {1, 5}, and 6 -> 4.
+	 */
+	@Before
+	public void setUp() {
+		nodes = new Node[7];
+		for(int i = 0; i < nodes.length; ++i)
+			nodes[i] = new Node("n" + i);
+		connect(0, 1);
+		connect(1, 2);
+		connect(1, 3);
+		connect(2, 4);
+		connect(3, 4);
+		connect(4, 1);
+		connect(4, 5);
+		connect(6, 4);
+		dom = new DominatorTree<String>(new TestGraph(nodes[0], nodes[5]));
+	}
+
+	@Test
+	public void testNumbering() {
+		assertEquals(6, dom.size());
+		assertEquals(0, dom.getNumber(nodes[0]));
+		assertEquals(-1, dom.getNumber(nodes[6]));
+		for(int i = 0; i < 6; ++i)
+			assertSame(nodes[i], dom.getNode(dom.getNumber(nodes[i])));
+		// unreachable predecessors are left out
+		assertEquals(2, dom.getPredecessors(dom.getNumber(nodes[4])).length);
+	}
+
+	@Test
+	public void testImmediateDominators() {
+		assertNull(dom.getImmediateDominator(nodes[0]));
+		assertSame(nodes[0], dom.getImmediateDominator(nodes[1]));
+		assertSame(nodes[1], dom.getImmediateDominator(nodes[2]));
+		assertSame(nodes[1], dom.getImmediateDominator(nodes[3]));
+		assertSame(nodes[1], dom.getImmediateDominator(nodes[4]));
+		assertSame(nodes[4], dom.getImmediateDominator(nodes[5]));
+		assertNull(dom.getImmediateDominator(nodes[6]));
+		assertEquals(-1, dom.getImmediateDominator(0));
+		assertEquals(3, dom.getChildren(dom.getNumber(nodes[1])).length);
+	}
+
+	@Test
+	public void testDominates() {
+		assertTrue(dom.dominates(nodes[0], nodes[5]));
+		assertTrue(dom.dominates(nodes[1], nodes[4]));
+		assertTrue(dom.dominates(nodes[4], nodes[4]));
+		assertFalse(dom.dominates(nodes[2], nodes[4]));
+		assertFalse(dom.dominates(nodes[5], nodes[4]));
+		assertFalse(dom.dominates(nodes[6], nodes[4]));
+	}
+
+	@Test
+	public void testPostDominators() {
+		DominatorTree<String> postDom = new DominatorTree<String>(new TestGraph(nodes[0], nodes[5]), false);
+		assertEquals(7, postDom.size());
+		assertNull(postDom.getImmediateDominator(nodes[5]));
+		assertSame(nodes[5], postDom.getImmediateDominator(nodes[4]));
+		assertSame(nodes[4], postDom.getImmediateDominator(nodes[2]));
+		assertSame(nodes[4], postDom.getImmediateDominator(nodes[1]));
+		assertSame(nodes[1], postDom.getImmediateDominator(nodes[0]));
+		// reaches the end node even though it is unreachable from the start node
+		assertSame(nodes[4], postDom.getImmediateDominator(nodes[6]));
+		assertTrue(postDom.dominates(nodes[4], nodes[0]));
+		assertFalse(postDom.dominates(nodes[2], nodes[1]));
+	}
+
+	@Test
+	public void testDominanceFrontiers() {
+		assertFrontier(0);
+		assertFrontier(1, 1);
+		assertFrontier(2, 4);
+		assertFrontier(3, 4);
+		assertFrontier(4, 1);
+		assertFrontier(5);
+	}
+	
+	private void assertFrontier(int node, int... frontier) {
+		int[] expected = new int[frontier.length];
+		for(int i = 0; i < frontier.length; ++i)
+			expected[i] = dom.getNumber(nodes[frontier[i]]);
+		int[] actual = dom.getDominanceFrontier(dom.getNumber(nodes[node])).clone();
+		Arrays.sort(expected);
+		Arrays.sort(actual);
+		assertArrayEquals(expected, actual);
+	}
+	
+	private void connect(int source, int sink) {
+		Edge e = new Edge(nodes[source], nodes[sink]);
+		nodes[source].outputs.add(e);
+		nodes[sink].inputs.add(e);
+	}
+	
+	private static class Node implements ICFGNode<String> {
+		final String name;
+		final Set<Edge> inputs = new LinkedHashSet<Edge>();
+		final Set<Edge> outputs = new LinkedHashSet<Edge>();
+		
+		Node(String name) {
+			this.name = name;
+		}
+		
+		public String getASTNode() {
+			return name;
+		}
+		
+		public Set<Edge> getInputs() {
+			return inputs;
+		}
+		
+		public Set<Edge> getOutputs() {
+			return outputs;
+		}
+		
+		public Set<Edge> getInputEdges(ILabel label) {
+			return inputs;
+		}
+		
+		public Set<Edge> getOutputEdges(ILabel label) {
+			return outputs;
+		}
+		
+		public ICFGNode<String> getStart() {
+			return this;
+		}
+		
+		public ICFGNode<String> getEnd() {
+			return this;
+		}
+		
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+	
+	private static class Edge implements ICFGEdge<String> {
+		final Node source;
+		final Node sink;
+		
+		Edge(Node source, Node sink) {
+			this.source = source;
+			this.sink = sink;
+		}
+		
+		public ICFGNode<String> getSource() {
+			return source;
+		}
+		
+		public ICFGNode<String> getSink() {
+			return sink;
+		}
+		
+		public ILabel getLabel() {
+			return NormalLabel.getNormalLabel();
+		}
+	}
+	
+	private static class TestGraph implements IControlFlowGraph<String> {
+		final Node start;
+		final Node end;
+		
+		TestGraph(Node start, Node end) {
+			this.start = start;
+			this.end = end;
+		}
+		
+		public ICFGNode<String> getStartNode() {
+			return start;
+		}
+		
+		public ICFGNode<String> getEndNode() {
+			return end;
+		}
+		
+		public ICFGNode<String> getUberReturn() {
+			return end;
+		}
+		
+		public ICFGNode<String> getUndeclaredExit() {
+			return end;
+		}
+		
+		public Map<ITypeBinding, ? extends ICFGNode<String>> getExceptionalExits() {
+			return null;
+		}
+		
+		public att.grappa.Graph getDotGraph() {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.cfg;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.flow.ILabel;
+import edu.cmu.cs.crystal.flow.NormalLabel;
+
+public class LoopNestingForestTest {
+	
+	private Node[] nodes;
+	private LoopNestingForest<String> loops;
+	
+	/**
+	 * Builds two nested loops, with an unreachable node jumping into the outer loop:
+	 * 0 -> 1 -> 2 -> 3 -> 2, 2 -> 4 -> 1, 1 -> 5, and 6 -> 1.
+	 */
+	@Before
+	public void setUp() {
+		nodes = new Node[7];
+		for(int i = 0; i < nodes.length; ++i)
+			nodes[i] = new Node("n" + i);
+		connect(0, 1);
+		connect(1, 2);
+		connect(2, 3);
+		connect(3, 2);
+		connect(2, 4);
+		connect(4, 1);
+		connect(1, 5);
+		connect(6, 1);
+		loops = new LoopNestingForest<String>(new TestGraph(nodes[0], nodes[5]));
+	}
+
+	@Test
+	public void testNesting() {
+		assertEquals(2, loops.getLoopCount());
+		assertSame(nodes[1], loops.getHeader(0));
+		assertSame(nodes[2], loops.getHeader(1));
+		assertEquals(-1, loops.getParent(0));
+		assertEquals(0, loops.getParent(1));
+		assertEquals(1, loops.getDepth(0));
+		assertEquals(2, loops.getDepth(1));
+		assertTrue(loops.isLoopHeader(nodes[2]));
+		assertFalse(loops.isLoopHeader(nodes[3]));
+	}
+
+	@Test
+	public void testLoopDepth() {
+		int[] expected = { 0, 1, 2, 2, 1, 0, 0 };
+		for(int i = 0; i < nodes.length; ++i) 
+			assertEquals(nodes[i].toString(), expected[i], loops.getLoopDepth(nodes[i]));
+		assertEquals(2, loops.getASTLoopDepth("n3"));
+		assertEquals(0, loops.getASTLoopDepth("n5"));
+		// unreachable
+		assertEquals(-1, loops.getASTLoopDepth("n6"));
+	}
+	
+	private void connect(int source, int sink) {
+		Edge e = new Edge(nodes[source], nodes[sink]);
+		nodes[source].outputs.add(e);
+		nodes[sink].inputs.add(e);
+	}
+	
+	private static class Node implements ICFGNode<String> {
+		final String name;
+		final Set<Edge> inputs = new LinkedHashSet<Edge>();
+		final Set<Edge> outputs = new LinkedHashSet<Edge>();
+		
+		Node(String name) {
+			this.name = name;
+		}
+		
+		public String getASTNode() {
+			return name;
+		}
+		
+		public Set<Edge> getInputs() {
+			return inputs;
+		}
+		
+		public Set<Edge> getOutputs() {
+			return outputs;
+		}
+		
+		public Set<Edge> getInputEdges(ILabel label) {
+			return inputs;
+		}
+		
+		public Set<Edge> getOutputEdges(ILabel label) {
+			return outputs;
+		}
+		
+		public ICFGNode<String> getStart() {
+			return this;
+		}
+		
+		public ICFGNode<String> getEnd() {
+			return this;
+		}
+		
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+	
+	private static class Edge implements ICFGEdge<String> {
+		final Node source;
+		final Node sink;
+		
+		Edge(Node source, Node sink) {
+			this.source = source;
+			this.sink = sink;
+		}
+		
+		public ICFGNode<String> getSource() {
+			return source;
+		}
+		
+		public ICFGNode<String> getSink() {
+			return sink;
+		}
+		
+		public ILabel getLabel() {
+			return NormalLabel.getNormalLabel();
+		}
+	}
+	
+	private static class TestGraph implements IControlFlowGraph<String> {
+		final Node start;
+		final Node end;
+		
+		TestGraph(Node start, Node end) {
+			this.start = start;
+			this.end = end;
+		}
+		
+		public ICFGNode<String> getStartNode() {
+			return start;
+		}
+		
+		public ICFGNode<String> getEndNode() {
+			return end;
+		}
+		
+		public ICFGNode<String> getUberReturn() {
+			return end;
+		}
+		
+		public ICFGNode<String> getUndeclaredExit() {
+			return end;
+		}
+		
+		public Map<ITypeBinding, ? extends ICFGNode<String>> getExceptionalExits() {
+			return null;
+		}
+		
+		public att.grappa.Graph getDotGraph() {
+			return null;
+		}
+	}
+
+}
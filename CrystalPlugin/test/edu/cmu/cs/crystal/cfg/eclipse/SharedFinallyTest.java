@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.cfg.eclipse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.cfg.ICFGEdge;
+import edu.cmu.cs.crystal.cfg.ICFGNode;
+import edu.cmu.cs.crystal.test.StressSources;
+
+/**
+ * Tests that control flow graphs share copies of finally blocks between 
+ * exits that continue at the same place unless asked to duplicate them.
+ */
+public class SharedFinallyTest {
+
+	private static final String SOURCE =
+		"public class A {\n" +
+		"  int m(int n) {\n" +
+		"    int x = 0;\n" +
+		"    try {\n" +
+		"      if (n == 0) return 1;\n" +
+		"      if (n == 1) return 2;\n" +
+		"      if (n == 2) throw new IllegalStateException();\n" +
+		"      x = n;\n" +
+		"    }\n" +
+		"    finally {\n" +
+		"      x++;\n" +
+		"    }\n" +
+		"    return x;\n" +
+		"  }\n" +
+		"}\n";
+
+	@Test
+	public void testExitsShareFinallyCopies() {
+		MethodDeclaration m = parse(SOURCE);
+		final List<ASTNode> increments = new LinkedList<ASTNode>();
+		m.accept(new ASTVisitor() {
+			@Override
+			public void endVisit(PostfixExpression node) {
+				increments.add(node);
+			}
+		});
+		assertEquals(1, increments.size());
+		// the original for falling through, one copy for both returns, one for the throw
+		assertEquals(3, count(new EclipseNodeFirstCFG(m, false), increments.get(0)));
+		// the original and one copy for every exit
+		assertEquals(4, count(new EclipseNodeFirstCFG(m, true), increments.get(0)));
+	}
+
+	@Test
+	public void testNestedTryFinally() {
+		MethodDeclaration m = parse(StressSources.nestedTryFinally(6));
+		int shared = reachable(new EclipseNodeFirstCFG(m, false)).size();
+		int duplicated = reachable(new EclipseNodeFirstCFG(m, true)).size();
+		assertTrue(shared + " vs. " + duplicated, shared < duplicated);
+	}
+
+	private static MethodDeclaration parse(String source) {
+		ASTParser parser = ASTParser.newParser(AST.JLS3);
+		Map options = JavaCore.getOptions();
+		JavaCore.setComplianceOptions(JavaCore.VERSION_1_5, options);
+		parser.setCompilerOptions(options);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setEnvironment(new String[0], new String[0], null, true);
+		parser.setUnitName("A.java");
+		parser.setResolveBindings(true);
+		parser.setSource(source.toCharArray());
+		final List<MethodDeclaration> result = new LinkedList<MethodDeclaration>();
+		((CompilationUnit) parser.createAST(null)).accept(new ASTVisitor() {
+			@Override
+			public boolean visit(MethodDeclaration node) {
+				result.add(node);
+				return false;
+			}
+		});
+		return result.get(0);
+	}
+
+	private static int count(EclipseCFG cfg, ASTNode node) {
+		int result = 0;
+		for(ICFGNode<ASTNode> n : reachable(cfg)) {
+			if(n.getASTNode() == node)
+				result++;
+		}
+		return result;
+	}
+
+	private static Set<ICFGNode<ASTNode>> reachable(EclipseCFG cfg) {
+		Set<ICFGNode<ASTNode>> result = new HashSet<ICFGNode<ASTNode>>();
+		LinkedList<ICFGNode<ASTNode>> todo = new LinkedList<ICFGNode<ASTNode>>();
+		todo.add(cfg.getStartNode());
+		while(!todo.isEmpty()) {
+			ICFGNode<ASTNode> n = todo.removeFirst();
+			if(result.add(n)) {
+				for(ICFGEdge<ASTNode> edge : n.getOutputs())
+					todo.add(edge.getSink());
+			}
+		}
+		return result;
+	}
+}
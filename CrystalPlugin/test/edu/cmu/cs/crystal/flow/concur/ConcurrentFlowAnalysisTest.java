@@ -0,0 +1,237 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.concur;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.flow.IFlowAnalysis;
+import edu.cmu.cs.crystal.internal.CrystalRuntimeException;
+import edu.cmu.cs.crystal.tac.ITACFlowAnalysis;
+import edu.cmu.cs.crystal.util.Lambda;
+
+public class ConcurrentFlowAnalysisTest {
+	
+	private ExecutorService executor;
+	private MethodDeclaration m1;
+	private MethodDeclaration m2;
+	/** Number of flow analysis objects created by {@link #factory}. */
+	private AtomicInteger created;
+	/** Threads {@link #factory} was called on. */
+	private List<Thread> threads;
+	/** Methods whose flow analysis objects were asked for the implicit this variable. */
+	private List<MethodDeclaration> implicitThisQueries;
+	/** Released before {@link #factory} returns; initially released. */
+	private CountDownLatch release;
+	/** Exception thrown by {@link #factory}, if any. */
+	private RuntimeException failure;
+	
+	private Lambda<MethodDeclaration, ITACFlowAnalysis<String>> factory = 
+		new Lambda<MethodDeclaration, ITACFlowAnalysis<String>>() {
+			public ITACFlowAnalysis<String> call(final MethodDeclaration method) {
+				created.incrementAndGet();
+				threads.add(Thread.currentThread());
+				try {
+					release.await();
+				}
+				catch(InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+				if(failure != null)
+					throw failure;
+				return fakeFlowAnalysis(method);
+			}
+		};
+	
+	@Before
+	public void setUp() {
+		executor = Executors.newFixedThreadPool(4);
+		AST ast = AST.newAST(AST.JLS3);
+		m1 = ast.newMethodDeclaration();
+		m2 = ast.newMethodDeclaration();
+		created = new AtomicInteger();
+		threads = Collections.synchronizedList(new ArrayList<Thread>());
+		implicitThisQueries = Collections.synchronizedList(new ArrayList<MethodDeclaration>());
+		release = new CountDownLatch(0);
+		failure = null;
+	}
+	
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testOneAnalysisPerMethod() throws Exception {
+		release = new CountDownLatch(1);
+		final ConcurrentFlowAnalysis<String> fa = new ConcurrentFlowAnalysis<String>(factory, executor);
+		List<Future<IFlowAnalysis<String>>> results = new ArrayList<Future<IFlowAnalysis<String>>>();
+		for(int i = 0; i < 4; ++i) {
+			results.add(executor.submit(new Callable<IFlowAnalysis<String>>() {
+				public IFlowAnalysis<String> call() {
+					return fa.getFlowAnalysis(m1);
+				}
+			}));
+		}
+		// let the other callers find the running analysis
+		Thread.sleep(100);
+		release.countDown();
+		IFlowAnalysis<String> first = results.get(0).get(5, TimeUnit.SECONDS);
+		for(Future<IFlowAnalysis<String>> r : results)
+			assertSame(first, r.get(5, TimeUnit.SECONDS));
+		assertEquals(1, created.get());
+		assertSame(first, fa.getFlowAnalysis(m1));
+		assertEquals(1, created.get());
+	}
+
+	@Test
+	public void testFailure() {
+		failure = new IllegalStateException("analysis failed");
+		ConcurrentFlowAnalysis<String> fa = new ConcurrentFlowAnalysis<String>(factory, executor);
+		fa.analyzePreemitively(Arrays.asList(m1));
+		try {
+			fa.getFlowAnalysis(m1);
+			fail("Failure not reported");
+		}
+		catch(CrystalRuntimeException e) {
+			assertSame(failure, e.getCause());
+		}
+		assertEquals(1, created.get());
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testDefaultFlowAnalysis() {
+		ConcurrentFlowAnalysis<String> fa = new ConcurrentFlowAnalysis<String>(factory, executor);
+		// delegates to the flow analysis of the surrounding method
+		assertSame(fa, fa.defaultFlowAnalysis);
+	}
+
+	@Test
+	public void testCancel() {
+		final List<Runnable> queued = new ArrayList<Runnable>();
+		ConcurrentFlowAnalysis<String> fa = new ConcurrentFlowAnalysis<String>(factory, new Executor() {
+			public void execute(Runnable command) {
+				queued.add(command);
+			}
+		});
+		fa.analyzePreemitively(Arrays.asList(m1, m2));
+		assertEquals(2, queued.size());
+		assertEquals(2, fa.getAnalyzedMethods().size());
+		
+		fa.cancel();
+		assertTrue(fa.getAnalyzedMethods().isEmpty());
+		for(Runnable task : queued) {
+			assertTrue(((Future<?>) task).isCancelled());
+			// canceled tasks do not analyze anything when the executor gets to them
+			task.run();
+		}
+		assertEquals(0, created.get());
+		
+		// results are recomputed when requested again
+		fa.getFlowAnalysis(m1);
+		assertEquals(1, created.get());
+	}
+
+	@Test
+	public void testRejectedExecution() {
+		executor.shutdown();
+		ConcurrentFlowAnalysis<String> fa = new ConcurrentFlowAnalysis<String>(factory, executor);
+		fa.analyzePreemitively(Arrays.asList(m1, m2));
+		assertEquals(2, fa.getAnalyzedMethods().size());
+		assertEquals(0, created.get());
+		
+		IFlowAnalysis<String> result = fa.getFlowAnalysis(m2);
+		assertEquals(1, created.get());
+		assertEquals(Arrays.asList(Thread.currentThread()), threads);
+		assertSame(result, fa.getFlowAnalysis(m2));
+	}
+
+	@Test
+	public void testImplicitThisVariable() {
+		ConcurrentTACFlowAnalysis<String> fa = new ConcurrentTACFlowAnalysis<String>(factory, executor);
+		try {
+			fa.getImplicitThisVariable(null);
+			fail("No accessing method yet");
+		}
+		catch(IllegalStateException e) {
+			// expected
+		}
+		assertTrue(implicitThisQueries.isEmpty());
+		
+		fa.getTACFlowAnalysis(m1);
+		fa.getImplicitThisVariable(null);
+		assertEquals(Arrays.asList(m1), implicitThisQueries);
+		
+		fa.getTACFlowAnalysis(m2);
+		try {
+			fa.getImplicitThisVariable(null);
+			fail("Accessing method should be ambiguous");
+		}
+		catch(IllegalStateException e) {
+			// expected
+		}
+		assertEquals(Arrays.asList(m1), implicitThisQueries);
+		fa.getImplicitThisVariable(null, m2);
+		fa.getImplicitThisVariable(null, m1);
+		assertEquals(Arrays.asList(m1, m2, m1), implicitThisQueries);
+	}
+	
+	/** 
+	 * Creates a flow analysis object that answers all queries with <code>null</code> 
+	 * and records queries for the implicit this variable.
+	 */
+	@SuppressWarnings("unchecked")
+	private ITACFlowAnalysis<String> fakeFlowAnalysis(final MethodDeclaration method) {
+		return (ITACFlowAnalysis<String>) Proxy.newProxyInstance(getClass().getClassLoader(), 
+				new Class<?>[] { ITACFlowAnalysis.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method m, Object[] args) {
+						if(m.getName().equals("getImplicitThisVariable"))
+							implicitThisQueries.add(method);
+						return null;
+					}
+				});
+	}
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.analysis.constant.BooleanConstantLE;
+import edu.cmu.cs.crystal.analysis.constant.ConstantTransferFunction;
+import edu.cmu.cs.crystal.analysis.live.LiveVariableLE;
+import edu.cmu.cs.crystal.analysis.live.LiveVariableTransferFunction;
+import edu.cmu.cs.crystal.analysis.reaching.ReachingDefinitionsTransferFunction;
+import edu.cmu.cs.crystal.bitvector.BitVector;
+import edu.cmu.cs.crystal.flow.ILabel;
+import edu.cmu.cs.crystal.flow.ILatticeOperations;
+import edu.cmu.cs.crystal.flow.IResult;
+import edu.cmu.cs.crystal.simple.TupleLatticeElement;
+import edu.cmu.cs.crystal.tac.TACFlowAnalysis;
+import edu.cmu.cs.crystal.tac.eclipse.CompilationUnitTACs;
+import edu.cmu.cs.crystal.tac.eclipse.EclipseTAC;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.Variable;
+import edu.cmu.cs.crystal.test.StressSources;
+
+/**
+ * Tests that worklists visiting basic blocks compute the same results as
+ * worklists visiting individual nodes.
+ * @see WorklistTemplate#setUseBasicBlocks(boolean)
+ */
+public class BasicBlockWorklistTest {
+
+	private static final String SOURCE =
+		"public class A {\n" +
+		"  int m(int x, int y, boolean c) {\n" +
+		"    boolean b = x < y;\n" +
+		"    x++;\n" +
+		"    y += x;\n" +
+		"    if (c) b = !b; else b = true;\n" +
+		"    while (x < y) { x--; c = !c; }\n" +
+		"    for (int i = 0; i < y; i++) { if (b && c) break; y -= i; }\n" +
+		"    try { x = y / x; } catch (ArithmeticException e) { x = 0; } finally { y = x; }\n" +
+		"    return b ? x + y : y;\n" +
+		"  }\n" +
+		"}\n";
+
+	@Test
+	public void testForward() {
+		for(List<MethodDeclaration> methods : sources()) {
+			CompilationUnitTACs tacs = new CompilationUnitTACs();
+			ReachingDefinitionsTransferFunction tf = new ReachingDefinitionsTransferFunction();
+			TACFlowAnalysis<BitVector> blocks = 
+				new TACFlowAnalysis<BitVector>(new ReachingDefinitionsTransferFunction(), tacs);
+			TACFlowAnalysis<BitVector> nodes = 
+				new TACFlowAnalysis<BitVector>(new ReachingDefinitionsTransferFunction(), tacs);
+			assertSameResults(tf.getLatticeOperations(), blocks, nodes, tacs, methods);
+		}
+	}
+
+	@Test
+	public void testBackward() {
+		for(List<MethodDeclaration> methods : sources()) {
+			CompilationUnitTACs tacs = new CompilationUnitTACs();
+			LiveVariableTransferFunction tf = new LiveVariableTransferFunction();
+			TACFlowAnalysis<TupleLatticeElement<Variable, LiveVariableLE>> blocks = 
+				new TACFlowAnalysis<TupleLatticeElement<Variable, LiveVariableLE>>(
+						new LiveVariableTransferFunction(), tacs);
+			TACFlowAnalysis<TupleLatticeElement<Variable, LiveVariableLE>> nodes = 
+				new TACFlowAnalysis<TupleLatticeElement<Variable, LiveVariableLE>>(
+						new LiveVariableTransferFunction(), tacs);
+			assertSameResults(tf.getLatticeOperations(), blocks, nodes, tacs, methods);
+		}
+	}
+
+	@Test
+	public void testBranchSensitive() {
+		for(List<MethodDeclaration> methods : sources()) {
+			CompilationUnitTACs tacs = new CompilationUnitTACs();
+			ConstantTransferFunction tf = new ConstantTransferFunction();
+			TACFlowAnalysis<TupleLatticeElement<Variable, BooleanConstantLE>> blocks = 
+				new TACFlowAnalysis<TupleLatticeElement<Variable, BooleanConstantLE>>(
+						new ConstantTransferFunction(), tacs);
+			TACFlowAnalysis<TupleLatticeElement<Variable, BooleanConstantLE>> nodes = 
+				new TACFlowAnalysis<TupleLatticeElement<Variable, BooleanConstantLE>>(
+						new ConstantTransferFunction(), tacs);
+			assertSameResults(tf.getLatticeOperations(), blocks, nodes, tacs, methods);
+		}
+	}
+
+	private static <LE> void assertSameResults(final ILatticeOperations<LE> ops, 
+			final TACFlowAnalysis<LE> blocks, final TACFlowAnalysis<LE> nodes, 
+			CompilationUnitTACs tacs, List<MethodDeclaration> methods) {
+		blocks.setUseBasicBlocks(true);
+		nodes.setUseBasicBlocks(false);
+		final int[] count = new int[1];
+		for(MethodDeclaration m : methods) {
+			final EclipseTAC tac = tacs.getMethodTAC(m);
+			m.getBody().accept(new ASTVisitor() {
+				@Override
+				public void postVisit(ASTNode node) {
+					for(TACInstruction instr : tac.instructions(node)) {
+						assertEquivalent(ops, nodes.getLabeledResultsBefore(instr), 
+								blocks.getLabeledResultsBefore(instr), node);
+						assertEquivalent(ops, nodes.getLabeledResultsAfter(instr), 
+								blocks.getLabeledResultsAfter(instr), node);
+						count[0]++;
+					}
+				}
+			});
+		}
+		assertTrue("No instructions found", count[0] > 0);
+	}
+
+	private static <LE> void assertEquivalent(ILatticeOperations<LE> ops, IResult<LE> expected, IResult<LE> actual, 
+			ASTNode node) {
+		assertEquals(node.toString(), expected.keySet(), actual.keySet());
+		for(ILabel label : expected.keySet()) {
+			LE e = expected.get(label);
+			LE a = actual.get(label);
+			assertTrue(node + ": " + e + " vs. " + a, 
+					ops.atLeastAsPrecise(e, a, node) && ops.atLeastAsPrecise(a, e, node));
+		}
+	}
+
+	private static List<List<MethodDeclaration>> sources() {
+		List<List<MethodDeclaration>> result = new LinkedList<List<MethodDeclaration>>();
+		result.add(parse(SOURCE, "A.java"));
+		result.add(parse(StressSources.deepNesting(4), "Stress.java"));
+		result.add(parse(StressSources.hugeSwitch(8), "Stress.java"));
+		result.add(parse(StressSources.manyTryFinally(4), "Stress.java"));
+		result.add(parse(StressSources.nestedTryFinally(3), "Stress.java"));
+		return result;
+	}
+
+	private static List<MethodDeclaration> parse(String source, String unitName) {
+		ASTParser parser = ASTParser.newParser(AST.JLS3);
+		Map options = JavaCore.getOptions();
+		JavaCore.setComplianceOptions(JavaCore.VERSION_1_5, options);
+		parser.setCompilerOptions(options);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setEnvironment(new String[0], new String[0], null, true);
+		parser.setUnitName(unitName);
+		parser.setResolveBindings(true);
+		parser.setSource(source.toCharArray());
+		final List<MethodDeclaration> result = new LinkedList<MethodDeclaration>();
+		((CompilationUnit) parser.createAST(null)).accept(new ASTVisitor() {
+			@Override
+			public boolean visit(MethodDeclaration node) {
+				result.add(node);
+				return false;
+			}
+		});
+		return result;
+	}
+}
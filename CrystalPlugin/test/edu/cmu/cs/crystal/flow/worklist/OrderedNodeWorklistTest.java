@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class OrderedNodeWorklistTest {
+
+	@Test
+	public void testEmpty() {
+		OrderedNodeWorklist w = new OrderedNodeWorklist(10);
+		assertTrue(w.isEmpty());
+	}
+
+	@Test
+	public void testReversePostOrder() {
+		OrderedNodeWorklist w = new OrderedNodeWorklist(200);
+		w.add(3);
+		w.add(130);
+		w.add(64);
+		w.add(0);
+		w.add(63);
+		
+		assertEquals(130, w.removeLast());
+		assertEquals(64, w.removeLast());
+		assertEquals(63, w.removeLast());
+		assertEquals(3, w.removeLast());
+		assertEquals(0, w.removeLast());
+		assertTrue(w.isEmpty());
+	}
+
+	@Test
+	public void testDuplicates() {
+		OrderedNodeWorklist w = new OrderedNodeWorklist(70);
+		w.add(69);
+		w.add(69);
+		w.add(5);
+		
+		assertEquals(69, w.removeLast());
+		assertFalse(w.isEmpty());
+		w.add(69);
+		assertEquals(69, w.removeLast());
+		assertEquals(5, w.removeLast());
+		assertTrue(w.isEmpty());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRemoveFromEmpty() {
+		new OrderedNodeWorklist(1).removeLast();
+	}
+
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.cfg.ICFGEdge;
+import edu.cmu.cs.crystal.cfg.ICFGNode;
+import edu.cmu.cs.crystal.cfg.IControlFlowGraph;
+import edu.cmu.cs.crystal.flow.ILabel;
+import edu.cmu.cs.crystal.flow.NormalLabel;
+
+public class WeakTopologicalOrderTest {
+	
+	private Node[] nodes;
+	private WorklistNodeOrder<String> order;
+	private WeakTopologicalOrder wto;
+	
+	/**
+	 * Builds two nested loops:
+	 * 0 -> 1 -> 2 -> 3 -> {2, 4} and 4 -> {1, 5}.
+	 * The weak topological ordering is 0 (1 (2 3) 4) 5.
+	 */
+	@Before
+	public void setUp() {
+		nodes = new Node[6];
+		for(int i = 0; i < nodes.length; ++i)
+			nodes[i] = new Node("n" + i);
+		connect(0, 1);
+		connect(1, 2);
+		connect(2, 3);
+		connect(3, 2);
+		connect(3, 4);
+		connect(4, 1);
+		connect(4, 5);
+		order = WorklistNodeOrder.createPostOrderAndPopulateNodeMap(
+				new TestGraph(nodes[0], nodes[5]), new HashMap<String, Set<ICFGNode<String>>>(), true);
+		wto = order.getWeakTopologicalOrder();
+	}
+
+	@Test
+	public void testOrder() {
+		for(int i = 0; i < nodes.length; ++i) {
+			assertEquals(i, wto.getPosition(number(i)));
+			assertEquals(number(i), wto.getNode(i));
+		}
+		assertEquals(-1, wto.getComponentEnd(0));
+		assertEquals(4, wto.getComponentEnd(1));
+		assertEquals(3, wto.getComponentEnd(2));
+		assertEquals(-1, wto.getComponentEnd(3));
+		assertEquals(-1, wto.getComponentEnd(4));
+		assertEquals(-1, wto.getComponentEnd(5));
+	}
+
+	@Test
+	public void testInnerLoopStabilizesFirst() {
+		NodeWorklist w = wto.createWorklist();
+		assertTrue(w.isEmpty());
+		w.add(number(2));
+		assertEquals(number(2), w.remove());
+		// results leave the inner loop and go around it at the same time
+		w.add(number(4));
+		w.add(number(3));
+		assertEquals(number(3), w.remove());
+		w.add(number(2));
+		// inner loop is iterated again before the outer loop continues
+		assertEquals(number(2), w.remove());
+		w.add(number(3));
+		assertEquals(number(3), w.remove());
+		assertEquals(number(4), w.remove());
+		w.add(number(1));
+		w.add(number(5));
+		assertEquals(number(1), w.remove());
+		assertEquals(number(5), w.remove());
+		assertTrue(w.isEmpty());
+	}
+
+	@Test
+	public void testDuplicates() {
+		NodeWorklist w = wto.createWorklist();
+		w.add(number(5));
+		w.add(number(0));
+		w.add(number(5));
+		assertEquals(number(0), w.remove());
+		assertFalse(w.isEmpty());
+		assertEquals(number(5), w.remove());
+		assertTrue(w.isEmpty());
+	}
+
+	@Test
+	public void testFifo() {
+		NodeWorklist w = new FifoNodeWorklist(3);
+		w.add(2);
+		w.add(0);
+		w.add(2);
+		assertEquals(2, w.remove());
+		w.add(1);
+		w.add(2);
+		assertEquals(0, w.remove());
+		assertEquals(1, w.remove());
+		assertEquals(2, w.remove());
+		assertTrue(w.isEmpty());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testRemoveFromEmpty() {
+		wto.createWorklist().remove();
+	}
+	
+	private int number(int node) {
+		return order.getNumber(nodes[node]);
+	}
+	
+	private void connect(int source, int sink) {
+		Edge e = new Edge(nodes[source], nodes[sink]);
+		nodes[source].outputs.add(e);
+		nodes[sink].inputs.add(e);
+	}
+	
+	
+	private static class Node implements ICFGNode<String> {
+		final String name;
+		final Set<Edge> inputs = new LinkedHashSet<Edge>();
+		final Set<Edge> outputs = new LinkedHashSet<Edge>();
+		
+		Node(String name) {
+			this.name = name;
+		}
+		
+		public String getASTNode() {
+			return name;
+		}
+		
+		public Set<Edge> getInputs() {
+			return inputs;
+		}
+		
+		public Set<Edge> getOutputs() {
+			return outputs;
+		}
+		
+		public Set<Edge> getInputEdges(ILabel label) {
+			return inputs;
+		}
+		
+		public Set<Edge> getOutputEdges(ILabel label) {
+			return outputs;
+		}
+		
+		public ICFGNode<String> getStart() {
+			return this;
+		}
+		
+		public ICFGNode<String> getEnd() {
+			return this;
+		}
+		
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+	
+	private static class Edge implements ICFGEdge<String> {
+		final Node source;
+		final Node sink;
+		
+		Edge(Node source, Node sink) {
+			this.source = source;
+			this.sink = sink;
+		}
+		
+		public ICFGNode<String> getSource() {
+			return source;
+		}
+		
+		public ICFGNode<String> getSink() {
+			return sink;
+		}
+		
+		public ILabel getLabel() {
+			return NormalLabel.getNormalLabel();
+		}
+	}
+	
+	private static class TestGraph implements IControlFlowGraph<String> {
+		final Node start;
+		final Node end;
+		
+		TestGraph(Node start, Node end) {
+			this.start = start;
+			this.end = end;
+		}
+		
+		public ICFGNode<String> getStartNode() {
+			return start;
+		}
+		
+		public ICFGNode<String> getEndNode() {
+			return end;
+		}
+		
+		public ICFGNode<String> getUberReturn() {
+			return end;
+		}
+		
+		public ICFGNode<String> getUndeclaredExit() {
+			return end;
+		}
+		
+		public Map<ITypeBinding, ? extends ICFGNode<String>> getExceptionalExits() {
+			return null;
+		}
+		
+		public att.grappa.Graph getDotGraph() {
+			return null;
+		}
+	}
+
+}
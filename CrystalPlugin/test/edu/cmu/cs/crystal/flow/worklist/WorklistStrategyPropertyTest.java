@@ -0,0 +1,62 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.flow.worklist;
+
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests parsing the {@link WorklistTemplate#WORKLIST_STRATEGY_PROPERTY} property.
+ */
+public class WorklistStrategyPropertyTest {
+
+	@After
+	public void tearDown() {
+		System.clearProperty(WorklistTemplate.WORKLIST_STRATEGY_PROPERTY);
+	}
+
+	@Test
+	public void testUnset() {
+		System.clearProperty(WorklistTemplate.WORKLIST_STRATEGY_PROPERTY);
+		assertSame(WorklistStrategy.REVERSE_POSTORDER, WorklistTemplate.getDefaultStrategy());
+	}
+
+	@Test
+	public void testStrategyName() {
+		System.setProperty(WorklistTemplate.WORKLIST_STRATEGY_PROPERTY, "WEAK_TOPOLOGICAL_ORDER");
+		assertSame(WorklistStrategy.WEAK_TOPOLOGICAL_ORDER, WorklistTemplate.getDefaultStrategy());
+	}
+
+	@Test
+	public void testIgnoresCase() {
+		System.setProperty(WorklistTemplate.WORKLIST_STRATEGY_PROPERTY, " fifo");
+		assertSame(WorklistStrategy.FIFO, WorklistTemplate.getDefaultStrategy());
+	}
+
+	@Test
+	public void testUnknownStrategy() {
+		System.setProperty(WorklistTemplate.WORKLIST_STRATEGY_PROPERTY, "no-such-strategy");
+		assertSame(WorklistStrategy.REVERSE_POSTORDER, WorklistTemplate.getDefaultStrategy());
+		System.setProperty(WorklistTemplate.WORKLIST_STRATEGY_PROPERTY, "");
+		assertSame(WorklistStrategy.REVERSE_POSTORDER, WorklistTemplate.getDefaultStrategy());
+	}
+}
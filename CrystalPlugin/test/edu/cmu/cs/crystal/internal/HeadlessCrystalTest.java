@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.AbstractCrystalMethodAnalysis;
+import edu.cmu.cs.crystal.IAnalysisReporter.SEVERITY;
+import edu.cmu.cs.crystal.IDependentAnalysis;
+import edu.cmu.cs.crystal.analysis.alias.MayAliasAnalysis;
+
+public class HeadlessCrystalTest {
+
+	private File root;
+
+	@Before
+	public void setUp() throws IOException {
+		root = File.createTempFile("crystal", "src");
+		root.delete();
+		new File(root, "p").mkdirs();
+		write("p/A.java", "package p;\npublic class A {\n  void m() {\n    new B().foo();\n  }\n}\n");
+		write("p/B.java", "package p;\npublic class B {\n  void foo() { bar(); }\n  void bar() { }\n}\n");
+		write("p/C.java", "package p;\npublic class C extends B {\n  void baz() { foo(); }\n}\n");
+	}
+
+	@After
+	public void tearDown() {
+		for (String f : new String[] { "p/A.java", "p/B.java", "p/C.java", "p", "" })
+			new File(root, f).delete();
+	}
+
+	@Test
+	public void testAnalyzeSourceTree() {
+		for (int parallelism = 1; parallelism <= 3; parallelism++) {
+			Crystal crystal = new Crystal();
+			crystal.setParallelism(parallelism);
+			// 1 file per batch, batches of 2, and all files in one batch
+			crystal.setParseBatchSize(parallelism == 3 ? 16 : parallelism);
+			crystal.registerAnalysis(new CallAnalysis());
+			HeadlessCrystal headless = new HeadlessCrystal(crystal);
+			headless.addSourceRoot(root.getPath());
+			assertEquals(3, headless.findSourceFiles().size());
+			
+			StringWriter out = new StringWriter();
+			FileAnalysisReporter reporter = new FileAnalysisReporter(out);
+			headless.runAnalyses(Collections.singleton("CallAnalysis"), reporter, null);
+			reporter.close();
+			
+			String p = root.getPath() + File.separator + "p" + File.separator;
+			String nl = System.getProperty("line.separator");
+			assertEquals(
+					p + "A.java:4: warning: [CallAnalysis] call to p.B.foo" + nl +
+					p + "B.java:3: warning: [CallAnalysis] call to p.B.bar" + nl +
+					p + "C.java:3: warning: [CallAnalysis] call to p.B.foo" + nl, 
+					out.toString());
+		}
+	}
+
+	@Test
+	public void testStreaming() {
+		Crystal crystal = new Crystal();
+		crystal.setParallelism(2);
+		crystal.setParseBatchSize(1);
+		crystal.setStreaming(true);
+		crystal.registerAnalysis(new CallAnalysis());
+		HeadlessCrystal headless = new HeadlessCrystal(crystal);
+		headless.addSourceRoot(root.getPath());
+		
+		StringWriter out = new StringWriter();
+		FileAnalysisReporter reporter = new FileAnalysisReporter(out);
+		headless.runAnalyses(Collections.singleton("CallAnalysis"), reporter, null);
+		reporter.close();
+		
+		assertEquals(3, out.toString().split(System.getProperty("line.separator")).length);
+		assertEquals(3, crystal.getMemoryGauge().getUnitsFinished());
+		assertTrue(crystal.getMemoryGauge().getMaxUnitsInFlight() <= 2);
+	}
+
+	@Test
+	public void testSharedFlowAnalyses() {
+		Crystal crystal = new Crystal();
+		// registered before the analysis it depends on
+		crystal.registerAnalysis(new AliasUser());
+		crystal.registerAnalysis(new MayAliasAnalysis());
+		HeadlessCrystal headless = new HeadlessCrystal(crystal);
+		headless.addSourceRoot(root.getPath());
+		
+		StringWriter out = new StringWriter();
+		FileAnalysisReporter reporter = new FileAnalysisReporter(out);
+		headless.runAnalyses(new LinkedHashSet<String>(Arrays.asList("AliasUser", "MayAliasAnalysis")), 
+				reporter, null);
+		reporter.close();
+		
+		String p = root.getPath() + File.separator + "p" + File.separator;
+		String nl = System.getProperty("line.separator");
+		assertEquals(
+				p + "A.java:3: info: [AliasUser] shared" + nl +
+				p + "B.java:3: info: [AliasUser] shared" + nl +
+				p + "B.java:4: info: [AliasUser] shared" + nl +
+				p + "C.java:3: info: [AliasUser] shared" + nl, 
+				out.toString());
+	}
+
+	private void write(String path, String contents) throws IOException {
+		FileWriter w = new FileWriter(new File(root, path));
+		w.write(contents);
+		w.close();
+	}
+
+	/** Reports whether the may-alias results for each method were published already. */
+	private static class AliasUser extends AbstractCrystalMethodAnalysis 
+			implements IDependentAnalysis {
+		public Set<String> getDependencies() {
+			return Collections.singleton("MayAliasAnalysis");
+		}
+		
+		@Override
+		public void analyzeMethod(MethodDeclaration d) {
+			boolean shared = analysisInput.getComUnitFlowAnalyses().unwrap().get(
+					MayAliasAnalysis.RESULTS).isSome();
+			MayAliasAnalysis.getFlowAnalysis(analysisInput).getResultsAfter(d);
+			getReporter().reportUserProblem(shared ? "shared" : "not shared", d, getName());
+		}
+	}
+
+	/** Reports every method call, with bindings resolved across files. */
+	private static class CallAnalysis extends AbstractCrystalMethodAnalysis {
+		@Override
+		public void analyzeMethod(MethodDeclaration d) {
+			d.accept(new ASTVisitor() {
+				@Override
+				public void endVisit(MethodInvocation node) {
+					IMethodBinding m = node.resolveMethodBinding();
+					getReporter().reportUserProblem("call to " + 
+							m.getDeclaringClass().getQualifiedName() + "." + m.getName(), 
+							node, getName(), SEVERITY.WARNING);
+				}
+			});
+		}
+	}
+}
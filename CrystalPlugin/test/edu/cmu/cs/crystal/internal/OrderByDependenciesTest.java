@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.AbstractCompilationUnitAnalysis;
+import edu.cmu.cs.crystal.ICrystalAnalysis;
+import edu.cmu.cs.crystal.IDependentAnalysis;
+
+public class OrderByDependenciesTest {
+
+	@Test
+	public void testRequestedOrder() {
+		assertOrder(new String[] { "c", "a", "b" }, 
+				new Analysis("c"), new Analysis("a"), new DependentAnalysis("b"));
+	}
+
+	@Test
+	public void testDependenciesFirst() {
+		assertOrder(new String[] { "a", "c", "b", "d" }, 
+				new DependentAnalysis("b", "a", "c"), new Analysis("c"), 
+				new Analysis("a"), new DependentAnalysis("d", "a"));
+	}
+
+	@Test
+	public void testTransitiveDependencies() {
+		assertOrder(new String[] { "a", "b", "c" }, 
+				new DependentAnalysis("c", "b"), new DependentAnalysis("b", "a"), new Analysis("a"));
+	}
+
+	@Test
+	public void testMissingDependencies() {
+		assertOrder(new String[] { "b", "a" }, 
+				new DependentAnalysis("b", "x"), new DependentAnalysis("a", "y", "b"));
+	}
+
+	@Test
+	public void testCycles() {
+		assertOrder(new String[] { "b", "a" }, 
+				new DependentAnalysis("a", "b"), new DependentAnalysis("b", "a"));
+		assertOrder(new String[] { "c", "b", "a", "d" }, 
+				new DependentAnalysis("a", "b"), new DependentAnalysis("b", "c"), 
+				new DependentAnalysis("c", "a"), new DependentAnalysis("d", "d"));
+	}
+
+	private static void assertOrder(String[] expected, ICrystalAnalysis... analyses) {
+		List<String> names = new ArrayList<String>(analyses.length);
+		for (ICrystalAnalysis analysis : Crystal.orderByDependencies(Arrays.asList(analyses)))
+			names.add(analysis.getName());
+		assertEquals(Arrays.asList(expected), names);
+	}
+
+	private static class Analysis extends AbstractCompilationUnitAnalysis {
+		private final String name;
+
+		Analysis(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void analyzeCompilationUnit(CompilationUnit d) {
+			// never runs
+		}
+	}
+
+	private static class DependentAnalysis extends Analysis implements IDependentAnalysis {
+		private final Set<String> dependencies;
+
+		DependentAnalysis(String name, String... dependencies) {
+			super(name);
+			this.dependencies = new LinkedHashSet<String>(Arrays.asList(dependencies));
+		}
+
+		public Set<String> getDependencies() {
+			return dependencies;
+		}
+	}
+}
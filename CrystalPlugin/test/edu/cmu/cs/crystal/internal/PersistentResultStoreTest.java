@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.IAnalysisReporter.SEVERITY;
+import edu.cmu.cs.crystal.internal.IncrementalMethodCache.Problem;
+
+public class PersistentResultStoreTest {
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("crystal", ".results");
+		file.delete();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testReopen() throws IOException {
+		PersistentResultStore s = new PersistentResultStore(file, "1", 1 << 20);
+		s.put("a", new Problem[] { new Problem("p", 3, "A", SEVERITY.ERROR), new Problem("q", 0, "A", null) });
+		s.put("b", new Problem[0]);
+		s.close();
+		
+		s = new PersistentResultStore(file, "1", 1 << 20);
+		assertEquals(2, s.size());
+		Problem[] a = s.get("a");
+		assertEquals(2, a.length);
+		assertEquals("p", a[0].description);
+		assertEquals(3, a[0].node);
+		assertEquals(SEVERITY.ERROR, a[0].severity);
+		assertNull(a[1].severity);
+		assertEquals(0, s.get("b").length);
+		assertNull(s.get("c"));
+		s.close();
+	}
+
+	@Test
+	public void testOtherVersionDiscarded() throws IOException {
+		PersistentResultStore s = new PersistentResultStore(file, "1", 1 << 20);
+		s.put("a", new Problem[0]);
+		s.close();
+		s = new PersistentResultStore(file, "2", 1 << 20);
+		assertNull(s.get("a"));
+		s.close();
+	}
+
+	@Test
+	public void testIncompleteEntryDropped() throws IOException {
+		PersistentResultStore s = new PersistentResultStore(file, "1", 1 << 20);
+		s.put("a", new Problem[0]);
+		s.put("b", new Problem[] { new Problem("p", 3, "A", null) });
+		s.close();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 3);
+		raf.close();
+		
+		s = new PersistentResultStore(file, "1", 1 << 20);
+		assertNotNull(s.get("a"));
+		assertNull(s.get("b"));
+		// can append after the truncated entry
+		s.put("c", new Problem[0]);
+		s.close();
+		s = new PersistentResultStore(file, "1", 1 << 20);
+		assertEquals(2, s.size());
+		s.close();
+	}
+
+	@Test
+	public void testCompaction() throws IOException {
+		PersistentResultStore s = new PersistentResultStore(file, "1", 1000);
+		for (int i = 0; i < 100; i++) {
+			s.put("entry" + i, new Problem[] { new Problem("problem", i, "A", null) });
+			if (i % 10 == 0)
+				// keep using the first entry
+				assertNotNull(s.get("entry0"));
+		}
+		s.close();
+		assertTrue(file.length() <= 1000);
+		s = new PersistentResultStore(file, "1", 1000);
+		assertTrue(s.size() < 100);
+		assertNotNull(s.get("entry99"));
+		assertNotNull(s.get("entry0"));
+		s.close();
+	}
+}
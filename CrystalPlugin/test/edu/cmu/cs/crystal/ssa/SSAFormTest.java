@@ -0,0 +1,258 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.ssa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.IfStatement;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.WhileStatement;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.cfg.ICFGNode;
+import edu.cmu.cs.crystal.cfg.eclipse.EclipseNodeFirstCFG;
+import edu.cmu.cs.crystal.tac.eclipse.CompilationUnitTACs;
+import edu.cmu.cs.crystal.tac.eclipse.EclipseTAC;
+import edu.cmu.cs.crystal.tac.model.SourceVariableDeclaration;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.TempVariable;
+import edu.cmu.cs.crystal.tac.model.ThisVariable;
+
+public class SSAFormTest {
+	
+	private static final String SOURCE =
+		"public class A {\n" +
+		"  int f;\n" +
+		"  int m(boolean c, int n) {\n" +
+		"    int x = 0;\n" +
+		"    if (c) x = 1; else x = 2;\n" +
+		"    int y = x;\n" +
+		"    int i = 0;\n" +
+		"    while (i < n) i = i + 1;\n" +
+		"    int dead = 0;\n" +
+		"    if (c) dead = 1;\n" +
+		"    return y + i + f;\n" +
+		"  }\n" +
+		"  int finallyCopies(int n) {\n" +
+		"    int x = 0;\n" +
+		"    try {\n" +
+		"      if (n == 0) return 1;\n" +
+		"      if (n == 1) return 2;\n" +
+		"      if (n == 2) throw new IllegalStateException();\n" +
+		"      x = n;\n" +
+		"    }\n" +
+		"    finally {\n" +
+		"      x = x + 1;\n" +
+		"    }\n" +
+		"    return x;\n" +
+		"  }\n" +
+		"}\n";
+
+	private List<MethodDeclaration> methods;
+	private CompilationUnitTACs tacs;
+	private EclipseTAC tac;
+	private SSAForm form;
+	
+	@Before
+	public void setUp() {
+		methods = parse(SOURCE);
+		tacs = new CompilationUnitTACs();
+		MethodDeclaration m = methods.get(0);
+		tac = tacs.getMethodTAC(m);
+		form = new SSAForm(m, new EclipseNodeFirstCFG(m), tac);
+	}
+
+	@Test
+	public void testPhisAtJoins() {
+		List<SSAValue> phis = phis(form);
+		assertEquals(phis.toString(), 2, phis.size());
+		
+		SSAValue x = phis.get(0);
+		assertTrue(x.getNode().getASTNode() instanceof IfStatement);
+		assertTrue(x.getVersion() > 0);
+		assertEquals(set(definition(form, tac, find(methods.get(0), "x=1")), 
+				definition(form, tac, find(methods.get(0), "x=2"))), 
+				new HashSet<SSAValue>(x.getOperands()));
+		// the copy into y reads the merged value
+		SSAInstruction copy = form.getInstructions(tac.instructions(find(methods.get(0), "y=x")).get(1)).get(0);
+		assertSame(x, copy.getReadValue(x.getVariable()));
+		assertTrue(x.getInstructionUses().contains(copy));
+		
+		SSAValue i = phis.get(1);
+		assertTrue(i.getNode().getASTNode() instanceof WhileStatement);
+		SSAValue increment = definition(form, tac, find(methods.get(0), "i=i + 1"));
+		assertEquals(set(definition(form, tac, find(methods.get(0), "i=0")), increment), 
+				new HashSet<SSAValue>(i.getOperands()));
+		// the loop condition and the increment read the merged value
+		assertSame(i, form.getInstructions(tac.instruction(find(methods.get(0), "i < n"))).get(0).getReadValue(i.getVariable()));
+		assertTrue(i.getPhiUses().isEmpty());
+		assertEquals(Arrays.asList(i), increment.getPhiUses());
+	}
+
+	@Test
+	public void testPruning() {
+		SSAValue dead = definition(form, tac, find(methods.get(0), "dead=1"));
+		for(SSAValue phi : phis(form)) {
+			// dead is assigned on both paths of the if statement but never read
+			assertFalse(phi.toString(), phi.getVariable().equals(dead.getVariable()));
+			// temporaries only live within control flow graph nodes
+			assertFalse(phi.toString(), phi.getVariable() instanceof TempVariable);
+		}
+		assertTrue(dead.getInstructionUses().isEmpty());
+		assertTrue(dead.getPhiUses().isEmpty());
+	}
+
+	@Test
+	public void testEntryValues() {
+		// this is read without being defined
+		SSAInstruction load = form.getInstructions(tac.instruction(find(methods.get(0), "f"))).get(0);
+		assertEquals(1, load.getReadValues().size());
+		SSAValue self = load.getReadValues().get(0);
+		assertTrue(self.getVariable() instanceof ThisVariable);
+		assertSame(SSAValue.Kind.ENTRY, self.getKind());
+		assertEquals(0, self.getVersion());
+		assertNull(self.getNode());
+		assertNull(self.getDefinition());
+		assertSame(self, form.getEntryValue(tac.thisVariable()));
+		
+		// parameters are defined by their declarations
+		SSAInstruction condition = form.getInstructions(tac.instruction(find(methods.get(0), "i < n"))).get(0);
+		SSAValue n = condition.getReadValues().get(1);
+		assertSame(SSAValue.Kind.DEFINITION, n.getKind());
+		assertTrue(n.getDefinition().getInstruction() instanceof SourceVariableDeclaration);
+		assertTrue(((SourceVariableDeclaration) n.getDefinition().getInstruction()).isFormalParameter());
+		assertNull(form.getEntryValue(n.getVariable()));
+		
+		for(SSAValue value : form.getValues()) {
+			if(value != self)
+				assertFalse(value.toString(), SSAValue.Kind.ENTRY.equals(value.getKind()));
+		}
+	}
+
+	@Test
+	public void testDuplicatedFinally() {
+		MethodDeclaration m = methods.get(1);
+		EclipseTAC finallyTac = tacs.getMethodTAC(m);
+		List<TACInstruction> increment = finallyTac.instructions(find(m, "x=x + 1"));
+		assertFalse(increment.isEmpty());
+		
+		// the original for falling through, one copy for both returns, one for the throw
+		SSAForm shared = new SSAForm(m, new EclipseNodeFirstCFG(m, false), finallyTac);
+		// the original and one copy for every exit
+		SSAForm duplicated = new SSAForm(m, new EclipseNodeFirstCFG(m, true), finallyTac);
+		for(TACInstruction instr : increment) {
+			assertCopies(3, shared.getInstructions(instr));
+			assertCopies(4, duplicated.getInstructions(instr));
+		}
+	}
+	
+	private static void assertCopies(int expected, List<SSAInstruction> copies) {
+		assertEquals(expected, copies.size());
+		Set<ICFGNode<ASTNode>> nodes = new HashSet<ICFGNode<ASTNode>>();
+		Set<SSAValue> defined = new HashSet<SSAValue>();
+		for(SSAInstruction copy : copies) {
+			nodes.add(copy.getNode());
+			assertNotNull(copy.getDefinedValue());
+			defined.add(copy.getDefinedValue());
+		}
+		// every copy is on its own node and defines its own value
+		assertEquals(expected, nodes.size());
+		assertEquals(expected, defined.size());
+	}
+	
+	private static List<SSAValue> phis(SSAForm form) {
+		List<SSAValue> result = new LinkedList<SSAValue>();
+		for(SSAValue value : form.getValues()) {
+			if(SSAValue.Kind.PHI.equals(value.getKind()))
+				result.add(value);
+		}
+		return result;
+	}
+	
+	/**
+	 * @return the value defined by the last instruction for the given node
+	 */
+	private static SSAValue definition(SSAForm form, EclipseTAC tac, ASTNode node) {
+		List<TACInstruction> instrs = tac.instructions(node);
+		List<SSAInstruction> result = form.getInstructions(instrs.get(instrs.size() - 1));
+		assertEquals(1, result.size());
+		return result.get(0).getDefinedValue();
+	}
+	
+	private static Set<SSAValue> set(SSAValue... values) {
+		return new HashSet<SSAValue>(Arrays.asList(values));
+	}
+
+	/**
+	 * @return the first node in the given method that prints as the given string
+	 */
+	private static ASTNode find(MethodDeclaration m, final String source) {
+		final List<ASTNode> result = new LinkedList<ASTNode>();
+		m.getBody().accept(new ASTVisitor() {
+			@Override
+			public void preVisit(ASTNode node) {
+				if(node.toString().equals(source))
+					result.add(node);
+			}
+		});
+		assertFalse("Not found: " + source, result.isEmpty());
+		return result.get(0);
+	}
+
+	private static List<MethodDeclaration> parse(String source) {
+		ASTParser parser = ASTParser.newParser(AST.JLS3);
+		Map options = JavaCore.getOptions();
+		JavaCore.setComplianceOptions(JavaCore.VERSION_1_5, options);
+		parser.setCompilerOptions(options);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setEnvironment(new String[0], new String[0], null, true);
+		parser.setUnitName("A.java");
+		parser.setResolveBindings(true);
+		parser.setSource(source.toCharArray());
+		final List<MethodDeclaration> result = new LinkedList<MethodDeclaration>();
+		((CompilationUnit) parser.createAST(null)).accept(new ASTVisitor() {
+			@Override
+			public boolean visit(MethodDeclaration node) {
+				result.add(node);
+				return false;
+			}
+		});
+		return result;
+	}
+}
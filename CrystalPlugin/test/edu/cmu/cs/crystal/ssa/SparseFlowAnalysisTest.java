@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.ssa;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.analysis.constant.BooleanConstantLE;
+import edu.cmu.cs.crystal.analysis.constant.ConstantTransferFunction;
+import edu.cmu.cs.crystal.analysis.constant.SparseConstantTransferFunction;
+import edu.cmu.cs.crystal.simple.TupleLatticeElement;
+import edu.cmu.cs.crystal.tac.TACFlowAnalysis;
+import edu.cmu.cs.crystal.tac.eclipse.CompilationUnitTACs;
+import edu.cmu.cs.crystal.tac.eclipse.EclipseTAC;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.Variable;
+import edu.cmu.cs.crystal.test.StressSources;
+
+/**
+ * Compares sparse constant propagation with the dense, branch-sensitive 
+ * {@link ConstantTransferFunction}.
+ */
+public class SparseFlowAnalysisTest {
+	
+	private static final String SOURCE =
+		"public class B {\n" +
+		"  boolean f;\n" +
+		"  boolean m(boolean c, int n) {\n" +
+		"    boolean t = true;\n" +
+		"    boolean u = !t;\n" +
+		"    boolean v = u;\n" +
+		"    boolean w = c;\n" +
+		"    if (n > 0) v = !v; else v = true;\n" +
+		"    boolean z = f;\n" +
+		"    while (n > 0) { u = !u; n--; }\n" +
+		"    boolean k = false;\n" +
+		"    for (int i = 0; i < n; i++) k = !k;\n" +
+		"    try { w = t; } finally { z = !t; }\n" +
+		"    if (w) z = v;\n" +
+		"    return t && u || v || z || k;\n" +
+		"  }\n" +
+		"}\n";
+
+	@Test
+	public void testConstants() {
+		List<MethodDeclaration> methods = parse(SOURCE, "B.java");
+		CompilationUnitTACs tacs = new CompilationUnitTACs();
+		SparseFlowAnalysis<BooleanConstantLE> sparse = 
+			new SparseFlowAnalysis<BooleanConstantLE>(new SparseConstantTransferFunction(), tacs);
+		EclipseTAC tac = tacs.getMethodTAC(methods.get(0));
+		
+		assertSame(BooleanConstantLE.TRUE, result(sparse, tac, methods.get(0), "t=true"));
+		assertSame(BooleanConstantLE.FALSE, result(sparse, tac, methods.get(0), "u=!t"));
+		// same value on both paths
+		assertSame(BooleanConstantLE.TRUE, result(sparse, tac, methods.get(0), "v=!v"));
+		// different values around the loop
+		assertSame(BooleanConstantLE.UNKNOWN, result(sparse, tac, methods.get(0), "k=!k"));
+		// parameters and fields are unknown
+		assertSame(BooleanConstantLE.UNKNOWN, result(sparse, tac, methods.get(0), "w=c"));
+		assertSame(BooleanConstantLE.UNKNOWN, result(sparse, tac, methods.get(0), "z=f"));
+	}
+
+	@Test
+	public void testAgreesWithConstantPropagation() {
+		assertAgreement(SOURCE, "B.java");
+		assertAgreement(StressSources.manyTryFinally(4), "Stress.java");
+		assertAgreement(StressSources.deepNesting(4), "Stress.java");
+	}
+	
+	private static void assertAgreement(String source, String unitName) {
+		final CompilationUnitTACs tacs = new CompilationUnitTACs();
+		final SparseFlowAnalysis<BooleanConstantLE> sparse = 
+			new SparseFlowAnalysis<BooleanConstantLE>(new SparseConstantTransferFunction(), tacs);
+		final TACFlowAnalysis<TupleLatticeElement<Variable, BooleanConstantLE>> dense = 
+			new TACFlowAnalysis<TupleLatticeElement<Variable, BooleanConstantLE>>(new ConstantTransferFunction(), tacs);
+		final int[] count = new int[1];
+		for(MethodDeclaration m : parse(source, unitName)) {
+			final EclipseTAC tac = tacs.getMethodTAC(m);
+			m.getBody().accept(new ASTVisitor() {
+				@Override
+				public void postVisit(ASTNode node) {
+					for(TACInstruction instr : tac.instructions(node)) {
+						Variable target = SSAForm.getDefinedVariable(instr);
+						if(target == null)
+							continue;
+						BooleanConstantLE result = sparse.getResult(instr);
+						if(result == null)
+							// unreachable
+							continue;
+						assertSame(instr.toString(), dense.getResultsAfter(instr).get(target), result);
+						count[0]++;
+					}
+				}
+			});
+		}
+		assertTrue(count[0] > 0);
+	}
+	
+	private static BooleanConstantLE result(SparseFlowAnalysis<BooleanConstantLE> sparse, EclipseTAC tac, 
+			MethodDeclaration m, String source) {
+		return sparse.getResult(last(tac, find(m, source)));
+	}
+	
+	private static TACInstruction last(EclipseTAC tac, ASTNode node) {
+		List<TACInstruction> instrs = tac.instructions(node);
+		assertFalse(instrs.isEmpty());
+		return instrs.get(instrs.size() - 1);
+	}
+
+	/**
+	 * @return the first node in the given method that prints as the given string
+	 */
+	private static ASTNode find(MethodDeclaration m, final String source) {
+		final List<ASTNode> result = new LinkedList<ASTNode>();
+		m.getBody().accept(new ASTVisitor() {
+			@Override
+			public void preVisit(ASTNode node) {
+				if(node.toString().equals(source))
+					result.add(node);
+			}
+		});
+		assertFalse("Not found: " + source, result.isEmpty());
+		return result.get(0);
+	}
+
+	private static List<MethodDeclaration> parse(String source, String unitName) {
+		ASTParser parser = ASTParser.newParser(AST.JLS3);
+		Map options = JavaCore.getOptions();
+		JavaCore.setComplianceOptions(JavaCore.VERSION_1_5, options);
+		parser.setCompilerOptions(options);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setEnvironment(new String[0], new String[0], null, true);
+		parser.setUnitName(unitName);
+		parser.setResolveBindings(true);
+		parser.setSource(source.toCharArray());
+		final List<MethodDeclaration> result = new LinkedList<MethodDeclaration>();
+		((CompilationUnit) parser.createAST(null)).accept(new ASTVisitor() {
+			@Override
+			public boolean visit(MethodDeclaration node) {
+				result.add(node);
+				return false;
+			}
+		});
+		return result;
+	}
+}
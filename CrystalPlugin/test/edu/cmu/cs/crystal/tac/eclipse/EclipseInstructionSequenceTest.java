@@ -0,0 +1,348 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.tac.eclipse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.analysis.constant.BooleanConstantLE;
+import edu.cmu.cs.crystal.analysis.constant.ConstantTransferFunction;
+import edu.cmu.cs.crystal.analysis.live.LiveVariableLE;
+import edu.cmu.cs.crystal.analysis.live.LiveVariableLatticeOps;
+import edu.cmu.cs.crystal.analysis.live.LiveVariableTransferFunction;
+import edu.cmu.cs.crystal.analysis.reaching.ReachingDefinitionsTransferFunction;
+import edu.cmu.cs.crystal.bitvector.BitVector;
+import edu.cmu.cs.crystal.flow.AnalysisDirection;
+import edu.cmu.cs.crystal.flow.ILabel;
+import edu.cmu.cs.crystal.flow.ILatticeOperations;
+import edu.cmu.cs.crystal.flow.IResult;
+import edu.cmu.cs.crystal.simple.TupleLatticeElement;
+import edu.cmu.cs.crystal.simple.TupleLatticeOperations;
+import edu.cmu.cs.crystal.tac.ITACBranchSensitiveTransferFunction;
+import edu.cmu.cs.crystal.tac.ITACTransferFunction;
+import edu.cmu.cs.crystal.tac.TACFlowAnalysis;
+import edu.cmu.cs.crystal.tac.eclipse.EclipseInstructionSequence.SequenceResults;
+import edu.cmu.cs.crystal.tac.model.BinaryOperation;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.Variable;
+
+/**
+ * Tests that results derived for all instructions in a sequence at once agree with
+ * results derived for individual instructions, and that flow analyses derive them
+ * again after switching methods.
+ */
+public class EclipseInstructionSequenceTest {
+
+	private static final String SOURCE =
+		"public class A {\n" +
+		"  int m(int x, int y) {\n" +
+		"    boolean b = x < y;\n" +
+		"    x++;\n" +
+		"    y += x;\n" +
+		"    int z = ++x;\n" +
+		"    b &= z > y;\n" +
+		"    while (x < y) x--;\n" +
+		"    return b ? x + y : z;\n" +
+		"  }\n" +
+		"  int n(int x) {\n" +
+		"    x += 2;\n" +
+		"    return x--;\n" +
+		"  }\n" +
+		"}\n";
+
+	@Test
+	public void testForwardDeriveResults() {
+		List<MethodDeclaration> methods = parse(SOURCE);
+		CompilationUnitTACs tacs = new CompilationUnitTACs();
+		ReachingDefinitionsTransferFunction tf = new ReachingDefinitionsTransferFunction();
+		checkSequences(tf, new TACFlowAnalysis<BitVector>(tf, tacs), tacs, methods);
+	}
+
+	@Test
+	public void testBackwardDeriveResults() {
+		List<MethodDeclaration> methods = parse(SOURCE);
+		CompilationUnitTACs tacs = new CompilationUnitTACs();
+		LiveVariableTransferFunction tf = new LiveVariableTransferFunction();
+		checkSequences(tf, new TACFlowAnalysis<TupleLatticeElement<Variable, LiveVariableLE>>(tf, tacs), 
+				tacs, methods);
+	}
+
+	@Test
+	public void testBranchSensitiveDeriveResults() {
+		List<MethodDeclaration> methods = parse(SOURCE);
+		CompilationUnitTACs tacs = new CompilationUnitTACs();
+		ConstantTransferFunction tf = new ConstantTransferFunction();
+		checkSequences(tf, new TACFlowAnalysis<TupleLatticeElement<Variable, BooleanConstantLE>>(tf, tacs), 
+				tacs, methods);
+	}
+
+	@Test
+	public void testSwitchToMethodClearsDerivedResults() {
+		List<MethodDeclaration> methods = parse(SOURCE);
+		CompilationUnitTACs tacs = new CompilationUnitTACs();
+		Counter counter = new Counter();
+		checkDerivedResultsCleared(
+				new TACFlowAnalysis<TupleLatticeElement<Variable, LiveVariableLE>>(
+						new CountingLiveVariables(counter), tacs), 
+				counter, tacs, methods);
+		
+		tacs = new CompilationUnitTACs();
+		counter = new Counter();
+		checkDerivedResultsCleared(
+				new TACFlowAnalysis<TupleLatticeElement<Variable, BooleanConstantLE>>(
+						new CountingConstants(counter), tacs), 
+				counter, tacs, methods);
+	}
+
+	@Test
+	public void testMutableResultsNotShared() {
+		List<MethodDeclaration> methods = parse(SOURCE);
+		CompilationUnitTACs tacs = new CompilationUnitTACs();
+		TACFlowAnalysis<TupleLatticeElement<Variable, LiveVariableLE>> fa = 
+			new TACFlowAnalysis<TupleLatticeElement<Variable, LiveVariableLE>>(
+					new MutableLiveVariables(), tacs);
+		TACInstruction first = sequences(tacs, methods.get(0)).get(0).getInstructions()[0];
+		// this is never used in the method
+		Variable unused = tacs.getMethodTAC(methods.get(0)).thisVariable();
+		
+		TupleLatticeElement<Variable, LiveVariableLE> result = fa.getResultsBefore(first);
+		assertEquals(LiveVariableLE.DEAD, result.get(unused));
+		result.put(unused, LiveVariableLE.LIVE);
+		assertEquals("Modified result was handed out again", 
+				LiveVariableLE.DEAD, fa.getResultsBefore(first).get(unused));
+	}
+
+	private static <LE> void checkSequences(ITACTransferFunction<LE> tf, TACFlowAnalysis<LE> fa, 
+			CompilationUnitTACs tacs, List<MethodDeclaration> methods) {
+		ILatticeOperations<LE> ops = tf.getLatticeOperations();
+		int count = 0;
+		for(MethodDeclaration m : methods) {
+			for(EclipseInstructionSequence seq : sequences(tacs, m)) {
+				ASTNode node = seq.getNode();
+				// also switches the transfer function's context to the method
+				LE incoming = isBackward(tf) ? fa.getResultsAfterCFG(node) : fa.getResultsBeforeCFG(node);
+				SequenceResults<LE> results = seq.deriveResults(tf, ops, incoming);
+				for(TACInstruction target : targets(seq)) {
+					for(boolean after : new boolean[] { false, true }) {
+						LE expected = seq.deriveResult(tf, target, ops.copy(incoming), after);
+						assertEquivalent(ops, expected, results.get(target, after), node);
+						if(target != seq) {
+							assertEquivalent(ops, expected, 
+									after ? fa.getResultsAfter(target) : fa.getResultsBefore(target), node);
+						}
+					}
+				}
+				count++;
+			}
+		}
+		assertTrue("No instruction sequences found", count > 0);
+	}
+
+	private static <LE> void checkSequences(ITACBranchSensitiveTransferFunction<LE> tf, TACFlowAnalysis<LE> fa, 
+			CompilationUnitTACs tacs, List<MethodDeclaration> methods) {
+		ILatticeOperations<LE> ops = tf.getLatticeOperations();
+		int count = 0;
+		for(MethodDeclaration m : methods) {
+			for(EclipseInstructionSequence seq : sequences(tacs, m)) {
+				ASTNode node = seq.getNode();
+				// also switches the transfer function's context to the method
+				LE incoming = isBackward(tf) ? fa.getResultsAfterCFG(node) : fa.getResultsBeforeCFG(node);
+				List<ILabel> labels = new ArrayList<ILabel>(isBackward(tf) ? 
+						fa.getLabeledResultsBefore(node).keySet() : fa.getLabeledResultsAfter(node).keySet());
+				SequenceResults<IResult<LE>> results = seq.deriveResults(tf, labels, ops, incoming);
+				for(TACInstruction target : targets(seq)) {
+					for(boolean after : new boolean[] { false, true }) {
+						IResult<LE> expected = seq.deriveResult(tf, labels, target, ops.copy(incoming), after);
+						assertEquivalent(ops, expected, results.get(target, after), node);
+						if(target != seq) {
+							assertEquivalent(ops, expected, 
+									after ? fa.getLabeledResultsAfter(target) : fa.getLabeledResultsBefore(target), node);
+						}
+					}
+				}
+				count++;
+			}
+		}
+		assertTrue("No instruction sequences found", count > 0);
+	}
+
+	private static void checkDerivedResultsCleared(TACFlowAnalysis<?> fa, Counter binops, 
+			CompilationUnitTACs tacs, List<MethodDeclaration> methods) {
+		EclipseInstructionSequence seq = null;
+		for(EclipseInstructionSequence s : sequences(tacs, methods.get(0))) {
+			if(seq == null && s.getInstructions()[s.getInstructions().length - 2] instanceof BinaryOperation)
+				seq = s;
+		}
+		TACInstruction first = seq.getInstructions()[0];
+		
+		fa.getResultsAfterCFG(seq.getNode());
+		int analyzed = binops.count;
+		fa.getLabeledResultsAfter(first);
+		int derived = binops.count;
+		assertTrue("Results should be derived for the sequence", derived > analyzed);
+		fa.getLabeledResultsBefore(first);
+		assertEquals("Results should be derived once", derived, binops.count);
+		
+		// switch to the other method and back
+		fa.getResultsAfterCFG(sequences(tacs, methods.get(1)).get(0).getNode());
+		fa.getResultsAfterCFG(seq.getNode());
+		analyzed = binops.count;
+		fa.getLabeledResultsAfter(first);
+		assertTrue("Results should be derived again", binops.count > analyzed);
+	}
+
+	private static <LE> void assertEquivalent(ILatticeOperations<LE> ops, LE expected, LE actual, ASTNode node) {
+		assertTrue(expected + " vs. " + actual, 
+				ops.atLeastAsPrecise(expected, actual, node) && ops.atLeastAsPrecise(actual, expected, node));
+	}
+
+	private static <LE> void assertEquivalent(ILatticeOperations<LE> ops, IResult<LE> expected, IResult<LE> actual, 
+			ASTNode node) {
+		assertEquals(expected.keySet(), actual.keySet());
+		for(ILabel label : expected.keySet())
+			assertEquivalent(ops, expected.get(label), actual.get(label), node);
+	}
+
+	private static boolean isBackward(ITACTransferFunction<?> tf) {
+		return tf.getAnalysisDirection() == AnalysisDirection.BACKWARD_ANALYSIS;
+	}
+
+	private static boolean isBackward(ITACBranchSensitiveTransferFunction<?> tf) {
+		return tf.getAnalysisDirection() == AnalysisDirection.BACKWARD_ANALYSIS;
+	}
+
+	/**
+	 * @return the sequence itself followed by all its instructions
+	 */
+	private static List<TACInstruction> targets(EclipseInstructionSequence seq) {
+		List<TACInstruction> result = new LinkedList<TACInstruction>();
+		result.add(seq);
+		for(TACInstruction instr : seq.getInstructions())
+			result.add(instr);
+		return result;
+	}
+
+	private static List<EclipseInstructionSequence> sequences(CompilationUnitTACs tacs, MethodDeclaration m) {
+		final EclipseTAC tac = tacs.getMethodTAC(m);
+		final List<EclipseInstructionSequence> result = new LinkedList<EclipseInstructionSequence>();
+		m.getBody().accept(new ASTVisitor() {
+			@Override
+			public void postVisit(ASTNode node) {
+				TACInstruction instr = tac.instruction(node);
+				if(instr instanceof EclipseInstructionSequence)
+					result.add((EclipseInstructionSequence) instr);
+			}
+		});
+		return result;
+	}
+
+	private static List<MethodDeclaration> parse(String source) {
+		ASTParser parser = ASTParser.newParser(AST.JLS3);
+		Map options = JavaCore.getOptions();
+		JavaCore.setComplianceOptions(JavaCore.VERSION_1_5, options);
+		parser.setCompilerOptions(options);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setEnvironment(new String[0], new String[0], null, true);
+		parser.setUnitName("A.java");
+		parser.setResolveBindings(true);
+		parser.setSource(source.toCharArray());
+		final List<MethodDeclaration> result = new LinkedList<MethodDeclaration>();
+		((CompilationUnit) parser.createAST(null)).accept(new ASTVisitor() {
+			@Override
+			public boolean visit(MethodDeclaration node) {
+				result.add(node);
+				return false;
+			}
+		});
+		return result;
+	}
+
+	private static class Counter {
+		int count;
+	}
+
+	/**
+	 * Live variables that count transfers over binary operations.
+	 */
+	private static class CountingLiveVariables extends LiveVariableTransferFunction {
+		private final Counter binops;
+		
+		CountingLiveVariables(Counter binops) {
+			this.binops = binops;
+		}
+
+		@Override
+		public TupleLatticeElement<Variable, LiveVariableLE> transfer(BinaryOperation binop,
+				TupleLatticeElement<Variable, LiveVariableLE> value) {
+			binops.count++;
+			return super.transfer(binop, value);
+		}
+	}
+
+	/**
+	 * Live variables with lattice operations that do not support freezing.
+	 */
+	private static class MutableLiveVariables extends LiveVariableTransferFunction {
+		private final TupleLatticeOperations<Variable, LiveVariableLE> ops = 
+			new TupleLatticeOperations<Variable, LiveVariableLE>(new LiveVariableLatticeOps(), LiveVariableLE.DEAD);
+
+		@Override
+		public ILatticeOperations<TupleLatticeElement<Variable, LiveVariableLE>> getLatticeOperations() {
+			return ops;
+		}
+
+		@Override
+		public TupleLatticeElement<Variable, LiveVariableLE> createEntryValue(MethodDeclaration d) {
+			return ops.getDefault();
+		}
+	}
+
+	/**
+	 * Constant propagation that counts transfers over binary operations.
+	 */
+	private static class CountingConstants extends ConstantTransferFunction {
+		private final Counter binops;
+		
+		CountingConstants(Counter binops) {
+			this.binops = binops;
+		}
+
+		@Override
+		public IResult<TupleLatticeElement<Variable, BooleanConstantLE>> transfer(BinaryOperation binop, 
+				List<ILabel> labels, TupleLatticeElement<Variable, BooleanConstantLE> value) {
+			binops.count++;
+			return super.transfer(binop, labels, value);
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.bitvector.BitVector;
+import edu.cmu.cs.crystal.bitvector.BitVectorLatticeOperations;
+import edu.cmu.cs.crystal.bitvector.DenseNumbering;
+
+public class BitVectorTest {
+
+	@Test
+	public void testSetAndClear() {
+		BitVector v = BitVector.EMPTY.set(3).set(70);
+		
+		assertTrue(v.get(3));
+		assertTrue(v.get(70));
+		assertFalse(v.get(4));
+		assertEquals(2, v.cardinality());
+		assertEquals(BitVector.of(3), v.clear(70));
+		assertEquals(BitVector.EMPTY, v.clear(3).clear(70));
+		assertTrue(BitVector.EMPTY.isEmpty());
+	}
+	
+	@Test
+	public void testSetOperations() {
+		BitVector a = BitVector.of(1, 2, 65);
+		BitVector b = BitVector.of(2, 3);
+		
+		assertEquals(BitVector.of(1, 2, 3, 65), a.union(b));
+		assertEquals(BitVector.of(2), a.intersection(b));
+		assertEquals(BitVector.of(1, 65), a.difference(b));
+		assertEquals(BitVector.EMPTY, a.intersection(BitVector.of(64)));
+	}
+	
+	@Test
+	public void testComplemented() {
+		BitVector notTwo = BitVector.FULL.clear(2);
+		
+		assertTrue(notTwo.isComplemented());
+		assertTrue(notTwo.get(1000));
+		assertFalse(notTwo.get(2));
+		assertEquals(BitVector.of(2), notTwo.complement());
+		assertEquals(BitVector.of(1), BitVector.of(1, 2).intersection(notTwo));
+		assertEquals(BitVector.FULL, notTwo.union(BitVector.of(2)));
+		assertTrue(BitVector.FULL.isFull());
+		assertEquals(BitVector.FULL.clear(2).clear(5), notTwo.difference(BitVector.of(5)));
+		assertEquals(BitVector.of(2), BitVector.of(1, 2).difference(notTwo));
+	}
+	
+	@Test
+	public void testGenKill() {
+		BitVector in = BitVector.of(1, 2, 3);
+		
+		assertEquals(BitVector.of(1, 3, 4), in.genKill(BitVector.of(4), BitVector.of(2)));
+		// gen wins over kill for the same bit
+		assertEquals(BitVector.of(1, 2, 3), in.genKill(BitVector.of(2), BitVector.of(2)));
+		assertEquals(BitVector.FULL.clear(2).set(9).clear(9).set(9), 
+				BitVector.FULL.genKill(BitVector.of(9), BitVector.of(2, 9)));
+	}
+	
+	@Test
+	public void testSubsetAndEquality() {
+		assertTrue(BitVector.of(1).isSubsetOf(BitVector.of(1, 2)));
+		assertFalse(BitVector.of(1, 2).isSubsetOf(BitVector.of(1)));
+		assertTrue(BitVector.of(1, 200).isSubsetOf(BitVector.FULL.clear(2)));
+		assertFalse(BitVector.FULL.clear(2).isSubsetOf(BitVector.of(1, 200)));
+		assertTrue(BitVector.EMPTY.isSubsetOf(BitVector.EMPTY));
+		
+		// trailing zero words do not affect equality
+		BitVector trimmed = BitVector.of(1, 130).clear(130);
+		assertEquals(BitVector.of(1), trimmed);
+		assertEquals(BitVector.of(1).hashCode(), trimmed.hashCode());
+		assertFalse(BitVector.EMPTY.equals(BitVector.FULL));
+	}
+	
+	@Test
+	public void testMayOperations() {
+		BitVectorLatticeOperations ops = BitVectorLatticeOperations.mayOperations();
+		
+		assertFalse(ops.isMust());
+		assertEquals(BitVector.EMPTY, ops.bottom());
+		assertEquals(BitVector.of(1, 2), ops.join(BitVector.of(1), BitVector.of(2)));
+		assertTrue(ops.atLeastAsPrecise(BitVector.of(1), BitVector.of(1, 2)));
+		assertFalse(ops.atLeastAsPrecise(BitVector.of(1, 2), BitVector.of(1)));
+	}
+	
+	@Test
+	public void testMustOperations() {
+		BitVectorLatticeOperations ops = BitVectorLatticeOperations.mustOperations();
+		
+		assertTrue(ops.isMust());
+		assertEquals(BitVector.FULL, ops.bottom());
+		assertEquals(BitVector.of(2), ops.join(BitVector.of(1, 2), BitVector.of(2, 3)));
+		assertEquals(BitVector.of(1), ops.join(ops.bottom(), BitVector.of(1)));
+		assertTrue(ops.atLeastAsPrecise(BitVector.of(1, 2), BitVector.of(1)));
+		assertFalse(ops.atLeastAsPrecise(BitVector.of(1), BitVector.of(1, 2)));
+	}
+	
+	@Test
+	public void testNumbering() {
+		DenseNumbering<String> n = new DenseNumbering<String>();
+		
+		assertEquals(0, n.number("a"));
+		assertEquals(1, n.number("b"));
+		assertEquals(0, n.number("a"));
+		assertEquals(-1, n.getNumber("c"));
+		assertEquals(2, n.size());
+		assertEquals(Arrays.asList("b"), n.getElements(BitVector.of(1, 5)));
+	}
+}
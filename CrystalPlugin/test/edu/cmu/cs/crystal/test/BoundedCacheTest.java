@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.util.BoundedCache;
+
+public class BoundedCacheTest {
+
+	@Test
+	public void testHitsAndMisses() {
+		BoundedCache<String, Integer> c = new BoundedCache<String, Integer>(2, false);
+		assertNull(c.get("a"));
+		c.put("a", 1);
+		assertEquals(Integer.valueOf(1), c.get("a"));
+		assertEquals(1, c.getHits());
+		assertEquals(1, c.getMisses());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		BoundedCache<String, Integer> c = new BoundedCache<String, Integer>(2, false);
+		c.put("a", 1);
+		c.put("b", 2);
+		c.get("a");
+		c.put("c", 3);
+		assertEquals(2, c.size());
+		assertEquals(1, c.getEvictions());
+		assertNull(c.get("b"));
+		assertEquals(Integer.valueOf(1), c.get("a"));
+		assertEquals(Integer.valueOf(3), c.get("c"));
+	}
+
+	@Test
+	public void testShrink() {
+		BoundedCache<String, Integer> c = new BoundedCache<String, Integer>(3, true);
+		c.put("a", 1);
+		c.put("b", 2);
+		c.put("c", 3);
+		c.setMaxSize(1);
+		assertEquals(1, c.size());
+		assertEquals(Integer.valueOf(3), c.get("c"));
+		c.setMaxSize(0);
+		c.put("d", 4);
+		assertEquals(0, c.size());
+	}
+
+}
@@ -0,0 +1,419 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Statement;
+
+import edu.cmu.cs.crystal.analysis.alias.AliasLE;
+import edu.cmu.cs.crystal.analysis.alias.MayAliasTransferFunction;
+import edu.cmu.cs.crystal.analysis.assignment.DefiniteAssignmentTransferFunction;
+import edu.cmu.cs.crystal.analysis.constant.BooleanConstantLE;
+import edu.cmu.cs.crystal.analysis.constant.ConstantTransferFunction;
+import edu.cmu.cs.crystal.analysis.constant.SparseConstantTransferFunction;
+import edu.cmu.cs.crystal.analysis.live.LiveVariableBitVectorTransferFunction;
+import edu.cmu.cs.crystal.analysis.live.LiveVariableLE;
+import edu.cmu.cs.crystal.analysis.live.LiveVariableTransferFunction;
+import edu.cmu.cs.crystal.analysis.reaching.ReachingDefinitionsTransferFunction;
+import edu.cmu.cs.crystal.bitvector.BitVector;
+import edu.cmu.cs.crystal.cfg.IControlFlowGraph;
+import edu.cmu.cs.crystal.cfg.eclipse.EclipseCFG;
+import edu.cmu.cs.crystal.cfg.eclipse.EclipseNodeFirstCFG;
+import edu.cmu.cs.crystal.internal.WorkspaceUtilities;
+import edu.cmu.cs.crystal.simple.TupleLatticeElement;
+import edu.cmu.cs.crystal.ssa.SSAForm;
+import edu.cmu.cs.crystal.ssa.SparseFlowAnalysis;
+import edu.cmu.cs.crystal.tac.TACFlowAnalysis;
+import edu.cmu.cs.crystal.tac.eclipse.CompilationUnitTACs;
+import edu.cmu.cs.crystal.tac.eclipse.EclipseTAC;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.Variable;
+
+/**
+ * Measures the individual stages of the dataflow engine: parsing, CFG construction
+ * with shared and with {@link EclipseNodeFirstCFG#EclipseNodeFirstCFG(MethodDeclaration, boolean) 
+ * duplicated} finally blocks, TAC construction, worklist fixpoints for the live variable
+ * (also with duplicated finally blocks), constant and may-alias
+ * analyses as well as the {@link edu.cmu.cs.crystal.bitvector bit vector} analyses,
+ * SSA construction and sparse constant propagation with {@link SparseFlowAnalysis},
+ * and result queries through {@link edu.cmu.cs.crystal.flow.MotherFlowAnalysis}.
+ * Compilation units are parsed with {@link ASTParser} outside of a workspace, so the
+ * benchmark can be run as a plain Java program, with the plugin's dependencies on the classpath.
+ * <p>
+ * The inputs are the {@link StressSources generated stress tests} and any number of real
+ * Java source files.  Real files are resolved against the running classpath and the
+ * source folders given with <code>-Dcrystal.bench.sourcepath</code>.
+ * Without files on the command line, a few of Crystal's own classes are used, which
+ * requires running the benchmark from the plugin's root directory.
+ * <p>
+ * Each stage is run for a number of warmup operations before measuring, and every operation
+ * redoes the stage's work from scratch, using the results of earlier stages computed up-front.  
+ * Timings are reported in milliseconds per operation.  Stages that run worklist fixpoints
+ * also report how often a single operation transferred over a node.
+ * <p>
+ * Usage: <code>DataflowBenchmark [file.java ...]</code>, with the following options
+ * given as system properties:
+ * <ul>
+ * <li><code>crystal.bench.warmup</code>: warmup operations per stage (default 5)</li>
+ * <li><code>crystal.bench.iterations</code>: measured operations per stage (default 10)</li>
+ * <li><code>crystal.bench.stages</code>: comma-separated list of stages to run (default all)</li>
+ * <li><code>crystal.bench.scale</code>: size multiplier for the stress inputs (default 1)</li>
+ * <li><code>crystal.bench.sourcepath</code>: source folders to resolve real files against 
+ * (default <code>src</code> and <code>analyses</code>)</li>
+ * <li><code>edu.cmu.cs.crystal.worklist.strategy</code>: 
+ * {@link edu.cmu.cs.crystal.flow.worklist.WorklistStrategy worklist strategy} for fixpoints 
+ * (default <code>REVERSE_POSTORDER</code>)</li>
+ * </ul>
+ * 
+ * @see StressSources
+ */
+public class DataflowBenchmark {
+	
+	private static final String[] DEFAULT_FILES = {
+		"src/edu/cmu/cs/crystal/cfg/eclipse/EclipseCFG.java",
+		"src/edu/cmu/cs/crystal/tac/eclipse/EclipseTAC.java",
+		"analyses/edu/cmu/cs/crystal/analysis/alias/MayAliasTransferFunction.java",
+	};
+	
+	/**
+	 * A compilation unit to run the stages on, together with the results of 
+	 * earlier stages that later stages depend on.
+	 */
+	private static class Input {
+		final String name;
+		final char[] source;
+		final String[] classpath;
+		final String[] sourcepath;
+		CompilationUnit unit;
+		List<MethodDeclaration> methods;
+		CompilationUnitTACs tacs;
+		TACFlowAnalysis<?> analysis;
+		
+		Input(String name, String source, String[] classpath, String[] sourcepath) {
+			this.name = name;
+			this.source = source.toCharArray();
+			this.classpath = classpath;
+			this.sourcepath = sourcepath;
+		}
+		
+		CompilationUnit parse() {
+			ASTParser parser = ASTParser.newParser(AST.JLS3);
+			Map options = JavaCore.getOptions();
+			JavaCore.setComplianceOptions(JavaCore.VERSION_1_5, options);
+			parser.setCompilerOptions(options);
+			parser.setKind(ASTParser.K_COMPILATION_UNIT);
+			parser.setEnvironment(classpath, sourcepath, null, true);
+			parser.setUnitName(name);
+			parser.setResolveBindings(true);
+			parser.setSource(source);
+			return (CompilationUnit) parser.createAST(null);
+		}
+		
+		void setUp() {
+			unit = parse();
+			methods = WorkspaceUtilities.scanForMethodDeclarationsFromAST(unit);
+			tacs = new CompilationUnitTACs();
+			for(MethodDeclaration m : methods)
+				tacs.getMethodTAC(m);
+			analysis = new TACFlowAnalysis<TupleLatticeElement<Variable, AliasLE>>(new MayAliasTransferFunction(null), tacs);
+			analysis.setResultCacheSize(methods.size() + 1);
+			for(MethodDeclaration m : methods)
+				analysis.getEndResults(m);
+		}
+	}
+	
+	/**
+	 * The individual stages.  Each stage returns a checksum so the work 
+	 * it does cannot be optimized away.
+	 */
+	private enum Stage {
+		PARSE {
+			@Override
+			long run(Input input) {
+				return input.parse().getLength();
+			}
+		},
+		CFG {
+			@Override
+			long run(Input input) {
+				long result = 0;
+				for(MethodDeclaration m : input.methods)
+					result += size(new EclipseCFG(m));
+				return result;
+			}
+		},
+		NODE_FIRST_CFG {
+			@Override
+			long run(Input input) {
+				long result = 0;
+				for(MethodDeclaration m : input.methods)
+					result += size(new EclipseNodeFirstCFG(m));
+				return result;
+			}
+		},
+		DUPLICATED_FINALLY_CFG {
+			@Override
+			long run(Input input) {
+				long result = 0;
+				for(MethodDeclaration m : input.methods)
+					result += size(new EclipseNodeFirstCFG(m, true));
+				return result;
+			}
+		},
+		TAC {
+			@Override
+			long run(Input input) {
+				CompilationUnitTACs tacs = new CompilationUnitTACs();
+				long result = 0;
+				for(MethodDeclaration m : input.methods) {
+					EclipseTAC tac = tacs.getMethodTAC(m);
+					for(ASTNode node : nodes(m)) {
+						TACInstruction instr = tac.instruction(node);
+						if(instr != null)
+							result++;
+					}
+				}
+				return result;
+			}
+		},
+		LIVE {
+			@Override
+			long run(Input input) {
+				return fixpoints(input, 
+						new TACFlowAnalysis<TupleLatticeElement<Variable, LiveVariableLE>>(
+								new LiveVariableTransferFunction(), input.tacs));
+			}
+		},
+		LIVE_DUPLICATED_FINALLY {
+			@Override
+			long run(Input input) {
+				TACFlowAnalysis<TupleLatticeElement<Variable, LiveVariableLE>> analysis = 
+					new TACFlowAnalysis<TupleLatticeElement<Variable, LiveVariableLE>>(
+							new LiveVariableTransferFunction(), input.tacs);
+				analysis.setDuplicateFinally(true);
+				return fixpoints(input, analysis);
+			}
+		},
+		LIVE_BIT_VECTOR {
+			@Override
+			long run(Input input) {
+				return fixpoints(input, 
+						new TACFlowAnalysis<BitVector>(new LiveVariableBitVectorTransferFunction(), input.tacs));
+			}
+		},
+		REACHING_DEFINITIONS {
+			@Override
+			long run(Input input) {
+				return fixpoints(input, 
+						new TACFlowAnalysis<BitVector>(new ReachingDefinitionsTransferFunction(), input.tacs));
+			}
+		},
+		DEFINITE_ASSIGNMENT {
+			@Override
+			long run(Input input) {
+				return fixpoints(input, 
+						new TACFlowAnalysis<BitVector>(new DefiniteAssignmentTransferFunction(), input.tacs));
+			}
+		},
+		CONSTANT {
+			@Override
+			long run(Input input) {
+				return fixpoints(input, 
+						new TACFlowAnalysis<TupleLatticeElement<Variable, BooleanConstantLE>>(
+								new ConstantTransferFunction(), input.tacs));
+			}
+		},
+		SPARSE_CONSTANT {
+			@Override
+			long run(Input input) {
+				SparseFlowAnalysis<BooleanConstantLE> analysis = 
+					new SparseFlowAnalysis<BooleanConstantLE>(new SparseConstantTransferFunction(), input.tacs);
+				long result = 0;
+				for(MethodDeclaration m : input.methods)
+					result += analysis.getSSAForm(m).getValues().size();
+				return result;
+			}
+		},
+		SSA {
+			@Override
+			long run(Input input) {
+				long result = 0;
+				for(MethodDeclaration m : input.methods)
+					result += new SSAForm(m, new EclipseNodeFirstCFG(m), input.tacs.getMethodTAC(m)).getValues().size();
+				return result;
+			}
+		},
+		ALIAS {
+			@Override
+			long run(Input input) {
+				return fixpoints(input, 
+						new TACFlowAnalysis<TupleLatticeElement<Variable, AliasLE>>(new MayAliasTransferFunction(null), input.tacs));
+			}
+		},
+		QUERY {
+			@Override
+			long run(Input input) {
+				long result = 0;
+				for(MethodDeclaration m : input.methods) {
+					for(ASTNode node : nodes(m)) {
+						if(input.analysis.getResultsBefore(node) != null)
+							result++;
+						if(input.analysis.getResultsAfter(node) != null)
+							result++;
+					}
+				}
+				return result;
+			}
+		};
+		
+		abstract long run(Input input);
+	}
+	
+	/** Nodes transferred over by the last {@link #fixpoints(Input, TACFlowAnalysis)}, or -1. */
+	private static long transfers;
+	
+	public static void main(String[] args) throws IOException {
+		int warmup = Integer.getInteger("crystal.bench.warmup", 5);
+		int iterations = Integer.getInteger("crystal.bench.iterations", 10);
+		int scale = Integer.getInteger("crystal.bench.scale", 1);
+		List<Stage> stages = new ArrayList<Stage>();
+		String stageNames = System.getProperty("crystal.bench.stages");
+		if(stageNames == null) {
+			for(Stage s : Stage.values())
+				stages.add(s);
+		}
+		else {
+			for(String s : stageNames.split(","))
+				stages.add(Stage.valueOf(s.trim().toUpperCase()));
+		}
+		
+		String[] classpath = System.getProperty("java.class.path").split(File.pathSeparator);
+		String[] sourcepath = System.getProperty("crystal.bench.sourcepath", 
+				"src" + File.pathSeparator + "analyses").split(File.pathSeparator);
+		
+		Map<String, String> stress = new LinkedHashMap<String, String>();
+		stress.put("deepNesting", StressSources.deepNesting(40 * scale));
+		stress.put("hugeSwitch", StressSources.hugeSwitch(500 * scale));
+		stress.put("manyTryFinally", StressSources.manyTryFinally(60 * scale));
+		stress.put("nestedTryFinally", StressSources.nestedTryFinally(12 * scale));
+		stress.put("straightLine", StressSources.straightLine(2000 * scale));
+		
+		List<Input> inputs = new ArrayList<Input>();
+		for(Map.Entry<String, String> s : stress.entrySet())
+			inputs.add(new Input(s.getKey(), s.getValue(), new String[0], new String[0]));
+		for(String file : (args.length > 0 ? args : DEFAULT_FILES))
+			inputs.add(new Input(new File(file).getName(), read(new File(file)), classpath, sourcepath));
+		
+		System.out.println("input\tstage\tms/op\tmin ms/op\ttransfers/op\tchecksum");
+		for(Input input : inputs) {
+			input.setUp();
+			for(Stage stage : stages) {
+				long checksum = 0;
+				transfers = -1;
+				for(int i = 0; i < warmup; ++i)
+					checksum += stage.run(input);
+				long total = 0;
+				long min = Long.MAX_VALUE;
+				for(int i = 0; i < iterations; ++i) {
+					long start = System.nanoTime();
+					checksum += stage.run(input);
+					long time = System.nanoTime() - start;
+					total += time;
+					min = Math.min(min, time);
+				}
+				System.out.println(input.name + "\t" + stage + "\t" 
+						+ format(total / Math.max(iterations, 1)) + "\t" + format(min) + "\t" 
+						+ (transfers < 0 ? "-" : String.valueOf(transfers)) + "\t" + checksum);
+			}
+		}
+	}
+
+	/**
+	 * Runs the given analysis on every method in the given input, 
+	 * using a fresh analysis so no results are cached.
+	 */
+	private static long fixpoints(Input input, TACFlowAnalysis<?> analysis) {
+		long result = 0;
+		for(MethodDeclaration m : input.methods) {
+			if(analysis.getEndResults(m) != null)
+				result++;
+		}
+		transfers = analysis.getTransferCount();
+		return result;
+	}
+
+	private static long size(IControlFlowGraph<?> cfg) {
+		// touch the graph so constructing it is not optimized away
+		return cfg.getEndNode() == null ? 0 : 1;
+	}
+
+	/**
+	 * Expressions and statements in the given method, the nodes that 
+	 * have TAC instructions and analysis results associated with them.
+	 */
+	private static List<ASTNode> nodes(MethodDeclaration m) {
+		final List<ASTNode> result = new ArrayList<ASTNode>();
+		m.accept(new ASTVisitor() {
+			@Override
+			public void postVisit(ASTNode node) {
+				if(node instanceof Expression || node instanceof Statement)
+					result.add(node);
+			}
+		});
+		return result;
+	}
+
+	private static String format(long nanos) {
+		return String.format("%.3f", nanos / 1000000.0);
+	}
+
+	private static String read(File file) throws IOException {
+		Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8");
+		try {
+			StringBuilder result = new StringBuilder();
+			char[] buf = new char[8192];
+			int n;
+			while((n = in.read(buf)) > 0)
+				result.append(buf, 0, n);
+			return result.toString();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+}
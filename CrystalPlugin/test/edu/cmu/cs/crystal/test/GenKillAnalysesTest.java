@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.VariableDeclaration;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.analysis.assignment.DefiniteAssignmentTransferFunction;
+import edu.cmu.cs.crystal.analysis.reaching.ReachingDefinitionsTransferFunction;
+import edu.cmu.cs.crystal.bitvector.BitVector;
+import edu.cmu.cs.crystal.tac.TACFlowAnalysis;
+import edu.cmu.cs.crystal.tac.eclipse.CompilationUnitTACs;
+import edu.cmu.cs.crystal.tac.eclipse.EclipseTAC;
+import edu.cmu.cs.crystal.tac.model.SourceVariableDeclaration;
+import edu.cmu.cs.crystal.tac.model.TACInstruction;
+import edu.cmu.cs.crystal.tac.model.Variable;
+
+/**
+ * Checks the results of {@link ReachingDefinitionsTransferFunction} and
+ * {@link DefiniteAssignmentTransferFunction} on a method with branches and a loop.
+ * Definitions are identified by the line they appear on.
+ */
+public class GenKillAnalysesTest {
+
+	private static final String SOURCE =
+		"public class A {\n" +             // 1
+		"  int m(int p, boolean c) {\n" +  // 2
+		"    int x = 1;\n" +               // 3
+		"    int y;\n" +                   // 4
+		"    if (c) {\n" +                 // 5
+		"      x = 2;\n" +                 // 6
+		"      y = 3;\n" +                 // 7
+		"    } else\n" +                   // 8
+		"      y = 4;\n" +                 // 9
+		"    int r1 = x + y;\n" +          // 10
+		"    int z;\n" +                   // 11
+		"    while (p > 0) {\n" +          // 12
+		"      x = p;\n" +                 // 13
+		"      z = p;\n" +                 // 14
+		"      p--;\n" +                   // 15
+		"    }\n" +                        // 16
+		"    int r2 = x;\n" +              // 17
+		"    x = 5;\n" +                   // 18
+		"    return x + p + r1 + r2;\n" +  // 19
+		"  }\n" +
+		"}\n";
+
+	private MethodDeclaration m;
+	private CompilationUnitTACs tacs;
+	private EclipseTAC tac;
+
+	@Before
+	public void setUp() {
+		m = parse(SOURCE);
+		tacs = new CompilationUnitTACs();
+		tac = tacs.getMethodTAC(m);
+	}
+
+	@Test
+	public void testReachingDefinitions() {
+		ReachingDefinitionsTransferFunction tf = new ReachingDefinitionsTransferFunction();
+		TACFlowAnalysis<BitVector> fa = new TACFlowAnalysis<BitVector>(tf, tacs);
+		Variable p = variable("p");
+		Variable x = variable("x");
+		Variable y = variable("y");
+
+		// both branches reach, and x=2 kills x=1 only on one of them
+		BitVector atR1 = fa.getResultsBeforeAST(find("r1=x + y"));
+		assertEquals(lines(3, 6), lines(tf.getReachingDefinitions(atR1, x, m)));
+		assertEquals(lines(7, 9), lines(tf.getReachingDefinitions(atR1, y, m)));
+		// parameters are defined by their declaration
+		List<TACInstruction> paramDefs = tf.getReachingDefinitions(atR1, p, m);
+		assertEquals(1, paramDefs.size());
+		assertTrue(paramDefs.get(0) instanceof SourceVariableDeclaration);
+
+		// the loop may or may not execute
+		BitVector atR2 = fa.getResultsBeforeAST(find("r2=x"));
+		assertEquals(lines(3, 6, 13), lines(tf.getReachingDefinitions(atR2, x, m)));
+		assertEquals(lines(2, 15), lines(tf.getReachingDefinitions(atR2, p, m)));
+		// definitions inside the loop reach its beginning
+		BitVector inLoop = fa.getResultsBeforeAST(find("x=p"));
+		assertEquals(lines(3, 6, 13), lines(tf.getReachingDefinitions(inLoop, x, m)));
+
+		// x=5 kills all other definitions of x but none of the other variables
+		BitVector atReturn = fa.getResultsBeforeAST(find("x + p + r1 + r2"));
+		assertEquals(lines(18), lines(tf.getReachingDefinitions(atReturn, x, m)));
+		assertEquals(lines(7, 9), lines(tf.getReachingDefinitions(atReturn, y, m)));
+		assertEquals(lines(2, 15), lines(tf.getReachingDefinitions(atReturn, p, m)));
+	}
+
+	@Test
+	public void testDefiniteAssignment() {
+		DefiniteAssignmentTransferFunction tf = new DefiniteAssignmentTransferFunction();
+		TACFlowAnalysis<BitVector> fa = new TACFlowAnalysis<BitVector>(tf, tacs);
+		Variable p = variable("p");
+		Variable c = variable("c");
+		Variable x = variable("x");
+		Variable y = variable("y");
+		Variable z = variable("z");
+
+		// parameters are assigned, declared locals without initializer are not
+		BitVector atY3 = fa.getResultsBeforeAST(find("y=3"));
+		assertTrue(tf.holds(atY3, p, m));
+		assertTrue(tf.holds(atY3, c, m));
+		assertTrue(tf.holds(atY3, x, m));
+		assertFalse(tf.holds(atY3, y, m));
+
+		// y is assigned on both branches
+		BitVector atR1 = fa.getResultsBeforeAST(find("r1=x + y"));
+		assertTrue(tf.holds(atR1, x, m));
+		assertTrue(tf.holds(atR1, y, m));
+
+		// z is only assigned inside the loop, which may not execute
+		assertFalse(tf.holds(fa.getResultsBeforeAST(find("z=p")), z, m));
+		BitVector atR2 = fa.getResultsBeforeAST(find("r2=x"));
+		assertFalse(tf.holds(atR2, z, m));
+		assertTrue(tf.holds(atR2, x, m));
+		assertTrue(tf.holds(atR2, y, m));
+		assertTrue(tf.holds(atR2, p, m));
+	}
+
+	private Variable variable(final String name) {
+		final List<VariableDeclaration> result = new LinkedList<VariableDeclaration>();
+		m.accept(new ASTVisitor() {
+			@Override
+			public void endVisit(SingleVariableDeclaration node) {
+				if(node.getName().getIdentifier().equals(name))
+					result.add(node);
+			}
+			@Override
+			public void endVisit(VariableDeclarationFragment node) {
+				if(node.getName().getIdentifier().equals(name))
+					result.add(node);
+			}
+		});
+		assertEquals(name, 1, result.size());
+		return tac.sourceVariable(result.get(0).resolveBinding());
+	}
+
+	/**
+	 * @return the first node in the method that prints as the given string
+	 */
+	private ASTNode find(final String source) {
+		final List<ASTNode> result = new LinkedList<ASTNode>();
+		m.getBody().accept(new ASTVisitor() {
+			@Override
+			public void preVisit(ASTNode node) {
+				if(node.toString().equals(source))
+					result.add(node);
+			}
+		});
+		assertFalse("Not found: " + source, result.isEmpty());
+		return result.get(0);
+	}
+
+	private static Set<Integer> lines(int... lines) {
+		Set<Integer> result = new TreeSet<Integer>();
+		for(int line : lines)
+			result.add(line);
+		return result;
+	}
+
+	private static Set<Integer> lines(List<TACInstruction> defs) {
+		Set<Integer> result = new TreeSet<Integer>();
+		for(TACInstruction def : defs) {
+			ASTNode node = def.getNode();
+			result.add(((CompilationUnit) node.getRoot()).getLineNumber(node.getStartPosition()));
+		}
+		return result;
+	}
+
+	private static MethodDeclaration parse(String source) {
+		ASTParser parser = ASTParser.newParser(AST.JLS3);
+		Map options = JavaCore.getOptions();
+		JavaCore.setComplianceOptions(JavaCore.VERSION_1_5, options);
+		parser.setCompilerOptions(options);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setEnvironment(new String[0], new String[0], null, true);
+		parser.setUnitName("A.java");
+		parser.setResolveBindings(true);
+		parser.setSource(source.toCharArray());
+		final List<MethodDeclaration> result = new LinkedList<MethodDeclaration>();
+		((CompilationUnit) parser.createAST(null)).accept(new ASTVisitor() {
+			@Override
+			public boolean visit(MethodDeclaration node) {
+				result.add(node);
+				return false;
+			}
+		});
+		assertEquals(1, result.size());
+		return result.get(0);
+	}
+}
@@ -0,0 +1,255 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.ITypeRoot;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.AbstractCrystalMethodAnalysis;
+import edu.cmu.cs.crystal.IAnalysisReporter;
+import edu.cmu.cs.crystal.internal.Crystal;
+import edu.cmu.cs.crystal.internal.PersistentResultStore;
+
+/**
+ * Tests that incremental method analysis only re-analyzes changed methods
+ * and reports the same problems as a full run.
+ */
+public class IncrementalAnalysisTest {
+
+	private static final String SOURCE =
+		"public class A {\n" +
+		"  int f;\n" +
+		"  void m1() { helper(1); /* comment */ }\n" +
+		"  void m2() { helper(f); helper(2); }\n" +
+		"  void helper(int x) { }\n" +
+		"}\n";
+
+	private InvocationAnalysis analysis;
+	private ProblemCollector reporter;
+
+	@Before
+	public void setUp() {
+		analysis = new InvocationAnalysis();
+		analysis.setIncremental(true);
+		reporter = new ProblemCollector();
+	}
+
+	@Test
+	public void testUnchangedMethodsAreSkipped() {
+		run(SOURCE);
+		assertEquals(3, analysis.analyzed.size());
+		List<String> first = reporter.problems;
+		
+		// whitespace and comments don't matter
+		reporter = new ProblemCollector();
+		run(SOURCE.replace("/* comment */", "\n\n"));
+		assertEquals(0, analysis.analyzed.size());
+		assertEquals(3, analysis.getIncrementalCache().getHits());
+		assertEquals(3, analysis.getIncrementalCache().getMisses());
+		// problems are reported again, at the new positions
+		assertEquals(first.size(), reporter.problems.size());
+		assertEquals(first.get(0), reporter.problems.get(0));
+		assertEquals("helper@" + SOURCE.replace("/* comment */", "\n\n").lastIndexOf("helper(2)"), 
+				reporter.problems.get(2));
+	}
+
+	@Test
+	public void testChangedMethodsAreAnalyzed() {
+		run(SOURCE);
+		run(SOURCE.replace("helper(2)", "helper(3)"));
+		assertEquals(1, analysis.analyzed.size());
+		assertEquals("m2", analysis.analyzed.get(0));
+	}
+
+	@Test
+	public void testSignatureChangesInvalidateCallers() {
+		run(SOURCE);
+		run(SOURCE.replace("int f;", "long f;"));
+		assertEquals(1, analysis.analyzed.size());
+		assertEquals("m2", analysis.analyzed.get(0));
+		run(SOURCE.replace("int f;", "long f;").replace("void helper(int x)", "int helper(int x)"));
+		assertEquals(3, analysis.analyzed.size());
+	}
+
+	@Test
+	public void testConstantChangesInvalidateReaders() {
+		run(SOURCE.replace("int f;", "static final int f = 1;"));
+		run(SOURCE.replace("int f;", "static final int f = 2;"));
+		assertEquals(1, analysis.analyzed.size());
+		assertEquals("m2", analysis.analyzed.get(0));
+	}
+
+	@Test
+	public void testResultsSurviveRestart() throws IOException {
+		File file = File.createTempFile("crystal", ".results");
+		try {
+			analysis.getIncrementalCache().setStore(new PersistentResultStore(file, "1", 1 << 20));
+			run(SOURCE);
+			analysis.getIncrementalCache().setStore(null);
+			List<String> first = reporter.problems;
+			
+			// start over with an empty in-memory cache
+			setUp();
+			analysis.getIncrementalCache().setStore(new PersistentResultStore(file, "1", 1 << 20));
+			run(SOURCE.replace("helper(2)", "helper(3)"));
+			assertEquals(1, analysis.analyzed.size());
+			assertEquals(2, analysis.getIncrementalCache().getStoreHits());
+			assertEquals(first.get(0), reporter.problems.get(0));
+			analysis.getIncrementalCache().setStore(null);
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testNonIncremental() {
+		analysis.setIncremental(false);
+		run(SOURCE);
+		run(SOURCE);
+		assertEquals(3, analysis.analyzed.size());
+		assertEquals(6, reporter.problems.size());
+		assertEquals(0, analysis.getIncrementalCache().getHits());
+	}
+
+	@Test
+	public void testUnsupportedAnalysis() {
+		analysis.supported = false;
+		assertFalse(analysis.isIncremental());
+		run(SOURCE);
+		run(SOURCE);
+		assertEquals(3, analysis.analyzed.size());
+		assertEquals(0, analysis.getIncrementalCache().getHits());
+	}
+
+	@Test
+	public void testCrystalToggle() {
+		InvocationAnalysis unsupported = new InvocationAnalysis();
+		unsupported.supported = false;
+		Crystal crystal = new Crystal();
+		crystal.registerAnalysis(analysis);
+		crystal.registerAnalysis(unsupported);
+		crystal.setIncremental(false);
+		assertFalse(analysis.isIncremental());
+		crystal.setIncremental(true);
+		assertTrue(analysis.isIncremental());
+		assertFalse(unsupported.isIncremental());
+	}
+
+	@Test
+	public void testSystemProperty() {
+		String old = System.setProperty(AbstractCrystalMethodAnalysis.INCREMENTAL_PROPERTY, "true");
+		try {
+			assertTrue(new InvocationAnalysis().isIncremental());
+			analysis = new InvocationAnalysis();
+			analysis.supported = false;
+			assertFalse(analysis.isIncremental());
+		}
+		finally {
+			if (old == null)
+				System.clearProperty(AbstractCrystalMethodAnalysis.INCREMENTAL_PROPERTY);
+			else
+				System.setProperty(AbstractCrystalMethodAnalysis.INCREMENTAL_PROPERTY, old);
+		}
+	}
+
+	private void run(String source) {
+		ASTParser parser = ASTParser.newParser(AST.JLS3);
+		Map options = JavaCore.getOptions();
+		JavaCore.setComplianceOptions(JavaCore.VERSION_1_5, options);
+		parser.setCompilerOptions(options);
+		parser.setKind(ASTParser.K_COMPILATION_UNIT);
+		parser.setEnvironment(new String[0], new String[0], null, true);
+		parser.setUnitName("A.java");
+		parser.setResolveBindings(true);
+		parser.setSource(source.toCharArray());
+		analysis.analyzed.clear();
+		analysis.runAnalysis(reporter, null, null, (CompilationUnit) parser.createAST(null));
+	}
+
+	/** Reports every method invocation. */
+	private static class InvocationAnalysis extends AbstractCrystalMethodAnalysis {
+		final List<String> analyzed = new ArrayList<String>();
+		boolean supported = true;
+
+		@Override
+		protected boolean supportsIncremental() {
+			return supported;
+		}
+
+		@Override
+		public void analyzeMethod(MethodDeclaration d) {
+			analyzed.add(d.getName().getIdentifier());
+			d.accept(new ASTVisitor() {
+				@Override
+				public void endVisit(MethodInvocation node) {
+					getReporter().reportUserProblem(node.getName().getIdentifier(), 
+							node.getName(), getName());
+				}
+			});
+		}
+	}
+
+	private static class ProblemCollector implements IAnalysisReporter {
+		List<String> problems = new ArrayList<String>();
+
+		public void reportUserProblem(String problemDescription, ASTNode node,
+				String analysisName) {
+			problems.add(problemDescription + "@" + node.getStartPosition());
+		}
+
+		public void reportUserProblem(String problemDescription, ASTNode node,
+				String analysisName, SEVERITY severity) {
+			reportUserProblem(problemDescription, node, analysisName);
+		}
+
+		public PrintWriter debugOut() {
+			return new PrintWriter(System.out, true);
+		}
+
+		public PrintWriter userOut() {
+			return new PrintWriter(System.out, true);
+		}
+
+		public void clearMarkersForCompUnit(ITypeRoot compUnit) {
+			problems.clear();
+		}
+	}
+}
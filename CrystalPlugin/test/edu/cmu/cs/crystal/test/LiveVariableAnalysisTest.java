@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.analysis.live.LiveVariableAnalysis;
+import edu.cmu.cs.crystal.internal.Crystal;
+import edu.cmu.cs.crystal.internal.FileAnalysisReporter;
+import edu.cmu.cs.crystal.internal.HeadlessCrystal;
+
+/**
+ * Tests the dead assignment warnings of {@link LiveVariableAnalysis}, 
+ * whose facts are numbered per method.
+ */
+public class LiveVariableAnalysisTest {
+
+	private File root;
+
+	@Before
+	public void setUp() throws IOException {
+		root = File.createTempFile("crystal", "src");
+		root.delete();
+		new File(root, "p").mkdirs();
+		FileWriter w = new FileWriter(new File(root, "p/D.java"));
+		w.write(
+				"package p;\n" +
+				"public class D {\n" +
+				"  int f;\n" +
+				"  int m(int a) {\n" +
+				"    int x = a;\n" +
+				"    int y;\n" +
+				"    y = a;\n" +
+				"    x = x + 1;\n" +
+				"    Object o = new Object() {\n" +
+				"      int g;\n" +
+				"      public int hashCode() {\n" +
+				"        int u;\n" +
+				"        int v = g;\n" +
+				"        u = v;\n" +
+				"        u = 1;\n" +
+				"        return u;\n" +
+				"      }\n" +
+				"    };\n" +
+				"    return x;\n" +
+				"  }\n" +
+				"}\n");
+		w.close();
+	}
+
+	@After
+	public void tearDown() {
+		for (String f : new String[] { "p/D.java", "p", "" })
+			new File(root, f).delete();
+	}
+
+	@Test
+	public void testNestedClass() {
+		Crystal crystal = new Crystal();
+		crystal.registerAnalysis(new LiveVariableAnalysis());
+		HeadlessCrystal headless = new HeadlessCrystal(crystal);
+		headless.addSourceRoot(root.getPath());
+		
+		StringWriter out = run(headless);
+		
+		// assignments in the anonymous class are checked against the facts of its own method, 
+		// once while visiting the surrounding method and once while analyzing the nested one
+		String d = root.getPath() + File.separator + "p" + File.separator + "D.java";
+		String nl = System.getProperty("line.separator");
+		assertEquals(
+				d + ":7: warning: [LiveVariableAnalysis] The variable y is dead and is no longer used." + nl +
+				d + ":14: warning: [LiveVariableAnalysis] The variable u is dead and is no longer used." + nl +
+				d + ":14: warning: [LiveVariableAnalysis] The variable u is dead and is no longer used." + nl, 
+				out.toString());
+	}
+
+	@Test
+	public void testIncremental() {
+		LiveVariableAnalysis analysis = new LiveVariableAnalysis();
+		analysis.setIncremental(true);
+		assertTrue(analysis.isIncremental());
+		Crystal crystal = new Crystal();
+		crystal.registerAnalysis(analysis);
+		HeadlessCrystal headless = new HeadlessCrystal(crystal);
+		headless.addSourceRoot(root.getPath());
+		
+		String first = run(headless).toString();
+		assertEquals(0, analysis.getIncrementalCache().getHits());
+		assertEquals(2, analysis.getIncrementalCache().getMisses());
+		
+		// both methods are skipped, and their warnings are reported again
+		String second = run(headless).toString();
+		assertEquals(2, analysis.getIncrementalCache().getHits());
+		assertEquals(2, analysis.getIncrementalCache().getMisses());
+		assertEquals(first, second);
+	}
+	
+	private static StringWriter run(HeadlessCrystal headless) {
+		StringWriter out = new StringWriter();
+		FileAnalysisReporter reporter = new FileAnalysisReporter(out);
+		headless.runAnalyses(Collections.singleton("LiveVariableAnalysis"), reporter, null);
+		reporter.close();
+		return out;
+	}
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.util.Lambda3;
+import edu.cmu.cs.crystal.util.Pair;
+import edu.cmu.cs.crystal.util.PersistentHashMap;
+
+public class PersistentHashMapTest {
+
+	/** Key with a configurable hash code, to provoke collisions. */
+	private static class Key {
+		final int id;
+		final int hash;
+		Key(int id, int hash) {
+			this.id = id;
+			this.hash = hash;
+		}
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && ((Key) obj).id == id;
+		}
+		@Override
+		public String toString() {
+			return "k" + id;
+		}
+	}
+
+	@Test
+	public void testEmpty() {
+		PersistentHashMap<String, Integer> m = PersistentHashMap.empty();
+		assertTrue(m.isEmpty());
+		assertNull(m.get("x"));
+		assertSame(m, m.remove("x"));
+		assertFalse(m.iterator().hasNext());
+	}
+
+	@Test
+	public void testPutIsPersistent() {
+		PersistentHashMap<String, Integer> m1 = PersistentHashMap.<String, Integer>empty().put("x", 1);
+		PersistentHashMap<String, Integer> m2 = m1.put("y", 2);
+		PersistentHashMap<String, Integer> m3 = m2.put("x", 3);
+		assertEquals(1, m1.size());
+		assertEquals(2, m2.size());
+		assertEquals(2, m3.size());
+		assertEquals(1, m2.get("x").intValue());
+		assertEquals(3, m3.get("x").intValue());
+		assertNull(m1.get("y"));
+		assertSame(m3, m3.put("y", m3.get("y")));
+		assertEquals(1, m3.remove("x").size());
+		assertEquals(3, m3.get("x").intValue());
+	}
+
+	@Test
+	public void testAgainstHashMap() {
+		Random r = new Random(42);
+		// few distinct hash codes force collisions and deep tries
+		int[] hashes = { 0, 1, 32, 1024, 1 << 30, -1, 0x7fffffff };
+		HashMap<Key, Integer> expected = new HashMap<Key, Integer>();
+		PersistentHashMap<Key, Integer> m = PersistentHashMap.empty();
+		for(int i = 0; i < 5000; i++) {
+			int id = r.nextInt(200);
+			Key k = new Key(id, id % 3 == 0 ? hashes[id % hashes.length] : id * 0x9E3779B9);
+			if(r.nextInt(4) == 0) {
+				expected.remove(k);
+				m = m.remove(k);
+			}
+			else {
+				expected.put(k, i);
+				m = m.put(k, i);
+			}
+			assertEquals(expected.size(), m.size());
+		}
+		for(Map.Entry<Key, Integer> e : expected.entrySet())
+			assertEquals(e.getValue(), m.get(e.getKey()));
+		HashSet<Key> keys = new HashSet<Key>();
+		for(Pair<Key, Integer> e : m) {
+			assertTrue(keys.add(e.fst()));
+			assertEquals(expected.get(e.fst()), e.snd());
+		}
+		assertEquals(expected.keySet(), keys);
+		assertEquals(expected.keySet(), m.keySet());
+	}
+
+	@Test
+	public void testForEachDifference() {
+		PersistentHashMap<Key, Integer> m1 = PersistentHashMap.empty();
+		for(int i = 0; i < 1000; i++)
+			m1 = m1.put(new Key(i, i % 10 == 0 ? 7 : i * 31), i);
+		PersistentHashMap<Key, Integer> m2 = m1.put(new Key(5, 5 * 31), -5)
+			.put(new Key(20, 7), -20)
+			.remove(new Key(30, 7))
+			.put(new Key(2000, 2000), 2000);
+		
+		final Map<Key, Pair<Integer, Integer>> diffs = new HashMap<Key, Pair<Integer, Integer>>();
+		assertTrue(m1.forEachDifference(m2, new Lambda3<Key, Integer, Integer, Boolean>() {
+			public Boolean call(Key k, Integer v1, Integer v2) {
+				assertNull(diffs.put(k, new Pair<Integer, Integer>(v1, v2)));
+				return true;
+			}
+		}));
+		assertEquals(4, diffs.size());
+		assertEquals(new Pair<Integer, Integer>(5, -5), diffs.get(new Key(5, 5 * 31)));
+		assertEquals(new Pair<Integer, Integer>(20, -20), diffs.get(new Key(20, 7)));
+		assertEquals(new Pair<Integer, Integer>(30, null), diffs.get(new Key(30, 7)));
+		assertEquals(new Pair<Integer, Integer>(null, 2000), diffs.get(new Key(2000, 2000)));
+		
+		assertTrue(m1.forEachDifference(m1, new Lambda3<Key, Integer, Integer, Boolean>() {
+			public Boolean call(Key k, Integer v1, Integer v2) {
+				throw new AssertionError("No differences expected");
+			}
+		}));
+	}
+
+	@Test
+	public void testForEachDifferenceSameSlotSameValue() {
+		// different keys in the same slot, mapped to the same value object
+		final String live = "LIVE";
+		PersistentHashMap<Key, String> m1 = PersistentHashMap.<Key, String>empty().put(new Key(1, 1), live);
+		PersistentHashMap<Key, String> m2 = PersistentHashMap.<Key, String>empty().put(new Key(2, 33), live);
+		
+		final Map<Key, Pair<String, String>> diffs = new HashMap<Key, Pair<String, String>>();
+		assertTrue(m1.forEachDifference(m2, new Lambda3<Key, String, String, Boolean>() {
+			public Boolean call(Key k, String v1, String v2) {
+				assertNull(diffs.put(k, new Pair<String, String>(v1, v2)));
+				return true;
+			}
+		}));
+		assertEquals(2, diffs.size());
+		assertEquals(new Pair<String, String>(live, null), diffs.get(new Key(1, 1)));
+		assertEquals(new Pair<String, String>(null, live), diffs.get(new Key(2, 33)));
+	}
+}
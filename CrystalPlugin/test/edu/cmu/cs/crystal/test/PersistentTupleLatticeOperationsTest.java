@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.simple.FreezableTupleLatticeOperations;
+import edu.cmu.cs.crystal.simple.PersistentTupleLatticeOperations;
+import edu.cmu.cs.crystal.simple.TupleLatticeElement;
+
+/**
+ * Runs the tests in {@link TupleLatticeOperationsTest} with persistent tuples.
+ */
+public class PersistentTupleLatticeOperationsTest extends TupleLatticeOperationsTest {
+
+	@Override
+	protected FreezableTupleLatticeOperations<String, Integer> createOperations() {
+		return new PersistentTupleLatticeOperations<String, Integer>(new MaxOps(), 0);
+	}
+
+	@Test
+	public void testJoinDerivedTuples() {
+		TupleLatticeElement<String, Integer> t = ops.getDefault();
+		for(int i = 0; i < 100; i++)
+			t.put("v" + i, i);
+		ops.freeze(t);
+		
+		TupleLatticeElement<String, Integer> c = ops.copy(t);
+		c.put("v3", 50);
+		c.remove("v60");
+		c.put("w", 1);
+		ops.freeze(c);
+		
+		assertTrue(ops.atLeastAsPrecise(t, t, null));
+		assertFalse(ops.atLeastAsPrecise(c, t, null));
+		assertFalse(ops.atLeastAsPrecise(t, c, null));
+		
+		TupleLatticeElement<String, Integer> j = ops.join(t, c, null);
+		assertEquals(101, j.getKeySet().size());
+		assertEquals(50, j.get("v3").intValue());
+		assertEquals(60, j.get("v60").intValue());
+		assertEquals(1, j.get("w").intValue());
+		assertEquals(99, j.get("v99").intValue());
+		assertTrue(ops.atLeastAsPrecise(t, j, null));
+		assertTrue(ops.atLeastAsPrecise(c, j, null));
+	}
+
+	@Test
+	public void testSameSlotSameValue() {
+		// "a" and "A" land in the same slot of the underlying trie and map to the same Integer
+		TupleLatticeElement<String, Integer> a = ops.getDefault();
+		a.put("a", 5);
+		ops.freeze(a);
+		TupleLatticeElement<String, Integer> b = ops.getDefault();
+		b.put("A", 5);
+		ops.freeze(b);
+		
+		assertFalse(ops.atLeastAsPrecise(a, b, null));
+		assertFalse(ops.atLeastAsPrecise(b, a, null));
+		TupleLatticeElement<String, Integer> j = ops.join(a, b, null);
+		assertEquals(2, j.getKeySet().size());
+		assertEquals(5, j.get("a").intValue());
+		assertEquals(5, j.get("A").intValue());
+	}
+
+	@Test
+	public void testBottom() {
+		TupleLatticeElement<String, Integer> t = ops.getDefault();
+		t.put("x", 1);
+		TupleLatticeElement<String, Integer> bot = ops.bottom();
+		assertTrue(ops.atLeastAsPrecise(bot, t, null));
+		assertEquals(1, ops.join(bot, t, null).get("x").intValue());
+	}
+}
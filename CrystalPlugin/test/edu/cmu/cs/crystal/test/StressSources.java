@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.test;
+
+/**
+ * Generates Java sources that stress particular parts of the dataflow engine.
+ * Every generated compilation unit declares a single class <code>Stress</code>
+ * with one method <code>m</code>, and only uses <code>java.lang</code>, so it can be
+ * parsed with bindings without a workspace or classpath.
+ * 
+ * @see DataflowBenchmark
+ */
+public final class StressSources {
+	
+	private StressSources() {
+		// static methods only
+	}
+
+	/**
+	 * Nested loops and conditionals, <code>depth</code> levels deep.
+	 * Produces many back edges, so fixpoints need several passes.
+	 */
+	public static String deepNesting(int depth) {
+		StringBuilder body = new StringBuilder();
+		body.append("int x = 0;\n");
+		for(int i = 0; i < depth; ++i) {
+			String v = "i" + i;
+			if(i % 2 == 0)
+				body.append("for (int " + v + " = 0; " + v + " < n; " + v + "++) {\n");
+			else
+				body.append("if (x > " + i + ") { x = x - " + i + "; } else while (x < " + i + ") {\n");
+			body.append("x = x + " + i + ";\n");
+		}
+		for(int i = depth - 1; i >= 0; --i) {
+			if(i % 2 == 0)
+				body.append("}\n");
+			else
+				body.append("x++; }\n");
+		}
+		body.append("return x;\n");
+		return method(body.toString());
+	}
+
+	/**
+	 * A single switch statement with <code>cases</code> cases, about every
+	 * third of which falls through into the next one.
+	 */
+	public static String hugeSwitch(int cases) {
+		StringBuilder body = new StringBuilder();
+		body.append("int x = 0;\nObject o = null;\n");
+		body.append("switch (n) {\n");
+		for(int i = 0; i < cases; ++i) {
+			body.append("case " + i + ":\n");
+			body.append("x = x + " + i + ";\n");
+			if(i % 5 == 0)
+				body.append("o = new Object();\n");
+			if(i % 3 != 0)
+				body.append("break;\n");
+		}
+		body.append("default:\nx = -1;\n}\n");
+		body.append("return o == null ? x : x + 1;\n");
+		return method(body.toString());
+	}
+
+	/**
+	 * <code>blocks</code> consecutive try/finally blocks, every other one
+	 * nested inside a loop with breaks and continues, which forces the CFG to
+	 * route jumps through finally blocks.
+	 */
+	public static String manyTryFinally(int blocks) {
+		StringBuilder body = new StringBuilder();
+		body.append("int x = 0;\n");
+		for(int i = 0; i < blocks; ++i) {
+			if(i % 2 == 0) {
+				body.append("for (int j = 0; j < n; j++) {\n");
+				body.append("try {\nif (x > j) break;\nif (x < j) continue;\nx = x + j;\n}\n");
+				body.append("finally {\nx = x + " + i + ";\n}\n}\n");
+			}
+			else {
+				body.append("try {\nx = x * 2;\nif (x > n) throw new RuntimeException();\n}\n");
+				body.append("catch (RuntimeException e) {\nx = 0;\n}\n");
+				body.append("finally {\nx--;\n}\n");
+			}
+		}
+		body.append("return x;\n");
+		return method(body.toString());
+	}
+
+	/**
+	 * Try/finally statements nested <code>depth</code> levels deep, each inside a loop,
+	 * like code that acquires and releases resources.  Every level returns, breaks, continues 
+	 * and throws through all the finally blocks around it, and every finally block contains
+	 * a try/catch statement, so copying finally blocks for every exit makes the CFG grow 
+	 * quadratically with the depth.
+	 */
+	public static String nestedTryFinally(int depth) {
+		StringBuilder body = new StringBuilder();
+		body.append("int x = 0;\n");
+		for(int i = 0; i < depth; ++i) {
+			String v = "i" + i;
+			body.append("for (int " + v + " = 0; " + v + " < n; " + v + "++) {\n");
+			body.append("try {\n");
+			body.append("if (x == " + i + ") return x;\n");
+			body.append("if (x > n) break;\n");
+			body.append("if (x < " + (-i) + ") continue;\n");
+			body.append("if (x == n) throw new IllegalStateException();\n");
+			body.append("x = x + " + v + ";\n");
+		}
+		for(int i = depth - 1; i >= 0; --i) {
+			body.append("}\nfinally {\ntry {\nif (x < 0) throw new RuntimeException();\n}\n");
+			body.append("catch (RuntimeException e) {\nx = " + i + ";\n}\n}\n}\n");
+		}
+		body.append("return x;\n");
+		return method(body.toString());
+	}
+
+	/**
+	 * <code>statements</code> assignments without any branches, over a
+	 * handful of variables, so lattice elements stay wide throughout the method.
+	 */
+	public static String straightLine(int statements) {
+		final int vars = 32;
+		StringBuilder body = new StringBuilder();
+		for(int i = 0; i < vars; ++i)
+			body.append("int v" + i + " = " + i + ";\n");
+		body.append("Object o = null;\n");
+		for(int i = 0; i < statements; ++i) {
+			int target = i % vars;
+			int source = (i * 7 + 3) % vars;
+			if(i % 10 == 0)
+				body.append("o = (v" + source + " > n) ? new Object() : o;\n");
+			else
+				body.append("v" + target + " = v" + source + " + " + i + ";\n");
+		}
+		body.append("return o == null ? v0 : v1;\n");
+		return method(body.toString());
+	}
+
+	private static String method(String body) {
+		return "public class Stress {\npublic int m(int n) {\n" + body + "}\n}\n";
+	}
+
+}
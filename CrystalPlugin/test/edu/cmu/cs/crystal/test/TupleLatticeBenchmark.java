@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.test;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+
+import edu.cmu.cs.crystal.flow.IFreezableLatticeOperations;
+import edu.cmu.cs.crystal.flow.LatticeUtilities;
+import edu.cmu.cs.crystal.simple.FreezableTupleLatticeOperations;
+import edu.cmu.cs.crystal.simple.PersistentTupleLatticeOperations;
+import edu.cmu.cs.crystal.simple.SimpleLatticeOperations;
+import edu.cmu.cs.crystal.simple.TupleLatticeElement;
+import edu.cmu.cs.crystal.simple.TupleLatticeOperations;
+
+/**
+ * Compares the lattice copies a worklist makes for {@link TupleLatticeElement}s
+ * with and without freezing.  The benchmark repeatedly transfers over a chain of nodes,
+ * each of which changes one key, and joins the outgoing tuple into the next node's 
+ * incoming tuple, the way {@link edu.cmu.cs.crystal.flow.worklist.WorklistTemplate} does.
+ * Without freezing every transfer and join deep-copies tuples; with freezing, tuples
+ * are only copied when a transfer modifies them, and values are never copied.
+ * {@link edu.cmu.cs.crystal.simple.PersistentTupleLatticeElement persistent tuples} additionally avoid copying
+ * the entire map when a transfer modifies a tuple, and joins only look at changed keys.
+ * <p>
+ * Usage: <code>TupleLatticeBenchmark [keys] [nodes] [rounds]</code>
+ */
+public class TupleLatticeBenchmark {
+
+	/** Maximum lattice over integers that counts copies. */
+	private static class CountingMaxOps extends SimpleLatticeOperations<Integer> {
+		long copies;
+		@Override
+		public boolean atLeastAsPrecise(Integer left, Integer right) {
+			return left <= right;
+		}
+		@Override
+		public Integer bottom() {
+			return 0;
+		}
+		@Override
+		public Integer copy(Integer original) {
+			copies++;
+			// simulate a mutable value that must be duplicated
+			return new Integer(original.intValue());
+		}
+		@Override
+		public Integer join(Integer left, Integer right) {
+			return Math.max(left, right);
+		}
+	}
+
+	/** Same lattice, but declares that values are immutable. */
+	private static class FreezableCountingMaxOps extends CountingMaxOps 
+	implements IFreezableLatticeOperations<Integer, ASTNode> {
+		public Integer freeze(Integer info) {
+			return info;
+		}
+	}
+
+	public static void main(String[] args) {
+		int keys = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+		int nodes = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+		
+		for(int i = 0; i < 2; ++i) {
+			// first iteration warms up the VM
+			CountingMaxOps elementOps = new CountingMaxOps();
+			run("copying", elementOps, new TupleLatticeOperations<Integer, Integer>(elementOps, 0), 
+					false, keys, nodes, rounds);
+			elementOps = new FreezableCountingMaxOps();
+			run("freezing", elementOps, new FreezableTupleLatticeOperations<Integer, Integer>(elementOps, 0), 
+					true, keys, nodes, rounds);
+			elementOps = new FreezableCountingMaxOps();
+			run("persistent", elementOps, new PersistentTupleLatticeOperations<Integer, Integer>(elementOps, 0), 
+					true, keys, nodes, rounds);
+		}
+	}
+
+	private static void run(String name, CountingMaxOps elementOps, 
+			TupleLatticeOperations<Integer, Integer> ops, boolean freeze,
+			int keys, int nodes, int rounds) {
+		long tupleCopies = 0;
+		long start = System.nanoTime();
+		for(int r = 0; r < rounds; ++r) {
+			TupleLatticeElement<Integer, Integer> incoming = ops.getDefault();
+			for(int k = 0; k < keys; ++k)
+				incoming.put(k, 0);
+			LatticeUtilities.freeze(ops, incoming);
+			TupleLatticeElement<Integer, Integer> previous = null;
+			for(int n = 0; n < nodes; ++n) {
+				// transfer: the worklist always copies before transferring
+				TupleLatticeElement<Integer, Integer> out = ops.copy(incoming);
+				tupleCopies++;
+				if(n % 2 == 0)
+					out.put(n % keys, n);
+				if(freeze)
+					LatticeUtilities.freeze(ops, out);
+				// join into the next node's incoming tuple
+				if(previous != null) {
+					if(freeze)
+						out = LatticeUtilities.freeze(ops, ops.join(previous, out, null));
+					else {
+						out = ops.join(ops.copy(previous), ops.copy(out), null);
+						tupleCopies += 2;
+					}
+				}
+				previous = out;
+				incoming = out;
+			}
+		}
+		long ms = (System.nanoTime() - start) / 1000000;
+		System.out.println(name + ": " + ms + " ms, " + tupleCopies + " tuple copies, " 
+				+ elementOps.copies + " value copies");
+	}
+
+}
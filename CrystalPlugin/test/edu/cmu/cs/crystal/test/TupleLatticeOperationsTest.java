@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) 2006, 2007, 2008 Marwan Abi-Antoun, Jonathan Aldrich, Nels E. Beckman,
+ * Kevin Bierhoff, David Dickey, Ciera Jaspan, Thomas LaToza, Gabriel Zenarosa, and others.
+ *
+ * This file is part of Crystal.
+ *
+ * Crystal is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Crystal is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Crystal.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package edu.cmu.cs.crystal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.junit.Test;
+
+import edu.cmu.cs.crystal.flow.IFreezableLatticeOperations;
+import edu.cmu.cs.crystal.flow.LatticeUtilities;
+import edu.cmu.cs.crystal.simple.FreezableTupleLatticeOperations;
+import edu.cmu.cs.crystal.simple.SimpleLatticeOperations;
+import edu.cmu.cs.crystal.simple.TupleLatticeElement;
+import edu.cmu.cs.crystal.simple.TupleLatticeOperations;
+
+public class TupleLatticeOperationsTest {
+	
+	/** Maximum lattice over non-negative integers. */
+	static class MaxOps extends SimpleLatticeOperations<Integer> 
+	implements IFreezableLatticeOperations<Integer, ASTNode> {
+		@Override
+		public boolean atLeastAsPrecise(Integer left, Integer right) {
+			return left <= right;
+		}
+		@Override
+		public Integer bottom() {
+			return 0;
+		}
+		@Override
+		public Integer copy(Integer original) {
+			return original;
+		}
+		@Override
+		public Integer join(Integer left, Integer right) {
+			return Math.max(left, right);
+		}
+		public Integer freeze(Integer info) {
+			return info;
+		}
+	}
+
+	protected final FreezableTupleLatticeOperations<String, Integer> ops = createOperations();
+	
+	protected FreezableTupleLatticeOperations<String, Integer> createOperations() {
+		return new FreezableTupleLatticeOperations<String, Integer>(new MaxOps(), 0);
+	}
+
+	@Test
+	public void testFreezable() {
+		assertTrue(LatticeUtilities.isFreezable(ops));
+		TupleLatticeElement<String, Integer> t = ops.getDefault();
+		assertSame(t, LatticeUtilities.copyForJoin(ops, t));
+	}
+
+	@Test
+	public void testNotFreezableByDefault() {
+		TupleLatticeOperations<String, Integer> plain = 
+			new TupleLatticeOperations<String, Integer>(new MaxOps(), 0);
+		assertFalse(LatticeUtilities.isFreezable(plain));
+		TupleLatticeElement<String, Integer> t = plain.getDefault();
+		t.put("x", 1);
+		assertSame(t, LatticeUtilities.freeze(plain, t));
+		assertFalse(t.isFrozen());
+		TupleLatticeElement<String, Integer> c = plain.copy(t);
+		c.put("x", 2);
+		assertEquals(1, t.get("x").intValue());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testValuesMustBeFreezable() {
+		new FreezableTupleLatticeOperations<String, Integer>(new SimpleLatticeOperations<Integer>() {
+			@Override
+			public boolean atLeastAsPrecise(Integer left, Integer right) {
+				return left <= right;
+			}
+			@Override
+			public Integer bottom() {
+				return 0;
+			}
+			@Override
+			public Integer copy(Integer original) {
+				return original;
+			}
+			@Override
+			public Integer join(Integer left, Integer right) {
+				return Math.max(left, right);
+			}
+		}, 0);
+	}
+
+	@Test
+	public void testFrozenCannotBeModified() {
+		TupleLatticeElement<String, Integer> t = ops.getDefault();
+		t.put("x", 1);
+		assertSame(t, ops.freeze(t));
+		assertTrue(t.isFrozen());
+		try {
+			t.put("x", 2);
+			fail("Frozen tuple was modified");
+		}
+		catch(UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			t.getKeySet().clear();
+			fail("Frozen tuple was modified");
+		}
+		catch(UnsupportedOperationException e) {
+			// expected
+		}
+		assertEquals(1, t.get("x").intValue());
+	}
+
+	@Test
+	public void testCopyOfFrozen() {
+		TupleLatticeElement<String, Integer> t = ops.getDefault();
+		t.put("x", 1);
+		ops.freeze(t);
+		
+		TupleLatticeElement<String, Integer> c = ops.copy(t);
+		assertFalse(c.isFrozen());
+		assertEquals(1, c.get("x").intValue());
+		c.put("x", 2);
+		c.put("y", 3);
+		assertEquals(2, c.get("x").intValue());
+		assertEquals(1, t.get("x").intValue());
+		assertEquals(0, t.get("y").intValue());
+		assertEquals(1, t.getKeySet().size());
+	}
+
+	@Test
+	public void testCopyOfMutable() {
+		TupleLatticeElement<String, Integer> t = ops.getDefault();
+		t.put("x", 1);
+		
+		TupleLatticeElement<String, Integer> c = ops.copy(t);
+		t.put("x", 2);
+		assertEquals(1, c.get("x").intValue());
+		c.remove("x");
+		assertEquals(2, t.get("x").intValue());
+		assertEquals(0, c.get("x").intValue());
+	}
+
+	@Test
+	public void testKeySetIsReadOnly() {
+		TupleLatticeOperations<String, Integer> plain = 
+			new TupleLatticeOperations<String, Integer>(new MaxOps(), 0);
+		TupleLatticeElement<String, Integer> t = plain.getDefault();
+		t.put("x", 1);
+		try {
+			t.getKeySet().remove("x");
+			fail("Key set was modified");
+		}
+		catch(UnsupportedOperationException e) {
+			// expected
+		}
+		assertEquals(1, t.get("x").intValue());
+	}
+
+	@Test
+	public void testSubclassModifiesMapDirectly() {
+		DirectTuple t = new DirectTuple();
+		t.elements.put("x", 1);
+		TupleLatticeElement<String, Integer> c = t.mutableCopy();
+		t.elements.put("x", 2);
+		assertEquals(1, c.get("x").intValue());
+		assertEquals(2, t.get("x").intValue());
+	}
+
+	/** Subclass that modifies its map without going through {@link TupleLatticeElement#put(Object, Object)}. */
+	private static class DirectTuple extends TupleLatticeElement<String, Integer> {
+		DirectTuple() {
+			super(0, 0, new HashMap<String, Integer>());
+		}
+	}
+
+	@Test
+	public void testJoinLeavesArgumentsAlone() {
+		TupleLatticeElement<String, Integer> left = ops.getDefault();
+		left.put("x", 1);
+		TupleLatticeElement<String, Integer> right = ops.getDefault();
+		right.put("x", 2);
+		right.put("y", 3);
+		ops.freeze(left);
+		ops.freeze(right);
+		
+		TupleLatticeElement<String, Integer> j = ops.join(left, right, null);
+		assertEquals(2, j.get("x").intValue());
+		assertEquals(3, j.get("y").intValue());
+		assertEquals(1, left.get("x").intValue());
+		assertTrue(ops.atLeastAsPrecise(left, j, null));
+		assertFalse(ops.atLeastAsPrecise(j, left, null));
+	}
+
+}